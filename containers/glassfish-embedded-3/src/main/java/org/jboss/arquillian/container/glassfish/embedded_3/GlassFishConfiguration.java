@@ -18,8 +18,8 @@ package org.jboss.arquillian.container.glassfish.embedded_3;
 
 import java.util.UUID;
 
-import org.jboss.arquillian.spi.ContainerConfiguration;
 import org.jboss.arquillian.spi.ContainerProfile;
+import org.jboss.arquillian.spi.EmbeddedContainerConfiguration;
 
 /**
  * A {@link org.jboss.arquillian.spi.ContainerConfiguration} implementation for
@@ -29,7 +29,7 @@ import org.jboss.arquillian.spi.ContainerProfile;
  * @author Dan Allen
  * @version $Revision: $
  */
-public class GlassFishConfiguration implements ContainerConfiguration
+public class GlassFishConfiguration implements EmbeddedContainerConfiguration
 {
    private int bindHttpPort = 8181;
    private String instanceRoot = "target/glassfish_" + UUID.randomUUID().toString();
@@ -39,6 +39,7 @@ import org.glassfish.api.embedded.EmbeddedFileSystem;
 import org.glassfish.api.embedded.Port;
 import org.glassfish.api.embedded.Server;
 import org.jboss.arquillian.protocol.servlet_3.ServletMethodExecutor;
+import org.jboss.arquillian.protocol.servlet_3.ServletProtocolConfiguration;
 import org.jboss.arquillian.spi.Configuration;
 import org.jboss.arquillian.spi.ContainerMethodExecutor;
 import org.jboss.arquillian.spi.Context;
@@ -68,6 +69,8 @@ public class GlassFishEmbeddedContainer implements DeployableContainer
    private Server server;
 
    private GlassFishConfiguration containerConfig;
+
+   private ServletProtocolConfiguration protocolConfiguration;
    
    public GlassFishEmbeddedContainer()
    {
@@ -75,6 +78,7 @@ public class GlassFishEmbeddedContainer implements DeployableContainer
    
    public void setup(Context context, Configuration arquillianConfig)
    {
+      protocolConfiguration = arquillianConfig.getExtensionConfig(ServletProtocolConfiguration.class);
       containerConfig = arquillianConfig.getContainerConfig(GlassFishConfiguration.class);
       final Server.Builder serverBuilder = new Server.Builder("arquillian-" + System.currentTimeMillis());
 
@@ -178,7 +182,8 @@ public class GlassFishEmbeddedContainer implements DeployableContainer
                      HTTP_PROTOCOL,
                      "localhost",
                      containerConfig.getBindHttpPort(),
-                     "/")
+                     "/"),
+               protocolConfiguration
                );
       } 
       catch (Exception e) 
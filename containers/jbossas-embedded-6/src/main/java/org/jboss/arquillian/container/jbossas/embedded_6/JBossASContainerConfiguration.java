@@ -16,8 +16,8 @@
  */
 package org.jboss.arquillian.container.jbossas.embedded_6;
 
-import org.jboss.arquillian.spi.ContainerConfiguration;
 import org.jboss.arquillian.spi.ContainerProfile;
+import org.jboss.arquillian.spi.EmbeddedContainerConfiguration;
 
 /**
  * JBossContainerConfiguration
@@ -25,7 +25,7 @@ import org.jboss.arquillian.spi.ContainerProfile;
  * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
  * @version $Revision: $
  */
-public class JBossASContainerConfiguration implements ContainerConfiguration
+public class JBossASContainerConfiguration implements EmbeddedContainerConfiguration
 {
    /**
     * The profile to start. 
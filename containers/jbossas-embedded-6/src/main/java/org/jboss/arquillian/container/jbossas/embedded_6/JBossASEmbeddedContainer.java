@@ -19,6 +19,7 @@ package org.jboss.arquillian.container.jbossas.embedded_6;
 import java.net.URL;
 
 import org.jboss.arquillian.protocol.servlet_3.ServletMethodExecutor;
+import org.jboss.arquillian.protocol.servlet_3.ServletProtocolConfiguration;
 import org.jboss.arquillian.spi.Configuration;
 import org.jboss.arquillian.spi.ContainerMethodExecutor;
 import org.jboss.arquillian.spi.Context;
@@ -98,7 +99,8 @@ public class JBossASEmbeddedContainer implements DeployableContainer
                      "http",
                      containerConfiguration.getBindAddress(),
                      containerConfiguration.getHttpPort(),
-                     "/")
+                     "/"),
+               context.get(Configuration.class).getExtensionConfig(ServletProtocolConfiguration.class)
                );
       }
       catch (Exception e) 
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.logging.Logger;
 
 import org.jboss.arquillian.protocol.servlet_3.ServletMethodExecutor;
+import org.jboss.arquillian.protocol.servlet_3.ServletProtocolConfiguration;
 import org.jboss.arquillian.spi.Configuration;
 import org.jboss.arquillian.spi.ContainerMethodExecutor;
 import org.jboss.arquillian.spi.Context;
@@ -50,6 +51,8 @@ public class JBossASLocalContainer implements DeployableContainer
 
    private JBossASConfiguration configuration;
 
+   private ServletProtocolConfiguration protocolConfiguration;
+
    protected ServerManager manager;
 
    private final List<String> failedUndeployments = new ArrayList<String>();
@@ -59,6 +62,7 @@ public class JBossASLocalContainer implements DeployableContainer
    */
    public void setup(Context context, Configuration configuration)
    {
+      protocolConfiguration = configuration.getExtensionConfig(ServletProtocolConfiguration.class);
       this.configuration = configuration.getContainerConfig(JBossASConfiguration.class);
       
       manager = createAndConfigureServerManager();
@@ -147,7 +151,7 @@ public class JBossASLocalContainer implements DeployableContainer
       }
       try
       {
-         return new ServletMethodExecutor(new URL(server.getHttpUrl().toExternalForm() + "/"));
+         return new ServletMethodExecutor(new URL(server.getHttpUrl().toExternalForm() + "/"), protocolConfiguration);
       }
       catch (Exception e)
       {
@@ -16,24 +16,35 @@
  */
 package org.jboss.arquillian.container.jbossas.remote_5_1;
 
-import java.io.ByteArrayOutputStream;
+import java.io.File;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
+import javax.management.MBeanServerConnection;
 import javax.naming.InitialContext;
 
+import org.jboss.arquillian.container.jbossas.remote.AsyncDeployments;
+import org.jboss.arquillian.container.jbossas.remote.DeltaDeploymentClient;
+import org.jboss.arquillian.container.jbossas.remote.DeploymentFileHandler;
+import org.jboss.arquillian.container.jbossas.remote.LocalDeployments;
 import org.jboss.arquillian.protocol.servlet_2_5.ServletMethodExecutor;
+import org.jboss.arquillian.protocol.servlet_2_5.ServletProtocolConfiguration;
+import org.jboss.arquillian.spi.AsyncDeployableContainer;
 import org.jboss.arquillian.spi.Configuration;
 import org.jboss.arquillian.spi.ContainerMethodExecutor;
 import org.jboss.arquillian.spi.Context;
-import org.jboss.arquillian.spi.DeployableContainer;
 import org.jboss.arquillian.spi.DeploymentException;
 import org.jboss.arquillian.spi.LifecycleException;
 import org.jboss.deployers.spi.management.deploy.DeploymentManager;
@@ -42,30 +53,42 @@ import org.jboss.deployers.spi.management.deploy.DeploymentStatus;
 import org.jboss.profileservice.spi.ProfileKey;
 import org.jboss.profileservice.spi.ProfileService;
 import org.jboss.shrinkwrap.api.Archive;
-import org.jboss.shrinkwrap.api.exporter.ZipExporter;
 import org.jboss.virtual.VFS;
 
-import com.sun.net.httpserver.HttpExchange;
-import com.sun.net.httpserver.HttpHandler;
 import com.sun.net.httpserver.HttpServer;
 
 /**
  * JbossRemoteContainer
  *
+ * Deploy and undeploy can run in the background, see {@link AsyncDeployments}. The undeploy of one 
+ * test class then overlaps with the deploy of the next.
+ *
  * @author <a href="mailto:aslak@conduct.no">Aslak Knutsen</a>
  * @version $Revision: $
  */
-public class JBossASRemoteContainer implements DeployableContainer
+public class JBossASRemoteContainer implements AsyncDeployableContainer
 {
-   private final List<String> failedUndeployments = new ArrayList<String>();
+   private static Logger log = Logger.getLogger(JBossASRemoteContainer.class.getName());
+
+   private final List<String> failedUndeployments = Collections.synchronizedList(new ArrayList<String>());
+   private final Map<String, DeploymentFileHandler> deploymentFiles = new ConcurrentHashMap<String, DeploymentFileHandler>();
    private DeploymentManager deploymentManager;
 
-   private HttpServer httpFileServer;
+   private volatile HttpServer httpFileServer;
+
+   private volatile File localDeploymentDirectory;
+
+   private AsyncDeployments asyncDeployments;
+
+   private DeltaDeploymentClient deltaDeploymentClient;
    
    private JBossASConfiguration configuration;
+
+   private ServletProtocolConfiguration protocolConfiguration;
    
    public void setup(Context context, Configuration configuration)
    {
+      protocolConfiguration = configuration.getExtensionConfig(ServletProtocolConfiguration.class);
       this.configuration = configuration.getContainerConfig(JBossASConfiguration.class);
    }
    
@@ -73,15 +96,20 @@ public class JBossASRemoteContainer implements DeployableContainer
    {
       try 
       {
-         // TODO: configure http bind address
-         httpFileServer = HttpServer.create();
-         httpFileServer.bind(
-               new InetSocketAddress(
-                     InetAddress.getByName(configuration.getLocalDeploymentBindAddress()), 
-                     configuration.getLocalDeploymentBindPort()), 
-               -1);
-         httpFileServer.start();
+         asyncDeployments = new AsyncDeployments();
+         if(configuration.isSameHostFileDeploymentEnabled() 
+               && LocalDeployments.isLocalAddress(configuration.getRemoteServerAddress()))
+         {
+            // the server can read our files, hand the deployments over as file URLs 
+            localDeploymentDirectory = LocalDeployments.getDeploymentDirectory(
+                  configuration.getSameHostDeploymentDirectory());
+         }
+         else
+         {
+            startHttpFileServer();
+         }
          initDeploymentManager();
+         startDeltaDeployment();
       } 
       catch (Exception e) 
       {
@@ -93,7 +121,18 @@ public class JBossASRemoteContainer implements DeployableContainer
    {
       try 
       {
-         httpFileServer.stop(0);
+         if(asyncDeployments != null)
+         {
+            asyncDeployments.shutdown();
+            asyncDeployments = null;
+         }
+         stopDeltaDeployment();
+         if(httpFileServer != null)
+         {
+            httpFileServer.stop(0);
+            httpFileServer = null;
+         }
+         deleteDeploymentFiles();
          removeFailedUnDeployments();
       } 
       catch (Exception e) 
@@ -117,29 +156,26 @@ public class JBossASRemoteContainer implements DeployableContainer
       Exception failure = null;
       try
       {
-         httpFileServer.createContext("/" + deploymentName, new HttpHandler()
+         DeploymentFileHandler deploymentFile = new DeploymentFileHandler(
+               archive, 
+               localDeploymentDirectory,
+               configuration.isLocalDeploymentGzipEnabled());
+         deploymentFiles.put(deploymentName, deploymentFile);
+         if(httpFileServer != null)
          {
-            public void handle(HttpExchange exchange) throws IOException
-            {
-               InputStream zip = archive.as(ZipExporter.class).exportZip();
-               ByteArrayOutputStream zipStream = new ByteArrayOutputStream();
-               JBossASRemoteContainer.copy(zip, zipStream);
-               zip.close();
-
-               byte[] zipArray = zipStream.toByteArray();
-               exchange.sendResponseHeaders(200, zipArray.length);
-
-               OutputStream out = exchange.getResponseBody();
-               out.write(zipArray);
-               out.close();
-
-            }
-         });
-         URL fileServerUrl = createFileServerURL(deploymentName);
+            httpFileServer.createContext("/" + deploymentName, deploymentFile);
+         }
+         URL fileServerUrl = createDeploymentURL(deploymentName, deploymentFile);
          
-         DeploymentProgress distribute = deploymentManager.distribute(deploymentName, fileServerUrl, true);
-         distribute.run();
-         DeploymentStatus uploadStatus = distribute.getDeploymentStatus(); 
+         DeploymentStatus uploadStatus = distribute(deploymentName, fileServerUrl); 
+         if(uploadStatus.isFailed() && "file".equals(fileServerUrl.getProtocol()))
+         {
+            // the server could not read our file, e.g. it runs as a other user or behind a port forward
+            log.log(Level.WARNING, "Could not distribute " + deploymentName + " as a file URL, serving deployments over HTTP", uploadStatus.getFailure());
+            switchToHttpFileServer();
+            httpFileServer.createContext("/" + deploymentName, deploymentFile);
+            uploadStatus = distribute(deploymentName, createDeploymentURL(deploymentName, deploymentFile));
+         }
          if(uploadStatus.isFailed()) 
          {
             failure = uploadStatus.getFailure();
@@ -172,7 +208,8 @@ public class JBossASRemoteContainer implements DeployableContainer
                      "http",
                      configuration.getRemoteServerAddress(),
                      configuration.getRemoteServerHttpPort(), 
-                     "/")
+                     "/"),
+               protocolConfiguration
                );
       } 
       catch (Exception e) 
@@ -190,6 +227,45 @@ public class JBossASRemoteContainer implements DeployableContainer
       undeploy(archive.getName());
    }
 
+   public Future<ContainerMethodExecutor> deployAsync(Context context, final Archive<?> archive) throws DeploymentException
+   {
+      if(archive == null) 
+      {
+         throw new IllegalArgumentException("Archive must be specified");
+      }
+      if (asyncDeployments == null)
+      {
+         throw new IllegalStateException("start has not been called!");
+      }
+      return asyncDeployments.submit(archive.getName(), new Callable<ContainerMethodExecutor>()
+      {
+         public ContainerMethodExecutor call() throws Exception
+         {
+            return deploy(null, archive);
+         }
+      });
+   }
+
+   public Future<Void> undeployAsync(Context context, final Archive<?> archive) throws DeploymentException
+   {
+      if(archive == null) 
+      {
+         throw new IllegalArgumentException("Archive must be specified");
+      }
+      if (asyncDeployments == null)
+      {
+         throw new IllegalStateException("start has not been called!");
+      }
+      return asyncDeployments.submit(archive.getName(), new Callable<Void>()
+      {
+         public Void call() throws Exception
+         {
+            undeploy(archive.getName());
+            return null;
+         }
+      });
+   }
+
    private void undeploy(String name) throws DeploymentException
    {
       try
@@ -203,7 +279,15 @@ public class JBossASRemoteContainer implements DeployableContainer
          {
             failedUndeployments.add(name);
          }
-         httpFileServer.removeContext("/" + name);
+         if(httpFileServer != null)
+         {
+            httpFileServer.removeContext("/" + name);
+         }
+         DeploymentFileHandler deploymentFile = deploymentFiles.remove(name);
+         if(deploymentFile != null)
+         {
+            deploymentFile.delete();
+         }
       }
       catch (Exception e)
       {
@@ -211,6 +295,37 @@ public class JBossASRemoteContainer implements DeployableContainer
       }
    }
 
+   private DeploymentStatus distribute(String deploymentName, URL fileServerUrl) throws Exception
+   {
+      DeploymentProgress distribute = deploymentManager.distribute(deploymentName, fileServerUrl, true);
+      distribute.run();
+      return distribute.getDeploymentStatus();
+   }
+
+   /*
+    * Concurrent deployments can fail to distribute as file URLs at the same time, only switch once. 
+    */
+   private synchronized void switchToHttpFileServer() throws IOException
+   {
+      if(httpFileServer == null)
+      {
+         localDeploymentDirectory = null;
+         startHttpFileServer();
+      }
+   }
+
+   private void startHttpFileServer() throws IOException
+   {
+      // TODO: configure http bind address
+      httpFileServer = HttpServer.create();
+      httpFileServer.bind(
+            new InetSocketAddress(
+                  InetAddress.getByName(configuration.getLocalDeploymentBindAddress()), 
+                  configuration.getLocalDeploymentBindPort()), 
+            -1);
+      httpFileServer.start();
+   }
+
    private void initDeploymentManager() throws Exception 
    {
       String profileName = configuration.getProfileName();
@@ -222,6 +337,26 @@ public class JBossASRemoteContainer implements DeployableContainer
       VFS.init();
    }
    
+   private URL createDeploymentURL(String deploymentName, DeploymentFileHandler deploymentFile) throws MalformedURLException
+   {
+      if(httpFileServer == null)
+      {
+         return deploymentFile.getFile().toURI().toURL();
+      }
+      if(deltaDeploymentClient != null)
+      {
+         try
+         {
+            return deltaDeploymentClient.upload(deploymentName, deploymentFile.getFile());
+         }
+         catch (Exception e)
+         {
+            log.log(Level.WARNING, "Delta transfer of " + deploymentName + " failed, falling back to full transfer", e);
+         }
+      }
+      return createFileServerURL(deploymentName);
+   }
+
    private URL createFileServerURL(String archiveName) 
    {
       try 
@@ -267,21 +402,47 @@ public class JBossASRemoteContainer implements DeployableContainer
       failedUndeployments.clear();
    }
 
-   private static void copy(InputStream source, OutputStream destination) throws IOException
+   /*
+    * Deploy the service that reassembles deployments from a delta against the previous version, 
+    * only the changed blocks are transfered. 
+    */
+   private void startDeltaDeployment()
    {
-      if (source == null)
+      if(!configuration.isDeltaDeploymentEnabled() || httpFileServer == null)
+      {
+         return;
+      }
+      try
       {
-         throw new IllegalArgumentException("source must be specified");
+         deploy(null, DeltaDeploymentClient.createServiceArchive());
+         deltaDeploymentClient = new DeltaDeploymentClient(getMBeanServerConnection(), httpFileServer);
       }
-      if (destination == null)
+      catch (Exception e)
       {
-         throw new IllegalArgumentException("destination must be specified");
+         log.log(Level.WARNING, "Could not deploy the delta deployment service, using full transfers", e);
       }
-      byte[] readBuffer = new byte[2156]; 
-      int bytesIn = 0; 
-      while((bytesIn = source.read(readBuffer)) != -1) 
-      { 
-         destination.write(readBuffer, 0, bytesIn); 
+   }
+
+   private void stopDeltaDeployment() throws Exception
+   {
+      if(deltaDeploymentClient != null)
+      {
+         deltaDeploymentClient = null;
+         undeploy(DeltaDeploymentClient.SERVICE_ARCHIVE_NAME);
+      }
+   }
+
+   private MBeanServerConnection getMBeanServerConnection() throws Exception
+   {
+      return (MBeanServerConnection)new InitialContext().lookup("jmx/invoker/RMIAdaptor");
+   }
+
+   private void deleteDeploymentFiles()
+   {
+      for(DeploymentFileHandler deploymentFile : deploymentFiles.values())
+      {
+         deploymentFile.delete();
       }
+      deploymentFiles.clear();
    }
 }
@@ -56,6 +56,45 @@ public class JBossASConfiguration implements ContainerConfiguration
     * Port must be reachable from remote server.
     */
    private int localDeploymentBindPort = 9999;
+
+   /**
+    * Gzip encode the deployments served to the remote server if it accepts it.
+    * Trades CPU for bandwidth, only worth it on slow links.
+    */
+   private boolean localDeploymentGzipEnabled = false;
+
+   /**
+    * Deploy a service to the remote server that keeps the previous version of each deployment
+    * and only transfer the changed blocks.
+    */
+   private boolean deltaDeploymentEnabled = false;
+
+   /**
+    * Hand the deployments over as file URLs instead of serving them over HTTP
+    * when the remote server runs on this host. Falls back to HTTP if the server
+    * can not read the files.
+    */
+   private boolean sameHostFileDeploymentEnabled = true;
+
+   /**
+    * Directory to export the deployments to when the remote server runs on this host.
+    * Defaults to /dev/shm if available, else the temporary directory.
+    */
+   private String sameHostDeploymentDirectory;
+
+   /**
+    * Invoke the tests through a JMXTestRunner registered by each test deployment, over the JMX connector
+    * of the remote server at this JMXServiceURL, instead of the Servlet Protocol. 
+    * E.g. service:jmx:rmi:///jndi/rmi://localhost:1090/jmxrmi
+    */
+   private String jmxServiceURL;
+
+   /**
+    * Credentials for the JMX connector, only used if set.
+    */
+   private String jmxUsername;
+
+   private String jmxPassword;
    
    public ContainerProfile getContainerProfile()
    {
@@ -111,4 +150,74 @@ public class JBossASConfiguration implements ContainerConfiguration
    {
       this.localDeploymentBindPort = localDeploymentBindPort;
    }
+
+   public boolean isLocalDeploymentGzipEnabled()
+   {
+      return localDeploymentGzipEnabled;
+   }
+
+   public void setLocalDeploymentGzipEnabled(boolean localDeploymentGzipEnabled)
+   {
+      this.localDeploymentGzipEnabled = localDeploymentGzipEnabled;
+   }
+
+   public boolean isDeltaDeploymentEnabled()
+   {
+      return deltaDeploymentEnabled;
+   }
+
+   public void setDeltaDeploymentEnabled(boolean deltaDeploymentEnabled)
+   {
+      this.deltaDeploymentEnabled = deltaDeploymentEnabled;
+   }
+
+   public boolean isSameHostFileDeploymentEnabled()
+   {
+      return sameHostFileDeploymentEnabled;
+   }
+
+   public void setSameHostFileDeploymentEnabled(boolean sameHostFileDeploymentEnabled)
+   {
+      this.sameHostFileDeploymentEnabled = sameHostFileDeploymentEnabled;
+   }
+
+   public String getSameHostDeploymentDirectory()
+   {
+      return sameHostDeploymentDirectory;
+   }
+
+   public void setSameHostDeploymentDirectory(String sameHostDeploymentDirectory)
+   {
+      this.sameHostDeploymentDirectory = sameHostDeploymentDirectory;
+   }
+
+   public String getJmxServiceURL()
+   {
+      return jmxServiceURL;
+   }
+
+   public void setJmxServiceURL(String jmxServiceURL)
+   {
+      this.jmxServiceURL = jmxServiceURL;
+   }
+
+   public String getJmxUsername()
+   {
+      return jmxUsername;
+   }
+
+   public void setJmxUsername(String jmxUsername)
+   {
+      this.jmxUsername = jmxUsername;
+   }
+
+   public String getJmxPassword()
+   {
+      return jmxPassword;
+   }
+
+   public void setJmxPassword(String jmxPassword)
+   {
+      this.jmxPassword = jmxPassword;
+   }
 }
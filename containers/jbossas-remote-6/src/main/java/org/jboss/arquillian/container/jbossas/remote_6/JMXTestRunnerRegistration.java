@@ -0,0 +1,93 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.container.jbossas.remote_6;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import org.jboss.arquillian.protocol.jmx.JMXTestRunner;
+import org.jboss.arquillian.protocol.jmx.JMXTestRunnerMBean;
+
+/**
+ * JMXTestRunnerRegistration
+ * 
+ * Registers a {@link JMXTestRunner} for the test deployment while it is deployed, named by its context path 
+ * so the test deployments of overlapping deploy and undeploy do not collide. The JMXTestRunner is loaded 
+ * by the deployment and loads the test classes from it.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class JMXTestRunnerRegistration implements ServletContextListener
+{
+   private JMXTestRunner testRunner;
+   
+   private ObjectName objectName;
+   
+   /**
+    * @param contextPath The context path of the test deployment
+    * @return The ObjectName the JMXTestRunner of the test deployment is registered under
+    */
+   public static ObjectName getObjectName(String contextPath) throws MalformedObjectNameException
+   {
+      return new ObjectName(JMXTestRunnerMBean.OBJECT_NAME + ",context=" + ObjectName.quote(contextPath));
+   }
+
+   /* (non-Javadoc)
+    * @see javax.servlet.ServletContextListener#contextInitialized(javax.servlet.ServletContextEvent)
+    */
+   public void contextInitialized(ServletContextEvent event)
+   {
+      try
+      {
+         testRunner = new JMXTestRunner(null);
+         objectName = testRunner.registerMBean(
+               ManagementFactory.getPlatformMBeanServer(), 
+               getObjectName(event.getServletContext().getContextPath()));
+      }
+      catch (Exception e) 
+      {
+         // the Servlet Protocol still works
+         event.getServletContext().log("Could not register " + JMXTestRunner.class.getSimpleName(), e);
+         testRunner = null;
+      }
+   }
+
+   /* (non-Javadoc)
+    * @see javax.servlet.ServletContextListener#contextDestroyed(javax.servlet.ServletContextEvent)
+    */
+   public void contextDestroyed(ServletContextEvent event)
+   {
+      if(testRunner == null)
+      {
+         return;
+      }
+      try
+      {
+         testRunner.unregisterMBean(ManagementFactory.getPlatformMBeanServer(), objectName);
+      }
+      catch (Exception e) 
+      {
+         event.getServletContext().log("Could not unregister " + objectName, e);
+      }
+      testRunner = null;
+   }
+}
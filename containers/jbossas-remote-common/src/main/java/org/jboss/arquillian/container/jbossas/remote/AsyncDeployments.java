@@ -0,0 +1,123 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.container.jbossas.remote;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the deploy and undeploy operations of a remote container in the background.<br/>
+ * <br/>
+ * Operations on different deployments run concurrently, operations on the same deployment name run 
+ * in the order they were submitted, e.g. a redeploy of test.war waits for the undeploy of test.war.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class AsyncDeployments
+{
+   private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+   
+   private final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory()
+   {
+      public Thread newThread(Runnable runnable)
+      {
+         Thread thread = new Thread(runnable, "arquillian-deployment-" + THREAD_COUNT.incrementAndGet());
+         thread.setDaemon(true);
+         return thread;
+      }
+   });
+   
+   private final Map<String, Future<?>> lastOperations = new HashMap<String, Future<?>>();
+   
+   /**
+    * Start a operation on the named deployment.
+    * 
+    * @param deploymentName The name of the deployment the operation works on
+    * @param operation The deploy or undeploy operation
+    * @return A Future holding the result of the operation
+    */
+   public synchronized <T> Future<T> submit(String deploymentName, final Callable<T> operation)
+   {
+      if(deploymentName == null)
+      {
+         throw new IllegalArgumentException("DeploymentName must be specified");
+      }
+      if(operation == null)
+      {
+         throw new IllegalArgumentException("Operation must be specified");
+      }
+      final Future<?> previous = lastOperations.get(deploymentName);
+      Future<T> future = executor.submit(new Callable<T>()
+      {
+         public T call() throws Exception
+         {
+            if(previous != null && !previous.isDone())
+            {
+               await(previous);
+            }
+            return operation.call();
+         }
+      });
+      lastOperations.put(deploymentName, future);
+      return future;
+   }
+   
+   /**
+    * Wait for the submitted operations to finish and release the threads. 
+    */
+   public void shutdown()
+   {
+      synchronized (this)
+      {
+         lastOperations.clear();
+      }
+      executor.shutdown();
+      try
+      {
+         executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+      }
+      catch (InterruptedException e) 
+      {
+         executor.shutdownNow();
+         Thread.currentThread().interrupt();
+      }
+   }
+   
+   private static void await(Future<?> previous) throws InterruptedException
+   {
+      try
+      {
+         previous.get();
+      }
+      catch (InterruptedException e) 
+      {
+         throw e;
+      }
+      catch (Exception e) 
+      {
+         // the failure is reported to the caller of the previous operation
+      }
+   }
+}
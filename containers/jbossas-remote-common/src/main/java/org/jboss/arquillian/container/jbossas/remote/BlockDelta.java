@@ -0,0 +1,448 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.container.jbossas.remote;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Describes a file as the changes against a older version of it, rsync style.<br/>
+ * <br/>
+ * The side holding the old version, the basis, sends the signatures of its blocks: a weak rolling checksum
+ * and a MD5 of each full block. The side holding the new version slides a block sized window over it byte by
+ * byte, blocks found in the basis are sent as references and everything else as literal data. The delta ends
+ * with the MD5 of the new version so the receiver can verify the reassembled file.<br/>
+ * <br/>
+ * Signatures: int block size, int block count, per block int weak checksum and 16 byte MD5.<br/>
+ * Delta: int block size, followed by {@link #COPY} int first block int block count, {@link #DATA} int length
+ * bytes, and ended by {@link #END} and the 16 byte MD5 of the new version.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+final class BlockDelta
+{
+   static final int DEFAULT_BLOCK_SIZE = 8 * 1024;
+
+   private static final int MAX_DATA_SIZE = 64 * 1024;
+
+   private static final int DIGEST_SIZE = 16;
+
+   private static final byte END = 0;
+
+   private static final byte COPY = 1;
+
+   private static final byte DATA = 2;
+
+   private BlockDelta() {}
+
+   /**
+    * Create the signatures of the basis.
+    *
+    * @param basis The old version, or null if there is none
+    * @param blockSize Size of the blocks
+    * @return The encoded signatures
+    * @throws IOException If the basis could not be read
+    */
+   static byte[] createSignatures(File basis, int blockSize) throws IOException
+   {
+      if(blockSize <= 0)
+      {
+         throw new IllegalArgumentException("BlockSize must be positive");
+      }
+      int blockCount = basis == null ? 0 : (int)(basis.length() / blockSize);
+
+      ByteArrayOutputStream signatures = new ByteArrayOutputStream(8 + blockCount * (4 + DIGEST_SIZE));
+      DataOutputStream output = new DataOutputStream(signatures);
+      output.writeInt(blockSize);
+      output.writeInt(blockCount);
+      if(blockCount > 0)
+      {
+         MessageDigest digest = createDigest();
+         byte[] block = new byte[blockSize];
+         DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(basis)));
+         try
+         {
+            for(int i = 0; i < blockCount; i++)
+            {
+               input.readFully(block);
+               output.writeInt(checksum(block, 0, blockSize));
+               output.write(digest.digest(block));
+            }
+         }
+         finally
+         {
+            input.close();
+         }
+      }
+      output.close();
+      return signatures.toByteArray();
+   }
+
+   /**
+    * Write the delta between the basis described by the signatures and the new version.
+    *
+    * @param signatures The encoded signatures of the basis
+    * @param target The new version
+    * @param delta Stream to write the delta to, flushed but not closed
+    * @throws IOException If the target could not be read or the delta not written
+    */
+   static void createDelta(byte[] signatures, File target, OutputStream delta) throws IOException
+   {
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(signatures));
+      int blockSize = input.readInt();
+      int blockCount = input.readInt();
+      if(blockSize <= 0 || blockCount < 0)
+      {
+         throw new IOException("Invalid signatures");
+      }
+      Map<Integer, List<Block>> blocks = new HashMap<Integer, List<Block>>(blockCount * 2);
+      for(int i = 0; i < blockCount; i++)
+      {
+         int weak = input.readInt();
+         byte[] strong = new byte[DIGEST_SIZE];
+         input.readFully(strong);
+         List<Block> matches = blocks.get(weak);
+         if(matches == null)
+         {
+            matches = new ArrayList<Block>(1);
+            blocks.put(weak, matches);
+         }
+         matches.add(new Block(i, strong));
+      }
+
+      long length = target.length();
+      if(length > Integer.MAX_VALUE)
+      {
+         throw new IOException("File too large for delta transfer: " + target);
+      }
+      FileChannel channel = new RandomAccessFile(target, "r").getChannel();
+      try
+      {
+         MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+         new Writer(new DataOutputStream(new BufferedOutputStream(delta)), data, blockSize, blocks).write();
+      }
+      finally
+      {
+         channel.close();
+      }
+   }
+
+   /**
+    * Reassemble the new version from the basis and the delta.
+    *
+    * @param basis The old version the signatures were created from, or null if there is none
+    * @param delta The delta
+    * @param target File to write the new version to
+    * @throws IOException If the delta is invalid or the reassembled file does not match
+    */
+   static void applyDelta(File basis, InputStream delta, File target) throws IOException
+   {
+      DataInputStream input = new DataInputStream(new BufferedInputStream(delta));
+      int blockSize = input.readInt();
+      if(blockSize <= 0)
+      {
+         throw new IOException("Invalid delta block size " + blockSize);
+      }
+      RandomAccessFile basisFile = basis == null ? null : new RandomAccessFile(basis, "r");
+      MessageDigest digest = createDigest();
+      OutputStream output = new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(target)), digest);
+      try
+      {
+         byte[] buffer = new byte[Math.max(blockSize, MAX_DATA_SIZE)];
+         while(true)
+         {
+            byte type = input.readByte();
+            if(type == END)
+            {
+               break;
+            }
+            if(type == COPY)
+            {
+               long first = input.readInt();
+               long count = input.readInt();
+               long remaining = count * blockSize;
+               if(basisFile == null || first < 0 || count <= 0 || (first * blockSize) + remaining > basisFile.length())
+               {
+                  throw new IOException("Delta refers to blocks not in the basis");
+               }
+               basisFile.seek(first * blockSize);
+               while(remaining > 0)
+               {
+                  int read = (int)Math.min(remaining, buffer.length);
+                  basisFile.readFully(buffer, 0, read);
+                  output.write(buffer, 0, read);
+                  remaining -= read;
+               }
+            }
+            else if(type == DATA)
+            {
+               int length = input.readInt();
+               if(length <= 0 || length > MAX_DATA_SIZE)
+               {
+                  throw new IOException("Invalid delta data length " + length);
+               }
+               input.readFully(buffer, 0, length);
+               output.write(buffer, 0, length);
+            }
+            else
+            {
+               throw new IOException("Unknown delta instruction " + type);
+            }
+         }
+      }
+      finally
+      {
+         output.close();
+         if(basisFile != null)
+         {
+            basisFile.close();
+         }
+      }
+
+      byte[] expected = new byte[DIGEST_SIZE];
+      input.readFully(expected);
+      if(!Arrays.equals(expected, digest.digest()))
+      {
+         throw new IOException("Reassembled file does not match the delta source");
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /*
+    * The rsync weak checksum, a is the sum of the bytes, b the sum of the a's, both mod 2^16.
+    */
+   private static int checksum(byte[] data, int offset, int length)
+   {
+      int a = 0;
+      int b = 0;
+      for(int i = 0; i < length; i++)
+      {
+         a += data[offset + i] & 0xFF;
+         b += (length - i) * (data[offset + i] & 0xFF);
+      }
+      return (a & 0xFFFF) | (b << 16);
+   }
+
+   private static MessageDigest createDigest()
+   {
+      try
+      {
+         return MessageDigest.getInstance("MD5");
+      }
+      catch (NoSuchAlgorithmException e)
+      {
+         throw new RuntimeException("Could not create MD5 digest", e);
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - Block -------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private static class Block
+   {
+      private int index;
+
+      private byte[] strong;
+
+      public Block(int index, byte[] strong)
+      {
+         this.index = index;
+         this.strong = strong;
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - Writer ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /*
+    * Slides the window over the target and writes the delta instructions. Pending copies are merged while
+    * they refer to consecutive blocks, pending literal data is written before the next copy or when it
+    * reaches MAX_DATA_SIZE.
+    */
+   private static class Writer
+   {
+      private DataOutputStream output;
+
+      private MappedByteBuffer data;
+
+      private int blockSize;
+
+      private Map<Integer, List<Block>> blocks;
+
+      private MessageDigest digest = createDigest();
+
+      private byte[] window;
+
+      private byte[] buffer = new byte[MAX_DATA_SIZE];
+
+      private int copyFirst;
+
+      private int copyCount;
+
+      public Writer(DataOutputStream output, MappedByteBuffer data, int blockSize, Map<Integer, List<Block>> blocks)
+      {
+         this.output = output;
+         this.data = data;
+         this.blockSize = blockSize;
+         this.blocks = blocks;
+         this.window = new byte[blockSize];
+      }
+
+      public void write() throws IOException
+      {
+         int size = data.limit();
+         output.writeInt(blockSize);
+
+         int literalStart = 0;
+         int position = 0;
+         int a = 0;
+         int b = 0;
+         boolean rolling = false;
+         while(!blocks.isEmpty() && position + blockSize <= size)
+         {
+            if(!rolling)
+            {
+               a = 0;
+               b = 0;
+               for(int i = 0; i < blockSize; i++)
+               {
+                  int value = data.get(position + i) & 0xFF;
+                  a += value;
+                  b += (blockSize - i) * value;
+               }
+               rolling = true;
+            }
+            int block = find((a & 0xFFFF) | (b << 16), position);
+            if(block != -1)
+            {
+               writeData(literalStart, position);
+               if(copyCount > 0 && copyFirst + copyCount == block)
+               {
+                  copyCount++;
+               }
+               else
+               {
+                  writeCopy();
+                  copyFirst = block;
+                  copyCount = 1;
+               }
+               position += blockSize;
+               literalStart = position;
+               rolling = false;
+               continue;
+            }
+
+            writeCopy();
+            int out = data.get(position) & 0xFF;
+            a -= out;
+            b -= blockSize * out;
+            if(position + blockSize < size)
+            {
+               a += data.get(position + blockSize) & 0xFF;
+               b += a;
+            }
+            position++;
+            if(position - literalStart >= MAX_DATA_SIZE)
+            {
+               writeData(literalStart, position);
+               literalStart = position;
+            }
+         }
+         writeCopy();
+         writeData(literalStart, size);
+
+         output.writeByte(END);
+         data.position(0);
+         digest.reset();
+         digest.update(data);
+         output.write(digest.digest());
+         output.flush();
+      }
+
+      private int find(int weak, int position)
+      {
+         List<Block> matches = blocks.get(weak);
+         if(matches == null)
+         {
+            return -1;
+         }
+         data.position(position);
+         data.get(window);
+         byte[] strong = digest.digest(window);
+         for(Block block : matches)
+         {
+            if(Arrays.equals(strong, block.strong))
+            {
+               return block.index;
+            }
+         }
+         return -1;
+      }
+
+      private void writeCopy() throws IOException
+      {
+         if(copyCount > 0)
+         {
+            output.writeByte(COPY);
+            output.writeInt(copyFirst);
+            output.writeInt(copyCount);
+            copyCount = 0;
+         }
+      }
+
+      private void writeData(int from, int to) throws IOException
+      {
+         while(from < to)
+         {
+            int length = Math.min(to - from, MAX_DATA_SIZE);
+            data.position(from);
+            data.get(buffer, 0, length);
+            output.writeByte(DATA);
+            output.writeInt(length);
+            output.write(buffer, 0, length);
+            from += length;
+         }
+      }
+   }
+}
@@ -0,0 +1,199 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.container.jbossas.remote;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServerConnection;
+import javax.management.MBeanServerInvocationHandler;
+import javax.management.ObjectName;
+
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.StringAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Transfers deployments to a remote server as the changes against the version it got last time.<br/>
+ * <br/>
+ * The {@link DeltaDeploymentService} deployed in the server by {@link #createServiceArchive()} returns the block
+ * signatures of its cached version, the delta against it is served over the {@link HttpServer} the server already
+ * downloads deployments from, and the service reassembles the deployment in the server. The network time scales
+ * with the size of the change instead of the size of the deployment.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class DeltaDeploymentClient
+{
+   private static final Logger log = Logger.getLogger(DeltaDeploymentClient.class.getName());
+
+   /** Name of the deployment containing the {@link DeltaDeploymentService}. */
+   public static final String SERVICE_ARCHIVE_NAME = "arquillian-delta-deployment.sar";
+
+   private static final String CONTEXT_PREFIX = "/arquillian-delta/";
+
+   private DeltaDeploymentServiceMBean service;
+
+   private HttpServer httpServer;
+
+   private int blockSize = BlockDelta.DEFAULT_BLOCK_SIZE;
+
+   /**
+    * @param connection Connection to the MBeanServer of the remote server
+    * @param httpServer The HttpServer the remote server downloads deployments from
+    */
+   public DeltaDeploymentClient(MBeanServerConnection connection, HttpServer httpServer)
+   {
+      if(connection == null)
+      {
+         throw new IllegalArgumentException("Connection must be specified");
+      }
+      if(httpServer == null)
+      {
+         throw new IllegalArgumentException("HttpServer must be specified");
+      }
+      this.service = (DeltaDeploymentServiceMBean)MBeanServerInvocationHandler.newProxyInstance(
+            connection, 
+            createObjectName(), 
+            DeltaDeploymentServiceMBean.class, 
+            false);
+      this.httpServer = httpServer;
+   }
+
+   /**
+    * Create the deployment that registers the {@link DeltaDeploymentService} in a JBoss AS.
+    *
+    * @return The service deployment
+    */
+   public static Archive<?> createServiceArchive()
+   {
+      return ShrinkWrap.create(JavaArchive.class, SERVICE_ARCHIVE_NAME)
+                  .addClasses(DeltaDeploymentServiceMBean.class, DeltaDeploymentService.class, BlockDelta.class)
+                  .addClasses(BlockDelta.class.getDeclaredClasses())
+                  .addManifestResource(
+                        new StringAsset(
+                              "<server>\n" +
+                              "   <mbean code=\"" + DeltaDeploymentService.class.getName() + "\" " +
+                                       "name=\"" + DeltaDeploymentServiceMBean.OBJECT_NAME + "\"/>\n" +
+                              "</server>\n"), 
+                        "jboss-service.xml");
+   }
+
+   /**
+    * @param blockSize Size of the blocks compared, smaller blocks find more matches but cost more signatures
+    */
+   public void setBlockSize(int blockSize)
+   {
+      if(blockSize <= 0)
+      {
+         throw new IllegalArgumentException("BlockSize must be positive");
+      }
+      this.blockSize = blockSize;
+   }
+
+   /**
+    * Transfer the exported deployment to the remote server.
+    *
+    * @param name The deployment name
+    * @param archive The exported deployment
+    * @return The URL of the reassembled deployment in the remote server
+    * @throws IOException If the transfer failed
+    */
+   public URL upload(String name, File archive) throws IOException
+   {
+      if(name == null)
+      {
+         throw new IllegalArgumentException("Name must be specified");
+      }
+      if(archive == null)
+      {
+         throw new IllegalArgumentException("Archive must be specified");
+      }
+      byte[] signatures = service.getSignatures(name, blockSize);
+
+      File delta = File.createTempFile("arquillian-", "-" + name + ".delta");
+      delta.deleteOnExit();
+      DeploymentFileHandler deltaFile = null;
+      try
+      {
+         OutputStream output = new FileOutputStream(delta);
+         try
+         {
+            BlockDelta.createDelta(signatures, archive, output);
+         }
+         finally
+         {
+            output.close();
+         }
+         log.fine("Sending " + name + " as a delta of " + delta.length() + " bytes for " + archive.length() + " bytes");
+
+         deltaFile = new DeploymentFileHandler(delta, false);
+         String path = CONTEXT_PREFIX + name;
+         httpServer.createContext(path, deltaFile);
+         try
+         {
+            return new URL(service.reassemble(name, createURL(path).toExternalForm()));
+         }
+         finally
+         {
+            httpServer.removeContext(path);
+         }
+      }
+      finally
+      {
+         if(deltaFile != null)
+         {
+            deltaFile.delete();
+         }
+         else
+         {
+            delta.delete();
+         }
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private URL createURL(String path) throws IOException
+   {
+      InetSocketAddress address = httpServer.getAddress();
+      return new URL("http", address.getHostName(), address.getPort(), path);
+   }
+
+   private static ObjectName createObjectName()
+   {
+      try
+      {
+         return new ObjectName(DeltaDeploymentServiceMBean.OBJECT_NAME);
+      }
+      catch (Exception e)
+      {
+         throw new RuntimeException("Could not create ObjectName", e);
+      }
+   }
+}
@@ -0,0 +1,124 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.container.jbossas.remote;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+
+/**
+ * The in server part of the delta deployment transfer, deployed as a service by the {@link DeltaDeploymentClient}.<br/>
+ * <br/>
+ * The last version of each deployment is kept in the cache directory, by default arquillian-delta in the
+ * server data directory, so it survives a server restart.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class DeltaDeploymentService implements DeltaDeploymentServiceMBean
+{
+   /** System property to override the cache directory. */
+   public static final String CACHE_DIRECTORY_PROPERTY = "arquillian.delta.dir";
+
+   private File cacheDirectory;
+
+   public DeltaDeploymentService()
+   {
+      this(new File(
+            System.getProperty(
+                  CACHE_DIRECTORY_PROPERTY,
+                  System.getProperty("jboss.server.data.dir", System.getProperty("java.io.tmpdir")) + File.separator + "arquillian-delta")));
+   }
+
+   /**
+    * @param cacheDirectory Directory to keep the last version of each deployment in
+    */
+   public DeltaDeploymentService(File cacheDirectory)
+   {
+      if(cacheDirectory == null)
+      {
+         throw new IllegalArgumentException("CacheDirectory must be specified");
+      }
+      this.cacheDirectory = cacheDirectory;
+   }
+
+   /* (non-Javadoc)
+    * @see org.jboss.arquillian.container.jbossas.remote.DeltaDeploymentServiceMBean#getSignatures(java.lang.String, int)
+    */
+   public synchronized byte[] getSignatures(String name, int blockSize) throws IOException
+   {
+      File basis = getCacheFile(name);
+      return BlockDelta.createSignatures(basis.isFile() ? basis : null, blockSize);
+   }
+
+   /* (non-Javadoc)
+    * @see org.jboss.arquillian.container.jbossas.remote.DeltaDeploymentServiceMBean#reassemble(java.lang.String, java.lang.String)
+    */
+   public synchronized String reassemble(String name, String deltaUrl) throws IOException
+   {
+      if(deltaUrl == null)
+      {
+         throw new IllegalArgumentException("DeltaUrl must be specified");
+      }
+      File basis = getCacheFile(name);
+      File target = File.createTempFile("reassemble-", ".tmp", cacheDirectory);
+      try
+      {
+         InputStream delta = new URL(deltaUrl).openStream();
+         try
+         {
+            BlockDelta.applyDelta(basis.isFile() ? basis : null, delta, target);
+         }
+         finally
+         {
+            delta.close();
+         }
+         if(basis.exists() && !basis.delete())
+         {
+            throw new IOException("Could not replace cached " + basis);
+         }
+         if(!target.renameTo(basis))
+         {
+            throw new IOException("Could not move " + target + " to " + basis);
+         }
+      }
+      finally
+      {
+         target.delete();
+      }
+      return basis.toURI().toURL().toExternalForm();
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private File getCacheFile(String name) throws IOException
+   {
+      if(name == null || name.length() == 0)
+      {
+         throw new IllegalArgumentException("Name must be specified");
+      }
+      if(!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs())
+      {
+         throw new IOException("Could not create cache directory " + cacheDirectory);
+      }
+      // keep the name usable as a file name without leaving the cache directory
+      return new File(cacheDirectory, name.replaceAll("[^A-Za-z0-9._-]", "_").replaceAll("^\\.+", "_"));
+   }
+}
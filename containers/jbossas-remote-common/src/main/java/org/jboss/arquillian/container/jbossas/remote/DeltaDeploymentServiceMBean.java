@@ -0,0 +1,51 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.container.jbossas.remote;
+
+import java.io.IOException;
+
+/**
+ * Reassembles deployments in the server from a delta against the previously distributed version.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ * @see DeltaDeploymentService
+ */
+public interface DeltaDeploymentServiceMBean
+{
+   String OBJECT_NAME = "jboss.arquillian:service=delta-deployment";
+
+   /**
+    * Get the block signatures of the cached version of a deployment.
+    *
+    * @param name The deployment name
+    * @param blockSize Size of the blocks
+    * @return The encoded signatures, without blocks if no version is cached
+    * @throws IOException If the cached version could not be read
+    */
+   byte[] getSignatures(String name, int blockSize) throws IOException;
+
+   /**
+    * Download the delta and reassemble the new version of the deployment, which replaces the cached version.
+    *
+    * @param name The deployment name
+    * @param deltaUrl Where to download the delta from
+    * @return The URL of the reassembled deployment in the server
+    * @throws IOException If the delta could not be downloaded or does not apply
+    */
+   String reassemble(String name, String deltaUrl) throws IOException;
+}
@@ -0,0 +1,330 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.container.jbossas.remote;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.GZIPOutputStream;
+
+import org.jboss.shrinkwrap.api.Archive;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+
+/**
+ * Serves a exported {@link Archive} to the remote server.<br/>
+ * <br/>
+ * The Archive is exported once to a temporary file and streamed from there on every request, so the
+ * heap used does not grow with the size of the Archive. The export is reproducible, a unchanged Archive
+ * exports to the same bytes, see {@link ReproducibleZipExporter}. The response has a Content-Length and a ETag
+ * of the content, a request with a matching If-None-Match is answered with 304 Not Modified. If
+ * compression is enabled and the client accepts it, the content is gzip encoded on the fly.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class DeploymentFileHandler implements HttpHandler
+{
+   private static final int BUFFER_SIZE = 8192;
+
+   private File file;
+
+   private String etag;
+
+   private boolean compress;
+
+   /**
+    * Export the Archive to a temporary file.
+    *
+    * @param archive The Archive to serve
+    * @param compress Gzip encode the response if the client accepts it
+    * @throws IOException If the Archive could not be exported
+    */
+   public DeploymentFileHandler(Archive<?> archive, boolean compress) throws IOException
+   {
+      this(archive, null, compress);
+   }
+
+   /**
+    * Export the Archive to a temporary file in the given directory.
+    *
+    * @param archive The Archive to serve
+    * @param directory Directory to export to, or null for the default temporary directory
+    * @param compress Gzip encode the response if the client accepts it
+    * @throws IOException If the Archive could not be exported
+    */
+   public DeploymentFileHandler(Archive<?> archive, File directory, boolean compress) throws IOException
+   {
+      if(archive == null)
+      {
+         throw new IllegalArgumentException("Archive must be specified");
+      }
+      this.compress = compress;
+      this.file = File.createTempFile("arquillian-", "-" + archive.getName(), directory);
+      this.file.deleteOnExit();
+
+      MessageDigest digest = createDigest();
+      OutputStream output = new DigestOutputStream(new FileOutputStream(file), digest);
+      try
+      {
+         ReproducibleZipExporter.export(archive, output);
+      }
+      catch (IOException e)
+      {
+         output.close();
+         delete();
+         throw e;
+      }
+      catch (RuntimeException e)
+      {
+         output.close();
+         delete();
+         throw e;
+      }
+      output.close();
+      this.etag = "\"" + toHex(digest.digest()) + "\"";
+   }
+
+   /**
+    * Serve a existing file, the file is removed on {@link #delete()}.
+    *
+    * @param file The file to serve
+    * @param compress Gzip encode the response if the client accepts it
+    * @throws IOException If the file could not be read
+    */
+   public DeploymentFileHandler(File file, boolean compress) throws IOException
+   {
+      if(file == null)
+      {
+         throw new IllegalArgumentException("File must be specified");
+      }
+      this.compress = compress;
+      this.file = file;
+
+      MessageDigest digest = createDigest();
+      InputStream input = new FileInputStream(file);
+      try
+      {
+         byte[] buffer = new byte[BUFFER_SIZE];
+         int read;
+         while((read = input.read(buffer)) != -1)
+         {
+            digest.update(buffer, 0, read);
+         }
+      }
+      finally
+      {
+         input.close();
+      }
+      this.etag = "\"" + toHex(digest.digest()) + "\"";
+   }
+
+   /**
+    * @return The exported Archive
+    */
+   public File getFile()
+   {
+      return file;
+   }
+
+   /**
+    * @return The quoted ETag of the exported Archive
+    */
+   public String getETag()
+   {
+      return etag;
+   }
+
+   /**
+    * Remove the exported Archive.
+    */
+   public void delete()
+   {
+      if(file.exists() && !file.delete())
+      {
+         file.deleteOnExit();
+      }
+   }
+
+   /* (non-Javadoc)
+    * @see com.sun.net.httpserver.HttpHandler#handle(com.sun.net.httpserver.HttpExchange)
+    */
+   public void handle(HttpExchange exchange) throws IOException
+   {
+      try
+      {
+         String method = exchange.getRequestMethod();
+         boolean head = "HEAD".equalsIgnoreCase(method);
+         if(!head && !"GET".equalsIgnoreCase(method))
+         {
+            exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+            exchange.sendResponseHeaders(405, -1);
+            return;
+         }
+
+         Headers responseHeaders = exchange.getResponseHeaders();
+         responseHeaders.set("ETag", etag);
+         if(matches(exchange.getRequestHeaders().getFirst("If-None-Match")))
+         {
+            exchange.sendResponseHeaders(304, -1);
+            return;
+         }
+         responseHeaders.set("Content-Type", "application/zip");
+
+         if(compress && acceptsGzip(exchange.getRequestHeaders()))
+         {
+            responseHeaders.set("Content-Encoding", "gzip");
+            responseHeaders.set("Vary", "Accept-Encoding");
+            if(head)
+            {
+               exchange.sendResponseHeaders(200, -1);
+               return;
+            }
+            // length is unknown until compressed, send chunked
+            exchange.sendResponseHeaders(200, 0);
+            writeCompressed(exchange.getResponseBody());
+            return;
+         }
+
+         if(head)
+         {
+            responseHeaders.set("Content-Length", String.valueOf(file.length()));
+            exchange.sendResponseHeaders(200, -1);
+            return;
+         }
+         exchange.sendResponseHeaders(200, file.length());
+         write(exchange.getResponseBody());
+      }
+      finally
+      {
+         exchange.close();
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private void write(OutputStream responseBody) throws IOException
+   {
+      FileChannel source = new FileInputStream(file).getChannel();
+      try
+      {
+         WritableByteChannel target = Channels.newChannel(responseBody);
+         long size = source.size();
+         long position = 0;
+         while(position < size)
+         {
+            position += source.transferTo(position, size - position, target);
+         }
+         responseBody.close();
+      }
+      finally
+      {
+         source.close();
+      }
+   }
+
+   private void writeCompressed(OutputStream responseBody) throws IOException
+   {
+      InputStream source = new FileInputStream(file);
+      try
+      {
+         GZIPOutputStream target = new GZIPOutputStream(responseBody, BUFFER_SIZE);
+         byte[] buffer = new byte[BUFFER_SIZE];
+         int read;
+         while((read = source.read(buffer)) != -1)
+         {
+            target.write(buffer, 0, read);
+         }
+         target.close();
+      }
+      finally
+      {
+         source.close();
+      }
+   }
+
+   private boolean matches(String ifNoneMatch)
+   {
+      if(ifNoneMatch == null)
+      {
+         return false;
+      }
+      for(String tag : ifNoneMatch.split(","))
+      {
+         tag = tag.trim();
+         if(tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private static boolean acceptsGzip(Headers requestHeaders)
+   {
+      String acceptEncoding = requestHeaders.getFirst("Accept-Encoding");
+      if(acceptEncoding == null)
+      {
+         return false;
+      }
+      for(String coding : acceptEncoding.split(","))
+      {
+         String[] parameters = coding.trim().split(";");
+         if(parameters[0].trim().equalsIgnoreCase("gzip"))
+         {
+            return !(parameters.length > 1 && parameters[1].trim().matches("q=0(\\.0*)?"));
+         }
+      }
+      return false;
+   }
+
+   private static MessageDigest createDigest()
+   {
+      try
+      {
+         return MessageDigest.getInstance("MD5");
+      }
+      catch (NoSuchAlgorithmException e)
+      {
+         throw new RuntimeException("Could not create MD5 digest", e);
+      }
+   }
+
+   private static String toHex(byte[] bytes)
+   {
+      StringBuilder hex = new StringBuilder(bytes.length * 2);
+      for(byte b : bytes)
+      {
+         hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+         hex.append(Character.forDigit(b & 0xF, 16));
+      }
+      return hex.toString();
+   }
+}
@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.container.jbossas.remote;
+
+import java.io.File;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+
+/**
+ * Decides if a remote server runs on this host, so deployments can be handed over as files instead of
+ * being downloaded over HTTP.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public final class LocalDeployments
+{
+   /** Memory backed file system on Linux. */
+   private static final String SHARED_MEMORY_DIRECTORY = "/dev/shm";
+
+   private LocalDeployments() {}
+
+   /**
+    * Check if the address belongs to this host.
+    *
+    * @param address Host name or IP address of the remote server
+    * @return true if the address is a loopback address or bound to one of the local network interfaces
+    */
+   public static boolean isLocalAddress(String address)
+   {
+      if(address == null || address.length() == 0)
+      {
+         return false;
+      }
+      try
+      {
+         for(InetAddress inetAddress : InetAddress.getAllByName(address))
+         {
+            if(inetAddress.isLoopbackAddress() 
+                  || inetAddress.isAnyLocalAddress() 
+                  || NetworkInterface.getByInetAddress(inetAddress) != null)
+            {
+               return true;
+            }
+         }
+      }
+      catch (Exception e)
+      {
+         // unknown host or no access to the interfaces, treat it as remote
+      }
+      return false;
+   }
+
+   /**
+    * Get the directory to export deployments to for a server on this host.
+    *
+    * @param configured The configured directory, or null to use /dev/shm if available and the temporary directory if not
+    * @return The directory
+    */
+   public static File getDeploymentDirectory(String configured)
+   {
+      if(configured != null && configured.length() > 0)
+      {
+         File directory = new File(configured);
+         if(!directory.isDirectory() && !directory.mkdirs())
+         {
+            throw new IllegalArgumentException("Could not create deployment directory " + directory);
+         }
+         return directory;
+      }
+      File sharedMemory = new File(SHARED_MEMORY_DIRECTORY);
+      if(sharedMemory.isDirectory() && sharedMemory.canWrite())
+      {
+         return sharedMemory;
+      }
+      return new File(System.getProperty("java.io.tmpdir"));
+   }
+}
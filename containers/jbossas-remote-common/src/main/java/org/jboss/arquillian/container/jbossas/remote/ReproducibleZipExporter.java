@@ -0,0 +1,169 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.container.jbossas.remote;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ArchivePath;
+import org.jboss.shrinkwrap.api.Node;
+import org.jboss.shrinkwrap.api.asset.Asset;
+
+/**
+ * Exports a {@link Archive} as a zip that only changes where the content changes.<br/>
+ * <br/>
+ * The ZipExporter stamps every entry with the time of the export, so two exports of the same Archive differ
+ * in every local header and the {@link BlockDelta} finds almost no matching blocks. Here the entries are
+ * written in path order with a fixed time, nested archives are rewritten the same way.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+final class ReproducibleZipExporter
+{
+   /** The time every entry is stamped with. */
+   static final long ENTRY_TIME = new GregorianCalendar(2010, Calendar.JANUARY, 1).getTimeInMillis();
+
+   private static final String[] NESTED_ARCHIVE_SUFFIXES = {".jar", ".war", ".ear", ".rar", ".sar"};
+
+   private static final int BUFFER_SIZE = 8192;
+
+   private ReproducibleZipExporter() {}
+
+   /**
+    * Export the Archive.
+    *
+    * @param archive The Archive to export
+    * @param output Stream to write the zip to, finished but not closed
+    * @throws IOException If the Archive could not be written
+    */
+   static void export(Archive<?> archive, OutputStream output) throws IOException
+   {
+      Map<String, Asset> entries = new TreeMap<String, Asset>();
+      for(Map.Entry<ArchivePath, Node> content : archive.getContent().entrySet())
+      {
+         String name = content.getKey().get().substring(1);
+         Asset asset = content.getValue().getAsset();
+         entries.put(asset == null ? name + "/" : name, asset);
+      }
+
+      ZipOutputStream zip = new ZipOutputStream(output);
+      byte[] buffer = new byte[BUFFER_SIZE];
+      for(Map.Entry<String, Asset> entry : entries.entrySet())
+      {
+         putEntry(zip, entry.getKey());
+         if(entry.getValue() != null)
+         {
+            InputStream input = entry.getValue().openStream();
+            try
+            {
+               write(entry.getKey(), input, zip, buffer);
+            }
+            finally
+            {
+               input.close();
+            }
+         }
+         zip.closeEntry();
+      }
+      zip.finish();
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /*
+    * Nested archives are exported by their own ZipExporter, rewrite them so their entries have the fixed time too.
+    */
+   private static void write(String name, InputStream input, OutputStream output, byte[] buffer) throws IOException
+   {
+      if(isNestedArchive(name))
+      {
+         BufferedInputStream content = new BufferedInputStream(input);
+         if(isZip(content))
+         {
+            rewrite(new ZipInputStream(content), output, buffer);
+            return;
+         }
+         input = content;
+      }
+      int read;
+      while((read = input.read(buffer)) != -1)
+      {
+         output.write(buffer, 0, read);
+      }
+   }
+
+   private static void rewrite(ZipInputStream input, OutputStream output, byte[] buffer) throws IOException
+   {
+      ZipOutputStream zip = new ZipOutputStream(output);
+      ZipEntry entry;
+      while((entry = input.getNextEntry()) != null)
+      {
+         putEntry(zip, entry.getName());
+         if(!entry.isDirectory())
+         {
+            write(entry.getName(), input, zip, buffer);
+         }
+         zip.closeEntry();
+      }
+      zip.finish();
+   }
+
+   private static void putEntry(ZipOutputStream zip, String name) throws IOException
+   {
+      ZipEntry entry = new ZipEntry(name);
+      entry.setTime(ENTRY_TIME);
+      zip.putNextEntry(entry);
+   }
+
+   private static boolean isNestedArchive(String name)
+   {
+      for(String suffix : NESTED_ARCHIVE_SUFFIXES)
+      {
+         if(name.endsWith(suffix))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private static boolean isZip(InputStream input) throws IOException
+   {
+      input.mark(4);
+      try
+      {
+         return input.read() == 'P' && input.read() == 'K' && input.read() == 3 && input.read() == 4;
+      }
+      finally
+      {
+         input.reset();
+      }
+   }
+}
@@ -0,0 +1,166 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.container.jbossas.remote;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the ordering of the operations run by {@link AsyncDeployments}.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class AsyncDeploymentsTestCase
+{
+   private AsyncDeployments deployments = new AsyncDeployments();
+   
+   private List<String> operations = Collections.synchronizedList(new ArrayList<String>());
+   
+   @After
+   public void shutdown()
+   {
+      deployments.shutdown();
+   }
+   
+   @Test
+   public void shouldRunOperationsOnSameDeploymentInOrder() throws Exception
+   {
+      CountDownLatch undeploying = new CountDownLatch(1);
+      Future<String> undeploy = deployments.submit("test.war", new Operation("undeploy", undeploying));
+      Future<String> deploy = deployments.submit("test.war", new Operation("deploy", null));
+      
+      assertNotDone(deploy);
+      undeploying.countDown();
+      
+      Assert.assertEquals("deploy", deploy.get(5, TimeUnit.SECONDS));
+      Assert.assertTrue(undeploy.isDone());
+      Assert.assertEquals(Arrays.asList("undeploy", "deploy"), operations);
+   }
+   
+   @Test
+   public void shouldRunOperationsOnDifferentDeploymentsConcurrently() throws Exception
+   {
+      CountDownLatch undeploying = new CountDownLatch(1);
+      Future<String> undeploy = deployments.submit("first.war", new Operation("undeploy", undeploying));
+      Future<String> deploy = deployments.submit("second.war", new Operation("deploy", null));
+      
+      Assert.assertEquals("deploy", deploy.get(5, TimeUnit.SECONDS));
+      Assert.assertFalse("Undeploy should still be running", undeploy.isDone());
+      undeploying.countDown();
+      Assert.assertEquals("undeploy", undeploy.get(5, TimeUnit.SECONDS));
+   }
+   
+   @Test
+   public void shouldRunNextOperationAfterFailure() throws Exception
+   {
+      Future<String> undeploy = deployments.submit("test.war", new Callable<String>()
+      {
+         public String call() throws Exception
+         {
+            throw new IllegalStateException("undeploy failed");
+         }
+      });
+      Future<String> deploy = deployments.submit("test.war", new Operation("deploy", null));
+      
+      Assert.assertEquals("deploy", deploy.get(5, TimeUnit.SECONDS));
+      try
+      {
+         undeploy.get();
+         Assert.fail("Failure of the undeploy should be reported to its caller");
+      }
+      catch (ExecutionException e) 
+      {
+         Assert.assertEquals(IllegalStateException.class, e.getCause().getClass());
+      }
+   }
+   
+   @Test
+   public void shouldWaitForPendingOperationsOnShutdown() throws Exception
+   {
+      final CountDownLatch undeploying = new CountDownLatch(1);
+      Future<String> undeploy = deployments.submit("test.war", new Operation("undeploy", undeploying));
+      new Thread()
+      {
+         @Override
+         public void run()
+         {
+            try
+            {
+               Thread.sleep(100);
+            }
+            catch (InterruptedException e) 
+            {
+               // release it right away
+            }
+            undeploying.countDown();
+         }
+      }.start();
+      
+      deployments.shutdown();
+      Assert.assertTrue(undeploy.isDone());
+      Assert.assertEquals(Arrays.asList("undeploy"), operations);
+   }
+   
+   private void assertNotDone(Future<?> future) throws Exception
+   {
+      try
+      {
+         future.get(100, TimeUnit.MILLISECONDS);
+         Assert.fail("Operation should wait for the previous operation on the same deployment");
+      }
+      catch (TimeoutException e) 
+      {
+         // expected, still waiting
+      }
+   }
+   
+   private class Operation implements Callable<String>
+   {
+      private String name;
+      
+      private CountDownLatch release;
+      
+      public Operation(String name, CountDownLatch release)
+      {
+         this.name = name;
+         this.release = release;
+      }
+      
+      public String call() throws Exception
+      {
+         if(release != null && !release.await(5, TimeUnit.SECONDS))
+         {
+            throw new IllegalStateException(name + " was never released");
+         }
+         operations.add(name);
+         return name;
+      }
+   }
+}
@@ -0,0 +1,184 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.container.jbossas.remote;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies the delta creation and reassembly of the {@link BlockDelta}.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class BlockDeltaTestCase
+{
+   private static final int BLOCK_SIZE = 1024;
+
+   private File basis;
+
+   private File target;
+
+   private File result;
+
+   private Random random = new Random(1);
+
+   @Before
+   public void createFiles() throws Exception
+   {
+      basis = File.createTempFile("basis", ".bin");
+      target = File.createTempFile("target", ".bin");
+      result = File.createTempFile("result", ".bin");
+   }
+
+   @After
+   public void deleteFiles() throws Exception
+   {
+      basis.delete();
+      target.delete();
+      result.delete();
+   }
+
+   @Test
+   public void shouldTransferOnlyInsertedBytes() throws Exception
+   {
+      byte[] original = random(200 * BLOCK_SIZE + 123);
+      byte[] changed = new byte[original.length + 10];
+      // insert 10 bytes in the middle, all following blocks are shifted
+      System.arraycopy(original, 0, changed, 0, 5000);
+      Arrays.fill(changed, 5000, 5010, (byte)7);
+      System.arraycopy(original, 5000, changed, 5010, original.length - 5000);
+
+      byte[] delta = roundTrip(original, changed);
+      Assert.assertTrue("Delta should be a fraction of the file, was " + delta.length, delta.length < 3 * BLOCK_SIZE);
+   }
+
+   @Test
+   public void shouldTransferAllWithoutBasis() throws Exception
+   {
+      byte[] changed = random(10 * BLOCK_SIZE);
+      write(target, changed);
+
+      ByteArrayOutputStream delta = new ByteArrayOutputStream();
+      BlockDelta.createDelta(BlockDelta.createSignatures(null, BLOCK_SIZE), target, delta);
+      BlockDelta.applyDelta(null, new ByteArrayInputStream(delta.toByteArray()), result);
+
+      Assert.assertTrue(Arrays.equals(changed, read(result)));
+   }
+
+   @Test
+   public void shouldHandleFilesSmallerThanABlock() throws Exception
+   {
+      roundTrip(random(BLOCK_SIZE - 1), random(10));
+      roundTrip(new byte[0], new byte[0]);
+   }
+
+   @Test
+   public void shouldReuseReorderedBlocks() throws Exception
+   {
+      byte[] original = random(20 * BLOCK_SIZE);
+      byte[] changed = new byte[original.length];
+      System.arraycopy(original, 10 * BLOCK_SIZE, changed, 0, 10 * BLOCK_SIZE);
+      System.arraycopy(original, 0, changed, 10 * BLOCK_SIZE, 10 * BLOCK_SIZE);
+
+      byte[] delta = roundTrip(original, changed);
+      Assert.assertTrue("Delta should only hold references, was " + delta.length, delta.length < 100);
+   }
+
+   @Test(expected = IOException.class)
+   public void shouldRejectDeltaAgainstOtherBasis() throws Exception
+   {
+      byte[] original = random(20 * BLOCK_SIZE);
+      write(basis, original);
+      write(target, original);
+
+      ByteArrayOutputStream delta = new ByteArrayOutputStream();
+      BlockDelta.createDelta(BlockDelta.createSignatures(basis, BLOCK_SIZE), target, delta);
+
+      write(basis, random(20 * BLOCK_SIZE));
+      BlockDelta.applyDelta(basis, new ByteArrayInputStream(delta.toByteArray()), result);
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private byte[] roundTrip(byte[] original, byte[] changed) throws Exception
+   {
+      write(basis, original);
+      write(target, changed);
+
+      ByteArrayOutputStream delta = new ByteArrayOutputStream();
+      BlockDelta.createDelta(BlockDelta.createSignatures(basis, BLOCK_SIZE), target, delta);
+      BlockDelta.applyDelta(basis, new ByteArrayInputStream(delta.toByteArray()), result);
+
+      Assert.assertTrue("Reassembled file should match", Arrays.equals(changed, read(result)));
+      return delta.toByteArray();
+   }
+
+   private byte[] random(int size)
+   {
+      byte[] data = new byte[size];
+      random.nextBytes(data);
+      return data;
+   }
+
+   private static void write(File file, byte[] data) throws IOException
+   {
+      FileOutputStream output = new FileOutputStream(file);
+      try
+      {
+         output.write(data);
+      }
+      finally
+      {
+         output.close();
+      }
+   }
+
+   private static byte[] read(File file) throws IOException
+   {
+      ByteArrayOutputStream data = new ByteArrayOutputStream();
+      InputStream input = new FileInputStream(file);
+      try
+      {
+         byte[] buffer = new byte[4096];
+         int read;
+         while((read = input.read(buffer)) != -1)
+         {
+            data.write(buffer, 0, read);
+         }
+      }
+      finally
+      {
+         input.close();
+      }
+      return data.toByteArray();
+   }
+}
@@ -0,0 +1,251 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.container.jbossas.remote;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipInputStream;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ArchivePaths;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.ByteArrayAsset;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Verifies the {@link DeltaDeploymentClient} against a {@link DeltaDeploymentService} in the same VM.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class DeltaDeploymentClientTestCase
+{
+   private MBeanServer mbeanServer = ManagementFactory.getPlatformMBeanServer();
+
+   private ObjectName objectName;
+
+   private File cacheDirectory;
+
+   private HttpServer httpServer;
+
+   @Before
+   public void startService() throws Exception
+   {
+      cacheDirectory = File.createTempFile("arquillian-delta", "");
+      cacheDirectory.delete();
+
+      objectName = new ObjectName(DeltaDeploymentServiceMBean.OBJECT_NAME);
+      mbeanServer.registerMBean(new DeltaDeploymentService(cacheDirectory), objectName);
+
+      httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), -1);
+      httpServer.start();
+   }
+
+   @After
+   public void stopService() throws Exception
+   {
+      httpServer.stop(0);
+      mbeanServer.unregisterMBean(objectName);
+      File[] cached = cacheDirectory.listFiles();
+      if(cached != null)
+      {
+         for(File file : cached)
+         {
+            file.delete();
+         }
+         cacheDirectory.delete();
+      }
+   }
+
+   @Test
+   public void shouldReassembleDeployment() throws Exception
+   {
+      DeltaDeploymentClient client = new DeltaDeploymentClient(mbeanServer, httpServer);
+
+      File first = export(createDeployment("first"));
+      File second = export(createDeployment("second"));
+      try
+      {
+         URL deployed = client.upload("test.jar", first);
+         Assert.assertEquals("file", deployed.getProtocol());
+         Assert.assertEquals(first.length(), new File(deployed.toURI()).length());
+
+         deployed = client.upload("test.jar", second);
+         Assert.assertEquals(second.length(), new File(deployed.toURI()).length());
+         Assert.assertEquals(
+               "Reassembled deployment should match",
+               new DeploymentFileHandler(second, false).getETag(),
+               new DeploymentFileHandler(new File(deployed.toURI()), false).getETag());
+      }
+      finally
+      {
+         first.delete();
+         second.delete();
+      }
+   }
+
+   @Test
+   public void shouldSendSmallDeltaForReexportedDeployment() throws Exception
+   {
+      DeploymentFileHandler first = new DeploymentFileHandler(createWebDeployment("first"), false);
+      DeploymentFileHandler unchanged = new DeploymentFileHandler(createWebDeployment("first"), false);
+      DeploymentFileHandler changed = new DeploymentFileHandler(createWebDeployment("second"), false);
+      try
+      {
+         Assert.assertEquals(
+               "Unchanged deployment should export to the same content", 
+               first.getETag(), unchanged.getETag());
+
+         byte[] signatures = BlockDelta.createSignatures(first.getFile(), BlockDelta.DEFAULT_BLOCK_SIZE);
+         long deltaSize = delta(signatures, unchanged.getFile());
+         Assert.assertTrue(
+               "Delta of unchanged deployment should be much smaller than the deployment, " + 
+               deltaSize + " of " + unchanged.getFile().length(), 
+               deltaSize * 20 < unchanged.getFile().length());
+
+         deltaSize = delta(signatures, changed.getFile());
+         Assert.assertTrue(
+               "Delta of slightly changed deployment should be much smaller than the deployment, " + 
+               deltaSize + " of " + changed.getFile().length(), 
+               deltaSize * 10 < changed.getFile().length());
+      }
+      finally
+      {
+         first.delete();
+         unchanged.delete();
+         changed.delete();
+      }
+   }
+
+   @Test
+   public void shouldExportEntriesWithFixedTime() throws Exception
+   {
+      DeploymentFileHandler exported = new DeploymentFileHandler(createWebDeployment("first"), false);
+      try
+      {
+         ZipFile zip = new ZipFile(exported.getFile());
+         try
+         {
+            Enumeration<? extends ZipEntry> entries = zip.entries();
+            while(entries.hasMoreElements())
+            {
+               ZipEntry entry = entries.nextElement();
+               Assert.assertEquals(entry.getName(), ReproducibleZipExporter.ENTRY_TIME, entry.getTime());
+            }
+            ZipInputStream library = new ZipInputStream(zip.getInputStream(zip.getEntry("WEB-INF/lib/library.jar")));
+            ZipEntry entry;
+            int count = 0;
+            while((entry = library.getNextEntry()) != null)
+            {
+               Assert.assertEquals(entry.getName(), ReproducibleZipExporter.ENTRY_TIME, entry.getTime());
+               count++;
+            }
+            Assert.assertTrue("Nested archive should have been rewritten", count > 0);
+         }
+         finally
+         {
+            zip.close();
+         }
+      }
+      finally
+      {
+         exported.delete();
+      }
+   }
+
+   @Test
+   public void shouldCreateServiceArchive() throws Exception
+   {
+      Archive<?> archive = DeltaDeploymentClient.createServiceArchive();
+      Assert.assertTrue(archive.contains(ArchivePaths.create("META-INF/jboss-service.xml")));
+      Assert.assertTrue(archive.contains(ArchivePaths.create(
+            DeltaDeploymentService.class.getName().replace('.', '/') + ".class")));
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private Archive<?> createDeployment(String version)
+   {
+      byte[] library = new byte[256 * 1024];
+      new Random(1).nextBytes(library);
+      return ShrinkWrap.create(JavaArchive.class, "test.jar")
+                  .add(new ByteArrayAsset(library), "library.bin")
+                  .add(new ByteArrayAsset(version.getBytes()), "version.txt");
+   }
+
+   private Archive<?> createWebDeployment(String version)
+   {
+      Random random = new Random(1);
+      byte[] library = new byte[64 * 1024];
+      random.nextBytes(library);
+      WebArchive archive = ShrinkWrap.create(WebArchive.class, "test.war")
+                  .addLibrary(ShrinkWrap.create(JavaArchive.class, "library.jar")
+                        .add(new ByteArrayAsset(library), "library.bin"))
+                  .add(new ByteArrayAsset(version.getBytes()), "version.txt");
+      for(int i = 0; i < 64; i++)
+      {
+         byte[] resource = new byte[2 * 1024];
+         random.nextBytes(resource);
+         archive.addResource(new ByteArrayAsset(resource), "resource" + i + ".bin");
+      }
+      return archive;
+   }
+
+   private long delta(byte[] signatures, File target) throws Exception
+   {
+      ByteArrayOutputStream delta = new ByteArrayOutputStream();
+      BlockDelta.createDelta(signatures, target, delta);
+      return delta.size();
+   }
+
+   private File export(Archive<?> archive) throws Exception
+   {
+      File file = File.createTempFile("deployment", ".jar");
+      OutputStream output = new FileOutputStream(file);
+      try
+      {
+         archive.as(ZipExporter.class).exportZip(output);
+      }
+      finally
+      {
+         output.close();
+      }
+      return file;
+   }
+}
@@ -0,0 +1,126 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.container.jbossas.remote;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.zip.GZIPInputStream;
+
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.asset.ByteArrayAsset;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Verifies the responses of the {@link DeploymentFileHandler}.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class DeploymentFileHandlerTestCase
+{
+   private HttpServer httpServer;
+
+   private DeploymentFileHandler handler;
+
+   private URL url;
+
+   @Before
+   public void startServer() throws Exception
+   {
+      JavaArchive archive = ShrinkWrap.create(JavaArchive.class, "test.jar")
+                              .add(new ByteArrayAsset(new byte[100000]), "content.bin");
+      handler = new DeploymentFileHandler(archive, true);
+
+      httpServer = HttpServer.create(new InetSocketAddress("localhost", 0), -1);
+      httpServer.createContext("/test.jar", handler);
+      httpServer.start();
+      url = new URL("http", "localhost", httpServer.getAddress().getPort(), "/test.jar");
+   }
+
+   @After
+   public void stopServer() throws Exception
+   {
+      httpServer.stop(0);
+      handler.delete();
+      Assert.assertFalse("Exported file should be removed", handler.getFile().exists());
+   }
+
+   @Test
+   public void shouldServeExportedFile() throws Exception
+   {
+      HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+      Assert.assertEquals(200, connection.getResponseCode());
+      Assert.assertEquals(handler.getFile().length(), connection.getContentLength());
+      Assert.assertEquals(handler.getETag(), connection.getHeaderField("ETag"));
+      Assert.assertEquals(handler.getFile().length(), count(connection.getInputStream()));
+   }
+
+   @Test
+   public void shouldAnswerMatchingETagWithNotModified() throws Exception
+   {
+      HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+      connection.setRequestProperty("If-None-Match", handler.getETag());
+      Assert.assertEquals(304, connection.getResponseCode());
+   }
+
+   @Test
+   public void shouldCompressIfAccepted() throws Exception
+   {
+      HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+      connection.setRequestProperty("Accept-Encoding", "gzip");
+      Assert.assertEquals(200, connection.getResponseCode());
+      Assert.assertEquals("gzip", connection.getHeaderField("Content-Encoding"));
+      Assert.assertEquals(handler.getFile().length(), count(new GZIPInputStream(connection.getInputStream())));
+   }
+
+   @Test
+   public void shouldAnswerHeadWithoutBody() throws Exception
+   {
+      HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+      connection.setRequestMethod("HEAD");
+      Assert.assertEquals(200, connection.getResponseCode());
+      Assert.assertEquals(String.valueOf(handler.getFile().length()), connection.getHeaderField("Content-Length"));
+   }
+
+   private static long count(InputStream input) throws IOException
+   {
+      try
+      {
+         long count = 0;
+         byte[] buffer = new byte[4096];
+         int read;
+         while((read = input.read(buffer)) != -1)
+         {
+            count += read;
+         }
+         return count;
+      }
+      finally
+      {
+         input.close();
+      }
+   }
+}
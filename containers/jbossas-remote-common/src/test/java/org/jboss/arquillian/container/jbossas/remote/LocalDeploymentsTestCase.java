@@ -0,0 +1,64 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.container.jbossas.remote;
+
+import java.io.File;
+import java.net.InetAddress;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies the same host detection of {@link LocalDeployments}.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class LocalDeploymentsTestCase
+{
+   @Test
+   public void shouldDetectLocalAddresses() throws Exception
+   {
+      Assert.assertTrue(LocalDeployments.isLocalAddress("localhost"));
+      Assert.assertTrue(LocalDeployments.isLocalAddress("127.0.0.1"));
+      Assert.assertTrue(LocalDeployments.isLocalAddress(InetAddress.getLocalHost().getHostAddress()));
+   }
+
+   @Test
+   public void shouldNotDetectRemoteAddresses() throws Exception
+   {
+      Assert.assertFalse(LocalDeployments.isLocalAddress("192.0.2.1"));
+      Assert.assertFalse(LocalDeployments.isLocalAddress("unknown.host.invalid"));
+      Assert.assertFalse(LocalDeployments.isLocalAddress(null));
+   }
+
+   @Test
+   public void shouldUseConfiguredDirectory() throws Exception
+   {
+      File configured = new File(System.getProperty("java.io.tmpdir"), "arquillian-local-" + System.nanoTime());
+      try
+      {
+         Assert.assertEquals(configured, LocalDeployments.getDeploymentDirectory(configured.getPath()));
+         Assert.assertTrue(configured.isDirectory());
+      }
+      finally
+      {
+         configured.delete();
+      }
+      Assert.assertTrue(LocalDeployments.getDeploymentDirectory(null).isDirectory());
+   }
+}
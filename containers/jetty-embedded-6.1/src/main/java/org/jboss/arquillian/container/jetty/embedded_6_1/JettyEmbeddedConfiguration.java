@@ -16,8 +16,8 @@
  */
 package org.jboss.arquillian.container.jetty.embedded_6_1;
 
-import org.jboss.arquillian.spi.ContainerConfiguration;
 import org.jboss.arquillian.spi.ContainerProfile;
+import org.jboss.arquillian.spi.EmbeddedContainerConfiguration;
 
 /**
  * A {@link org.jboss.arquillian.spi.ContainerConfiguration} implementation for
@@ -26,7 +26,7 @@ import org.jboss.arquillian.spi.ContainerProfile;
  * @author Dan Allen
  * @version $Revision: $
  */
-public class JettyEmbeddedConfiguration implements ContainerConfiguration
+public class JettyEmbeddedConfiguration implements EmbeddedContainerConfiguration
 {
    private String bindAddress = "localhost";
 
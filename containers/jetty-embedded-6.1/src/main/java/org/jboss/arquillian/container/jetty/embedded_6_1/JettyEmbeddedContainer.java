@@ -20,6 +20,7 @@ import java.net.URL;
 import java.util.logging.Logger;
 
 import org.jboss.arquillian.protocol.servlet_3.ServletMethodExecutor;
+import org.jboss.arquillian.protocol.servlet_3.ServletProtocolConfiguration;
 import org.jboss.arquillian.spi.Configuration;
 import org.jboss.arquillian.spi.ContainerMethodExecutor;
 import org.jboss.arquillian.spi.Context;
@@ -73,6 +74,8 @@ public class JettyEmbeddedContainer implements DeployableContainer
    private Server server;
 
    private JettyEmbeddedConfiguration containerConfig;
+
+   private ServletProtocolConfiguration protocolConfiguration;
    
    public JettyEmbeddedContainer()
    {
@@ -80,6 +83,7 @@ public class JettyEmbeddedContainer implements DeployableContainer
    
    public void setup(Context context, Configuration arquillianConfig)
    {
+      protocolConfiguration = arquillianConfig.getExtensionConfig(ServletProtocolConfiguration.class);
       containerConfig = arquillianConfig.getContainerConfig(JettyEmbeddedConfiguration.class);
    }
    
@@ -156,7 +160,8 @@ public class JettyEmbeddedContainer implements DeployableContainer
                      HTTP_PROTOCOL,
                      containerConfig.getBindAddress(),
                      containerConfig.getBindHttpPort(),
-                     "/")
+                     "/"),
+               protocolConfiguration
                );
       } 
       catch (Exception e) 
@@ -16,8 +16,9 @@
  */
 package org.jboss.arquillian.container.jetty.embedded_7;
 
-import org.jboss.arquillian.spi.ContainerConfiguration;
 import org.jboss.arquillian.spi.ContainerProfile;
+import org.jboss.arquillian.spi.EmbeddedContainerConfiguration;
+import org.jboss.arquillian.spi.PooledContainerConfiguration;
 
 /**
  * A {@link org.jboss.arquillian.spi.ContainerConfiguration} implementation for
@@ -26,7 +27,7 @@ import org.jboss.arquillian.spi.ContainerProfile;
  * @author Dan Allen
  * @version $Revision: $
  */
-public class JettyEmbeddedConfiguration implements ContainerConfiguration
+public class JettyEmbeddedConfiguration implements PooledContainerConfiguration, EmbeddedContainerConfiguration
 {
    private String bindAddress = "localhost";
 
@@ -34,11 +35,26 @@ public class JettyEmbeddedConfiguration implements ContainerConfiguration
 
    private boolean jettyPlus = true;
 
+   private int socketTestRunnerPort = -1;
+
    public ContainerProfile getContainerProfile()
    {
       return ContainerProfile.CLIENT;
    }
 
+   /**
+    * Each pooled instance binds to bindHttpPort + instance, and socketTestRunnerPort + instance if set.
+    */
+   public JettyEmbeddedConfiguration forPoolInstance(int instance)
+   {
+      JettyEmbeddedConfiguration config = new JettyEmbeddedConfiguration();
+      config.setBindAddress(bindAddress);
+      config.setBindHttpPort(bindHttpPort + instance);
+      config.setJettyPlus(jettyPlus);
+      config.setSocketTestRunnerPort(socketTestRunnerPort > 0 ? socketTestRunnerPort + instance:socketTestRunnerPort);
+      return config;
+   }
+
    public int getBindHttpPort()
    {
       return bindHttpPort;
@@ -68,4 +84,20 @@ public class JettyEmbeddedConfiguration implements ContainerConfiguration
    {
       this.jettyPlus = jettyPlus;
    }
+
+   public int getSocketTestRunnerPort()
+   {
+      return socketTestRunnerPort;
+   }
+
+   /**
+    * Run the in container tests through the socket protocol instead of the servlet protocol. The 
+    * SocketTestRunner is started with the server on the given port, 0 for any free port.
+    * 
+    * @param socketTestRunnerPort The port to listen on, -1 to use the servlet protocol
+    */
+   public void setSocketTestRunnerPort(int socketTestRunnerPort)
+   {
+      this.socketTestRunnerPort = socketTestRunnerPort;
+   }
 }
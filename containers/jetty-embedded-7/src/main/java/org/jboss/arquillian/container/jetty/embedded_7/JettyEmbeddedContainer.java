@@ -16,21 +16,27 @@
  */
 package org.jboss.arquillian.container.jetty.embedded_7;
 
+import java.net.InetSocketAddress;
 import java.net.URL;
 import java.util.logging.Logger;
 import org.eclipse.jetty.server.Connector;
+import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Server;
 import org.eclipse.jetty.server.handler.HandlerCollection;
 import org.eclipse.jetty.server.nio.SelectChannelConnector;
 import org.eclipse.jetty.webapp.WebAppContext;
 
 import org.jboss.arquillian.protocol.servlet_3.ServletMethodExecutor;
+import org.jboss.arquillian.protocol.servlet_3.ServletProtocolConfiguration;
+import org.jboss.arquillian.protocol.socket.SocketMethodExecutor;
+import org.jboss.arquillian.protocol.socket.SocketTestRunner;
 import org.jboss.arquillian.spi.Configuration;
 import org.jboss.arquillian.spi.ContainerMethodExecutor;
 import org.jboss.arquillian.spi.Context;
 import org.jboss.arquillian.spi.DeployableContainer;
 import org.jboss.arquillian.spi.DeploymentException;
 import org.jboss.arquillian.spi.LifecycleException;
+import org.jboss.arquillian.spi.util.TestRunners;
 import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.shrinkwrap.jetty_7.api.ShrinkWrapWebAppContext;
 
@@ -44,6 +50,11 @@ import org.jboss.shrinkwrap.jetty_7.api.ShrinkWrapWebAppContext;
  * <p>Another known issue is that the container configuration process logs an exception when
  * running in-container. However, the container is still configured properly during setup.</p>
  *
+ * <p>With a socketTestRunnerPort configured the in-container tests are run by a {@link SocketTestRunner}
+ * started with the server instead of the servlet protocol. The test classes are loaded from the deployed
+ * web applications. This requires arquillian-protocol-socket on the classpath, and the deploymentPackager
+ * engine property set to select one of the two protocol packagers.</p>
+ *
  * @author Dan Allen
  * @version $Revision: $
  */
@@ -62,11 +73,22 @@ public class JettyEmbeddedContainer implements DeployableContainer
        "org.eclipse.jetty.webapp.JettyWebXmlConfiguration"
    };
 
+   /**
+    * Max number of in-container tests executing at the same time through the socket protocol.
+    */
+   private static final int SOCKET_TEST_RUNNER_THREADS = 4;
+
    private static final Logger log = Logger.getLogger(JettyEmbeddedContainer.class.getName());
 
    private Server server;
 
    private JettyEmbeddedConfiguration containerConfig;
+
+   private ServletProtocolConfiguration protocolConfiguration;
+
+   private SocketTestRunner socketTestRunner;
+
+   private InetSocketAddress socketTestRunnerAddress;
    
    public JettyEmbeddedContainer()
    {
@@ -74,6 +96,7 @@ public class JettyEmbeddedContainer implements DeployableContainer
    
    public void setup(Context context, Configuration arquillianConfig)
    {
+      protocolConfiguration = arquillianConfig.getExtensionConfig(ServletProtocolConfiguration.class);
       containerConfig = arquillianConfig.getContainerConfig(JettyEmbeddedConfiguration.class);
    }
    
@@ -94,10 +117,19 @@ public class JettyEmbeddedContainer implements DeployableContainer
       {
          throw new LifecycleException("Could not start container", e);
       }
+      if (containerConfig.getSocketTestRunnerPort() >= 0)
+      {
+         startSocketTestRunner();
+      }
    }
 
    public void stop(Context context) throws LifecycleException
    {
+      if (socketTestRunner != null)
+      {
+         socketTestRunner.stop();
+         socketTestRunner = null;
+      }
       try
       {
          log.info("Stopping Jetty Embedded Server [id:" + server.hashCode() + "]");
@@ -139,6 +171,10 @@ public class JettyEmbeddedContainer implements DeployableContainer
          throw new DeploymentException("Could not deploy " + archive.getName(), e);
       }
 
+      if (socketTestRunner != null)
+      {
+         return new SocketMethodExecutor(socketTestRunnerAddress);
+      }
       try 
       {
          return new ServletMethodExecutor(
@@ -146,7 +182,8 @@ public class JettyEmbeddedContainer implements DeployableContainer
                      HTTP_PROTOCOL,
                      containerConfig.getBindAddress(),
                      containerConfig.getBindHttpPort(),
-                     "/")
+                     "/"),
+               protocolConfiguration
                );
       } 
       catch (Exception e) 
@@ -170,6 +207,53 @@ public class JettyEmbeddedContainer implements DeployableContainer
             log.severe("Could not stop context " + wctx.getContextPath() + ": " + e.getMessage());
          }
          ((HandlerCollection) server.getHandler()).removeHandler(wctx);
+         if (socketTestRunner != null)
+         {
+            TestRunners.release(wctx.getClassLoader());
+         }
+      }
+   }
+
+   private void startSocketTestRunner() throws LifecycleException
+   {
+      SocketTestRunner runner = new SocketTestRunner(new SocketTestRunner.TestClassLoader()
+      {
+         public Class<?> loadTestClass(String className) throws ClassNotFoundException
+         {
+            for (Handler handler : ((HandlerCollection) server.getHandler()).getHandlers())
+            {
+               if (handler instanceof WebAppContext && ((WebAppContext) handler).getClassLoader() != null)
+               {
+                  try
+                  {
+                     return ((WebAppContext) handler).getClassLoader().loadClass(className);
+                  }
+                  catch (ClassNotFoundException e)
+                  {
+                     // not part of this deployment
+                  }
+               }
+            }
+            throw new ClassNotFoundException(className + " not found in any deployment");
+         }
+      }, SOCKET_TEST_RUNNER_THREADS);
+      try
+      {
+         socketTestRunnerAddress = runner.start(
+               new InetSocketAddress(containerConfig.getBindAddress(), containerConfig.getSocketTestRunnerPort()));
+         socketTestRunner = runner;
+      }
+      catch (Exception e)
+      {
+         try
+         {
+            server.stop();
+         }
+         catch (Exception e2)
+         {
+            log.severe("Could not stop container: " + e2.getMessage());
+         }
+         throw new LifecycleException("Could not start the SocketTestRunner", e);
       }
    }
 
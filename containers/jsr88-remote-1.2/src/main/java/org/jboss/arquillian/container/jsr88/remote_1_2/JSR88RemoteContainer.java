@@ -30,6 +30,7 @@ import javax.enterprise.deploy.spi.factories.DeploymentFactory;
 import javax.enterprise.deploy.spi.status.ProgressObject;
 
 import org.jboss.arquillian.protocol.servlet_3.ServletMethodExecutor;
+import org.jboss.arquillian.protocol.servlet_3.ServletProtocolConfiguration;
 import org.jboss.arquillian.spi.Configuration;
 import org.jboss.arquillian.spi.ContainerMethodExecutor;
 import org.jboss.arquillian.spi.Context;
@@ -83,6 +84,8 @@ public class JSR88RemoteContainer implements DeployableContainer
    private boolean moduleStarted = false;
 
    private JSR88Configuration containerConfig;
+
+   private ServletProtocolConfiguration protocolConfiguration;
    
    public JSR88RemoteContainer()
    {
@@ -91,6 +94,7 @@ public class JSR88RemoteContainer implements DeployableContainer
    
    public void setup(Context context, Configuration arquillianConfig)
    {
+      protocolConfiguration = arquillianConfig.getExtensionConfig(ServletProtocolConfiguration.class);
       containerConfig = arquillianConfig.getContainerConfig(getContainerConfigurationClass());
    }
    
@@ -159,7 +163,8 @@ public class JSR88RemoteContainer implements DeployableContainer
                      HTTP_PROTOCOL,
                      containerConfig.getRemoteServerAddress(),
                      containerConfig.getRemoteServerHttpPort(),
-                     "/")
+                     "/"),
+               protocolConfiguration
                );
       } 
       catch (Exception e) 
@@ -16,8 +16,8 @@
  */
 package org.jboss.arquillian.container.openejb.embedded_3_1;
 
-import org.jboss.arquillian.spi.ContainerConfiguration;
 import org.jboss.arquillian.spi.ContainerProfile;
+import org.jboss.arquillian.spi.EmbeddedContainerConfiguration;
 
 /**
  * OpenEJBConfiguration
@@ -25,7 +25,7 @@ import org.jboss.arquillian.spi.ContainerProfile;
  * @author <a href="mailto:aknutsen@redhat.com">Aslak Knutsen</a>
  * @version $Revision: $
  */
-public class OpenEJBConfiguration implements ContainerConfiguration
+public class OpenEJBConfiguration implements EmbeddedContainerConfiguration
 {
 
    public ContainerProfile getContainerProfile()
@@ -16,8 +16,8 @@
  */
 package org.jboss.arquillian.container.openwebbeans.embedded_1;
 
-import org.jboss.arquillian.spi.ContainerConfiguration;
 import org.jboss.arquillian.spi.ContainerProfile;
+import org.jboss.arquillian.spi.EmbeddedContainerConfiguration;
 
 /**
  * OpenWebBeansConfiguration
@@ -25,7 +25,7 @@ import org.jboss.arquillian.spi.ContainerProfile;
  * @author <a href="mailto:aknutsen@redhat.com">Aslak Knutsen</a>
  * @version $Revision: $
  */
-public class OpenWebBeansConfiguration implements ContainerConfiguration
+public class OpenWebBeansConfiguration implements EmbeddedContainerConfiguration
 {
    /* (non-Javadoc)
     * @see org.jboss.arquillian.spi.ContainerConfiguration#getContainerProfile()
@@ -16,8 +16,8 @@
  */
 package org.jboss.arquillian.container.osgi.embedded_4_2;
 
-import org.jboss.arquillian.spi.ContainerConfiguration;
 import org.jboss.arquillian.spi.ContainerProfile;
+import org.jboss.arquillian.spi.EmbeddedContainerConfiguration;
 
 /**
  * OSGiEmbeddedConfiguration
@@ -25,11 +25,28 @@ import org.jboss.arquillian.spi.ContainerProfile;
  * @author thomas.diesler@jboss.com
  * @version $Revision: $
  */
-public class OSGiEmbeddedConfiguration implements ContainerConfiguration
+public class OSGiEmbeddedConfiguration implements EmbeddedContainerConfiguration
 {
+   private String jmxServiceURL;
+
    public ContainerProfile getContainerProfile()
    {
       return ContainerProfile.STANDALONE;
    }
 
+   public String getJmxServiceURL()
+   {
+      return jmxServiceURL;
+   }
+
+   /**
+    * Invoke the JMXTestRunner through the JMX connector of the framework instead of the MBeanServer of this VM, 
+    * e.g. when the framework registers its MBeans in a MBeanServer of its own.
+    * 
+    * @param jmxServiceURL The JMXServiceURL of the connector, null to use the MBeanServer of this VM
+    */
+   public void setJmxServiceURL(String jmxServiceURL)
+   {
+      this.jmxServiceURL = jmxServiceURL;
+   }
 }
@@ -20,6 +20,9 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 
+import javax.management.remote.JMXServiceURL;
+
+import org.jboss.arquillian.protocol.jmx.JMXConnectorPool;
 import org.jboss.arquillian.protocol.jmx.JMXMethodExecutor;
 import org.jboss.arquillian.spi.Configuration;
 import org.jboss.arquillian.spi.ContainerMethodExecutor;
@@ -40,6 +43,9 @@ import org.osgi.framework.launch.Framework;
 /**
  * OSGiEmbeddedContainer
  *
+ * The tests are invoked through the JMXTestRunner registered by the arquillian-protocol-jmx-osgi-bundle, in the
+ * MBeanServer of this VM or over the JMX connector configured by {@link OSGiEmbeddedConfiguration#setJmxServiceURL(String)}.
+ *
  * @author thomas.diesler@jboss.com
  * @version $Revision: $
  */
@@ -50,8 +56,13 @@ public class OSGiEmbeddedContainer implements DeployableContainer
 
    private Framework framework;
 
+   private OSGiEmbeddedConfiguration containerConfig;
+
+   private JMXServiceURL serviceURL;
+
    public void setup(Context context, Configuration configuration)
    {
+      containerConfig = configuration.getContainerConfig(OSGiEmbeddedConfiguration.class);
       OSGiBootstrapProvider provider = OSGiBootstrap.getBootstrapProvider();
       framework = provider.getFramework();
       context.add(Framework.class, framework);
@@ -59,6 +70,17 @@ public class OSGiEmbeddedContainer implements DeployableContainer
 
    public void start(Context context) throws LifecycleException
    {
+      if (containerConfig != null && containerConfig.getJmxServiceURL() != null)
+      {
+         try
+         {
+            serviceURL = new JMXServiceURL(containerConfig.getJmxServiceURL());
+         }
+         catch (Exception ex)
+         {
+            throw new LifecycleException("Invalid jmxServiceURL: " + containerConfig.getJmxServiceURL(), ex);
+         }
+      }
       try
       {
          framework.start();
@@ -79,6 +101,11 @@ public class OSGiEmbeddedContainer implements DeployableContainer
 
    public void stop(Context context) throws LifecycleException
    {
+      if (serviceURL != null)
+      {
+         // the connection does not survive the framework
+         JMXConnectorPool.getDefault().invalidate(serviceURL);
+      }
       try
       {
          framework.stop();
@@ -118,7 +145,9 @@ public class OSGiEmbeddedContainer implements DeployableContainer
          throw new DeploymentException("Cannot deploy: " + archive, ex);
       }
       
-      //return new LocalMethodExecutor(); 
+      if (serviceURL != null)
+         return new JMXMethodExecutor(serviceURL);
+      
       return new JMXMethodExecutor();
    }
 
@@ -16,8 +16,9 @@
  */
 package org.jboss.arquillian.container.tomcat.embedded_6;
 
-import org.jboss.arquillian.spi.ContainerConfiguration;
 import org.jboss.arquillian.spi.ContainerProfile;
+import org.jboss.arquillian.spi.EmbeddedContainerConfiguration;
+import org.jboss.arquillian.spi.PooledContainerConfiguration;
 
 /**
  * Arquillian Tomcat Container Configuration
@@ -26,7 +27,7 @@ import org.jboss.arquillian.spi.ContainerProfile;
  * @author Dan Allen
  * @version $Revision: $
  */
-public class TomcatConfiguration implements ContainerConfiguration
+public class TomcatConfiguration implements PooledContainerConfiguration, EmbeddedContainerConfiguration
 {
    private String bindAddress = "localhost";
 
@@ -47,6 +48,22 @@ public class TomcatConfiguration implements ContainerConfiguration
       return ContainerProfile.CLIENT;
    }
 
+   /**
+    * Each pooled instance binds to bindHttpPort + instance and use its own server name, app base and work directory.
+    */
+   public TomcatConfiguration forPoolInstance(int instance)
+   {
+      TomcatConfiguration config = new TomcatConfiguration();
+      config.setBindAddress(bindAddress);
+      config.setBindHttpPort(bindHttpPort + instance);
+      config.setTomcatHome(tomcatHome);
+      config.setAppBase(appBase + "-" + instance);
+      config.setWorkDir(workDir == null ? null:workDir + "-" + instance);
+      config.setServerName(serverName + "-" + instance);
+      config.setUnpackArchive(unpackArchive);
+      return config;
+   }
+
    public String getBindAddress()
    {
       return bindAddress;
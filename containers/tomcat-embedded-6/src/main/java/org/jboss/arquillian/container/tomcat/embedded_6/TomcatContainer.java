@@ -34,6 +34,7 @@ import org.apache.catalina.core.StandardHost;
 import org.apache.catalina.startup.Embedded;
 import org.apache.catalina.startup.ExpandWar;
 import org.jboss.arquillian.protocol.servlet_3.ServletMethodExecutor;
+import org.jboss.arquillian.protocol.servlet_3.ServletProtocolConfiguration;
 import org.jboss.arquillian.spi.Configuration;
 import org.jboss.arquillian.spi.ContainerMethodExecutor;
 import org.jboss.arquillian.spi.Context;
@@ -88,6 +89,8 @@ public class TomcatContainer implements DeployableContainer
     */
    private TomcatConfiguration configuration;
 
+   private ServletProtocolConfiguration protocolConfiguration;
+
    private String serverName;
 
    private String bindAddress;
@@ -100,6 +103,7 @@ public class TomcatContainer implements DeployableContainer
 
    public void setup(Context context, Configuration configuration)
    {
+      protocolConfiguration = configuration.getExtensionConfig(ServletProtocolConfiguration.class);
       this.configuration = configuration.getContainerConfig(TomcatConfiguration.class);
       bindAddress = this.configuration.getBindAddress();
       bindPort = this.configuration.getBindHttpPort();
@@ -177,7 +181,8 @@ public class TomcatContainer implements DeployableContainer
                HTTP_PROTOCOL,
                bindAddress,
                bindPort,
-               "/"));
+               "/"),
+            protocolConfiguration);
       }
       catch (Exception e)
       {
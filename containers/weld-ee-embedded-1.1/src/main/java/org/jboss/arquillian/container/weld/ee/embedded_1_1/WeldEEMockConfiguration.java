@@ -16,8 +16,8 @@
  */
 package org.jboss.arquillian.container.weld.ee.embedded_1_1;
 
-import org.jboss.arquillian.spi.ContainerConfiguration;
 import org.jboss.arquillian.spi.ContainerProfile;
+import org.jboss.arquillian.spi.EmbeddedContainerConfiguration;
 
 /**
  * WeldSEConfiguration
@@ -25,7 +25,7 @@ import org.jboss.arquillian.spi.ContainerProfile;
  * @author <a href="mailto:aknutsen@redhat.com">Aslak Knutsen</a>
  * @version $Revision: $
  */
-public class WeldEEMockConfiguration implements ContainerConfiguration
+public class WeldEEMockConfiguration implements EmbeddedContainerConfiguration
 {
    /**
     * Flag to enable the Conversation Scope outside a JSF Request 
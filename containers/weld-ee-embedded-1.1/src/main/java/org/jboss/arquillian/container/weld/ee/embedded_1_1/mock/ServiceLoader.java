@@ -31,6 +31,8 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 import org.jboss.weld.bootstrap.spi.Metadata;
@@ -48,6 +50,9 @@ import org.jboss.weld.bootstrap.spi.Metadata;
  * >java.util.ServiceLoader</a> and enhanced to support the {@link Metadata}
  * contract.
  * 
+ * The service files are only parsed once pr ClassLoader, the providers are
+ * instantiated for each loader.
+ * 
  * @author Pete Muir
  * @author <a href="mailto:dev@avalon.apache.org">Avalon Development Team</a>
  * @author Nicklas Karlsson
@@ -84,6 +89,8 @@ public class ServiceLoader<S> implements Iterable<Metadata<S>>
 
    private static final Logger log = Logger.getLogger("ServiceLoader");
 
+   private static volatile ServiceIndex index;
+
    /**
     * Creates a new service loader for the given service type, using the current
     * thread's context class loader.
@@ -174,11 +181,28 @@ public class ServiceLoader<S> implements Iterable<Metadata<S>>
     */
    public void reload()
    {
-      providers = new HashSet<Metadata<S>>();
+      getIndex(loader).remove(expectedType);
+      load();
+   }
 
-      for (URL serviceFile : loadServiceFiles())
+   private void load()
+   {
+      ServiceIndex serviceIndex = getIndex(loader);
+      List<ServiceEntry> entries = serviceIndex.getEntries(expectedType);
+      if (entries == null)
       {
-         loadServiceFile(serviceFile);
+         entries = new ArrayList<ServiceEntry>();
+         for (URL serviceFile : loadServiceFiles())
+         {
+            loadServiceFile(serviceFile, entries);
+         }
+         entries = serviceIndex.putEntries(expectedType, entries);
+      }
+
+      providers = new HashSet<Metadata<S>>();
+      for (ServiceEntry entry : entries)
+      {
+         loadService(entry.serviceClass.asSubclass(expectedType), entry.file, entry.lineNumber);
       }
    }
 
@@ -200,7 +224,7 @@ public class ServiceLoader<S> implements Iterable<Metadata<S>>
       return serviceFiles;
    }
 
-   private void loadServiceFile(URL serviceFile)
+   private void loadServiceFile(URL serviceFile, List<ServiceEntry> entries)
    {
       InputStream is = null;
       try
@@ -215,7 +239,11 @@ public class ServiceLoader<S> implements Iterable<Metadata<S>>
             serviceClassName = trim(serviceClassName);
             if (serviceClassName.length() > 0)
             {
-               loadService(serviceClassName, serviceFile, i);
+               Class<? extends S> serviceClass = loadClass(serviceClassName);
+               if (serviceClass != null)
+               {
+                  entries.add(new ServiceEntry(serviceClass, serviceFile, i));
+               }
             }
          }
       }
@@ -252,13 +280,8 @@ public class ServiceLoader<S> implements Iterable<Metadata<S>>
       return line.trim();
    }
 
-   private void loadService(String serviceClassName, URL file, int lineNumber)
+   private void loadService(Class<? extends S> serviceClass, URL file, int lineNumber)
    {
-      Class<? extends S> serviceClass = loadClass(serviceClassName);
-      if (serviceClass == null)
-      {
-         return;
-      }
       S serviceInstance = prepareInstance(serviceClass);
       if (serviceInstance == null)
       {
@@ -367,7 +390,7 @@ public class ServiceLoader<S> implements Iterable<Metadata<S>>
    {
       if (providers == null)
       {
-         reload();
+         load();
       }
       return providers.iterator();
    }
@@ -382,4 +405,67 @@ public class ServiceLoader<S> implements Iterable<Metadata<S>>
    {
       return "Services for " + serviceFile;
    }
+
+   /**
+    * Get the ServiceIndex for the given ClassLoader. If the ClassLoader has changed since
+    * the last lookup, the current index is dropped and a new empty one is created.  
+    */
+   private static ServiceIndex getIndex(ClassLoader loader)
+   {
+      ServiceIndex current = index;
+      if (current == null || current.loader != loader)
+      {
+         current = new ServiceIndex(loader);
+         index = current;
+      }
+      return current;
+   }
+
+   /**
+    * A parsed line in a service file.
+    */
+   private static class ServiceEntry
+   {
+      private final Class<?> serviceClass;
+      private final URL file;
+      private final int lineNumber;
+
+      public ServiceEntry(Class<?> serviceClass, URL file, int lineNumber)
+      {
+         this.serviceClass = serviceClass;
+         this.file = file;
+         this.lineNumber = lineNumber;
+      }
+   }
+
+   /**
+    * Holds the parsed service files for one ClassLoader.
+    */
+   private static class ServiceIndex
+   {
+      private final ClassLoader loader;
+
+      private final ConcurrentMap<Class<?>, List<ServiceEntry>> entries = new ConcurrentHashMap<Class<?>, List<ServiceEntry>>();
+
+      public ServiceIndex(ClassLoader loader)
+      {
+         this.loader = loader;
+      }
+
+      public List<ServiceEntry> getEntries(Class<?> service)
+      {
+         return entries.get(service);
+      }
+
+      public List<ServiceEntry> putEntries(Class<?> service, List<ServiceEntry> serviceEntries)
+      {
+         List<ServiceEntry> existing = entries.putIfAbsent(service, serviceEntries);
+         return existing == null ? serviceEntries:existing;
+      }
+
+      public void remove(Class<?> service)
+      {
+         entries.remove(service);
+      }
+   }
 }
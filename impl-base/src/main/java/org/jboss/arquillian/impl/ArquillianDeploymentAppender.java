@@ -19,6 +19,7 @@ package org.jboss.arquillian.impl;
 import org.jboss.arquillian.api.Deployment;
 import org.jboss.arquillian.spi.AuxiliaryArchiveAppender;
 import org.jboss.arquillian.spi.Context;
+import org.jboss.arquillian.spi.Stateless;
 import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
 import org.jboss.shrinkwrap.api.spec.JavaArchive;
@@ -31,6 +32,7 @@ import org.jboss.shrinkwrap.spi.Configurable;
  * @author <a href="mailto:aslak@conduct.no">Aslak Knutsen</a>
  * @version $Revision: $
  */
+@Stateless
 public class ArquillianDeploymentAppender implements AuxiliaryArchiveAppender
 {
    /* (non-Javadoc)
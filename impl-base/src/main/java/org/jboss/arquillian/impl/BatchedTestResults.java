@@ -0,0 +1,92 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.arquillian.spi.BatchContainerMethodExecutor;
+import org.jboss.arquillian.spi.TestResult;
+import org.jboss.arquillian.spi.BatchContainerMethodExecutor.Results;
+
+/**
+ * Class scoped results of the test methods executed in the container in one batch.<br/>
+ * <br/>
+ * The batch is started when the result of the first test method is requested, the rest of the 
+ * results are read as the client side test framework reaches the methods.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class BatchedTestResults
+{
+   private Class<?> testClass;
+   
+   private List<String> methodNames;
+   
+   private BatchContainerMethodExecutor executor;
+   
+   private Results results;
+   
+   /**
+    * @param testClass The test class
+    * @param methodNames The test methods selected by the client side test framework
+    * @param executor The executor to invoke the batch with
+    */
+   public BatchedTestResults(Class<?> testClass, List<String> methodNames, BatchContainerMethodExecutor executor)
+   {
+      Validate.notNull(testClass, "TestClass must be specified");
+      Validate.notNull(methodNames, "MethodNames must be specified");
+      Validate.notNull(executor, "Executor must be specified");
+      
+      this.testClass = testClass;
+      this.methodNames = new ArrayList<String>(methodNames);
+      this.executor = executor;
+   }
+   
+   /**
+    * Get the result of the given test method from the batch.
+    * 
+    * @param methodName The test method
+    * @return The result, or null if the method is not part of the batch
+    */
+   public synchronized TestResult get(String methodName)
+   {
+      if(!methodNames.contains(methodName))
+      {
+         return null;
+      }
+      if(results == null)
+      {
+         results = executor.invoke(testClass, methodNames);
+      }
+      return results.get(methodName);
+   }
+   
+   /**
+    * Release the batch, the results of methods not yet requested are discarded.
+    */
+   public synchronized void close()
+   {
+      if(results != null)
+      {
+         results.close();
+         results = null;
+      }
+      methodNames.clear();
+   }
+}
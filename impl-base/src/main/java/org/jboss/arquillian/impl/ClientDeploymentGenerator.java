@@ -18,23 +18,29 @@ package org.jboss.arquillian.impl;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import org.jboss.arquillian.spi.ApplicationArchiveGenerator;
 import org.jboss.arquillian.spi.ApplicationArchiveProcessor;
 import org.jboss.arquillian.spi.AuxiliaryArchiveAppender;
 import org.jboss.arquillian.spi.AuxiliaryArchiveProcessor;
+import org.jboss.arquillian.spi.Configuration;
 import org.jboss.arquillian.spi.DeployableContainer;
 import org.jboss.arquillian.spi.TestDeployment;
 import org.jboss.arquillian.spi.DeploymentPackager;
 import org.jboss.arquillian.spi.ServiceLoader;
 import org.jboss.arquillian.spi.TestClass;
 import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.container.ClassContainer;
 
 /**
  * Responsible for calling the Packager SPIs, {@link DeploymentPackager}, {@link ApplicationArchiveGenerator},
  * {@link ApplicationArchiveProcessor}, {@link AuxiliaryArchiveAppender} and {@link AuxiliaryArchiveProcessor}. <br/>
- * The end result is the Deployment deployed to the {@link DeployableContainer} for testing.
+ * The end result is the Deployment deployed to the {@link DeployableContainer} for testing. <br/>
+ * <br/>
+ * Each protocol registers its own {@link DeploymentPackager}, so only one protocol is normally on the classpath.
+ * If more then one is found, the one named by {@link Configuration#getDeploymentPackager()} is used.
  *
  * @author <a href="mailto:aslak@conduct.no">Aslak Knutsen</a>
  * @version $Revision: $
@@ -43,23 +49,60 @@ public class ClientDeploymentGenerator implements DeploymentGenerator
 {
    private ServiceLoader serviceLoader;
    
+   private String deploymentPackager;
+   
    public ClientDeploymentGenerator(ServiceLoader serviceLoader)
+   {
+      this(serviceLoader, null);
+   }
+   
+   /**
+    * @param serviceLoader The ServiceLoader to load the Packager SPIs from
+    * @param deploymentPackager The class name of the {@link DeploymentPackager} to use, null if only one is on the classpath
+    */
+   public ClientDeploymentGenerator(ServiceLoader serviceLoader, String deploymentPackager)
    {
       Validate.notNull(serviceLoader, "ServiceLoader must be specified");
       
       this.serviceLoader = serviceLoader;
+      this.deploymentPackager = deploymentPackager;
    }
    
    public Archive<?> generate(TestClass testCase)
+   {
+      return generate(testCase, Collections.<Class<?>>emptyList());
+   }
+   
+   /**
+    * Generate a deployment that can be shared by more then one test class.
+    * 
+    * @param testCase The test class to generate the deployment for
+    * @param testClasses The other test classes to add to the application archive
+    * @return The deployment
+    */
+   public Archive<?> generate(TestClass testCase, Collection<Class<?>> testClasses)
    {
       Validate.notNull(testCase, "TestCase must be specified");
+      Validate.notNull(testClasses, "TestClasses must be specified");
 
-      DeploymentPackager packager = serviceLoader.onlyOne(DeploymentPackager.class);
+      DeploymentPackager packager = loadDeploymentPackager();
 
       Archive<?> applicationArchive = serviceLoader.onlyOne(
             ApplicationArchiveGenerator.class,
             DeploymentAnnotationArchiveGenerator.class).generateApplicationArchive(testCase);
       
+      if(!testClasses.isEmpty() && applicationArchive instanceof ClassContainer<?>)
+      {
+         try
+         {
+            ((ClassContainer<?>)applicationArchive).addClasses(testClasses.toArray(new Class<?>[testClasses.size()]));
+         }
+         catch (UnsupportedOperationException e) 
+         {
+            // see DeploymentAnnotationArchiveGenerator, the test classes not found in the deployment are not shared
+         }
+      }
+      
       applyApplicationProcessors(applicationArchive, testCase);
       
       List<Archive<?>> auxiliaryArchives = loadAuxiliaryArchives();
@@ -68,6 +111,30 @@ public class ClientDeploymentGenerator implements DeploymentGenerator
       return packager.generateDeployment(new TestDeployment(applicationArchive, auxiliaryArchives));
    }
    
+   private DeploymentPackager loadDeploymentPackager()
+   {
+      if(deploymentPackager == null)
+      {
+         return serviceLoader.onlyOne(DeploymentPackager.class);
+      }
+      Collection<DeploymentPackager> packagers = serviceLoader.all(DeploymentPackager.class);
+      for(DeploymentPackager packager : packagers)
+      {
+         if(packager.getClass().getName().equals(deploymentPackager))
+         {
+            return packager;
+         }
+      }
+      List<String> found = new ArrayList<String>();
+      for(DeploymentPackager packager : packagers)
+      {
+         found.add(packager.getClass().getName());
+      }
+      throw new IllegalStateException(
+            "Configured " + DeploymentPackager.class.getName() + " " + deploymentPackager + 
+            " not found, please check your classpath. Found " + found);
+   }
+   
    private List<Archive<?>> loadAuxiliaryArchives() 
    {
       List<Archive<?>> archives = new ArrayList<Archive<?>>();
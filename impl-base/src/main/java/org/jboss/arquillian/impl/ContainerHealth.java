@@ -0,0 +1,145 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.management.MBeanServerConnection;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+
+/**
+ * A sample of the memory pools, loaded classes and live threads of the container JVM.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ * @see RestartPolicy
+ */
+public class ContainerHealth
+{
+   private Map<String, Long> poolUsed;
+   
+   private Map<String, Long> poolMax;
+   
+   private int loadedClassCount;
+   
+   private int threadCount;
+
+   /**
+    * @param poolUsed The used bytes pr memory pool name
+    * @param poolMax The max bytes pr memory pool name, pools without a max are left out
+    * @param loadedClassCount The number of currently loaded classes
+    * @param threadCount The number of live threads
+    */
+   public ContainerHealth(Map<String, Long> poolUsed, Map<String, Long> poolMax, int loadedClassCount, int threadCount)
+   {
+      Validate.notNull(poolUsed, "PoolUsed must be specified");
+      Validate.notNull(poolMax, "PoolMax must be specified");
+      
+      this.poolUsed = poolUsed;
+      this.poolMax = poolMax;
+      this.loadedClassCount = loadedClassCount;
+      this.threadCount = threadCount;
+   }
+   
+   /**
+    * Sample the platform MXBeans of the JVM behind the given connection.<br/> 
+    * The usage after the last garbage collection is used for the pools that support it, so 
+    * garbage not yet collected does not count.
+    * 
+    * @param connection The MBeanServer of the container JVM
+    * @return The current sample
+    * @throws Exception If the MXBeans could not be read
+    */
+   public static ContainerHealth sample(MBeanServerConnection connection) throws Exception
+   {
+      Validate.notNull(connection, "Connection must be specified");
+      
+      Map<String, Long> poolUsed = new HashMap<String, Long>();
+      Map<String, Long> poolMax = new HashMap<String, Long>();
+      
+      Set<ObjectName> pools = connection.queryNames(
+            new ObjectName(ManagementFactory.MEMORY_POOL_MXBEAN_DOMAIN_TYPE + ",*"), null);
+      for(ObjectName pool : pools)
+      {
+         String name = (String)connection.getAttribute(pool, "Name");
+         CompositeData usage = (CompositeData)connection.getAttribute(pool, "CollectionUsage");
+         if(usage == null)
+         {
+            usage = (CompositeData)connection.getAttribute(pool, "Usage");
+         }
+         if(usage == null)
+         {
+            continue;
+         }
+         poolUsed.put(name, (Long)usage.get("used"));
+         long max = (Long)usage.get("max");
+         if(max > 0)
+         {
+            poolMax.put(name, max);
+         }
+      }
+      int loadedClassCount = (Integer)connection.getAttribute(
+            new ObjectName(ManagementFactory.CLASS_LOADING_MXBEAN_NAME), "LoadedClassCount");
+      int threadCount = (Integer)connection.getAttribute(
+            new ObjectName(ManagementFactory.THREAD_MXBEAN_NAME), "ThreadCount");
+      
+      return new ContainerHealth(poolUsed, poolMax, loadedClassCount, threadCount);
+   }
+
+   /**
+    * @return The sampled memory pool names
+    */
+   public Set<String> getPoolNames()
+   {
+      return Collections.unmodifiableSet(poolUsed.keySet());
+   }
+   
+   /**
+    * @param pool The memory pool name
+    * @return The used bytes, -1 if the pool was not sampled
+    */
+   public long getUsed(String pool)
+   {
+      Long used = poolUsed.get(pool);
+      return used == null ? -1:used;
+   }
+
+   /**
+    * @param pool The memory pool name
+    * @return The max bytes, -1 if the pool has no max
+    */
+   public long getMax(String pool)
+   {
+      Long max = poolMax.get(pool);
+      return max == null ? -1:max;
+   }
+   
+   public int getLoadedClassCount()
+   {
+      return loadedClassCount;
+   }
+   
+   public int getThreadCount()
+   {
+      return threadCount;
+   }
+}
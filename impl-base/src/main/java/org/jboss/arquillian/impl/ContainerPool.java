@@ -0,0 +1,100 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.jboss.arquillian.spi.Context;
+import org.jboss.arquillian.spi.DeployableContainer;
+
+/**
+ * Suite scoped pool of {@link DeployableContainer} instances.<br/>
+ * <br/>
+ * Each test class leases a free instance for its lifetime, the leased instance is exported as the 
+ * {@link DeployableContainer} of the class context so the deploy, test and undeploy handlers 
+ * use it without knowing about the pool.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class ContainerPool
+{
+   private List<DeployableContainer> containers;
+   
+   private BlockingQueue<DeployableContainer> free;
+   
+   private ConcurrentMap<Context, DeployableContainer> leases = new ConcurrentHashMap<Context, DeployableContainer>();
+
+   public ContainerPool(List<DeployableContainer> containers)
+   {
+      Validate.notNull(containers, "Containers must be specified");
+      if(containers.isEmpty())
+      {
+         throw new IllegalArgumentException("Containers must contain at least one container");
+      }
+      this.containers = Collections.unmodifiableList(new ArrayList<DeployableContainer>(containers));
+      this.free = new LinkedBlockingQueue<DeployableContainer>(containers);
+   }
+   
+   /**
+    * @return All container instances in the pool
+    */
+   public List<DeployableContainer> getContainers()
+   {
+      return containers;
+   }
+   
+   /**
+    * Lease a free container, waits until one is released if all are in use.
+    * 
+    * @param context The class context to export the leased {@link DeployableContainer} to
+    * @return The leased container
+    * @throws InterruptedException If interrupted while waiting for a free container
+    */
+   public DeployableContainer acquire(Context context) throws InterruptedException
+   {
+      Validate.notNull(context, "Context must be specified");
+      
+      DeployableContainer container = free.take();
+      leases.put(context, container);
+      context.add(DeployableContainer.class, container);
+      return container;
+   }
+   
+   /**
+    * Return the container leased by the given context to the pool.<br/>
+    * Does nothing if the context has no leased container, so it is safe to call more then once.
+    * 
+    * @param context The class context the container was leased to
+    */
+   public void release(Context context)
+   {
+      Validate.notNull(context, "Context must be specified");
+      
+      DeployableContainer container = leases.remove(context);
+      if(container != null)
+      {
+         free.add(container);
+      }
+   }
+}
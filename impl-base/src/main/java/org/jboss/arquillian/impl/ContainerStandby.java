@@ -0,0 +1,211 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jboss.arquillian.spi.Configuration;
+import org.jboss.arquillian.spi.Context;
+import org.jboss.arquillian.spi.DeployableContainer;
+import org.jboss.arquillian.spi.PooledContainerConfiguration;
+
+/**
+ * Suite scoped hot standby for the {@link DeployableContainer}.<br/>
+ * <br/>
+ * When a restart is predicted, a second container is set up and started in the background on the 
+ * alternate pool instance of the configuration. At the restart the engine switches to the standby and 
+ * the replaced container is stopped in the background. The standby and the replaced container alternate 
+ * between pool instance 0 and 1, a replaced container is always stopped before the next standby is started.<br/>
+ * <br/>
+ * The container events are not fired for the background setup, start and stop.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class ContainerStandby
+{
+   private static final Logger log = Logger.getLogger(ContainerStandby.class.getName());
+   
+   private static final long SHUTDOWN_TIMEOUT = 5 * 60;
+   
+   private ExecutorService executor;
+   
+   private Future<DeployableContainer> standby;
+   
+   private int activeInstance = 0;
+   
+   private int standbyInstance;
+   
+   /**
+    * @param configuration The current configuration, can be null
+    * @return true if a standby container is enabled and the container can run on alternate ports
+    */
+   public static boolean isSupported(Configuration configuration)
+   {
+      return configuration != null && configuration.isStandbyContainer() && !configuration.isContainerDaemon() &&
+            configuration.getActiveContainerConfiguration() instanceof PooledContainerConfiguration;
+   }
+   
+   /**
+    * Start a standby container in the background, does nothing if one is already prepared.
+    * 
+    * @param context The suite context
+    * @param configuration The current configuration
+    */
+   public synchronized void prepare(final Context context, final Configuration configuration)
+   {
+      Validate.notNull(context, "Context must be specified");
+      Validate.notNull(configuration, "Configuration must be specified");
+      
+      if(standby != null)
+      {
+         return;
+      }
+      standbyInstance = activeInstance == 0 ? 1:0;
+      log.fine("Preparing standby container on pool instance " + standbyInstance);
+      
+      standby = getExecutor().submit(new Callable<DeployableContainer>()
+      {
+         public DeployableContainer call() throws Exception
+         {
+            DeployableContainer container = context.getServiceLoader().onlyOne(DeployableContainer.class);
+            container.setup(context, configuration.forPoolInstance(standbyInstance));
+            container.start(context);
+            return container;
+         }
+      });
+   }
+   
+   /**
+    * @return true if a standby container is started or being started
+    */
+   public synchronized boolean isPrepared()
+   {
+      return standby != null;
+   }
+   
+   /**
+    * Take the standby container, waits for it if it is still starting.
+    * 
+    * @return The started standby container, or null if none was prepared or it failed to start
+    */
+   public synchronized DeployableContainer take()
+   {
+      if(standby == null)
+      {
+         return null;
+      }
+      try
+      {
+         DeployableContainer container = standby.get();
+         activeInstance = standbyInstance;
+         return container;
+      }
+      catch (Exception e) 
+      {
+         log.log(Level.WARNING, "Standby container failed to start, restarting the active container", e);
+         return null;
+      }
+      finally
+      {
+         standby = null;
+      }
+   }
+   
+   /**
+    * Stop the replaced container in the background.
+    * 
+    * @param context The suite context
+    * @param container The container that was switched from
+    */
+   public synchronized void retire(final Context context, final DeployableContainer container)
+   {
+      Validate.notNull(context, "Context must be specified");
+      Validate.notNull(container, "Container must be specified");
+      
+      getExecutor().execute(new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               container.stop(context);
+            }
+            catch (Exception e) 
+            {
+               log.log(Level.WARNING, "Could not stop replaced container", e);
+            }
+         }
+      });
+   }
+   
+   /**
+    * Stop a unused standby container and wait for the replaced containers to stop.
+    * 
+    * @param context The suite context
+    */
+   public void shutdown(Context context) throws Exception
+   {
+      DeployableContainer unused = take();
+      if(unused != null)
+      {
+         unused.stop(context);
+      }
+      ExecutorService current;
+      synchronized (this)
+      {
+         current = executor;
+         executor = null;
+      }
+      if(current != null)
+      {
+         current.shutdown();
+         current.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS);
+      }
+   }
+   
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /*
+    * One thread, so a replaced container has released its ports before the next standby starts on them.
+    */
+   private ExecutorService getExecutor()
+   {
+      if(executor == null)
+      {
+         executor = Executors.newSingleThreadExecutor(new ThreadFactory()
+         {
+            public Thread newThread(Runnable r)
+            {
+               Thread thread = new Thread(r, "arquillian-container-standby");
+               thread.setDaemon(true);
+               return thread;
+            }
+         });
+      }
+      return executor;
+   }
+}
@@ -38,23 +38,27 @@ public class DeployableTestBuilder
 {
    private DeployableTestBuilder() {}
 
-   private static ContainerProfile profile = null;
+   /*
+    * The profile is bound to the calling Thread. The in container TestRunners set it for the duration of a 
+    * single test invocation, which may run concurrently with other invocations or with the client side.
+    */
+   private static ThreadLocal<ContainerProfile> profile = new ThreadLocal<ContainerProfile>();
 
    public static void setProfile(ContainerProfile profile)
    {
       Validate.notNull(profile, "Profile must be specified");
       
-      DeployableTestBuilder.profile = profile;
+      DeployableTestBuilder.profile.set(profile);
    }
    
    public static ContainerProfile getProfile()
    {
-      return DeployableTestBuilder.profile;
+      return DeployableTestBuilder.profile.get();
    }
    
    public static void clearProfile() 
    {
-      DeployableTestBuilder.profile = null;
+      DeployableTestBuilder.profile.remove();
    }
 
    /**
@@ -62,13 +66,13 @@ public class DeployableTestBuilder
     */
    public static TestRunnerAdaptor build() 
    {
-      return build(DeployableTestBuilder.profile);
+      return build(getProfile());
    }
    
    // TODO: fix the ContainerProfile loading/selecting
    public static TestRunnerAdaptor build(Configuration configuration)
    {
-      ContainerProfile profile = DeployableTestBuilder.profile;
+      ContainerProfile profile = getProfile();
       ContainerConfiguration activeConfiguration = configuration.getActiveContainerConfiguration();
       if(activeConfiguration != null && profile == null) 
       {
@@ -0,0 +1,262 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.arquillian.api.Deployment;
+import org.jboss.arquillian.api.Run;
+import org.jboss.arquillian.api.RunModeType;
+import org.jboss.arquillian.api.SharedDeployment;
+import org.jboss.arquillian.spi.Configuration;
+import org.jboss.arquillian.spi.TestClass;
+import org.jboss.shrinkwrap.api.Archive;
+
+/**
+ * Orders test classes to minimize the number of deployments and container restarts.<br/>
+ * <br/>
+ * Test classes with the same {@link RunModeType} and the same {@link Deployment} content, or the same 
+ * {@link SharedDeployment} name, form a group that is executed back to back. If 
+ * {@link Configuration#getMaxDeploymentsBeforeRestart()} is set, the groups are packed into segments
+ * of at most that many classes so the container restarts happen between groups.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class DeploymentOrder
+{
+   private int maxDeploymentsBeforeRestart;
+   
+   /**
+    * @param maxDeploymentsBeforeRestart The max size of a segment, -1 for no restarts
+    */
+   public DeploymentOrder(int maxDeploymentsBeforeRestart)
+   {
+      this.maxDeploymentsBeforeRestart = maxDeploymentsBeforeRestart;
+   }
+   
+   /**
+    * Group and order the test classes.<br/>
+    * <br/>
+    * The {@link Deployment} method of every test class is called to compare the archive content, 
+    * so the deployments are created once more before the tests run.
+    * 
+    * @param testClasses The test classes in their original order
+    * @return The segments to execute in order, each a list of groups
+    */
+   public List<List<Group>> plan(List<Class<?>> testClasses)
+   {
+      Validate.notNull(testClasses, "TestClasses must be specified");
+      
+      Map<String, Group> groups = new LinkedHashMap<String, Group>();
+      for(Class<?> testClass : testClasses)
+      {
+         String key = getGroupKey(new TestClass(testClass));
+         Group group = groups.get(key);
+         if(group == null)
+         {
+            group = new Group(key);
+            groups.put(key, group);
+         }
+         group.classes.add(testClass);
+      }
+      
+      List<List<Group>> segments = new ArrayList<List<Group>>();
+      if(maxDeploymentsBeforeRestart < 1)
+      {
+         segments.add(sortOnRunMode(new ArrayList<Group>(groups.values())));
+         return segments;
+      }
+      
+      // first fit decreasing, groups larger then a segment get segments of their own
+      List<Group> largestFirst = new ArrayList<Group>(groups.values());
+      Collections.sort(largestFirst, new Comparator<Group>()
+      {
+         public int compare(Group o1, Group o2)
+         {
+            return o2.classes.size() - o1.classes.size();
+         }
+      });
+      List<Integer> free = new ArrayList<Integer>();
+      for(Group group : largestFirst)
+      {
+         int segment = -1;
+         for(int i = 0; i < free.size() && segment == -1; i++)
+         {
+            if(free.get(i) >= group.classes.size())
+            {
+               segment = i;
+            }
+         }
+         if(segment == -1)
+         {
+            segments.add(new ArrayList<Group>());
+            free.add(maxDeploymentsBeforeRestart);
+            segment = segments.size() - 1;
+         }
+         segments.get(segment).add(group);
+         free.set(segment, Math.max(0, free.get(segment) - group.classes.size()));
+      }
+      for(List<Group> segment : segments)
+      {
+         sortOnRunMode(segment);
+      }
+      return segments;
+   }
+   
+   /**
+    * @param segments A plan created by {@link #plan(List)}
+    * @return The test classes of the plan in execution order
+    */
+   public static List<Class<?>> getTestClasses(List<List<Group>> segments)
+   {
+      List<Class<?>> testClasses = new ArrayList<Class<?>>();
+      for(List<Group> segment : segments)
+      {
+         for(Group group : segment)
+         {
+            testClasses.addAll(group.classes);
+         }
+      }
+      return testClasses;
+   }
+   
+   /**
+    * @param segments A plan created by {@link #plan(List)}
+    * @return A human readable description of the plan
+    */
+   public static String describe(List<List<Group>> segments)
+   {
+      StringBuilder sb = new StringBuilder("Arquillian test class order:\n");
+      for(int i = 0; i < segments.size(); i++)
+      {
+         if(segments.size() > 1)
+         {
+            sb.append(" segment ").append(i + 1).append(":\n");
+         }
+         for(Group group : segments.get(i))
+         {
+            sb.append("   ").append(group.key).append(" (").append(group.classes.size()).append(")\n");
+            for(Class<?> testClass : group.classes)
+            {
+               sb.append("      ").append(testClass.getName()).append("\n");
+            }
+         }
+      }
+      return sb.toString();
+   }
+   
+   /**
+    * Test classes with the same key can share the deployment and should run back to back.
+    * 
+    * @param testClass The test class
+    * @return The group key of the test class
+    */
+   public static String getGroupKey(TestClass testClass)
+   {
+      Validate.notNull(testClass, "TestClass must be specified");
+      
+      StringBuilder key = new StringBuilder(getRunMode(testClass).name().toLowerCase());
+      Method deploymentMethod = testClass.getMethod(Deployment.class);
+      if(deploymentMethod == null)
+      {
+         return key.append(":").append(testClass.getName()).toString();
+      }
+      if(deploymentMethod.isAnnotationPresent(SharedDeployment.class))
+      {
+         return key.append(":name:").append(deploymentMethod.getAnnotation(SharedDeployment.class).value()).toString();
+      }
+      try
+      {
+         // the user defined archive, before the test class and auxiliary archives are added
+         Archive<?> archive = (Archive<?>)deploymentMethod.invoke(null);
+         return key.append(":").append(archive.getName())
+                   .append(":").append(SharedDeployments.fingerprint(archive)).toString();
+      }
+      catch (Exception e) 
+      {
+         // the failure is reported when the test class is deployed
+         return key.append(":").append(testClass.getName()).toString();
+      }
+   }
+   
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   static RunModeType getRunMode(TestClass testClass)
+   {
+      if(testClass.isAnnotationPresent(Run.class))
+      {
+         return testClass.getAnnotation(Run.class).value();
+      }
+      return RunModeType.IN_CONTAINER;
+   }
+   
+   private static List<Group> sortOnRunMode(List<Group> groups)
+   {
+      // stable, keeps the original order within the same run mode
+      Collections.sort(groups, new Comparator<Group>()
+      {
+         public int compare(Group o1, Group o2)
+         {
+            return o1.getRunMode().compareTo(o2.getRunMode());
+         }
+      });
+      return groups;
+   }
+   
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - Group -------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /**
+    * Test classes with the same group key.
+    */
+   public static class Group
+   {
+      private String key;
+      
+      private List<Class<?>> classes = new ArrayList<Class<?>>();
+      
+      public Group(String key)
+      {
+         this.key = key;
+      }
+      
+      public String getKey()
+      {
+         return key;
+      }
+      
+      public List<Class<?>> getTestClasses()
+      {
+         return classes;
+      }
+      
+      private RunModeType getRunMode()
+      {
+         return DeploymentOrder.getRunMode(new TestClass(classes.get(0)));
+      }
+   }
+}
@@ -0,0 +1,179 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The persisted execution time of each test class, used to balance test classes between shards.<br/>
+ * <br/>
+ * Stored as a properties file of test class name = milliseconds, the last recorded time wins.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ * @see ShardPlanner
+ */
+public class DurationHistory
+{
+   private ConcurrentMap<String, Long> durations = new ConcurrentHashMap<String, Long>();
+
+   private ConcurrentMap<String, Long> started = new ConcurrentHashMap<String, Long>();
+
+   /**
+    * Load a history file.
+    * 
+    * @param file The file to load
+    * @return The loaded history, or a empty history if the file does not exist
+    * @throws IOException If the file could not be read
+    */
+   public static DurationHistory load(File file) throws IOException
+   {
+      Validate.notNull(file, "File must be specified");
+      
+      DurationHistory history = new DurationHistory();
+      if(!file.isFile())
+      {
+         return history;
+      }
+      Properties properties = new Properties();
+      InputStream is = new FileInputStream(file);
+      try
+      {
+         properties.load(is);
+      }
+      finally
+      {
+         is.close();
+      }
+      for(Map.Entry<Object, Object> entry : properties.entrySet())
+      {
+         try
+         {
+            history.record((String)entry.getKey(), Long.parseLong(((String)entry.getValue()).trim()));
+         }
+         catch (NumberFormatException e) 
+         {
+            // ignore broken entries, they are recorded again on the next run
+         }
+      }
+      return history;
+   }
+
+   /**
+    * @param className The test class name
+    * @return The last recorded duration in milliseconds, or null if never recorded
+    */
+   public Long get(String className)
+   {
+      Validate.notNull(className, "ClassName must be specified");
+      return durations.get(className);
+   }
+   
+   /**
+    * @param className The test class name
+    * @param duration The duration in milliseconds
+    */
+   public void record(String className, long duration)
+   {
+      Validate.notNull(className, "ClassName must be specified");
+      durations.put(className, duration);
+   }
+
+   /**
+    * Start timing a test class.
+    * 
+    * @param className The test class name
+    */
+   public void start(String className)
+   {
+      Validate.notNull(className, "ClassName must be specified");
+      started.put(className, System.currentTimeMillis());
+   }
+   
+   /**
+    * Record the time since {@link #start(String)} was called for the test class.
+    * 
+    * @param className The test class name
+    */
+   public void stop(String className)
+   {
+      Validate.notNull(className, "ClassName must be specified");
+      Long start = started.remove(className);
+      if(start != null)
+      {
+         record(className, System.currentTimeMillis() - start);
+      }
+   }
+
+   /**
+    * Record all durations of the given history in this history.
+    * 
+    * @param history The history to merge in
+    */
+   public void merge(DurationHistory history)
+   {
+      Validate.notNull(history, "History must be specified");
+      durations.putAll(history.durations);
+   }
+   
+   /**
+    * @return true if no durations are recorded
+    */
+   public boolean isEmpty()
+   {
+      return durations.isEmpty();
+   }
+   
+   /**
+    * Write the history to file, replacing the existing file.
+    * 
+    * @param file The file to write
+    * @throws IOException If the file could not be written
+    */
+   public void save(File file) throws IOException
+   {
+      Validate.notNull(file, "File must be specified");
+      
+      if(file.getParentFile() != null && !file.getParentFile().exists() && !file.getParentFile().mkdirs())
+      {
+         throw new IOException("Could not create directory " + file.getParentFile());
+      }
+      Properties properties = new Properties();
+      for(Map.Entry<String, Long> entry : durations.entrySet())
+      {
+         properties.setProperty(entry.getKey(), String.valueOf(entry.getValue()));
+      }
+      OutputStream os = new FileOutputStream(file);
+      try
+      {
+         properties.store(os, "Arquillian test class durations in milliseconds");
+      }
+      finally
+      {
+         os.close();
+      }
+   }
+}
@@ -17,20 +17,41 @@
 package org.jboss.arquillian.impl;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Constructor;
 import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Logger;
 
 import org.jboss.arquillian.spi.ServiceLoader;
+import org.jboss.arquillian.spi.Stateless;
 
 /**
- * ServiceLoader implementation that use META-INF/services/interface files to registered Services.
+ * ServiceLoader implementation that use META-INF/services/interface files to registered Services.<br/>
+ * <br/>
+ * Each services file is only parsed once pr ClassLoader, the resolved Service implementations 
+ * and the instances of {@link Stateless} Services are cached pr Thread Context ClassLoader.<br/>
+ * <br/>
+ * If a {@link ServiceIndexGenerator} generated index is found on the ClassLoader, the Arquillian Services are 
+ * resolved from the index instead of scanning all META-INF/services files on the classpath. A index 
+ * generated from classpath entries that have changed since, or that misses a classpath entry providing 
+ * Arquillian Services, is ignored.
  *
  * @author <a href="mailto:aslak@conduct.no">Aslak Knutsen</a>
  * @version $Revision: $
@@ -45,6 +66,15 @@ public class DynamicServiceLoader implements ServiceLoader
 
    private static final String SERVICES = "META-INF/services";
    
+   static final String SERVICE_INDEX = "META-INF/arquillian/services.index";
+   
+   static final String SERVICE_INDEX_PREFIX = "org.jboss.arquillian.";
+   
+   static final String SERVICE_INDEX_CLASSPATH = "@classpath";
+   
+   private static final Map<ClassLoader, SoftReference<ServiceIndex>> indexes = 
+         new WeakHashMap<ClassLoader, SoftReference<ServiceIndex>>();
+   
    //-------------------------------------------------------------------------------------||
    // Required Implementations - ServiceLoader -------------------------------------------||
    //-------------------------------------------------------------------------------------||
@@ -56,9 +86,10 @@ public class DynamicServiceLoader implements ServiceLoader
    {
       Validate.notNull(serviceClass, "ServiceClass must be provided");
       
+      ServiceIndex serviceIndex = getIndex(SecurityActions.getThreadContextClassLoader());
       return createInstances(
-            serviceClass, 
-            load(serviceClass, SecurityActions.getThreadContextClassLoader()));
+            serviceIndex,
+            load(serviceClass, serviceIndex));
    }
    
    /* (non-Javadoc)
@@ -68,10 +99,11 @@ public class DynamicServiceLoader implements ServiceLoader
    {
       Validate.notNull(serviceClass, "ServiceClass must be provided");
 
-      Set<Class<? extends T>> serviceImpls = load(serviceClass, SecurityActions.getThreadContextClassLoader());
+      ServiceIndex serviceIndex = getIndex(SecurityActions.getThreadContextClassLoader());
+      Set<Class<? extends T>> serviceImpls = load(serviceClass, serviceIndex);
       verifyOnlyOneOrSameImplementation(serviceClass, serviceImpls);
       
-      return createInstance(serviceImpls.iterator().next());
+      return createInstance(serviceIndex, serviceImpls.iterator().next());
    }
 
    /* (non-Javadoc)
@@ -84,13 +116,14 @@ public class DynamicServiceLoader implements ServiceLoader
       
       Class<? extends T> serviceImplToCreate = defaultServiceClass;
       
-      Set<Class<? extends T>> serviceImpls = load(serviceClass, SecurityActions.getThreadContextClassLoader());
+      ServiceIndex serviceIndex = getIndex(SecurityActions.getThreadContextClassLoader());
+      Set<Class<? extends T>> serviceImpls = load(serviceClass, serviceIndex);
       if(serviceImpls.size() > 0)
       {
          verifySameImplementation(serviceClass, serviceImpls);
          serviceImplToCreate = serviceImpls.iterator().next();
       }
-      return createInstance(serviceImplToCreate);
+      return createInstance(serviceIndex, serviceImplToCreate);
    }
    
    //-------------------------------------------------------------------------------------||
@@ -158,6 +191,68 @@ public class DynamicServiceLoader implements ServiceLoader
    // Internal Helper Methods - Service Loading ------------------------------------------||
    //-------------------------------------------------------------------------------------||
 
+   /**
+    * Get the ServiceIndex for the given ClassLoader, a new empty one is created on first use. 
+    * The index holds the provider classes and so the ClassLoader itself, it is softly referenced 
+    * to let a discarded ClassLoader be collected.
+    */
+   private static ServiceIndex getIndex(ClassLoader loader)
+   {
+      synchronized (indexes)
+      {
+         SoftReference<ServiceIndex> cached = indexes.get(loader);
+         ServiceIndex current = cached == null ? null:cached.get();
+         if(current == null)
+         {
+            current = new ServiceIndex(loader);
+            indexes.put(loader, new SoftReference<ServiceIndex>(current));
+         }
+         return current;
+      }
+   }
+   
+   @SuppressWarnings("unchecked")
+   private <T> Set<Class<? extends T>> load(Class<T> serviceClass, ServiceIndex serviceIndex)
+   {
+      Set<Class<?>> providers = serviceIndex.getProviders(serviceClass);
+      if(providers == null)
+      {
+         List<String> indexedProviders = serviceIndex.getIndexedProviders(serviceClass);
+         providers = serviceIndex.putProviders(
+               serviceClass, 
+               (Set)Collections.unmodifiableSet(
+                     indexedProviders != null ? 
+                           load(serviceClass, indexedProviders, serviceIndex.getClassLoader()):
+                           load(serviceClass, serviceIndex.getClassLoader())));
+      }
+      return (Set)providers;
+   }
+
+   private <T> Set<Class<? extends T>> load(Class<T> serviceClass, List<String> providerNames, ClassLoader loader)
+   {
+      LinkedHashSet<Class<? extends T>> providers = new LinkedHashSet<Class<? extends T>>();
+      for(String providerName : providerNames)
+      {
+         try
+         {
+            providers.add(
+                  loader.loadClass(providerName)
+                     .asSubclass(serviceClass));
+         }
+         catch (ClassCastException e)
+         {
+            throw new IllegalStateException("Service " + providerName + " does not implement expected type "
+                  + serviceClass.getName());
+         }
+         catch (ClassNotFoundException e) 
+         {
+            throw new RuntimeException("Could not load services for " + serviceClass.getName() + 
+                  ", the " + SERVICE_INDEX + " might be out of date", e);
+         }
+      }
+      return providers;
+   }
+
    private <T> Set<Class<? extends T>> load(Class<T> serviceClass, ClassLoader loader) 
    {
       String serviceFile = SERVICES + "/" + serviceClass.getName();
@@ -219,6 +314,28 @@ public class DynamicServiceLoader implements ServiceLoader
       return providers;
    }
    
+   /**
+    * Get the shared instance of a {@link Stateless} Service, or create a new instance of any other Service.
+    * 
+    * @param <T>
+    * @param serviceIndex The ServiceIndex that holds the shared instances
+    * @param serviceImplClass The implementation class
+    * @return A instance of the ServiceImpl
+    */
+   private <T> T createInstance(ServiceIndex serviceIndex, Class<? extends T> serviceImplClass)
+   {
+      if(!serviceImplClass.isAnnotationPresent(Stateless.class))
+      {
+         return createInstance(serviceImplClass);
+      }
+      T instance = serviceIndex.getInstance(serviceImplClass);
+      if(instance == null)
+      {
+         instance = serviceIndex.putInstance(serviceImplClass, createInstance(serviceImplClass));
+      }
+      return instance;
+   }
+   
    /**
     * Create a new instance of the found Service. <br/>
     * 
@@ -248,13 +365,230 @@ public class DynamicServiceLoader implements ServiceLoader
       }
    }
    
-   private <T> Set<T> createInstances(Class<T> serviceType, Set<Class<? extends T>> providers)
+   private <T> Set<T> createInstances(ServiceIndex serviceIndex, Set<Class<? extends T>> providers)
    {
       Set<T> providerImpls = new LinkedHashSet<T>();
       for(Class<? extends T> serviceClass: providers)
       {
-         providerImpls.add(createInstance(serviceClass));
+         providerImpls.add(createInstance(serviceIndex, serviceClass));
       }
       return providerImpls;
    }
+   
+   /**
+    * Read the generated service index from the ClassLoader.
+    * 
+    * @param loader The ClassLoader to read from
+    * @return A Map of service interface name to implementation names, or null if no index is found 
+    *    or the index is out of date
+    */
+   private static Map<String, List<String>> readIndexedProviders(ClassLoader loader)
+   {
+      URL indexFile = loader.getResource(SERVICE_INDEX);
+      if(indexFile == null)
+      {
+         return null;
+      }
+      Map<String, List<String>> indexedProviders = new HashMap<String, List<String>>();
+      List<String> classPathEntries = new ArrayList<String>();
+      BufferedReader reader = null;
+      try
+      {
+         reader = new BufferedReader(new InputStreamReader(indexFile.openStream(), "UTF-8"));
+         String line = reader.readLine();
+         while (null != line)
+         {
+            line = line.trim();
+            // only whole line comments, a classpath entry might contain a '#'
+            final int separator = line.indexOf('=');
+            if (!line.startsWith("#") && separator > -1)
+            {
+               String service = line.substring(0, separator).trim();
+               List<String> values = SERVICE_INDEX_CLASSPATH.equals(service) ? 
+                     classPathEntries:indexedProviders.get(service);
+               if(values == null)
+               {
+                  values = new ArrayList<String>();
+                  indexedProviders.put(service, values);
+               }
+               values.add(line.substring(separator + 1).trim());
+            }
+            line = reader.readLine();
+         }
+      }
+      catch (Exception e) 
+      {
+         throw new RuntimeException("Could not read service index " + indexFile, e);
+      }
+      finally
+      {
+         if(reader != null)
+         {
+            try
+            {
+               reader.close();
+            }
+            catch (Exception e) 
+            {
+               // ignore
+            }
+         }
+      }
+      if(classPathEntries.isEmpty())
+      {
+         // not generated, nothing to verify
+         logger.fine("Using service index " + indexFile);
+         return indexedProviders;
+      }
+      Set<String> indexedEntries = new HashSet<String>();
+      for(String classPathEntry : classPathEntries)
+      {
+         int separator = classPathEntry.indexOf(':');
+         File entry = new File(classPathEntry.substring(separator + 1));
+         if(!classPathEntry.substring(0, separator).equals(String.valueOf(ServiceIndexGenerator.getTimestamp(entry))))
+         {
+            logger.info("Service index " + indexFile + " is out of date, " + entry + " has changed. Scanning the classpath");
+            return null;
+         }
+         indexedEntries.add(entry.getAbsolutePath());
+      }
+      List<File> currentEntries = getClassPath(loader);
+      if(currentEntries == null)
+      {
+         logger.info("Service index " + indexFile + " can not be verified against the classpath of " + loader + ". Scanning the classpath");
+         return null;
+      }
+      for(File entry : currentEntries)
+      {
+         try
+         {
+            if(!indexedEntries.contains(entry.getAbsolutePath()) && ServiceIndexGenerator.hasServices(entry))
+            {
+               logger.info("Service index " + indexFile + " is out of date, " + entry + " has been added. Scanning the classpath");
+               return null;
+            }
+         }
+         catch (Exception e) 
+         {
+            throw new RuntimeException("Could not read classpath entry " + entry, e);
+         }
+      }
+      logger.fine("Using service index " + indexFile);
+      return indexedProviders;
+   }
+
+   /**
+    * The classpath entries of the ClassLoader and its parents, the system ClassLoader contributes java.class.path.
+    * 
+    * @param loader The ClassLoader to inspect
+    * @return The classpath entries, or null if a ClassLoader in the hierarchy does not expose its entries
+    */
+   static List<File> getClassPath(ClassLoader loader)
+   {
+      ClassLoader systemLoader = ClassLoader.getSystemClassLoader();
+      List<File> entries = new ArrayList<File>();
+      for(ClassLoader current = loader; current != null; current = current.getParent())
+      {
+         if(current == systemLoader)
+         {
+            for(String entry : System.getProperty("java.class.path", "").split(File.pathSeparator))
+            {
+               if(entry.length() > 0)
+               {
+                  entries.add(new File(entry));
+               }
+            }
+            return entries;
+         }
+         if(!(current instanceof URLClassLoader))
+         {
+            return null;
+         }
+         for(URL url : ((URLClassLoader)current).getURLs())
+         {
+            if(!"file".equals(url.getProtocol()))
+            {
+               return null;
+            }
+            try
+            {
+               entries.add(new File(url.toURI()));
+            }
+            catch (Exception e) 
+            {
+               return null;
+            }
+         }
+      }
+      return entries;
+   }
+   
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - ServiceIndex ------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /**
+    * Holds the resolved Service implementations and the shared {@link Stateless} instances 
+    * for one ClassLoader.
+    */
+   private static class ServiceIndex
+   {
+      private final ClassLoader loader;
+      
+      private final Map<String, List<String>> indexedProviders;
+      
+      private final ConcurrentMap<Class<?>, Set<Class<?>>> providers = new ConcurrentHashMap<Class<?>, Set<Class<?>>>();
+      
+      private final ConcurrentMap<Class<?>, Object> instances = new ConcurrentHashMap<Class<?>, Object>();
+      
+      public ServiceIndex(ClassLoader loader)
+      {
+         this.loader = loader;
+         this.indexedProviders = readIndexedProviders(loader);
+      }
+      
+      public ClassLoader getClassLoader()
+      {
+         return loader;
+      }
+      
+      /**
+       * @return the implementation names found in the generated index, or null if the service is not indexed 
+       */
+      public List<String> getIndexedProviders(Class<?> serviceClass)
+      {
+         if(indexedProviders == null || !serviceClass.getName().startsWith(SERVICE_INDEX_PREFIX))
+         {
+            return null;
+         }
+         List<String> providerNames = indexedProviders.get(serviceClass.getName());
+         if(providerNames == null)
+         {
+            return Collections.emptyList();
+         }
+         return providerNames;
+      }
+      
+      public Set<Class<?>> getProviders(Class<?> serviceClass)
+      {
+         return providers.get(serviceClass);
+      }
+      
+      public Set<Class<?>> putProviders(Class<?> serviceClass, Set<Class<?>> serviceImpls)
+      {
+         Set<Class<?>> existing = providers.putIfAbsent(serviceClass, serviceImpls);
+         return existing == null ? serviceImpls:existing;
+      }
+
+      public <T> T getInstance(Class<? extends T> serviceImplClass)
+      {
+         return serviceImplClass.cast(instances.get(serviceImplClass));
+      }
+      
+      public <T> T putInstance(Class<? extends T> serviceImplClass, T instance)
+      {
+         Object existing = instances.putIfAbsent(serviceImplClass, instance);
+         return existing == null ? instance:serviceImplClass.cast(existing);
+      }
+   }
 }
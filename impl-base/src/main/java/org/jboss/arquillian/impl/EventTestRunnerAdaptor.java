@@ -32,9 +32,14 @@ import org.jboss.arquillian.spi.event.suite.Before;
 import org.jboss.arquillian.spi.event.suite.BeforeClass;
 import org.jboss.arquillian.spi.event.suite.BeforeSuite;
 import org.jboss.arquillian.spi.event.suite.Test;
+import org.jboss.arquillian.spi.event.suite.UpcomingClasses;
+import org.jboss.arquillian.spi.event.suite.UpcomingMethods;
 
 /**
  * EventTestRunnerAdaptor
+ * 
+ * The SuiteContext is shared by all Threads, while the active Class and Test Contexts are tracked 
+ * pr Thread. This allows multiple test classes to run concurrently against the same Suite.
  *
  * @author <a href="mailto:aslak@conduct.no">Aslak Knutsen</a>
  * @version $Revision: $
@@ -42,7 +47,17 @@ import org.jboss.arquillian.spi.event.suite.Test;
 public class EventTestRunnerAdaptor implements TestRunnerAdaptor
 {
    private ContextLifecycleManager contextLifecycle;
-   private Stack<Context> activeContext = new Stack<Context>();
+   
+   private volatile Context suiteContext;
+   
+   private ThreadLocal<Stack<Context>> activeContext = new ThreadLocal<Stack<Context>>()
+   {
+      @Override
+      protected Stack<Context> initialValue()
+      {
+         return new Stack<Context>();
+      }
+   };
    
    public EventTestRunnerAdaptor(ContextLifecycleManager contextLifecycle)
    {
@@ -51,13 +66,18 @@ public class EventTestRunnerAdaptor implements TestRunnerAdaptor
       this.contextLifecycle = contextLifecycle;
    }
 
+   /**
+    * @return The top Context of the current Thread, or the shared SuiteContext if the 
+    * current Thread has not entered any Class or Test Context
+    */
    public Context getActiveContext()
    {
-      if(activeContext.empty())
+      Stack<Context> contexts = activeContext.get();
+      if(contexts.empty())
       {
-         return null;
+         return suiteContext;
       }
-      return activeContext.peek();
+      return contexts.peek();
    }
    
    public void beforeSuite() throws Exception
@@ -69,7 +89,7 @@ public class EventTestRunnerAdaptor implements TestRunnerAdaptor
       }
       finally
       {
-         activeContext.push(suiteContext);         
+         this.suiteContext = suiteContext;
       }
    }
 
@@ -82,10 +102,17 @@ public class EventTestRunnerAdaptor implements TestRunnerAdaptor
       }
       finally
       {
-         activeContext.pop();                  
+         suiteContext = null;
       }
    }
 
+   public void upcomingClasses(Class<?>... testClasses) throws Exception
+   {
+      Validate.notNull(testClasses, "TestClasses must be specified");
+      
+      contextLifecycle.createRestoreSuiteContext().fire(new UpcomingClasses(testClasses));
+   }
+
    public void beforeClass(Class<?> testClass) throws Exception
    {
       Validate.notNull(testClass, "TestClass must be specified");
@@ -97,10 +124,18 @@ public class EventTestRunnerAdaptor implements TestRunnerAdaptor
       }
       finally
       {
-         activeContext.push(classContext);
+         push(classContext);
       }
    }
 
+   public void upcomingMethods(Class<?> testClass, Method... testMethods) throws Exception
+   {
+      Validate.notNull(testClass, "TestClass must be specified");
+      Validate.notNull(testMethods, "TestMethods must be specified");
+      
+      contextLifecycle.createRestoreClassContext(testClass).fire(new UpcomingMethods(testClass, testMethods));
+   }
+
    public void afterClass(Class<?> testClass) throws Exception
    {
       Validate.notNull(testClass, "TestClass must be specified");
@@ -112,7 +147,7 @@ public class EventTestRunnerAdaptor implements TestRunnerAdaptor
       }
       finally
       {
-         activeContext.pop();
+         pop();
       }
    }
 
@@ -128,7 +163,7 @@ public class EventTestRunnerAdaptor implements TestRunnerAdaptor
       }
       finally
       {
-         activeContext.push(testContext);
+         push(testContext);
       }
    }
 
@@ -144,7 +179,7 @@ public class EventTestRunnerAdaptor implements TestRunnerAdaptor
       }
       finally
       {
-         activeContext.pop();
+         pop();
       }
    }
    
@@ -157,4 +192,20 @@ public class EventTestRunnerAdaptor implements TestRunnerAdaptor
       context.fire(test);
       return context.get(TestResult.class);
    }
+   
+   private void push(Context context)
+   {
+      activeContext.get().push(context);
+   }
+   
+   private void pop()
+   {
+      Stack<Context> contexts = activeContext.get();
+      contexts.pop();
+      if(contexts.empty())
+      {
+         // don't leave a empty Stack behind on pooled Threads
+         activeContext.remove();
+      }
+   }
 }
@@ -0,0 +1,161 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.jboss.arquillian.spi.AsyncDeployableContainer;
+import org.jboss.arquillian.spi.Context;
+import org.jboss.arquillian.spi.event.container.AfterUnDeploy;
+import org.jboss.shrinkwrap.api.Archive;
+
+/**
+ * Suite scoped registry of the undeployments started on a {@link AsyncDeployableContainer} 
+ * that might still be running.<br/>
+ * <br/>
+ * A new deployment only waits for the pending undeployments it clashes with, two archives clash if 
+ * they have the same name or the same context root, e.g. test.war and test.ear. The deferred 
+ * {@link AfterUnDeploy} is fired on the context that started the undeployment.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class PendingUndeployments
+{
+   private List<Entry> pending = new ArrayList<Entry>();
+
+   /**
+    * Register a started undeployment.
+    * 
+    * @param context The context to fire {@link AfterUnDeploy} on, the class context owning the deployment
+    * @param archive The archive being undeployed
+    * @param undeployment The running undeployment
+    */
+   public synchronized void add(Context context, Archive<?> archive, Future<?> undeployment)
+   {
+      Validate.notNull(context, "Context must be specified");
+      Validate.notNull(archive, "Archive must be specified");
+      Validate.notNull(undeployment, "Undeployment must be specified");
+      
+      pending.add(new Entry(context, archive, undeployment));
+   }
+   
+   /**
+    * Wait for the pending undeployments that clash with the given archive. <br/>
+    * Undeployments that are already done are completed as well.
+    * 
+    * @param archive The archive about to be deployed
+    * @throws Exception The first Exception thrown by a completed undeployment
+    */
+   public void awaitConflicting(Archive<?> archive) throws Exception
+   {
+      Validate.notNull(archive, "Archive must be specified");
+      
+      await(remove(archive));
+   }
+   
+   /**
+    * Wait for all pending undeployments.
+    * 
+    * @throws Exception The first Exception thrown by a undeployment
+    */
+   public void awaitAll() throws Exception
+   {
+      await(remove(null));
+   }
+
+   /**
+    * @param first Archive name
+    * @param second Archive name
+    * @return true if the two archive names would be deployed under the same name or context root 
+    */
+   static boolean isConflicting(String first, String second)
+   {
+      return first.equals(second) || getContextRoot(first).equals(getContextRoot(second));
+   }
+   
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /*
+    * Remove the entries that are done or conflict with the archive, all if archive is null.
+    */
+   private synchronized List<Entry> remove(Archive<?> archive)
+   {
+      List<Entry> removed = new ArrayList<Entry>();
+      for(Entry entry : pending)
+      {
+         if(archive == null || entry.undeployment.isDone() ||
+               isConflicting(entry.archive.getName(), archive.getName()))
+         {
+            removed.add(entry);
+         }
+      }
+      pending.removeAll(removed);
+      return removed;
+   }
+   
+   private void await(List<Entry> entries) throws Exception
+   {
+      Exception failure = null;
+      for(Entry entry : entries)
+      {
+         try
+         {
+            entry.undeployment.get();
+            entry.context.fire(new AfterUnDeploy());
+         }
+         catch (ExecutionException e) 
+         {
+            if(failure == null)
+            {
+               failure = e.getCause() instanceof Exception ? (Exception)e.getCause():e;
+            }
+         }
+      }
+      if(failure != null)
+      {
+         throw failure;
+      }
+   }
+
+   private static String getContextRoot(String archiveName)
+   {
+      int extension = archiveName.lastIndexOf('.');
+      return extension == -1 ? archiveName:archiveName.substring(0, extension);
+   }
+
+   private static class Entry
+   {
+      private Context context;
+      
+      private Archive<?> archive;
+      
+      private Future<?> undeployment;
+      
+      public Entry(Context context, Archive<?> archive, Future<?> undeployment)
+      {
+         this.context = context;
+         this.archive = archive;
+         this.undeployment = undeployment;
+      }
+   }
+}
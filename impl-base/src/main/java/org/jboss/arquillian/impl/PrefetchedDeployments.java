@@ -0,0 +1,264 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.arquillian.api.Run;
+import org.jboss.arquillian.api.RunModeType;
+import org.jboss.arquillian.spi.ServiceLoader;
+import org.jboss.arquillian.spi.TestClass;
+import org.jboss.shrinkwrap.api.Archive;
+
+/**
+ * Generates the deployments of upcoming Test Classes in the background.<br/>
+ * <br/>
+ * At most maxPrefetched deployments are generated or waiting to be taken at any time, the rest of the
+ * upcoming Test Classes are queued. The handoff to the Test Class is lock free, the first
+ * {@link #take(TestClass)} for a Test Class returns the prefetched deployment and schedules the next one.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class PrefetchedDeployments
+{
+   private ServiceLoader serviceLoader;
+
+   private String deploymentPackager;
+
+   private int maxPrefetched;
+
+   private ExecutorService executor;
+
+   private ConcurrentLinkedQueue<TestClass> pending = new ConcurrentLinkedQueue<TestClass>();
+
+   private ConcurrentMap<Class<?>, Future<Archive<?>>> prefetched = new ConcurrentHashMap<Class<?>, Future<Archive<?>>>();
+
+   private AtomicInteger outstanding = new AtomicInteger();
+
+   /**
+    * @param serviceLoader The ServiceLoader used to create the deployments
+    * @param maxPrefetched Max number of deployments generated ahead of time, and the number of worker Threads
+    */
+   public PrefetchedDeployments(ServiceLoader serviceLoader, int maxPrefetched)
+   {
+      this(serviceLoader, null, maxPrefetched);
+   }
+
+   /**
+    * @param serviceLoader The ServiceLoader used to create the deployments
+    * @param deploymentPackager The class name of the DeploymentPackager to use, null if only one is on the classpath
+    * @param maxPrefetched Max number of deployments generated ahead of time, and the number of worker Threads
+    */
+   public PrefetchedDeployments(ServiceLoader serviceLoader, String deploymentPackager, int maxPrefetched)
+   {
+      Validate.notNull(serviceLoader, "ServiceLoader must be specified");
+      if(maxPrefetched < 1)
+      {
+         throw new IllegalArgumentException("MaxPrefetched must be greater then 0");
+      }
+      this.serviceLoader = serviceLoader;
+      this.deploymentPackager = deploymentPackager;
+      this.maxPrefetched = maxPrefetched;
+      this.executor = Executors.newFixedThreadPool(maxPrefetched, new ThreadFactory()
+      {
+         private AtomicInteger count = new AtomicInteger();
+
+         public Thread newThread(Runnable r)
+         {
+            Thread thread = new Thread(r, "arquillian-deployment-prefetch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+   }
+
+   /**
+    * Queue the Test Class for background generation.
+    *
+    * @param testClass The upcoming Test Class
+    */
+   public void schedule(TestClass testClass)
+   {
+      Validate.notNull(testClass, "TestClass must be specified");
+
+      pending.add(testClass);
+      fill();
+   }
+
+   /**
+    * Take the prefetched deployment for the given Test Class, waits for it if it is still being generated.
+    *
+    * @param testClass The Test Class to get the deployment for
+    * @return The generated deployment, or null if the Test Class was not scheduled or not yet started
+    * @throws Exception The Exception thrown by the DeploymentGenerator
+    */
+   public Archive<?> take(TestClass testClass) throws Exception
+   {
+      Validate.notNull(testClass, "TestClass must be specified");
+
+      Future<Archive<?>> deployment = prefetched.remove(testClass.getJavaClass());
+      if(deployment == null)
+      {
+         // not started, generate it on the caller Thread instead
+         removePending(testClass);
+         return null;
+      }
+      outstanding.decrementAndGet();
+      fill();
+      try
+      {
+         return deployment.get();
+      }
+      catch (ExecutionException e)
+      {
+         if(e.getCause() instanceof Exception)
+         {
+            throw (Exception)e.getCause();
+         }
+         throw e;
+      }
+   }
+
+   /**
+    * Discard the prefetched deployment for the given Test Class, used when the Test Class is deployed 
+    * without it. Frees the prefetch slot for the next scheduled Test Class.
+    *
+    * @param testClass The Test Class to discard the deployment for
+    */
+   public void discard(TestClass testClass)
+   {
+      Validate.notNull(testClass, "TestClass must be specified");
+
+      Future<Archive<?>> deployment = prefetched.remove(testClass.getJavaClass());
+      if(deployment == null)
+      {
+         removePending(testClass);
+         return;
+      }
+      // a running generation is left to finish, the result is dropped
+      deployment.cancel(false);
+      outstanding.decrementAndGet();
+      fill();
+   }
+
+   /**
+    * Stop all background work, deployments not taken are discarded.
+    */
+   public void shutdown()
+   {
+      pending.clear();
+      prefetched.clear();
+      executor.shutdownNow();
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private void fill()
+   {
+      while(true)
+      {
+         int current = outstanding.get();
+         if(current >= maxPrefetched)
+         {
+            return;
+         }
+         if(!outstanding.compareAndSet(current, current + 1))
+         {
+            continue;
+         }
+         TestClass testClass = pending.poll();
+         if(testClass == null)
+         {
+            outstanding.decrementAndGet();
+            return;
+         }
+         FutureTask<Archive<?>> task = new FutureTask<Archive<?>>(new Prefetch(testClass));
+         if(prefetched.putIfAbsent(testClass.getJavaClass(), task) != null)
+         {
+            // already scheduled
+            outstanding.decrementAndGet();
+            continue;
+         }
+         executor.execute(task);
+      }
+   }
+
+   private void removePending(TestClass testClass)
+   {
+      for(TestClass pendingClass : pending)
+      {
+         if(pendingClass.getJavaClass() == testClass.getJavaClass())
+         {
+            pending.remove(pendingClass);
+         }
+      }
+   }
+
+   /*
+    * Same rule as the ActivateRunModeTypeDeployment handler.
+    */
+   private DeploymentGenerator createGenerator(TestClass testClass)
+   {
+      if(testClass.isAnnotationPresent(Run.class) &&
+            testClass.getAnnotation(Run.class).value() == RunModeType.AS_CLIENT)
+      {
+         return new ApplicationArchiveDeploymentGenerator(serviceLoader);
+      }
+      return new ClientDeploymentGenerator(serviceLoader, deploymentPackager);
+   }
+
+   private class Prefetch implements Callable<Archive<?>>
+   {
+      private TestClass testClass;
+
+      private ClassLoader classLoader;
+
+      public Prefetch(TestClass testClass)
+      {
+         this.testClass = testClass;
+         this.classLoader = SecurityActions.getThreadContextClassLoader();
+      }
+
+      public Archive<?> call() throws Exception
+      {
+         Thread current = Thread.currentThread();
+         ClassLoader previous = current.getContextClassLoader();
+         current.setContextClassLoader(classLoader);
+         try
+         {
+            return createGenerator(testClass).generate(testClass);
+         }
+         finally
+         {
+            current.setContextClassLoader(previous);
+         }
+      }
+   }
+}
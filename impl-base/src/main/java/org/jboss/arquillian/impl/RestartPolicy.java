@@ -0,0 +1,331 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import javax.management.MBeanServerConnection;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+import org.jboss.arquillian.spi.Configuration;
+import org.jboss.arquillian.spi.EmbeddedContainerConfiguration;
+
+/**
+ * Suite scoped policy deciding when the container should be restarted based on samples of the 
+ * container JVM taken after each undeploy.<br/>
+ * <br/>
+ * A restart is requested when a memory pool is above {@link Configuration#getRestartMemoryThreshold()}, 
+ * when the average growth of a pool over the last samples would take it above the threshold within 
+ * {@link Configuration#getRestartTrendWindow()} deployments, or when the loaded classes or live threads 
+ * have grown more then allowed since the first sample after the container was started. A pool without a max, 
+ * e.g. Metaspace, has no threshold, its used bytes are checked against 
+ * {@link Configuration#getRestartUnboundedPoolGrowth()} since the first sample the same way.<br/>
+ * <br/>
+ * A restart is predicted ahead of time, see {@link #isRestartPredicted()}, when a pool is above 90% of 
+ * the threshold, is projected to cross it within twice the trend window, or when 3/4 of the allowed class or 
+ * thread growth is used.<br/>
+ * <br/>
+ * The reason for every restart is logged and kept in {@link #getRestartReasons()}.<br/>
+ * <br/>
+ * The container JVM is sampled through {@link Configuration#getRestartJmxServiceUrl()}. If it is not set, 
+ * a embedded container is sampled through the platform MBeanServer, any other container is not sampled.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ * @see ContainerHealth
+ */
+public class RestartPolicy
+{
+   private static final Logger log = Logger.getLogger(RestartPolicy.class.getName());
+   
+   private ContainerHealth baseline;
+   
+   private LinkedList<ContainerHealth> samples = new LinkedList<ContainerHealth>();
+   
+   private String restartReason;
+   
+   private boolean restartPredicted;
+   
+   private List<String> restartReasons = new ArrayList<String>();
+   
+   private JMXConnector connector;
+   
+   private MBeanServerConnection connection;
+   
+   private boolean samplingDisabled;
+   
+   /**
+    * @param configuration The current configuration, can be null
+    * @return true if any of the restart thresholds are set
+    */
+   public static boolean isEnabled(Configuration configuration)
+   {
+      return configuration != null && 
+            (configuration.getRestartMemoryThreshold() > 0 || 
+             configuration.getRestartLoadedClassGrowth() > -1 || 
+             configuration.getRestartThreadGrowth() > -1 ||
+             configuration.getRestartUnboundedPoolGrowth() > -1);
+   }
+   
+   /**
+    * Sample the container JVM and record the sample.
+    * 
+    * @param configuration The current configuration
+    * @return false if the container JVM can not be reached, see {@link Configuration#getRestartJmxServiceUrl()} 
+    * @throws Exception If the container JVM could not be sampled
+    */
+   public boolean sample(Configuration configuration) throws Exception
+   {
+      Validate.notNull(configuration, "Configuration must be specified");
+      
+      MBeanServerConnection connection = getConnection(configuration);
+      if(connection == null)
+      {
+         return false;
+      }
+      record(configuration, ContainerHealth.sample(connection));
+      return true;
+   }
+   
+   /**
+    * Record a sample and check it against the thresholds.
+    * 
+    * @param configuration The current configuration
+    * @param health The sample taken after a undeploy
+    */
+   public synchronized void record(Configuration configuration, ContainerHealth health)
+   {
+      Validate.notNull(configuration, "Configuration must be specified");
+      Validate.notNull(health, "Health must be specified");
+      
+      if(baseline == null)
+      {
+         baseline = health;
+      }
+      samples.addLast(health);
+      while(samples.size() > Math.max(configuration.getRestartTrendWindow(), 1) + 1)
+      {
+         samples.removeFirst();
+      }
+      if(restartReason == null)
+      {
+         restartReason = check(configuration, health, false);
+      }
+      restartPredicted = restartReason != null || check(configuration, health, true) != null;
+   }
+   
+   /**
+    * @return Why the container should be restarted, or null if it should not
+    */
+   public synchronized String getRestartReason()
+   {
+      return restartReason;
+   }
+   
+   /**
+    * @return true if the samples are getting close to a threshold
+    */
+   public synchronized boolean isRestartPredicted()
+   {
+      return restartPredicted;
+   }
+   
+   /**
+    * Record that the container was restarted, the samples of the previous container are discarded.
+    * 
+    * @param reason Why the container was restarted
+    */
+   public synchronized void restarted(String reason)
+   {
+      log.info("Restarting container: " + reason);
+      restartReasons.add(reason);
+      
+      restartReason = null;
+      restartPredicted = false;
+      baseline = null;
+      samples.clear();
+      // a remote container JVM has been replaced
+      close();
+   }
+   
+   /**
+    * @return The reasons for the restarts done so far, in order
+    */
+   public synchronized List<String> getRestartReasons()
+   {
+      return Collections.unmodifiableList(new ArrayList<String>(restartReasons));
+   }
+   
+   /**
+    * Close the connection to the container JVM.
+    */
+   public synchronized void close()
+   {
+      if(connector != null)
+      {
+         try
+         {
+            connector.close();
+         }
+         catch (IOException e) 
+         {
+            // the container is gone
+         }
+      }
+      connector = null;
+      connection = null;
+   }
+   
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private String check(Configuration configuration, ContainerHealth health, boolean predict)
+   {
+      for(String pool : health.getPoolNames())
+      {
+         long max = health.getMax(pool);
+         String reason = max > 0 ? 
+               checkPool(configuration, health, pool, max, predict):
+               checkUnboundedPool(configuration, health, pool, predict);
+         if(reason != null)
+         {
+            return reason;
+         }
+      }
+      int classGrowth = health.getLoadedClassCount() - baseline.getLoadedClassCount();
+      if(configuration.getRestartLoadedClassGrowth() > -1 && 
+            classGrowth > allowed(configuration.getRestartLoadedClassGrowth(), predict))
+      {
+         return "Loaded classes grew by " + classGrowth + " to " + health.getLoadedClassCount();
+      }
+      int threadGrowth = health.getThreadCount() - baseline.getThreadCount();
+      if(configuration.getRestartThreadGrowth() > -1 && 
+            threadGrowth > allowed(configuration.getRestartThreadGrowth(), predict))
+      {
+         return "Live threads grew by " + threadGrowth + " to " + health.getThreadCount();
+      }
+      return null;
+   }
+   
+   private String checkPool(Configuration configuration, ContainerHealth health, String pool, long max, boolean predict)
+   {
+      double threshold = configuration.getRestartMemoryThreshold() * (predict ? 0.9:1);
+      if(threshold <= 0)
+      {
+         return null;
+      }
+      long used = health.getUsed(pool);
+      if(used >= threshold * max)
+      {
+         return "Memory pool " + pool + " at " + percent(used, max) + "% of max " + max + " bytes";
+      }
+      return checkTrend(configuration, pool, used, max, predict);
+   }
+   
+   private String checkTrend(Configuration configuration, String pool, long used, long max, boolean predict)
+   {
+      int window = configuration.getRestartTrendWindow() * (predict ? 2:1);
+      if(window < 1 || samples.size() < 2)
+      {
+         return null;
+      }
+      long first = samples.getFirst().getUsed(pool);
+      if(first == -1)
+      {
+         return null;
+      }
+      long growth = (used - first) / (samples.size() - 1);
+      long projected = used + growth * window;
+      if(growth > 0 && projected >= configuration.getRestartMemoryThreshold() * max)
+      {
+         return "Memory pool " + pool + " growing " + growth + " bytes pr deployment, projected at " + 
+               percent(projected, max) + "% of max " + max + " bytes within " + window + " deployments";
+      }
+      return null;
+   }
+   
+   /*
+    * A pool without a max can not be held against the memory threshold, only against the allowed growth 
+    * since the baseline.
+    */
+   private String checkUnboundedPool(Configuration configuration, ContainerHealth health, String pool, boolean predict)
+   {
+      long allowedGrowth = configuration.getRestartUnboundedPoolGrowth();
+      long first = baseline.getUsed(pool);
+      if(allowedGrowth < 0 || first == -1)
+      {
+         return null;
+      }
+      long used = health.getUsed(pool);
+      long growth = used - first;
+      if(growth > allowed(allowedGrowth, predict))
+      {
+         return "Memory pool " + pool + " without max grew by " + growth + " bytes to " + used + " bytes";
+      }
+      return null;
+   }
+   
+   private long allowed(long growth, boolean predict)
+   {
+      return predict ? growth * 3 / 4:growth;
+   }
+   
+   private int allowed(int growth, boolean predict)
+   {
+      return predict ? growth * 3 / 4:growth;
+   }
+   
+   private long percent(long value, long max)
+   {
+      return value * 100 / max;
+   }
+   
+   private synchronized MBeanServerConnection getConnection(Configuration configuration) throws IOException
+   {
+      if(connection == null && !samplingDisabled)
+      {
+         if(configuration.getRestartJmxServiceUrl() == null)
+         {
+            if(configuration.getActiveContainerConfiguration() instanceof EmbeddedContainerConfiguration)
+            {
+               connection = ManagementFactory.getPlatformMBeanServer();
+            }
+            else
+            {
+               log.warning("No restartJmxServiceUrl set for a container not running in the test JVM, " + 
+                     "the container JVM is not sampled. Only restarting on max deployments");
+               samplingDisabled = true;
+            }
+         }
+         else
+         {
+            connector = JMXConnectorFactory.connect(new JMXServiceURL(configuration.getRestartJmxServiceUrl()));
+            connection = connector.getMBeanServerConnection();
+         }
+      }
+      return connection;
+   }
+}
@@ -0,0 +1,293 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+/**
+ * Build time generator of the service index used by the {@link DynamicServiceLoader}.<br/>
+ * <br/>
+ * Scans all META-INF/services files for Arquillian Services on the given classpath and writes them
+ * to one index file, so the Services can be resolved without enumerating the resources of every jar.<br/>
+ * <br/>
+ * Intended to be run after the test classes are compiled, e.g. with the exec-maven-plugin in the
+ * process-test-classes phase:<br/>
+ * <pre>
+ * java -classpath %classpath org.jboss.arquillian.impl.ServiceIndexGenerator ${project.build.testOutputDirectory}
+ * </pre>
+ * The Arquillian build runs it this way when the service-index profile is activated with -Darquillian.serviceIndex.<br/>
+ * <br/>
+ * The scanned classpath entries are recorded in the index with their modification time. If one of them 
+ * has changed since, or a entry providing Arquillian Services has been added to the classpath, the 
+ * {@link DynamicServiceLoader} ignores the index and scans the classpath.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class ServiceIndexGenerator
+{
+   private static final String SERVICES = "META-INF/services/";
+
+   private String classPath;
+
+   /**
+    * Generate the service index.
+    *
+    * @param args The output directory, optionally followed by the classpath to scan.
+    *    If no classpath is given, java.class.path is used.
+    */
+   public static void main(String[] args) throws Exception
+   {
+      if(args.length < 1)
+      {
+         throw new IllegalArgumentException(
+               "Usage: " + ServiceIndexGenerator.class.getName() + " outputDirectory [classpath]");
+      }
+      String classPath = args.length > 1 ? args[1]:System.getProperty("java.class.path");
+
+      new ServiceIndexGenerator(classPath).generate(new File(args[0]));
+   }
+
+   public ServiceIndexGenerator(String classPath)
+   {
+      Validate.notNull(classPath, "ClassPath must be specified");
+      this.classPath = classPath;
+   }
+
+   /**
+    * Scan the classpath and write the index to {@link DynamicServiceLoader#SERVICE_INDEX}
+    * relative to the output directory.
+    *
+    * @param outputDirectory The root of the classpath entry to write the index to
+    * @return The generated index file
+    * @throws IOException If the classpath could not be read or the index could not be written
+    */
+   public File generate(File outputDirectory) throws IOException
+   {
+      Validate.notNull(outputDirectory, "OutputDirectory must be specified");
+
+      Map<String, List<String>> services = scan();
+
+      File indexFile = new File(outputDirectory, DynamicServiceLoader.SERVICE_INDEX);
+      if(!indexFile.getParentFile().exists() && !indexFile.getParentFile().mkdirs())
+      {
+         throw new IOException("Could not create directory " + indexFile.getParentFile());
+      }
+
+      Writer writer = new OutputStreamWriter(new FileOutputStream(indexFile), "UTF-8");
+      try
+      {
+         writer.write("# Generated by " + ServiceIndexGenerator.class.getName() + ", do not edit\n");
+         for(String entry : classPath.split(File.pathSeparator))
+         {
+            if(entry.length() > 0)
+            {
+               writer.write(DynamicServiceLoader.SERVICE_INDEX_CLASSPATH + "=" + 
+                     getTimestamp(new File(entry)) + ":" + new File(entry).getAbsolutePath() + "\n");
+            }
+         }
+         for(Map.Entry<String, List<String>> service : services.entrySet())
+         {
+            for(String provider : service.getValue())
+            {
+               writer.write(service.getKey() + "=" + provider + "\n");
+            }
+         }
+      }
+      finally
+      {
+         writer.close();
+      }
+      return indexFile;
+   }
+
+   /**
+    * Scan the classpath for Arquillian Services.<br/>
+    * The providers of each Service are listed in classpath order.
+    *
+    * @return A Map of Service interface name to implementation names
+    * @throws IOException If a classpath entry could not be read
+    */
+   public Map<String, List<String>> scan() throws IOException
+   {
+      Map<String, List<String>> services = new TreeMap<String, List<String>>();
+      for(String entry : classPath.split(File.pathSeparator))
+      {
+         if(entry.length() == 0)
+         {
+            continue;
+         }
+         scan(new File(entry), services);
+      }
+      return services;
+   }
+
+   /**
+    * @param entry A classpath entry
+    * @return true if the entry provides any Arquillian Services
+    * @throws IOException If the entry could not be read
+    */
+   static boolean hasServices(File entry) throws IOException
+   {
+      Map<String, List<String>> services = new TreeMap<String, List<String>>();
+      new ServiceIndexGenerator(entry.getAbsolutePath()).scan(entry, services);
+      return !services.isEmpty();
+   }
+
+   /**
+    * The modification time of a classpath entry as far as the index is concerned. For a directory 
+    * the newest of its services directory and the files in it.
+    *
+    * @param entry The classpath entry
+    * @return The modification time, 0 if the entry does not exist
+    */
+   static long getTimestamp(File entry)
+   {
+      if(!entry.isDirectory())
+      {
+         return entry.lastModified();
+      }
+      File servicesDirectory = new File(entry, SERVICES);
+      long timestamp = servicesDirectory.lastModified();
+      File[] serviceFiles = servicesDirectory.listFiles();
+      if(serviceFiles != null)
+      {
+         for(File serviceFile : serviceFiles)
+         {
+            timestamp = Math.max(timestamp, serviceFile.lastModified());
+         }
+      }
+      return timestamp;
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private void scan(File entry, Map<String, List<String>> services) throws IOException
+   {
+      if(entry.isDirectory())
+      {
+         scanDirectory(entry, services);
+      }
+      else if(entry.isFile())
+      {
+         scanJar(entry, services);
+      }
+   }
+
+   private void scanDirectory(File directory, Map<String, List<String>> services) throws IOException
+   {
+      File servicesDirectory = new File(directory, SERVICES);
+      String[] serviceFiles = servicesDirectory.list();
+      if(serviceFiles == null)
+      {
+         return;
+      }
+      Arrays.sort(serviceFiles);
+      for(String serviceFile : serviceFiles)
+      {
+         File file = new File(servicesDirectory, serviceFile);
+         if(serviceFile.startsWith(DynamicServiceLoader.SERVICE_INDEX_PREFIX) && file.isFile())
+         {
+            readServiceFile(serviceFile, new FileInputStream(file), services);
+         }
+      }
+   }
+
+   private void scanJar(File file, Map<String, List<String>> services) throws IOException
+   {
+      JarFile jar;
+      try
+      {
+         jar = new JarFile(file);
+      }
+      catch (IOException e)
+      {
+         // not a jar, nothing to index
+         return;
+      }
+      try
+      {
+         Enumeration<JarEntry> entries = jar.entries();
+         while(entries.hasMoreElements())
+         {
+            JarEntry entry = entries.nextElement();
+            if(!entry.isDirectory() && entry.getName().startsWith(SERVICES + DynamicServiceLoader.SERVICE_INDEX_PREFIX))
+            {
+               readServiceFile(
+                     entry.getName().substring(SERVICES.length()),
+                     jar.getInputStream(entry),
+                     services);
+            }
+         }
+      }
+      finally
+      {
+         jar.close();
+      }
+   }
+
+   private void readServiceFile(String service, InputStream is, Map<String, List<String>> services) throws IOException
+   {
+      List<String> providers = services.get(service);
+      if(providers == null)
+      {
+         providers = new ArrayList<String>();
+         services.put(service, providers);
+      }
+      BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"));
+      try
+      {
+         String line = reader.readLine();
+         while (null != line)
+         {
+            final int comment = line.indexOf('#');
+            if (comment > -1)
+            {
+               line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (line.length() > 0 && !providers.contains(line))
+            {
+               providers.add(line);
+            }
+            line = reader.readLine();
+         }
+      }
+      finally
+      {
+         reader.close();
+      }
+   }
+}
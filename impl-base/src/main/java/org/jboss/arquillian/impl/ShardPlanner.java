@@ -0,0 +1,117 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Partitions test classes into shards of about the same total execution time.<br/>
+ * <br/>
+ * The classes are assigned longest first to the shard with the least total time. Classes without a 
+ * recorded duration are estimated as the average of the recorded ones, so a empty history 
+ * balances on class count.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ * @see DurationHistory
+ */
+public class ShardPlanner
+{
+   private DurationHistory history;
+   
+   public ShardPlanner(DurationHistory history)
+   {
+      Validate.notNull(history, "History must be specified");
+      this.history = history;
+   }
+   
+   /**
+    * @param classNames The test classes to partition
+    * @param numberOfShards The number of shards to create
+    * @return numberOfShards lists of test class names, some might be empty if there are fewer classes then shards
+    */
+   public List<List<String>> plan(List<String> classNames, int numberOfShards)
+   {
+      Validate.notNull(classNames, "ClassNames must be specified");
+      if(numberOfShards < 1)
+      {
+         throw new IllegalArgumentException("NumberOfShards must be a positive number");
+      }
+      
+      final long estimate = getEstimate(classNames);
+      List<String> longestFirst = new ArrayList<String>(classNames);
+      Collections.sort(longestFirst, new Comparator<String>()
+      {
+         public int compare(String o1, String o2)
+         {
+            long d1 = getDuration(o1, estimate);
+            long d2 = getDuration(o2, estimate);
+            return d1 < d2 ? 1:(d1 == d2 ? 0:-1);
+         }
+      });
+      
+      List<List<String>> shards = new ArrayList<List<String>>();
+      long[] totals = new long[numberOfShards];
+      for(int i = 0; i < numberOfShards; i++)
+      {
+         shards.add(new ArrayList<String>());
+      }
+      for(String className : longestFirst)
+      {
+         int lightest = 0;
+         for(int i = 1; i < numberOfShards; i++)
+         {
+            if(totals[i] < totals[lightest])
+            {
+               lightest = i;
+            }
+         }
+         shards.get(lightest).add(className);
+         totals[lightest] += getDuration(className, estimate);
+      }
+      return shards;
+   }
+   
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private long getEstimate(List<String> classNames)
+   {
+      long total = 0;
+      int recorded = 0;
+      for(String className : classNames)
+      {
+         Long duration = history.get(className);
+         if(duration != null)
+         {
+            total += duration;
+            recorded++;
+         }
+      }
+      return recorded == 0 ? 1:Math.max(1, total / recorded);
+   }
+   
+   private long getDuration(String className, long estimate)
+   {
+      Long duration = history.get(className);
+      return duration == null ? estimate:duration;
+   }
+}
@@ -0,0 +1,416 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jboss.arquillian.api.Deployment;
+import org.jboss.arquillian.api.RunModeType;
+import org.jboss.arquillian.api.SharedDeployment;
+import org.jboss.arquillian.spi.Configuration;
+import org.jboss.arquillian.spi.ContainerMethodExecutor;
+import org.jboss.arquillian.spi.TestClass;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.Node;
+import org.jboss.shrinkwrap.api.asset.Asset;
+import org.jboss.shrinkwrap.impl.base.asset.ArchiveAsset;
+
+/**
+ * Suite scoped registry of the deployments shared between test classes.<br/>
+ * <br/>
+ * A deployment is shared if the {@link Deployment} method is annotated with {@link SharedDeployment},
+ * or if {@link Configuration#isShareDeployments()} is enabled and the {@link Deployment} method returns 
+ * a archive with the same content as a already deployed one. The content is compared before the test class 
+ * and the auxiliary archives are added, the same way {@link DeploymentOrder} groups the test classes.<br/>
+ * <br/>
+ * The upcoming test classes are registered as users of their shared deployment. A shared deployment is 
+ * idle when no running test class use it and no announced test class is waiting for it, idle deployments 
+ * are undeployed before the next deployment.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class SharedDeployments
+{
+   private static final String NAMED_PREFIX = "name:";
+
+   private static final String FINGERPRINT_PREFIX = "fingerprint:";
+
+   private static final String NOT_SHARED = "";
+
+   private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+   private Map<String, Entry> deployments = new TreeMap<String, Entry>();
+
+   private Map<Class<?>, String> keys = new ConcurrentHashMap<Class<?>, String>();
+
+   /**
+    * Get the key the deployment of the given test class is shared under.<br/>
+    * The key is calculated once pr test class.
+    *
+    * @param testClass The test class being deployed
+    * @param configuration The current configuration, can be null
+    * @return The key or null if the deployment should not be shared
+    */
+   public String getKey(TestClass testClass, Configuration configuration)
+   {
+      Validate.notNull(testClass, "TestClass must be specified");
+
+      String key = keys.get(testClass.getJavaClass());
+      if(key == null)
+      {
+         key = createKey(testClass, configuration);
+         keys.put(testClass.getJavaClass(), key);
+      }
+      return key == NOT_SHARED ? null:key;
+   }
+
+   /**
+    * Register a upcoming test class as a user of its shared deployment.
+    *
+    * @param testClass The upcoming test class
+    * @param configuration The current configuration, can be null
+    */
+   public synchronized void expect(TestClass testClass, Configuration configuration)
+   {
+      Entry entry = getEntry(testClass, configuration);
+      if(entry != null)
+      {
+         entry.expected.add(testClass.getJavaClass());
+      }
+   }
+
+   /**
+    * Get or create the Entry the deployment of the given test class is shared under.<br/>
+    * Callers should synchronize on the returned Entry while deploying.
+    *
+    * @param testClass The test class being deployed
+    * @param configuration The current configuration, can be null
+    * @return The Entry or null if the deployment should not be shared
+    */
+   public synchronized Entry getEntry(TestClass testClass, Configuration configuration)
+   {
+      String key = getKey(testClass, configuration);
+      if(key == null)
+      {
+         return null;
+      }
+      Entry entry = deployments.get(key);
+      if(entry == null)
+      {
+         entry = new Entry(
+               key.startsWith(NAMED_PREFIX), 
+               DeploymentOrder.getRunMode(testClass) == RunModeType.IN_CONTAINER);
+         deployments.put(key, entry);
+      }
+      return entry;
+   }
+
+   /**
+    * Register the test class as a running user of the Entry. A Entry in use is not idle.
+    *
+    * @param entry The Entry the test class use
+    * @param testClass The test class
+    */
+   public synchronized void join(Entry entry, TestClass testClass)
+   {
+      Validate.notNull(entry, "Entry must be specified");
+      Validate.notNull(testClass, "TestClass must be specified");
+
+      entry.expected.remove(testClass.getJavaClass());
+      entry.users++;
+   }
+
+   /**
+    * Unregister a running user of the Entry.
+    *
+    * @param entry The Entry the test class used
+    */
+   public synchronized void leave(Entry entry)
+   {
+      Validate.notNull(entry, "Entry must be specified");
+
+      if(entry.users > 0)
+      {
+         entry.users--;
+      }
+   }
+
+   /**
+    * Unregister a running user of the shared deployment of the given archive.
+    *
+    * @param archive The archive the test class used
+    * @return true if the archive is deployed as a shared deployment
+    */
+   public synchronized boolean leave(Archive<?> archive)
+   {
+      for(Entry entry : deployments.values())
+      {
+         if(entry.archive == archive)
+         {
+            leave(entry);
+            return true;
+         }
+      }
+      return false;
+   }
+
+   /**
+    * @param entry The Entry about to be deployed
+    * @param testClass The test class generating the deployment
+    * @return The other announced test classes to include in the deployment, empty unless running in container
+    */
+   public synchronized List<Class<?>> getTestClassesToInclude(Entry entry, TestClass testClass)
+   {
+      Validate.notNull(entry, "Entry must be specified");
+      Validate.notNull(testClass, "TestClass must be specified");
+
+      List<Class<?>> include = new ArrayList<Class<?>>();
+      if(entry.inContainer)
+      {
+         include.addAll(entry.expected);
+         include.remove(testClass.getJavaClass());
+      }
+      return include;
+   }
+
+   /**
+    * Remove the idle shared deployments from the registry.
+    *
+    * @return The deployed Entries that was removed
+    */
+   public synchronized Collection<Entry> removeIdle()
+   {
+      return remove(true);
+   }
+
+   /**
+    * Remove all shared deployments from the registry.
+    *
+    * @return The deployed Entries that was removed
+    */
+   public synchronized Collection<Entry> removeAll()
+   {
+      return remove(false);
+   }
+
+   /**
+    * Calculate a fingerprint of the archive content. Two archives with the same name and content
+    * have the same fingerprint.
+    *
+    * @param archive The archive to fingerprint
+    * @return A hex encoded SHA-1 of the archive content
+    */
+   public static String fingerprint(Archive<?> archive)
+   {
+      try
+      {
+         MessageDigest digest = MessageDigest.getInstance("SHA-1");
+         update(digest, archive);
+
+         byte[] hash = digest.digest();
+         StringBuilder sb = new StringBuilder(hash.length * 2);
+         for(byte b : hash)
+         {
+            sb.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+         }
+         return sb.toString();
+      }
+      catch (Exception e)
+      {
+         throw new RuntimeException("Could not fingerprint archive " + archive.getName(), e);
+      }
+   }
+
+   /**
+    * @param archive The archive to search, nested archives included
+    * @param javaClass The class to find
+    * @return true if the archive contains the class file 
+    */
+   public static boolean contains(Archive<?> archive, Class<?> javaClass)
+   {
+      Validate.notNull(archive, "Archive must be specified");
+      Validate.notNull(javaClass, "JavaClass must be specified");
+
+      String classFile = "/" + javaClass.getName().replace('.', '/') + ".class";
+      for(Node node : archive.getContent().values())
+      {
+         Asset asset = node.getAsset();
+         if(asset instanceof ArchiveAsset && contains(((ArchiveAsset)asset).getArchive(), javaClass))
+         {
+            return true;
+         }
+         if(node.getPath().get().endsWith(classFile))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private String createKey(TestClass testClass, Configuration configuration)
+   {
+      Method deploymentMethod = testClass.getMethod(Deployment.class);
+      if(deploymentMethod == null)
+      {
+         return NOT_SHARED;
+      }
+      if(deploymentMethod.isAnnotationPresent(SharedDeployment.class))
+      {
+         return NAMED_PREFIX + deploymentMethod.getAnnotation(SharedDeployment.class).value();
+      }
+      if(configuration != null && configuration.isShareDeployments())
+      {
+         // the user defined archive, the generated deployment also contains the test class
+         return FINGERPRINT_PREFIX + DeploymentOrder.getGroupKey(testClass);
+      }
+      return NOT_SHARED;
+   }
+
+   private Collection<Entry> remove(boolean idleOnly)
+   {
+      Collection<Entry> removed = new ArrayList<Entry>();
+      for(Entry entry : new ArrayList<Entry>(deployments.values()))
+      {
+         if(!idleOnly || (entry.users == 0 && entry.expected.isEmpty() && entry.isDeployed()))
+         {
+            deployments.values().remove(entry);
+            if(entry.isDeployed())
+            {
+               removed.add(entry);
+            }
+         }
+      }
+      return removed;
+   }
+
+   private static void update(MessageDigest digest, Archive<?> archive) throws Exception
+   {
+      digest.update(archive.getName().getBytes("UTF-8"));
+
+      // sort on path, the content Map has no defined order
+      Map<String, Node> content = new TreeMap<String, Node>();
+      for(Node node : archive.getContent().values())
+      {
+         content.put(node.getPath().get(), node);
+      }
+
+      byte[] buffer = new byte[4096];
+      for(Map.Entry<String, Node> node : content.entrySet())
+      {
+         digest.update(node.getKey().getBytes("UTF-8"));
+
+         Asset asset = node.getValue().getAsset();
+         if(asset instanceof ArchiveAsset)
+         {
+            // a exported nested archive is not stable, fingerprint the content
+            update(digest, ((ArchiveAsset)asset).getArchive());
+         }
+         else if(asset != null)
+         {
+            InputStream is = asset.openStream();
+            try
+            {
+               int read;
+               while((read = is.read(buffer)) != -1)
+               {
+                  digest.update(buffer, 0, read);
+               }
+            }
+            finally
+            {
+               is.close();
+            }
+         }
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - Entry -------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /**
+    * A shared deployment.
+    */
+   public static class Entry
+   {
+      private boolean named;
+
+      private boolean inContainer;
+
+      private Set<Class<?>> expected = new HashSet<Class<?>>();
+
+      private int users;
+
+      private volatile Archive<?> archive;
+
+      private volatile ContainerMethodExecutor executor;
+
+      Entry(boolean named, boolean inContainer)
+      {
+         this.named = named;
+         this.inContainer = inContainer;
+      }
+
+      public boolean isDeployed()
+      {
+         return archive != null;
+      }
+
+      public void deployed(Archive<?> archive, ContainerMethodExecutor executor)
+      {
+         this.executor = executor;
+         this.archive = archive;
+      }
+
+      public Archive<?> getArchive()
+      {
+         return archive;
+      }
+
+      public ContainerMethodExecutor getExecutor()
+      {
+         return executor;
+      }
+
+      /**
+       * A test class running in container can only use the deployment if it contains the test class. 
+       * A named {@link SharedDeployment} is trusted to contain all the test classes that use it.
+       * 
+       * @param testClass The test class
+       * @return true if the deployed archive can be used by the test class
+       */
+      public boolean canServe(TestClass testClass)
+      {
+         return isDeployed() && (named || !inContainer || contains(archive, testClass.getJavaClass()));
+      }
+   }
+}
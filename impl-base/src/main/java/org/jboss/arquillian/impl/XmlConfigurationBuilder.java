@@ -30,6 +30,7 @@ import org.jboss.arquillian.spi.Configuration;
 import org.jboss.arquillian.spi.ConfigurationException;
 import org.jboss.arquillian.spi.ContainerConfiguration;
 import org.jboss.arquillian.spi.ExtensionConfiguration;
+import org.jboss.arquillian.spi.PooledContainerConfiguration;
 import org.jboss.arquillian.spi.ServiceLoader;
 import org.w3c.dom.Document;
 import org.w3c.dom.NamedNodeMap;
@@ -57,6 +58,23 @@ public class XmlConfigurationBuilder implements ConfigurationBuilder
     */
    private static final String DEFAULT_RESOURCE_PATH = "arquillian.xml";
 
+   /**
+    * System property holding the shard number of a forked JVM, used to offset the ports of 
+    * the {@link PooledContainerConfiguration}s. Each shard gets its own range of pool instances, 
+    * as many as the container pool size plus one for the standby container.
+    */
+   public static final String SHARD_PROPERTY = "arquillian.shard";
+
+   /**
+    * System property overriding {@link Configuration#getDurationHistoryFile()}.
+    */
+   public static final String DURATION_HISTORY_PROPERTY = "arquillian.durationHistoryFile";
+
+   /**
+    * System property overriding {@link Configuration#isContainerDaemon()}.
+    */
+   public static final String CONTAINER_DAEMON_PROPERTY = "arquillian.containerDaemon";
+
    /**
     * The actual resourcePath
     */
@@ -131,9 +149,49 @@ public class XmlConfigurationBuilder implements ConfigurationBuilder
       {
          throw new ConfigurationException("Could not create configuration", e);
       }
+      return applySystemProperties(configuration);
+   }
+   
+   /*
+    * Settings given to a forked shard JVM or on the command line.
+    */
+   private Configuration applySystemProperties(Configuration configuration) throws ConfigurationException
+   {
+      String durationHistoryFile = System.getProperty(DURATION_HISTORY_PROPERTY);
+      if(durationHistoryFile != null)
+      {
+         configuration.setDurationHistoryFile(durationHistoryFile);
+      }
+      String containerDaemon = System.getProperty(CONTAINER_DAEMON_PROPERTY);
+      if(containerDaemon != null)
+      {
+         configuration.setContainerDaemon(Boolean.valueOf(containerDaemon.trim()));
+      }
+      String shard = System.getProperty(SHARD_PROPERTY);
+      if(shard != null)
+      {
+         try
+         {
+            log.fine("Shard: " + shard);
+            return configuration.forPoolInstance(Integer.parseInt(shard.trim()) * getInstancesPerShard(configuration));
+         }
+         catch (NumberFormatException e) 
+         {
+            throw new ConfigurationException("Could not parse " + SHARD_PROPERTY + " " + shard, e);
+         }
+      }
       return configuration;
    }
 
+   /*
+    * The pool instances used within one shard, the shard configuration is offset past the instances 
+    * of the previous shards so the pool and the standby container of different shards never collide.
+    */
+   private int getInstancesPerShard(Configuration configuration)
+   {
+      return Math.max(configuration.getContainerPoolSize(), 1) + (configuration.isStandbyContainer() ? 1:0);
+   }
+
    private Document loadArquillianConfiguration(String resourcePath) throws Exception
    {
       InputStream inputStream = null;
@@ -16,10 +16,13 @@
  */
 package org.jboss.arquillian.impl.context;
 
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.jboss.arquillian.impl.Validate;
+import org.jboss.arquillian.impl.event.DispatchTable;
 import org.jboss.arquillian.impl.event.EventManager;
 import org.jboss.arquillian.impl.event.MapEventManager;
 import org.jboss.arquillian.spi.Context;
@@ -29,7 +32,10 @@ import org.jboss.arquillian.spi.event.suite.EventHandler;
 
 
 /**
- * AbstractEventContext
+ * AbstractEventContext<br/>
+ * <br/>
+ * The parent of a context never changes, the chain of contexts up to the root is resolved once and 
+ * {@link #fire(Event)} and {@link #get(Class)} walk it as a array instead of recursing through the parents.
  *
  * @author <a href="mailto:aknutsen@redhat.com">Aslak Knutsen</a>
  * @version $Revision: $
@@ -41,10 +47,12 @@ public abstract class AbstractEventContext implements Context
    // TODO: create ObjectStore
    private Map<Class<?>, Object> objectStore;
    
+   private volatile Context[] chain;
+   
    public AbstractEventContext()
    {
       this.eventManager = new MapEventManager();
-      this.objectStore = new HashMap<Class<?>, Object>();
+      this.objectStore = new ConcurrentHashMap<Class<?>, Object>();
    }
 
    /* (non-Javadoc)
@@ -55,6 +63,17 @@ public abstract class AbstractEventContext implements Context
       eventManager.register(eventType, handler);
    }
    
+   /**
+    * Register all handlers of a precompiled {@link DispatchTable}.<br/>
+    * If no other handlers are registered, the table is shared as is with this context.
+    * 
+    * @param table The registrations to add
+    */
+   public void register(DispatchTable table)
+   {
+      eventManager.register(table);
+   }
+   
    /**
     * @return
     */
@@ -82,16 +101,18 @@ public abstract class AbstractEventContext implements Context
    {
       Validate.notNull(type, "Type must be specified");
       
-      B instance = (B)objectStore.get(type);
-      if(instance == null) 
+      Context[] contexts = getChain();
+      for(int i = contexts.length - 1; i >= 0; i--)
       {
-         Context parentContext = getParentContext();
-         if(parentContext != null) 
+         Context context = contexts[i];
+         Object instance = context instanceof AbstractEventContext ? 
+               ((AbstractEventContext)context).objectStore.get(type):context.get(type);
+         if(instance != null)
          {
-            instance = parentContext.get(type);
+            return (B)instance;
          }
       }
-      return instance;
+      return null;
    }
    
    /* (non-Javadoc)
@@ -107,11 +128,40 @@ public abstract class AbstractEventContext implements Context
     */
    public void fire(Event event)
    {
-      Context parent = getParentContext();
-      if(parent != null)
+      Context[] contexts = getChain();
+      for(int i = 0; i < contexts.length; i++)
+      {
+         Context context = contexts[i];
+         if(context instanceof AbstractEventContext)
+         {
+            ((AbstractEventContext)context).getEventManager().fire(context, event);
+         }
+         else
+         {
+            context.fire(event);
+         }
+      }
+   }
+   
+   /*
+    * This context and its parents, root first. The chain ends at the first parent that is not a 
+    * AbstractEventContext, that one dispatches to its own parents.
+    */
+   private Context[] getChain()
+   {
+      Context[] current = chain;
+      if(current == null)
       {
-         parent.fire(event);
+         List<Context> contexts = new ArrayList<Context>();
+         Context context = this;
+         while(context != null)
+         {
+            contexts.add(0, context);
+            context = context instanceof AbstractEventContext ? context.getParentContext():null;
+         }
+         current = contexts.toArray(new Context[contexts.size()]);
+         chain = current;
       }
-      getEventManager().fire(this, event);
+      return current;
    }
 }
@@ -16,22 +16,39 @@
  */
 package org.jboss.arquillian.impl.context;
 
+import org.jboss.arquillian.impl.ContainerStandby;
+import org.jboss.arquillian.impl.DurationHistory;
+import org.jboss.arquillian.impl.PendingUndeployments;
+import org.jboss.arquillian.impl.RestartPolicy;
+import org.jboss.arquillian.impl.SharedDeployments;
+import org.jboss.arquillian.impl.event.DispatchTable;
 import org.jboss.arquillian.impl.handler.ActivateRunModeTypeDeployment;
 import org.jboss.arquillian.impl.handler.ActivateRunModeTypeClient;
+import org.jboss.arquillian.impl.handler.ArchivePrefetcher;
 import org.jboss.arquillian.impl.handler.ArchiveDeploymentExporter;
 import org.jboss.arquillian.impl.handler.ArchiveGenerator;
 import org.jboss.arquillian.impl.handler.ContainerCreator;
 import org.jboss.arquillian.impl.handler.ContainerDeployer;
+import org.jboss.arquillian.impl.handler.ContainerHealthSampler;
+import org.jboss.arquillian.impl.handler.ContainerLeaser;
 import org.jboss.arquillian.impl.handler.ContainerRestarter;
 import org.jboss.arquillian.impl.handler.ContainerStarter;
 import org.jboss.arquillian.impl.handler.ContainerStopper;
+import org.jboss.arquillian.impl.handler.ContainerTestBatcher;
 import org.jboss.arquillian.impl.handler.ContainerTestExecuter;
 import org.jboss.arquillian.impl.handler.ContainerUndeployer;
+import org.jboss.arquillian.impl.handler.DurationRecorder;
+import org.jboss.arquillian.impl.handler.SharedDeploymentUndeployer;
+import org.jboss.arquillian.spi.event.container.AfterUnDeploy;
 import org.jboss.arquillian.spi.event.suite.AfterClass;
 import org.jboss.arquillian.spi.event.suite.AfterSuite;
 import org.jboss.arquillian.spi.event.suite.BeforeClass;
 import org.jboss.arquillian.spi.event.suite.BeforeSuite;
+import org.jboss.arquillian.spi.event.suite.EventHandler;
+import org.jboss.arquillian.spi.event.suite.SuiteEvent;
 import org.jboss.arquillian.spi.event.suite.Test;
+import org.jboss.arquillian.spi.event.suite.UpcomingClasses;
+import org.jboss.arquillian.spi.event.suite.UpcomingMethods;
 
 /**
  * ClientContextCreator
@@ -41,6 +58,32 @@ import org.jboss.arquillian.spi.event.suite.Test;
  */
 public class ClientProfileBuilder implements ProfileBuilder
 {
+   /*
+    * The Class and Test handlers, and the DurationRecorder also registered in each SuiteContext, are created once 
+    * and shared by all Contexts of all ClientProfileBuilders. They keep their state in the Context they are 
+    * called with and must stay stateless. The Suite handlers are created pr SuiteContext.
+    */
+   private static final ContainerTestBatcher TEST_BATCHER = new ContainerTestBatcher();
+   
+   private static final DurationRecorder DURATION_RECORDER = new DurationRecorder();
+   
+   private static final DispatchTable CLASS_HANDLERS = DispatchTable.EMPTY
+         .with(BeforeClass.class, new ContainerLeaser())
+         .with(BeforeClass.class, DURATION_RECORDER)
+         // if RunMode AS_CLIENT a local DeploymentGenerator that returns the ApplicationArchive is bound to the 
+         // context, else the ClientDeploymentGenerator is used
+         .with(BeforeClass.class, new ActivateRunModeTypeDeployment())
+         .with(BeforeClass.class, new ArchiveGenerator())
+         .with(BeforeClass.class, new ArchiveDeploymentExporter())
+         .with(BeforeClass.class, new ContainerDeployer())
+         .with(UpcomingMethods.class, TEST_BATCHER)
+         .with(AfterClass.class, TEST_BATCHER)
+         .with(AfterClass.class, new ContainerUndeployer())
+         .with(AfterClass.class, DURATION_RECORDER)
+         .with(BeforeClass.class, new ActivateRunModeTypeClient());
+
+   private static final DispatchTable TEST_HANDLERS = DispatchTable.EMPTY
+         .with(Test.class, new ContainerTestExecuter());
    
    /* (non-Javadoc)
     * @see org.jboss.arquillian.impl.context.ProfileBuilder#buildSuiteContext(org.jboss.arquillian.impl.context.SuiteContext)
@@ -57,9 +100,31 @@ public class ClientProfileBuilder implements ProfileBuilder
 //      context.register(Test.class, timer);
 //      context.register(After.class, timer);
 
+      context.add(SharedDeployments.class, new SharedDeployments());
+      context.add(PendingUndeployments.class, new PendingUndeployments());
+      context.add(RestartPolicy.class, new RestartPolicy());
+      context.add(ContainerStandby.class, new ContainerStandby());
+      
       context.register(BeforeSuite.class, new ContainerCreator());
       context.register(BeforeSuite.class, new ContainerStarter());
-      context.register(BeforeClass.class, new ContainerRestarter());
+      EventHandler<SuiteEvent> restarter = new ContainerRestarter();
+      context.register(UpcomingClasses.class, restarter);
+      context.register(BeforeClass.class, restarter);
+      
+      // sample when the undeployment is done, it might be left running in the background. Registered in the 
+      // SuiteContext so it also sees the AfterUnDeploy of a deferred undeployment fired on a ClassContext
+      context.register(AfterUnDeploy.class, new ContainerHealthSampler());
+      
+      context.add(DurationHistory.class, new DurationHistory());
+      context.register(AfterSuite.class, DURATION_RECORDER);
+      
+      EventHandler<SuiteEvent> prefetcher = new ArchivePrefetcher();
+      context.register(UpcomingClasses.class, prefetcher);
+      context.register(AfterSuite.class, prefetcher);
+
+      EventHandler<SuiteEvent> sharedDeploymentUndeployer = new SharedDeploymentUndeployer();
+      context.register(UpcomingClasses.class, sharedDeploymentUndeployer);
+      context.register(AfterSuite.class, sharedDeploymentUndeployer);
       context.register(AfterSuite.class, new ContainerStopper());
    }
    
@@ -68,19 +133,7 @@ public class ClientProfileBuilder implements ProfileBuilder
     */
    public void buildClassContext(ClassContext context, Class<?> testClass)
    {
-      /*
-       * If RunMode AS_CLIENT a local DeploymentGenerator that returns the ApplicationArchive is bound to the context,
-       * else the ClientDeploymentGenerator is used. 
-       */
-      context.register(BeforeClass.class, new ActivateRunModeTypeDeployment());
-
-      context.register(BeforeClass.class, new ArchiveGenerator());
-      context.register(BeforeClass.class, new ArchiveDeploymentExporter());
-      context.register(BeforeClass.class, new ContainerDeployer());
-      context.register(AfterClass.class, new ContainerUndeployer());
-
-      context.register(BeforeClass.class, new ActivateRunModeTypeClient());
-
+      context.register(CLASS_HANDLERS);
    }
    
    /* (non-Javadoc)
@@ -88,6 +141,6 @@ public class ClientProfileBuilder implements ProfileBuilder
     */
    public void buildTestContext(TestContext context, Object testInstance)
    {
-      context.register(Test.class, new ContainerTestExecuter());
+      context.register(TEST_HANDLERS);
    }
 }
\ No newline at end of file
@@ -16,6 +16,7 @@
  */
 package org.jboss.arquillian.impl.context;
 
+import org.jboss.arquillian.impl.event.DispatchTable;
 import org.jboss.arquillian.impl.handler.TestCaseEnricher;
 import org.jboss.arquillian.impl.handler.TestEventExecuter;
 import org.jboss.arquillian.spi.event.suite.Before;
@@ -29,6 +30,13 @@ import org.jboss.arquillian.spi.event.suite.Test;
  */
 public class ContainerProfileBuilder implements ProfileBuilder
 {
+   /*
+    * The Test handlers are stateless, the table is built once and shared by all Contexts.
+    */
+   private static final DispatchTable TEST_HANDLERS = DispatchTable.EMPTY
+         .with(Before.class, new TestCaseEnricher())
+         .with(Test.class, new TestEventExecuter());
+
    /* (non-Javadoc)
     * @see org.jboss.arquillian.impl.context.ProfileBuilder#buildSuiteContext(org.jboss.arquillian.impl.context.SuiteContext)
     */
@@ -57,7 +65,6 @@ public class ContainerProfileBuilder implements ProfileBuilder
     */
    public void buildTestContext(TestContext context, Object testInstance)
    {
-      context.register(Before.class, new TestCaseEnricher());
-      context.register(Test.class, new TestEventExecuter());
+      context.register(TEST_HANDLERS);
    }
 }
@@ -39,6 +39,9 @@ import org.jboss.arquillian.spi.ServiceLoader;
  * {@link #destroyClassContext(Class)}<br/>
  *  <br/>
  * {@link #destroySuiteContext()}<br/>
+ * <br/>
+ * Class and Test Contexts can be created and destroyed concurrently from multiple Threads, they all 
+ * share the same SuiteContext.
  *
  * @author <a href="mailto:aknutsen@redhat.com">Aslak Knutsen</a>
  * @version $Revision: $
@@ -49,7 +52,7 @@ public class ContextLifecycleManager
    private ProfileBuilder profileBuilder;
    private ServiceLoader serviceLoader;
    
-   private SuiteContext suiteContext;
+   private volatile SuiteContext suiteContext;
    
    // TODO: move out into a ContextStore IF
    private ConcurrentHashMap<Class<?>, ClassContext> classContextStore;
@@ -83,13 +86,22 @@ public class ContextLifecycleManager
     */
    public SuiteContext createRestoreSuiteContext() 
    {
-      if(suiteContext == null) 
+      SuiteContext context = suiteContext;
+      if(context == null) 
       {
-         suiteContext = new SuiteContext(serviceLoader);
-         suiteContext.add(Configuration.class, configuration);
-         profileBuilder.buildSuiteContext(suiteContext);
+         synchronized (this)
+         {
+            context = suiteContext;
+            if(context == null)
+            {
+               context = new SuiteContext(serviceLoader);
+               context.add(Configuration.class, configuration);
+               profileBuilder.buildSuiteContext(context);
+               suiteContext = context;
+            }
+         }
       }
-      return suiteContext;
+      return context;
    }
    
    /**
@@ -127,16 +139,21 @@ public class ContextLifecycleManager
                ClassContext.class.getSimpleName());
       }
       
-      if(!classContextStore.containsKey(testClass)) 
+      ClassContext classContext = classContextStore.get(testClass);
+      if(classContext == null) 
       {
-         ClassContext classContext = new ClassContext(createRestoreSuiteContext()); 
-         profileBuilder.buildClassContext(classContext, testClass);
+         ClassContext newClassContext = new ClassContext(createRestoreSuiteContext()); 
+         profileBuilder.buildClassContext(newClassContext, testClass);
          
-         classContextStore.putIfAbsent(
+         classContext = classContextStore.putIfAbsent(
                testClass, 
-               classContext);
+               newClassContext);
+         if(classContext == null)
+         {
+            classContext = newClassContext;
+         }
       }
-      return classContextStore.get(testClass);
+      return classContext;
    }
    
    /**
@@ -166,15 +183,21 @@ public class ContextLifecycleManager
    {
       Validate.notNull(testInstance, "TestInstance must be specified");
       
-      if(!testContextStore.containsKey(testInstance)) 
+      TestContext testContext = testContextStore.get(testInstance);
+      if(testContext == null) 
       {
-         TestContext testContext = new TestContext(createRestoreClassContext(testInstance.getClass()));
-         profileBuilder.buildTestContext(testContext, testInstance);
-         testContextStore.putIfAbsent(
+         TestContext newTestContext = new TestContext(createRestoreClassContext(testInstance.getClass()));
+         profileBuilder.buildTestContext(newTestContext, testInstance);
+         
+         testContext = testContextStore.putIfAbsent(
                testInstance, 
-               testContext);
+               newTestContext);
+         if(testContext == null)
+         {
+            testContext = newTestContext;
+         }
       }
-      return testContextStore.get(testInstance);
+      return testContext;
    }
    
    /**
@@ -16,6 +16,7 @@
  */
 package org.jboss.arquillian.impl.context;
 
+import org.jboss.arquillian.impl.event.DispatchTable;
 import org.jboss.arquillian.impl.handler.ContainerTestExecuter;
 import org.jboss.arquillian.impl.handler.TestCaseEnricher;
 import org.jboss.arquillian.spi.event.suite.Before;
@@ -29,13 +30,16 @@ import org.jboss.arquillian.spi.event.suite.Test;
  */
 public class StandaloneProfileBuilder extends ClientProfileBuilder
 {
+   private static final DispatchTable TEST_HANDLERS = DispatchTable.EMPTY
+         .with(Before.class, new TestCaseEnricher())
+         .with(Test.class, new ContainerTestExecuter());
+
    /* (non-Javadoc)
     * @see org.jboss.arquillian.impl.context.ProfileBuilder#buildTestContext(org.jboss.arquillian.impl.context.TestContext)
     */
    @Override
    public void buildTestContext(TestContext context, Object testInstance)
    {
-      context.register(Before.class, new TestCaseEnricher());
-      context.register(Test.class, new ContainerTestExecuter());
+      context.register(TEST_HANDLERS);
    }
 }
@@ -0,0 +1,584 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl.daemon;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.zip.ZipInputStream;
+
+import org.jboss.arquillian.impl.DynamicServiceLoader;
+import org.jboss.arquillian.impl.Validate;
+import org.jboss.arquillian.impl.XmlConfigurationBuilder;
+import org.jboss.arquillian.impl.context.ClassContext;
+import org.jboss.arquillian.impl.context.SuiteContext;
+import org.jboss.arquillian.spi.Configuration;
+import org.jboss.arquillian.spi.ContainerMethodExecutor;
+import org.jboss.arquillian.spi.DeployableContainer;
+import org.jboss.arquillian.spi.ServiceLoader;
+import org.jboss.arquillian.spi.TestMethodExecutor;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.Node;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.importer.ZipImporter;
+import org.jboss.shrinkwrap.api.spec.EnterpriseArchive;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.jboss.shrinkwrap.api.spec.ResourceAdapterArchive;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+
+/**
+ * A long lived process owning a started {@link DeployableContainer}.<br/>
+ * <br/>
+ * The daemon listens on a loopback port for deploy, invoke and undeploy commands from a 
+ * {@link DaemonContainer}. The port is written to a file named after the daemon id, so the next 
+ * test run using the same configuration finds the already started container. The daemon stops 
+ * its container and exits when told to shut down, or when it has been idle for an hour.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ * @see DaemonContainer
+ */
+public class ContainerDaemon
+{
+   private static final Logger log = Logger.getLogger(ContainerDaemon.class.getName());
+   
+   private static final char[] HEX = "0123456789abcdef".toCharArray();
+   
+   private static final int IDLE_TIMEOUT = 60 * 60 * 1000;
+   
+   private DeployableContainer container;
+   
+   private SuiteContext context;
+   
+   private String id;
+   
+   private String classPathFingerprint;
+   
+   private ServerSocket serverSocket;
+   
+   private Map<String, ClassContext> deploymentContexts = new HashMap<String, ClassContext>();
+
+   private Map<String, ContainerMethodExecutor> executors = new HashMap<String, ContainerMethodExecutor>();
+   
+   private Map<String, ArchiveClassLoader> deploymentClassLoaders = new HashMap<String, ArchiveClassLoader>();
+   
+   private boolean shutdown = false;
+
+   /**
+    * Start the container and serve commands until shut down. 
+    * 
+    * @param args The daemon id and the fingerprint of the classpath the daemon is started with
+    */
+   public static void main(String[] args) throws Exception
+   {
+      if(args.length < 2)
+      {
+         throw new IllegalArgumentException(
+               "Usage: " + ContainerDaemon.class.getName() + " daemonId classPathFingerprint");
+      }
+      ServiceLoader serviceLoader = new DynamicServiceLoader();
+      Configuration configuration = new XmlConfigurationBuilder().build();
+      
+      SuiteContext context = new SuiteContext(serviceLoader);
+      context.add(Configuration.class, configuration);
+      
+      DeployableContainer container = serviceLoader.onlyOne(DeployableContainer.class);
+      container.setup(context, configuration);
+      container.start(context);
+      try
+      {
+         ContainerDaemon daemon = new ContainerDaemon(container, context, args[0], args[1]);
+         daemon.bind();
+         daemon.run();
+      }
+      finally
+      {
+         container.stop(context);
+      }
+      System.exit(0);
+   }
+   
+   public ContainerDaemon(DeployableContainer container, SuiteContext context, String id, String classPathFingerprint)
+   {
+      Validate.notNull(container, "Container must be specified");
+      Validate.notNull(context, "Context must be specified");
+      Validate.notNull(id, "Id must be specified");
+      Validate.notNull(classPathFingerprint, "ClassPathFingerprint must be specified");
+      
+      this.container = container;
+      this.context = context;
+      this.id = id;
+      this.classPathFingerprint = classPathFingerprint;
+   }
+   
+   /**
+    * Bind to a free loopback port and publish it in the port file.
+    * 
+    * @return The bound port
+    * @throws IOException If the port could not be bound or published
+    */
+   public int bind() throws IOException
+   {
+      serverSocket = new ServerSocket(0, 50, InetAddress.getByName(null));
+      serverSocket.setSoTimeout(IDLE_TIMEOUT);
+      
+      File portFile = getPortFile(id);
+      OutputStream os = new FileOutputStream(portFile);
+      try
+      {
+         os.write(String.valueOf(serverSocket.getLocalPort()).getBytes("UTF-8"));
+      }
+      finally
+      {
+         os.close();
+      }
+      portFile.deleteOnExit();
+      return serverSocket.getLocalPort();
+   }
+   
+   /**
+    * Serve one client connection at the time until shut down or idle.
+    */
+   public void run() throws IOException
+   {
+      try
+      {
+         while(!shutdown)
+         {
+            Socket socket;
+            try
+            {
+               socket = serverSocket.accept();
+            }
+            catch (SocketTimeoutException e) 
+            {
+               log.info("Container daemon " + id + " idle, shutting down");
+               break;
+            }
+            try
+            {
+               serve(socket);
+            }
+            catch (Exception e) 
+            {
+               // the client went away, wait for the next one
+               log.fine("Client disconnected: " + e.getMessage());
+            }
+            finally
+            {
+               socket.close();
+            }
+         }
+      }
+      finally
+      {
+         serverSocket.close();
+         getPortFile(id).delete();
+      }
+   }
+   
+   /**
+    * @param id The daemon id
+    * @return The file the port of the daemon is published in
+    */
+   static File getPortFile(String id)
+   {
+      return new File(System.getProperty("java.io.tmpdir"), "arquillian-daemon-" + id + ".port");
+   }
+   
+   /**
+    * A fingerprint of the jars on the classpath, changes when a jar is added, removed or rebuilt.<br/>
+    * <br/>
+    * Classpath directories are left out, they hold the classes being worked on and change on every 
+    * recompile. The test classes are loaded from the deployment, and the container configuration is 
+    * part of the daemon id.
+    * 
+    * @param classPath The classpath
+    * @return The fingerprint
+    */
+   static String getClassPathFingerprint(String classPath)
+   {
+      StringBuilder sb = new StringBuilder();
+      for(String entry : classPath.split(File.pathSeparator))
+      {
+         File file = new File(entry);
+         if(file.isFile())
+         {
+            sb.append(entry).append(':').append(file.length()).append(':').append(file.lastModified()).append(';');
+         }
+      }
+      return hash(sb.toString());
+   }
+   
+   static String hash(String value)
+   {
+      try
+      {
+         byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes("UTF-8"));
+         StringBuilder sb = new StringBuilder(digest.length * 2);
+         for(byte b : digest)
+         {
+            sb.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+         }
+         return sb.toString();
+      }
+      catch (Exception e) 
+      {
+         throw new RuntimeException("Could not hash " + value, e);
+      }
+   }
+   
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private void serve(Socket socket) throws Exception
+   {
+      ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+      out.flush();
+      ObjectInputStream in = new ObjectInputStream(socket.getInputStream());
+      while(!shutdown)
+      {
+         DaemonCommand command = (DaemonCommand)in.readObject();
+         Object response;
+         try
+         {
+            response = handle(command);
+         }
+         catch (Throwable e) 
+         {
+            response = e;
+         }
+         out.reset();
+         out.writeObject(response);
+         out.flush();
+      }
+   }
+   
+   private Object handle(DaemonCommand command) throws Exception
+   {
+      switch(command.getType())
+      {
+         case PING :
+            return classPathFingerprint.equals(command.getClassPathFingerprint());
+         case DEPLOY :
+         {
+            ClassContext deploymentContext = new ClassContext(context);
+            Archive<?> archive = importArchive(command.getArchiveName(), command.getArchive());
+            executors.put(command.getArchiveName(), container.deploy(deploymentContext, archive));
+            deploymentContexts.put(command.getArchiveName(), deploymentContext);
+            deploymentClassLoaders.put(
+                  command.getArchiveName(), 
+                  new ArchiveClassLoader(archive, Thread.currentThread().getContextClassLoader()));
+            return Boolean.TRUE;
+         }
+         case INVOKE :
+         {
+            ContainerMethodExecutor executor = executors.get(command.getArchiveName());
+            Validate.stateNotNull(executor, "No deployment named " + command.getArchiveName());
+            ArchiveClassLoader classLoader = deploymentClassLoaders.get(command.getArchiveName());
+            return executor.invoke(new DeploymentTestMethodExecutor(
+                  classLoader.loadTestClass(command.getClassName()), 
+                  command.getMethodName()));
+         }
+         case UNDEPLOY :
+         {
+            ClassContext deploymentContext = deploymentContexts.remove(command.getArchiveName());
+            executors.remove(command.getArchiveName());
+            deploymentClassLoaders.remove(command.getArchiveName());
+            if(deploymentContext != null)
+            {
+               container.undeploy(deploymentContext, ShrinkWrap.create(getArchiveType(command.getArchiveName()), command.getArchiveName()));
+            }
+            return Boolean.TRUE;
+         }
+         case SHUTDOWN :
+            shutdown = true;
+            return Boolean.TRUE;
+         default :
+            throw new IllegalArgumentException("Unknown command " + command.getType());
+      }
+   }
+   
+   private Archive<?> importArchive(String name, byte[] content)
+   {
+      return ShrinkWrap.create(getArchiveType(name), name)
+                  .as(ZipImporter.class)
+                  .importZip(new ZipInputStream(new ByteArrayInputStream(content)))
+                  .as(getArchiveType(name));
+   }
+   
+   private Class<? extends Archive<?>> getArchiveType(String name)
+   {
+      if(name.endsWith(".war"))
+      {
+         return WebArchive.class;
+      }
+      if(name.endsWith(".ear"))
+      {
+         return EnterpriseArchive.class;
+      }
+      if(name.endsWith(".rar"))
+      {
+         return ResourceAdapterArchive.class;
+      }
+      return JavaArchive.class;
+   }
+   
+   private static byte[] toBytes(InputStream is) throws IOException
+   {
+      try
+      {
+         ByteArrayOutputStream os = new ByteArrayOutputStream();
+         byte[] buffer = new byte[4096];
+         int read;
+         while((read = is.read(buffer)) != -1)
+         {
+            os.write(buffer, 0, read);
+         }
+         return os.toByteArray();
+      }
+      finally
+      {
+         is.close();
+      }
+   }
+   
+   /*
+    * The remote protocols only use the test class and method name to locate the test in the container, 
+    * a invoke in the daemon runs the test method on a instance of the class defined from the deployment.
+    */
+   private static class DeploymentTestMethodExecutor implements TestMethodExecutor
+   {
+      private Class<?> testClass;
+      
+      private String methodName;
+      
+      private Object instance;
+      
+      private Method method;
+      
+      public DeploymentTestMethodExecutor(Class<?> testClass, String methodName)
+      {
+         Validate.notNull(testClass, "TestClass must be specified");
+         Validate.notNull(methodName, "MethodName must be specified");
+         
+         this.testClass = testClass;
+         this.methodName = methodName;
+      }
+      
+      public Object getInstance()
+      {
+         if(instance == null)
+         {
+            try
+            {
+               instance = testClass.newInstance();
+            }
+            catch (Exception e) 
+            {
+               throw new RuntimeException("Could not create a instance of " + testClass.getName(), e);
+            }
+         }
+         return instance;
+      }
+      
+      public Method getMethod()
+      {
+         if(method == null)
+         {
+            for(Method candidate : testClass.getMethods())
+            {
+               if(candidate.getName().equals(methodName))
+               {
+                  method = candidate;
+                  break;
+               }
+            }
+            Validate.stateNotNull(method, "No method named " + methodName + " found on " + testClass.getName());
+         }
+         return method;
+      }
+      
+      public void invoke() throws Throwable
+      {
+         try
+         {
+            getMethod().invoke(getInstance());
+         }
+         catch (InvocationTargetException e) 
+         {
+            throw e.getTargetException();
+         }
+      }
+   }
+   
+   /*
+    * Defines the classes found in the deployment, and in the archives nested in it, before asking the 
+    * daemon classpath. The test frameworks and Arquillian itself are shared with the container and are 
+    * loaded from the daemon classpath first, except for the test class which always comes from the deployment.
+    */
+   private static class ArchiveClassLoader extends ClassLoader
+   {
+      private static final String[] CLASS_ROOTS = {"/", "/WEB-INF/classes/"};
+      
+      private static final String[] PARENT_FIRST_PACKAGES = {"java.", "junit.", "org.junit.", "org.testng.", "org.jboss.arquillian."};
+      
+      private Archive<?> archive;
+      
+      private List<Archive<?>> archives;
+      
+      public ArchiveClassLoader(Archive<?> archive, ClassLoader parent)
+      {
+         super(parent);
+         this.archive = archive;
+      }
+      
+      public synchronized Class<?> loadTestClass(String name) throws ClassNotFoundException
+      {
+         Class<?> loaded = findLoadedClass(name);
+         if(loaded == null)
+         {
+            loaded = defineArchiveClass(name);
+         }
+         if(loaded == null)
+         {
+            throw new ClassNotFoundException("Test class " + name + " not found in deployment " + archive.getName());
+         }
+         return loaded;
+      }
+      
+      @Override
+      protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException
+      {
+         Class<?> loaded = findLoadedClass(name);
+         if(loaded == null)
+         {
+            if(isParentFirst(name))
+            {
+               try
+               {
+                  return super.loadClass(name, resolve);
+               }
+               catch (ClassNotFoundException e) 
+               {
+                  // not on the daemon classpath, try the deployment
+               }
+            }
+            loaded = defineArchiveClass(name);
+            if(loaded == null)
+            {
+               return super.loadClass(name, resolve);
+            }
+         }
+         if(resolve)
+         {
+            resolveClass(loaded);
+         }
+         return loaded;
+      }
+      
+      private boolean isParentFirst(String name)
+      {
+         for(String prefix : PARENT_FIRST_PACKAGES)
+         {
+            if(name.startsWith(prefix))
+            {
+               return true;
+            }
+         }
+         return false;
+      }
+      
+      private Class<?> defineArchiveClass(String name) throws ClassNotFoundException
+      {
+         byte[] bytes = findClassBytes(name.replace('.', '/') + ".class");
+         if(bytes == null)
+         {
+            return null;
+         }
+         return defineClass(name, bytes, 0, bytes.length);
+      }
+      
+      private byte[] findClassBytes(String resource) throws ClassNotFoundException
+      {
+         try
+         {
+            for(Archive<?> candidate : getArchives())
+            {
+               for(String root : CLASS_ROOTS)
+               {
+                  Node node = candidate.get(root + resource);
+                  if(node != null && node.getAsset() != null)
+                  {
+                     return toBytes(node.getAsset().openStream());
+                  }
+               }
+            }
+            return null;
+         }
+         catch (IOException e) 
+         {
+            throw new ClassNotFoundException("Could not read " + resource + " from " + archive.getName(), e);
+         }
+      }
+      
+      private List<Archive<?>> getArchives()
+      {
+         if(archives == null)
+         {
+            archives = new ArrayList<Archive<?>>();
+            addArchives(archive);
+         }
+         return archives;
+      }
+      
+      private void addArchives(Archive<?> parent)
+      {
+         archives.add(parent);
+         for(Node node : parent.getContent().values())
+         {
+            String path = node.getPath().get();
+            if(node.getAsset() != null && (path.endsWith(".jar") || path.endsWith(".war")))
+            {
+               addArchives(ShrinkWrap.create(JavaArchive.class, path.substring(path.lastIndexOf('/') + 1))
+                     .as(ZipImporter.class)
+                     .importZip(new ZipInputStream(node.getAsset().openStream()))
+                     .as(JavaArchive.class));
+            }
+         }
+      }
+   }
+}
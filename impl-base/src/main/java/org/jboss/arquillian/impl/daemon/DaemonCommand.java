@@ -0,0 +1,122 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl.daemon;
+
+import java.io.Serializable;
+
+/**
+ * A command sent from the {@link DaemonContainer} to the {@link ContainerDaemon}.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+class DaemonCommand implements Serializable
+{
+   private static final long serialVersionUID = 1L;
+
+   enum Type 
+   {
+      PING, 
+      DEPLOY, 
+      INVOKE, 
+      UNDEPLOY, 
+      SHUTDOWN
+   }
+   
+   private Type type;
+   
+   private String archiveName;
+   
+   private byte[] archive;
+   
+   private String className;
+   
+   private String methodName;
+   
+   private String classPathFingerprint;
+   
+   private DaemonCommand(Type type)
+   {
+      this.type = type;
+   }
+   
+   static DaemonCommand ping(String classPathFingerprint)
+   {
+      DaemonCommand command = new DaemonCommand(Type.PING);
+      command.classPathFingerprint = classPathFingerprint;
+      return command;
+   }
+
+   static DaemonCommand deploy(String archiveName, byte[] archive)
+   {
+      DaemonCommand command = new DaemonCommand(Type.DEPLOY);
+      command.archiveName = archiveName;
+      command.archive = archive;
+      return command;
+   }
+
+   static DaemonCommand invoke(String archiveName, String className, String methodName)
+   {
+      DaemonCommand command = new DaemonCommand(Type.INVOKE);
+      command.archiveName = archiveName;
+      command.className = className;
+      command.methodName = methodName;
+      return command;
+   }
+
+   static DaemonCommand undeploy(String archiveName)
+   {
+      DaemonCommand command = new DaemonCommand(Type.UNDEPLOY);
+      command.archiveName = archiveName;
+      return command;
+   }
+
+   static DaemonCommand shutdown()
+   {
+      return new DaemonCommand(Type.SHUTDOWN);
+   }
+
+   Type getType()
+   {
+      return type;
+   }
+
+   String getArchiveName()
+   {
+      return archiveName;
+   }
+
+   byte[] getArchive()
+   {
+      return archive;
+   }
+
+   String getClassName()
+   {
+      return className;
+   }
+
+   String getMethodName()
+   {
+      return methodName;
+   }
+
+   String getClassPathFingerprint()
+   {
+      return classPathFingerprint;
+   }
+}
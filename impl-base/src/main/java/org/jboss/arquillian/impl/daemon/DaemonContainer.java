@@ -0,0 +1,525 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl.daemon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.logging.Logger;
+
+import org.jboss.arquillian.spi.Configuration;
+import org.jboss.arquillian.spi.ContainerMethodExecutor;
+import org.jboss.arquillian.spi.Context;
+import org.jboss.arquillian.spi.DeployableContainer;
+import org.jboss.arquillian.spi.DeploymentException;
+import org.jboss.arquillian.spi.DeploymentPackager;
+import org.jboss.arquillian.spi.LifecycleException;
+import org.jboss.arquillian.spi.TestMethodExecutor;
+import org.jboss.arquillian.spi.TestResult;
+import org.jboss.arquillian.spi.TestResult.Status;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.exporter.ZipExporter;
+
+/**
+ * A {@link DeployableContainer} forwarding to a container running in a {@link ContainerDaemon}.<br/>
+ * <br/>
+ * The daemon is identified by the arquillian.xml content, the active container configuration, the 
+ * classpath and the system properties set for the test JVM, the daemon is started with the same system properties. {@link #start(Context)} connects to a running daemon, or spawns a new one if none is running 
+ * or the jars on the classpath have changed since it was started. {@link #stop(Context)} only disconnects, 
+ * the daemon keeps the container running for the next test run.<br/>
+ * <br/>
+ * Test methods are invoked by class and method name in the daemon, the protocol of the real container 
+ * is used from there. Containers using the local protocol are not supported, the test instance only exists 
+ * in the test JVM.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ * @see ContainerDaemon
+ */
+public class DaemonContainer implements DeployableContainer
+{
+   private static final Logger log = Logger.getLogger(DaemonContainer.class.getName());
+   
+   private static final String CONFIGURATION_RESOURCE = "arquillian.xml";
+   
+   private static final long START_TIMEOUT = 5 * 60 * 1000;
+   
+   private static final long POLL_INTERVAL = 100;
+   
+   private static final String LOCAL_PACKAGER = "org.jboss.arquillian.protocol.local.LocalDeploymentPackager";
+   
+   private static final String[] JVM_PROPERTY_PREFIXES = {
+         "java.", "javax.", "sun.", "jdk.", "os.", "user.", "file.", "line.", "path.", "awt.", "surefire."};
+   
+   private String classPath;
+   
+   private String id;
+   
+   private Socket socket;
+   
+   private ObjectOutputStream out;
+   
+   private ObjectInputStream in;
+   
+   public DaemonContainer()
+   {
+      this(System.getProperty("java.class.path"));
+   }
+   
+   /**
+    * @param classPath The classpath the daemon is started with
+    */
+   public DaemonContainer(String classPath)
+   {
+      this.classPath = expandClassPath(classPath);
+   }
+   
+   /* (non-Javadoc)
+    * @see org.jboss.arquillian.spi.DeployableContainer#setup(org.jboss.arquillian.spi.Context, org.jboss.arquillian.spi.Configuration)
+    */
+   public void setup(Context context, Configuration configuration)
+   {
+      id = getDaemonId(configuration, classPath);
+   }
+
+   /* (non-Javadoc)
+    * @see org.jboss.arquillian.spi.DeployableContainer#start(org.jboss.arquillian.spi.Context)
+    */
+   public void start(Context context) throws LifecycleException
+   {
+      for(DeploymentPackager packager : context.getServiceLoader().all(DeploymentPackager.class))
+      {
+         if(LOCAL_PACKAGER.equals(packager.getClass().getName()))
+         {
+            throw new LifecycleException(
+                  "The container daemon requires a container using a remote protocol, the local protocol invokes " +
+                  "the test instance in the test JVM");
+         }
+      }
+      String fingerprint = ContainerDaemon.getClassPathFingerprint(classPath);
+      try
+      {
+         if(connect(fingerprint))
+         {
+            log.info("Reusing container daemon " + id);
+            return;
+         }
+         spawn(fingerprint);
+         long timeout = System.currentTimeMillis() + START_TIMEOUT;
+         while(!connect(fingerprint))
+         {
+            if(System.currentTimeMillis() > timeout)
+            {
+               throw new LifecycleException("Container daemon " + id + " did not start within " + START_TIMEOUT + " ms");
+            }
+            Thread.sleep(POLL_INTERVAL);
+         }
+      }
+      catch (LifecycleException e) 
+      {
+         throw e;
+      }
+      catch (Exception e) 
+      {
+         throw new LifecycleException("Could not start container daemon " + id, e);
+      }
+   }
+
+   /* (non-Javadoc)
+    * @see org.jboss.arquillian.spi.DeployableContainer#deploy(org.jboss.arquillian.spi.Context, org.jboss.shrinkwrap.api.Archive)
+    */
+   public ContainerMethodExecutor deploy(Context context, Archive<?> archive) throws DeploymentException
+   {
+      final String archiveName = archive.getName();
+      try
+      {
+         send(DaemonCommand.deploy(archiveName, toBytes(archive.as(ZipExporter.class).exportZip())));
+      }
+      catch (Exception e) 
+      {
+         throw new DeploymentException("Could not deploy " + archiveName + " to container daemon " + id, e);
+      }
+      return new ContainerMethodExecutor()
+      {
+         public TestResult invoke(TestMethodExecutor testMethodExecutor)
+         {
+            try
+            {
+               return (TestResult)send(DaemonCommand.invoke(
+                     archiveName,
+                     testMethodExecutor.getInstance().getClass().getName(),
+                     testMethodExecutor.getMethod().getName()));
+            }
+            catch (Throwable e) 
+            {
+               return new TestResult(Status.FAILED, e);
+            }
+         }
+      };
+   }
+
+   /* (non-Javadoc)
+    * @see org.jboss.arquillian.spi.DeployableContainer#undeploy(org.jboss.arquillian.spi.Context, org.jboss.shrinkwrap.api.Archive)
+    */
+   public void undeploy(Context context, Archive<?> archive) throws DeploymentException
+   {
+      try
+      {
+         send(DaemonCommand.undeploy(archive.getName()));
+      }
+      catch (Exception e) 
+      {
+         throw new DeploymentException("Could not undeploy " + archive.getName() + " from container daemon " + id, e);
+      }
+   }
+
+   /* (non-Javadoc)
+    * @see org.jboss.arquillian.spi.DeployableContainer#stop(org.jboss.arquillian.spi.Context)
+    */
+   public void stop(Context context) throws LifecycleException
+   {
+      // leave the daemon running for the next test run
+      disconnect();
+   }
+   
+   /**
+    * Stop the container daemon.
+    */
+   public void shutdown() throws Exception
+   {
+      send(DaemonCommand.shutdown());
+      disconnect();
+   }
+   
+   /**
+    * Calculate the id of the daemon for the given configuration.
+    * 
+    * @param configuration The current configuration
+    * @param classPath The classpath the daemon is started with
+    * @return A id unique for the configuration and classpath
+    */
+   static String getDaemonId(Configuration configuration, String classPath)
+   {
+      StringBuilder sb = new StringBuilder();
+      if(configuration != null && configuration.getActiveContainerConfiguration() != null)
+      {
+         sb.append(configuration.getActiveContainerConfiguration().getClass().getName());
+      }
+      sb.append(';').append(classPath).append(';');
+      for(Map.Entry<String, String> property : getSystemProperties().entrySet())
+      {
+         sb.append(property.getKey()).append('=').append(property.getValue()).append(';');
+      }
+      try
+      {
+         URL resource = Thread.currentThread().getContextClassLoader().getResource(CONFIGURATION_RESOURCE);
+         if(resource != null)
+         {
+            sb.append(new String(toBytes(resource.openStream()), "UTF-8"));
+         }
+      }
+      catch (IOException e) 
+      {
+         throw new RuntimeException("Could not read " + CONFIGURATION_RESOURCE, e);
+      }
+      return ContainerDaemon.hash(sb.toString());
+   }
+   
+   /**
+    * Replace jars only holding a manifest Class-Path, like the surefire booter jar, with the 
+    * entries they reference. The booter jar is recreated on every run and would give a new daemon id.
+    * 
+    * @param classPath The classpath to expand
+    * @return The expanded classpath
+    */
+   static String expandClassPath(String classPath)
+   {
+      StringBuilder sb = new StringBuilder();
+      for(String entry : classPath.split(File.pathSeparator))
+      {
+         if(entry.length() == 0)
+         {
+            continue;
+         }
+         String manifestClassPath = getManifestClassPath(new File(entry));
+         if(sb.length() > 0)
+         {
+            sb.append(File.pathSeparator);
+         }
+         sb.append(manifestClassPath == null ? entry:manifestClassPath);
+      }
+      return sb.toString();
+   }
+   
+   /**
+    * The system properties passed on to the daemon, the ones describing the JVM and the user environment 
+    * are set by the daemon JVM itself.
+    * 
+    * @return The system properties sorted by name
+    */
+   static Map<String, String> getSystemProperties()
+   {
+      Map<String, String> properties = new TreeMap<String, String>();
+      for(String name : System.getProperties().stringPropertyNames())
+      {
+         if(!isJvmProperty(name))
+         {
+            properties.put(name, System.getProperty(name));
+         }
+      }
+      return properties;
+   }
+   
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private static boolean isJvmProperty(String name)
+   {
+      for(String prefix : JVM_PROPERTY_PREFIXES)
+      {
+         if(name.startsWith(prefix))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+
+   private static String getManifestClassPath(File file)
+   {
+      if(!file.isFile())
+      {
+         return null;
+      }
+      try
+      {
+         JarFile jar = new JarFile(file);
+         try
+         {
+            Manifest manifest = jar.getManifest();
+            String value = manifest == null ? null:manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+            if(value == null || jar.size() > 2)
+            {
+               // a regular jar with dependencies, keep it as is
+               return null;
+            }
+            StringBuilder sb = new StringBuilder();
+            for(String reference : value.trim().split("\\s+"))
+            {
+               URL url = new URL(file.toURI().toURL(), reference);
+               if(!"file".equals(url.getProtocol()))
+               {
+                  return null;
+               }
+               if(sb.length() > 0)
+               {
+                  sb.append(File.pathSeparator);
+               }
+               sb.append(new File(url.toURI()).getPath());
+            }
+            return sb.toString();
+         }
+         finally
+         {
+            jar.close();
+         }
+      }
+      catch (Exception e) 
+      {
+         // not a jar
+         return null;
+      }
+   }
+
+   /*
+    * Connect to a running daemon, a daemon started from a different classpath is shut down.
+    */
+   private boolean connect(String fingerprint) throws Exception
+   {
+      File portFile = ContainerDaemon.getPortFile(id);
+      if(!portFile.isFile())
+      {
+         return false;
+      }
+      int port;
+      try
+      {
+         port = Integer.parseInt(new String(toBytes(new FileInputStream(portFile)), "UTF-8").trim());
+         socket = new Socket(InetAddress.getByName(null), port);
+      }
+      catch (IOException e) 
+      {
+         // the daemon died without removing the port file
+         portFile.delete();
+         return false;
+      }
+      catch (NumberFormatException e) 
+      {
+         // the port file is being written
+         return false;
+      }
+      out = new ObjectOutputStream(socket.getOutputStream());
+      out.flush();
+      in = new ObjectInputStream(socket.getInputStream());
+      
+      if(Boolean.TRUE.equals(send(DaemonCommand.ping(fingerprint))))
+      {
+         return true;
+      }
+      log.info("Classpath changed, restarting container daemon " + id);
+      shutdown();
+      long timeout = System.currentTimeMillis() + START_TIMEOUT;
+      while(portFile.exists() && System.currentTimeMillis() < timeout)
+      {
+         Thread.sleep(POLL_INTERVAL);
+      }
+      return false;
+   }
+   
+   private void disconnect()
+   {
+      if(socket != null)
+      {
+         try
+         {
+            socket.close();
+         }
+         catch (IOException e) 
+         {
+            // ignore, the daemon handles broken connections
+         }
+         socket = null;
+         out = null;
+         in = null;
+      }
+   }
+
+   private void spawn(String fingerprint) throws IOException
+   {
+      log.info("Starting container daemon " + id);
+      
+      String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+      List<String> command = new ArrayList<String>();
+      command.add(java);
+      for(Map.Entry<String, String> property : getSystemProperties().entrySet())
+      {
+         command.add("-D" + property.getKey() + "=" + property.getValue());
+      }
+      command.add("-cp");
+      command.add(classPath);
+      command.add(ContainerDaemon.class.getName());
+      command.add(id);
+      command.add(fingerprint);
+      ProcessBuilder builder = new ProcessBuilder(command);
+      builder.redirectErrorStream(true);
+      
+      final Process process = builder.start();
+      process.getOutputStream().close();
+      
+      // the Process buffers are limited, drain the daemon output to a log file while we are running
+      final File logFile = new File(System.getProperty("java.io.tmpdir"), "arquillian-daemon-" + id + ".log");
+      Thread pump = new Thread(new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               OutputStream os = new FileOutputStream(logFile);
+               try
+               {
+                  InputStream is = process.getInputStream();
+                  byte[] buffer = new byte[4096];
+                  int read;
+                  while((read = is.read(buffer)) != -1)
+                  {
+                     os.write(buffer, 0, read);
+                     os.flush();
+                  }
+               }
+               finally
+               {
+                  os.close();
+               }
+            }
+            catch (IOException e) 
+            {
+               // daemon output is best effort
+            }
+         }
+      }, "arquillian-daemon-output");
+      pump.setDaemon(true);
+      pump.start();
+   }
+   
+   private synchronized Object send(DaemonCommand command) throws Exception
+   {
+      if(out == null)
+      {
+         throw new IllegalStateException("Not connected to container daemon " + id);
+      }
+      out.reset();
+      out.writeObject(command);
+      out.flush();
+      
+      Object response = in.readObject();
+      if(response instanceof Exception)
+      {
+         throw (Exception)response;
+      }
+      if(response instanceof Throwable)
+      {
+         throw new RuntimeException((Throwable)response);
+      }
+      return response;
+   }
+   
+   private static byte[] toBytes(InputStream is) throws IOException
+   {
+      try
+      {
+         ByteArrayOutputStream os = new ByteArrayOutputStream();
+         byte[] buffer = new byte[4096];
+         int read;
+         while((read = is.read(buffer)) != -1)
+         {
+            os.write(buffer, 0, read);
+         }
+         return os.toByteArray();
+      }
+      finally
+      {
+         is.close();
+      }
+   }
+}
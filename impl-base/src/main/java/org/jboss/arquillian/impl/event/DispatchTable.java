@@ -0,0 +1,159 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl.event;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.arquillian.impl.Validate;
+import org.jboss.arquillian.spi.event.Event;
+import org.jboss.arquillian.spi.event.suite.EventHandler;
+
+/**
+ * A immutable, ordered table of {@link EventHandler} registrations.<br/>
+ * <br/>
+ * A handler registered for a event type receive all events of that type or any sub type, 
+ * e.g. a handler registered for ClassEvent will receive BeforeClass and AfterClass.<br/>
+ * The handlers for a concrete event class are resolved on first use and cached, so a table can be built 
+ * once and shared by all Contexts of a profile. Adding a registration creates a new table.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+@SuppressWarnings("unchecked")
+public final class DispatchTable
+{
+   private static final EventHandler[] NO_HANDLERS = new EventHandler[0];
+   
+   /**
+    * A table without any registrations.
+    */
+   public static final DispatchTable EMPTY = new DispatchTable(new Class<?>[0], NO_HANDLERS);
+   
+   private final Class<?>[] eventTypes;
+   private final EventHandler[] handlers;
+   
+   private final ConcurrentMap<Class<?>, EventHandler[]> resolved;
+   
+   private DispatchTable(Class<?>[] eventTypes, EventHandler[] handlers)
+   {
+      this.eventTypes = eventTypes;
+      this.handlers = handlers;
+      this.resolved = new ConcurrentHashMap<Class<?>, EventHandler[]>();
+   }
+   
+   /**
+    * Create a new table with the given registration appended.
+    * 
+    * @param <K>
+    * @param eventType The Type of {@link Event} to listen to
+    * @param handler The receiver of the {@link Event}
+    * @return A new DispatchTable
+    * @throws IllegalArgumentException if eventType or handler is null
+    */
+   public <K extends Event> DispatchTable with(Class<? extends K> eventType, EventHandler<? super K> handler)
+   {
+      Validate.notNull(eventType, "EventType must be specified");
+      Validate.notNull(handler, "EventHandler must be specified");
+      
+      return new DispatchTable(
+            append(eventTypes, new Class<?>[] {eventType}), 
+            append(handlers, new EventHandler[] {handler}));
+   }
+   
+   /**
+    * Create a new table with all registrations of the given table appended.
+    * 
+    * @param table The registrations to append
+    * @return A new DispatchTable, or this if table is empty
+    * @throws IllegalArgumentException if table is null
+    */
+   public DispatchTable withAll(DispatchTable table)
+   {
+      Validate.notNull(table, "DispatchTable must be specified");
+      
+      if(table.isEmpty())
+      {
+         return this;
+      }
+      if(isEmpty())
+      {
+         return table;
+      }
+      return new DispatchTable(
+            append(eventTypes, table.eventTypes), 
+            append(handlers, table.handlers));
+   }
+   
+   /**
+    * @return true if this table has no registrations
+    */
+   public boolean isEmpty()
+   {
+      return handlers.length == 0;
+   }
+   
+   /**
+    * Get the handlers that should receive a event of the given class, in registration order.<br/>
+    * The returned array is shared and must not be modified.
+    * 
+    * @param eventClass The concrete event class
+    * @return The handlers, never null
+    */
+   public EventHandler[] getHandlers(Class<? extends Event> eventClass)
+   {
+      if(isEmpty())
+      {
+         return NO_HANDLERS;
+      }
+      EventHandler[] eventHandlers = resolved.get(eventClass);
+      if(eventHandlers == null)
+      {
+         eventHandlers = resolve(eventClass);
+         resolved.putIfAbsent(eventClass, eventHandlers);
+      }
+      return eventHandlers;
+   }
+   
+   private EventHandler[] resolve(Class<? extends Event> eventClass)
+   {
+      List<EventHandler> eventHandlers = new ArrayList<EventHandler>();
+      for(int i = 0; i < eventTypes.length; i++)
+      {
+         if(eventTypes[i].isAssignableFrom(eventClass))
+         {
+            eventHandlers.add(handlers[i]);
+         }
+      }
+      if(eventHandlers.isEmpty())
+      {
+         return NO_HANDLERS;
+      }
+      return eventHandlers.toArray(new EventHandler[eventHandlers.size()]);
+   }
+   
+   private static <T> T[] append(T[] first, T[] second)
+   {
+      T[] result = (T[])Array.newInstance(first.getClass().getComponentType(), first.length + second.length);
+      System.arraycopy(first, 0, result, 0, first.length);
+      System.arraycopy(second, 0, result, first.length, second.length);
+      return result;
+   }
+}
@@ -42,4 +42,11 @@ public interface EventManager
     * @param handler
     */
    <K extends Event> void register(Class<? extends K> eventType, EventHandler<? super K> handler);
+   
+   /**
+    * Register all handlers of a precompiled {@link DispatchTable}.
+    * 
+    * @param table The registrations to add
+    */
+   void register(DispatchTable table);
 }
\ No newline at end of file
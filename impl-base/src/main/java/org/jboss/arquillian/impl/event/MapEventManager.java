@@ -16,18 +16,15 @@
  */
 package org.jboss.arquillian.impl.event;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
 import org.jboss.arquillian.impl.Validate;
 import org.jboss.arquillian.spi.Context;
 import org.jboss.arquillian.spi.event.Event;
 import org.jboss.arquillian.spi.event.suite.EventHandler;
 
 /**
- * EventManager
+ * EventManager backed by a {@link DispatchTable}.<br/>
+ * <br/>
+ * The table is replaced on every registration, firing only reads the current table and does not allocate.
  *
  * @author <a href="mailto:aknutsen@redhat.com">Aslak Knutsen</a>
  * @version $Revision: $
@@ -35,11 +32,24 @@ import org.jboss.arquillian.spi.event.suite.EventHandler;
 @SuppressWarnings("unchecked")
 public class MapEventManager implements EventManager
 {
-   private Map<Class<? extends Event>, List<EventHandler>> handlerRegistry;
+   private volatile DispatchTable dispatchTable;
    
    public MapEventManager()
    {
-      this.handlerRegistry = new ConcurrentHashMap<Class<? extends Event>, List<EventHandler>>();
+      this(DispatchTable.EMPTY);
+   }
+   
+   /**
+    * Create a new EventManager starting out with the registrations of a precompiled table.
+    * 
+    * @param dispatchTable The initial registrations
+    * @throws IllegalArgumentException if dispatchTable is null
+    */
+   public MapEventManager(DispatchTable dispatchTable)
+   {
+      Validate.notNull(dispatchTable, "DispatchTable must be specified");
+      
+      this.dispatchTable = dispatchTable;
    }
    
    public void fire(Context context, Event event) 
@@ -47,41 +57,37 @@ public class MapEventManager implements EventManager
       Validate.notNull(context, "Context must be specified");
       Validate.notNull(event, "Event must be specified");
 
-      List<EventHandler> handlers = handlerRegistry.get(event.getClass());
-      if(handlers != null)
+      Class<? extends Event> eventType = event.getClass();
+      EventHandler[] handlers = dispatchTable.getHandlers(eventType);
+      try
       {
-         try
+         for(int i = 0; i < handlers.length; i++)
          {
+            handlers[i].callback(context, event);
             /*
-               We need to use old style of for loop to avoid ConcurrentModificationException
                A handler could add a listener to the same event in it's callback.
-               ie: a DeployableContainer adding a SessionLifecyle handler to be added to the @BeforeClass 
+               ie: a DeployableContainer adding a SessionLifecyle handler to be added to the @BeforeClass
+               Registrations are only appended, so continue with the new handlers if the table changed. 
             */ 
-            for(int i = 0; i < handlers.size(); i++)
+            if(i == handlers.length - 1)
             {
-               EventHandler handler = handlers.get(i);
-               handler.callback(context, event);
+               handlers = dispatchTable.getHandlers(eventType);
             }
-         } 
-         catch (Exception e) 
-         {
-            throw new FiredEventException(context, event, e);
          }
+      } 
+      catch (Exception e) 
+      {
+         throw new FiredEventException(context, event, e);
       }
    }
    
-   // TODO: look at concurrency of add / list
-   public <K extends Event> void register(Class<? extends K> eventType, EventHandler<? super K> handler) 
+   public synchronized <K extends Event> void register(Class<? extends K> eventType, EventHandler<? super K> handler) 
    {
-      Validate.notNull(eventType, "EventType must be specified");
-      Validate.notNull(handler, "EventHandler must be specified");
+      dispatchTable = dispatchTable.with(eventType, handler);
+   }
    
-      List<EventHandler> handlers = handlerRegistry.get(eventType);
-      if(handlers == null)
-      {
-         handlers = new ArrayList<EventHandler>();
-      }
-      handlers.add(handler);
-      handlerRegistry.put(eventType, handlers);
+   public synchronized void register(DispatchTable table)
+   {
+      dispatchTable = dispatchTable.withAll(table);
    }
 }
@@ -24,6 +24,7 @@ import org.jboss.arquillian.spi.ApplicationArchiveGenerator;
 import org.jboss.arquillian.spi.ApplicationArchiveProcessor;
 import org.jboss.arquillian.spi.AuxiliaryArchiveAppender;
 import org.jboss.arquillian.spi.AuxiliaryArchiveProcessor;
+import org.jboss.arquillian.spi.Configuration;
 import org.jboss.arquillian.spi.Context;
 import org.jboss.arquillian.spi.DeploymentPackager;
 import org.jboss.arquillian.spi.event.suite.BeforeClass;
@@ -36,7 +37,9 @@ import org.jboss.arquillian.spi.event.suite.BeforeClass;
  * full Packager SPI. {@link DeploymentPackager}, {@link ApplicationArchiveGenerator}, {@link ApplicationArchiveProcessor}, {@link AuxiliaryArchiveAppender} and
  * {@link AuxiliaryArchiveProcessor}<br/>
  * <br/>  
- * 
+ *  <b>Imports:</b><br/>
+ *   {@link Configuration}<br/>
+ *  <br/>
  *  <b>Exports:</b><br/>
  *   {@link DeploymentGenerator}<br/>
  *   
@@ -61,6 +64,9 @@ public class ActivateRunModeTypeDeployment extends AbstractRunModeHandler<Before
    @Override
    protected void hasContainerRunMode(Context context)
    {
-      context.add(DeploymentGenerator.class, new ClientDeploymentGenerator(context.getServiceLoader()));      
+      Configuration configuration = context.get(Configuration.class);
+      context.add(DeploymentGenerator.class, new ClientDeploymentGenerator(
+            context.getServiceLoader(), 
+            configuration == null ? null:configuration.getDeploymentPackager()));
    }
 }
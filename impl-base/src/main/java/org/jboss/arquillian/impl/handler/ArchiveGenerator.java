@@ -16,8 +16,16 @@
  */
 package org.jboss.arquillian.impl.handler;
 
+import java.util.Collections;
+import java.util.List;
+
+import org.jboss.arquillian.impl.ClientDeploymentGenerator;
+import org.jboss.arquillian.impl.ContainerPool;
 import org.jboss.arquillian.impl.DeploymentGenerator;
+import org.jboss.arquillian.impl.PrefetchedDeployments;
+import org.jboss.arquillian.impl.SharedDeployments;
 import org.jboss.arquillian.impl.Validate;
+import org.jboss.arquillian.spi.Configuration;
 import org.jboss.arquillian.spi.Context;
 import org.jboss.arquillian.spi.event.suite.ClassEvent;
 import org.jboss.arquillian.spi.event.suite.EventHandler;
@@ -26,9 +34,12 @@ import org.jboss.shrinkwrap.api.Archive;
 /**
  * A Handler for generate the {@link Archive} used for deployment. <br/>
  * <br/>
- * 
+ * A deployed {@link SharedDeployments} archive that contains the test class is reused as is. <br/>
+ * <br/>
  *  <b>Imports:</b><br/>
  *   {@link DeploymentGenerator}<br/>
+ *   {@link SharedDeployments}<br/>
+ *   {@link PrefetchedDeployments}<br/>
  *  <br/>
  *  <b>Exports:</b><br/>
  *   {@link Archive}<br/>
@@ -46,11 +57,52 @@ public class ArchiveGenerator implements EventHandler<ClassEvent>
     */
    public void callback(Context context, ClassEvent event) throws Exception
    {
+      PrefetchedDeployments prefetched = context.get(PrefetchedDeployments.class);
+      SharedDeployments sharedDeployments = context.get(SharedDeployments.class);
+      // a shared deployment only exists in one of the pooled containers
+      SharedDeployments.Entry shared = sharedDeployments == null || context.get(ContainerPool.class) != null ? 
+            null:sharedDeployments.getEntry(event.getTestClass(), context.get(Configuration.class));
+      if(shared != null && shared.canServe(event.getTestClass()))
+      {
+         // a shared deployment is only generated once
+         discard(prefetched, event);
+         context.add(Archive.class, shared.getArchive());
+         return;
+      }
+      
       DeploymentGenerator generator = context.get(DeploymentGenerator.class);
       Validate.stateNotNull(generator, "No " + DeploymentGenerator.class.getName() + " found in context");
       
+      List<Class<?>> include = shared == null ? 
+            Collections.<Class<?>>emptyList():sharedDeployments.getTestClassesToInclude(shared, event.getTestClass());
+      if(!include.isEmpty() && generator instanceof ClientDeploymentGenerator)
+      {
+         // the first test class of a shared deployment adds the announced test classes that will use it
+         discard(prefetched, event);
+         context.add(Archive.class, ((ClientDeploymentGenerator)generator).generate(event.getTestClass(), include));
+         return;
+      }
+      
+      if(prefetched != null)
+      {
+         Archive<?> deployment = prefetched.take(event.getTestClass());
+         if(deployment != null)
+         {
+            context.add(Archive.class, deployment);
+            return;
+         }
+      }
+      
       Archive<?> deployment = generator.generate(event.getTestClass());
       
       context.add(Archive.class, deployment);
    }
+   
+   private void discard(PrefetchedDeployments prefetched, ClassEvent event)
+   {
+      if(prefetched != null)
+      {
+         prefetched.discard(event.getTestClass());
+      }
+   }
 }
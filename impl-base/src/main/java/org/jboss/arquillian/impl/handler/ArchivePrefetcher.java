@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl.handler;
+
+import org.jboss.arquillian.impl.PrefetchedDeployments;
+import org.jboss.arquillian.spi.Configuration;
+import org.jboss.arquillian.spi.Context;
+import org.jboss.arquillian.spi.TestClass;
+import org.jboss.arquillian.spi.event.suite.AfterSuite;
+import org.jboss.arquillian.spi.event.suite.EventHandler;
+import org.jboss.arquillian.spi.event.suite.SuiteEvent;
+import org.jboss.arquillian.spi.event.suite.UpcomingClasses;
+
+/**
+ * A Handler for generating the deployments of {@link UpcomingClasses} in the background. <br/>
+ * Does nothing unless {@link Configuration#getPrefetchDeployments()} is set. <br/>
+ * <br/>
+ *  <b>Imports:</b><br/>
+ *   {@link Configuration}<br/>
+ * <br/>
+ *  <b>Exports:</b><br/>
+ *   {@link PrefetchedDeployments}<br/>
+ *   
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ * @see ArchiveGenerator
+ */
+public class ArchivePrefetcher implements EventHandler<SuiteEvent>
+{
+   /* (non-Javadoc)
+    * @see org.jboss.arquillian.spi.event.suite.EventHandler#callback(org.jboss.arquillian.spi.Context, java.lang.Object)
+    */
+   public void callback(Context context, SuiteEvent event) throws Exception
+   {
+      if(event instanceof UpcomingClasses)
+      {
+         PrefetchedDeployments prefetched = getPrefetchedDeployments(context);
+         if(prefetched == null)
+         {
+            return;
+         }
+         for(TestClass testClass : ((UpcomingClasses)event).getTestClasses())
+         {
+            prefetched.schedule(testClass);
+         }
+      }
+      else if(event instanceof AfterSuite)
+      {
+         PrefetchedDeployments prefetched = context.get(PrefetchedDeployments.class);
+         if(prefetched != null)
+         {
+            prefetched.shutdown();
+         }
+      }
+   }
+   
+   private synchronized PrefetchedDeployments getPrefetchedDeployments(Context context)
+   {
+      PrefetchedDeployments prefetched = context.get(PrefetchedDeployments.class);
+      if(prefetched == null)
+      {
+         Configuration configuration = context.get(Configuration.class);
+         if(configuration == null || configuration.getPrefetchDeployments() < 1)
+         {
+            return null;
+         }
+         prefetched = new PrefetchedDeployments(
+               context.getServiceLoader(), 
+               configuration.getDeploymentPackager(), 
+               configuration.getPrefetchDeployments());
+         context.add(PrefetchedDeployments.class, prefetched);
+      }
+      return prefetched;
+   }
+}
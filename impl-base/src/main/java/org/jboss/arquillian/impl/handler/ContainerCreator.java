@@ -16,9 +16,15 @@
  */
 package org.jboss.arquillian.impl.handler;
 
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.arquillian.impl.ContainerPool;
+import org.jboss.arquillian.impl.daemon.DaemonContainer;
 import org.jboss.arquillian.spi.Configuration;
 import org.jboss.arquillian.spi.Context;
 import org.jboss.arquillian.spi.DeployableContainer;
+import org.jboss.arquillian.spi.PooledContainerConfiguration;
 import org.jboss.arquillian.spi.event.container.AfterSetup;
 import org.jboss.arquillian.spi.event.container.BeforeSetup;
 import org.jboss.arquillian.spi.event.suite.EventHandler;
@@ -27,6 +33,11 @@ import org.jboss.arquillian.spi.event.suite.SuiteEvent;
 /**
  * A Handler for creating and setting up a {@link DeployableContainer} for use. <br/>
  * <br/>
+ * If {@link Configuration#getContainerPoolSize()} is greater then 1 and the container supports it,
+ * one container is created pr instance and exported as a {@link ContainerPool}. <br/>
+ * If {@link Configuration#isContainerDaemon()} is enabled, a {@link DaemonContainer} forwarding to 
+ * a container kept running between test runs is created instead. <br/>
+ * <br/>
  *  <b>Fires:</b><br/>
  *   {@link BeforeSetup}<br/>
  *   {@link AfterSetup}<br/>
@@ -36,6 +47,7 @@ import org.jboss.arquillian.spi.event.suite.SuiteEvent;
  *  <br/>
  *  <b>Exports:</b><br/>
  *   {@link DeployableContainer}<br/>
+ *   {@link ContainerPool}<br/>
  *
  * @author <a href="mailto:aknutsen@redhat.com">Aslak Knutsen</a>
  * @version $Revision: $
@@ -50,11 +62,47 @@ public class ContainerCreator implements EventHandler<SuiteEvent>
     */
    public void callback(Context context, SuiteEvent event) throws Exception 
    {
-      DeployableContainer container = context.getServiceLoader().onlyOne(DeployableContainer.class);
+      Configuration configuration = context.get(Configuration.class);
+      int poolSize = getPoolSize(configuration);
+      if(poolSize > 1)
+      {
+         List<DeployableContainer> containers = new ArrayList<DeployableContainer>();
+         for(int i = 0; i < poolSize; i++)
+         {
+            containers.add(create(context, configuration.forPoolInstance(i)));
+         }
+         context.add(ContainerPool.class, new ContainerPool(containers));
+         context.add(DeployableContainer.class, containers.get(0));
+         return;
+      }
+      context.add(DeployableContainer.class, create(context, configuration));
+   }
+   
+   private DeployableContainer create(Context context, Configuration configuration)
+   {
+      DeployableContainer container;
+      if(configuration != null && configuration.isContainerDaemon())
+      {
+         container = new DaemonContainer();
+      }
+      else
+      {
+         container = context.getServiceLoader().onlyOne(DeployableContainer.class);
+      }
       
       context.fire(new BeforeSetup());
-      container.setup(context, context.get(Configuration.class));
-      context.add(DeployableContainer.class, container);
+      container.setup(context, configuration);
       context.fire(new AfterSetup());
+      return container;
+   }
+   
+   private int getPoolSize(Configuration configuration)
+   {
+      if(configuration == null || configuration.isContainerDaemon() ||
+            !(configuration.getActiveContainerConfiguration() instanceof PooledContainerConfiguration))
+      {
+         return 1;
+      }
+      return configuration.getContainerPoolSize();
    }
 }
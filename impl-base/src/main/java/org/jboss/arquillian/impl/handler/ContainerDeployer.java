@@ -16,12 +16,22 @@
  */
 package org.jboss.arquillian.impl.handler;
 
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.jboss.arquillian.impl.ContainerPool;
+import org.jboss.arquillian.impl.PendingUndeployments;
+import org.jboss.arquillian.impl.SharedDeployments;
 import org.jboss.arquillian.impl.Validate;
+import org.jboss.arquillian.spi.AsyncDeployableContainer;
+import org.jboss.arquillian.spi.Configuration;
 import org.jboss.arquillian.spi.ContainerMethodExecutor;
 import org.jboss.arquillian.spi.Context;
 import org.jboss.arquillian.spi.DeployableContainer;
 import org.jboss.arquillian.spi.event.container.AfterDeploy;
+import org.jboss.arquillian.spi.event.container.AfterUnDeploy;
 import org.jboss.arquillian.spi.event.container.BeforeDeploy;
+import org.jboss.arquillian.spi.event.container.BeforeUnDeploy;
 import org.jboss.arquillian.spi.event.suite.ClassEvent;
 import org.jboss.arquillian.spi.event.suite.EventHandler;
 import org.jboss.shrinkwrap.api.Archive;
@@ -29,13 +39,21 @@ import org.jboss.shrinkwrap.api.Archive;
 /**
  * A Handler for creating and deploying the generated {@link Archive} to the container. <br/>
  * <br/>
+ * If the deployment is shared, it is only deployed by the first test class that use it. The shared 
+ * deployments that are idle are undeployed before the next deployment. <br/>
+ * Pending undeployments with the same name or context root are completed before deploying. <br/>
+ * <br/>
  *  <b>Fires:</b><br/>
  *   {@link BeforeDeploy}<br/>
  *   {@link AfterDeploy}<br/>
+ *   {@link BeforeUnDeploy}<br/>
+ *   {@link AfterUnDeploy}<br/>
  * <br/>
  *  <b>Imports:</b><br/>
  *   {@link DeployableContainer}<br/>
  *   {@link Archive}<br/>
+ *   {@link SharedDeployments}<br/>
+ *   {@link PendingUndeployments}<br/>
  *  <br/>
  *  <b>Exports:</b><br/>
  *   {@link ContainerMethodExecutor}<br/>
@@ -58,9 +76,87 @@ public class ContainerDeployer implements EventHandler<ClassEvent>
       Archive<?> deployment = context.get(Archive.class);
       Validate.stateNotNull(deployment, "No " + Archive.class.getName() + " found in context");
       
+      SharedDeployments sharedDeployments = context.get(SharedDeployments.class);
+      // a shared deployment only exists in one of the pooled containers
+      SharedDeployments.Entry shared = sharedDeployments == null || context.get(ContainerPool.class) != null ? 
+            null:sharedDeployments.getEntry(event.getTestClass(), context.get(Configuration.class));
+      if(shared != null)
+      {
+         sharedDeployments.join(shared, event.getTestClass());
+      }
+      if(sharedDeployments != null)
+      {
+         // release the shared deployments no test class is waiting for before deploying the next
+         SharedDeploymentUndeployer.undeploy(context, container, sharedDeployments.removeIdle());
+      }
+      if(shared == null)
+      {
+         context.add(ContainerMethodExecutor.class, deploy(context, container, deployment));
+         return;
+      }
+      
+      try
+      {
+         synchronized (shared)
+         {
+            if(!shared.isDeployed())
+            {
+               shared.deployed(deployment, deploy(context, container, deployment));
+            }
+         }
+      }
+      catch (Exception e) 
+      {
+         sharedDeployments.leave(shared);
+         throw e;
+      }
+      if(!shared.canServe(event.getTestClass()))
+      {
+         // deployed before this test class was announced, so it is not part of it
+         sharedDeployments.leave(shared);
+         context.add(ContainerMethodExecutor.class, deploy(context, container, deployment));
+         return;
+      }
+      context.add(Archive.class, shared.getArchive());
+      context.add(ContainerMethodExecutor.class, shared.getExecutor());
+   }
+   
+   private ContainerMethodExecutor deploy(Context context, DeployableContainer container, Archive<?> deployment) throws Exception
+   {
+      PendingUndeployments pendingUndeployments = context.get(PendingUndeployments.class);
+      if(pendingUndeployments != null)
+      {
+         // only wait for the previous undeployments using the same name or context root
+         pendingUndeployments.awaitConflicting(deployment);
+      }
+      
       context.fire(new BeforeDeploy());
-      ContainerMethodExecutor executor = container.deploy(context, deployment);
-      context.add(ContainerMethodExecutor.class, executor);
+      ContainerMethodExecutor executor;
+      if(container instanceof AsyncDeployableContainer)
+      {
+         executor = get(((AsyncDeployableContainer)container).deployAsync(context, deployment));
+      }
+      else
+      {
+         executor = container.deploy(context, deployment);
+      }
       context.fire(new AfterDeploy());
+      return executor;
+   }
+   
+   private ContainerMethodExecutor get(Future<ContainerMethodExecutor> deployment) throws Exception
+   {
+      try
+      {
+         return deployment.get();
+      }
+      catch (ExecutionException e) 
+      {
+         if(e.getCause() instanceof Exception)
+         {
+            throw (Exception)e.getCause();
+         }
+         throw e;
+      }
    }
 }
@@ -0,0 +1,70 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl.handler;
+
+import java.util.logging.Logger;
+
+import org.jboss.arquillian.impl.ContainerPool;
+import org.jboss.arquillian.impl.RestartPolicy;
+import org.jboss.arquillian.spi.Configuration;
+import org.jboss.arquillian.spi.Context;
+import org.jboss.arquillian.spi.event.container.AfterUnDeploy;
+import org.jboss.arquillian.spi.event.container.ContainerEvent;
+import org.jboss.arquillian.spi.event.suite.EventHandler;
+
+/**
+ * A Handler for sampling the container JVM into the {@link RestartPolicy} after the deployment is undeployed. <br/>
+ * Registered for {@link AfterUnDeploy} in the suite context, so a undeployment left running in the background 
+ * is only sampled when it is done, whichever class context fires it. <br/>
+ * Does nothing if no restart threshold is set in the {@link Configuration}, or if the containers are in a 
+ * {@link ContainerPool}, pooled containers are not restarted on their health. If the container JVM can not 
+ * be sampled, only {@link Configuration#getMaxDeploymentsBeforeRestart()} is used. <br/>
+ * <br/>
+ *  <b>Imports:</b><br/>
+ *   {@link Configuration}<br/>
+ *   {@link RestartPolicy}<br/>
+ *   {@link ContainerPool}<br/>
+ *   
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ * @see RestartPolicy
+ */
+public class ContainerHealthSampler implements EventHandler<ContainerEvent>
+{
+   private static final Logger log = Logger.getLogger(ContainerHealthSampler.class.getName());
+   
+   /* (non-Javadoc)
+    * @see org.jboss.arquillian.spi.event.suite.EventHandler#callback(org.jboss.arquillian.spi.Context, java.lang.Object)
+    */
+   public void callback(Context context, ContainerEvent event) throws Exception
+   {
+      Configuration configuration = context.get(Configuration.class);
+      RestartPolicy policy = context.get(RestartPolicy.class);
+      if(policy == null || !RestartPolicy.isEnabled(configuration) || context.get(ContainerPool.class) != null)
+      {
+         return;
+      }
+      try
+      {
+         policy.sample(configuration);
+      }
+      catch (Exception e) 
+      {
+         log.warning("Could not sample container JVM, only restarting on max deployments: " + e.getMessage());
+      }
+   }
+}
@@ -0,0 +1,52 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl.handler;
+
+import org.jboss.arquillian.impl.ContainerPool;
+import org.jboss.arquillian.spi.Context;
+import org.jboss.arquillian.spi.DeployableContainer;
+import org.jboss.arquillian.spi.event.suite.ClassEvent;
+import org.jboss.arquillian.spi.event.suite.EventHandler;
+
+/**
+ * A Handler for leasing a free {@link DeployableContainer} from the {@link ContainerPool} to the test class. <br/>
+ * Blocks until a container is free. The container is released by the {@link ContainerUndeployer}. <br/>
+ * <br/>
+ *  <b>Imports:</b><br/>
+ *   {@link ContainerPool}<br/>
+ *  <br/>
+ *  <b>Exports:</b><br/>
+ *   {@link DeployableContainer}<br/>
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ * @see ContainerPool
+ */
+public class ContainerLeaser implements EventHandler<ClassEvent>
+{
+   /* (non-Javadoc)
+    * @see org.jboss.arquillian.spi.event.suite.EventHandler#callback(org.jboss.arquillian.spi.Context, java.lang.Object)
+    */
+   public void callback(Context context, ClassEvent event) throws Exception
+   {
+      ContainerPool pool = context.get(ContainerPool.class);
+      if(pool != null)
+      {
+         pool.acquire(context);
+      }
+   }
+}
@@ -16,18 +16,41 @@
  */
 package org.jboss.arquillian.impl.handler;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.arquillian.impl.ContainerPool;
+import org.jboss.arquillian.impl.ContainerStandby;
+import org.jboss.arquillian.impl.DeploymentOrder;
+import org.jboss.arquillian.impl.PendingUndeployments;
+import org.jboss.arquillian.impl.RestartPolicy;
 import org.jboss.arquillian.spi.Configuration;
 import org.jboss.arquillian.spi.Context;
 import org.jboss.arquillian.spi.DeployableContainer;
+import org.jboss.arquillian.spi.TestClass;
 import org.jboss.arquillian.spi.event.container.AfterStart;
 import org.jboss.arquillian.spi.event.container.AfterStop;
 import org.jboss.arquillian.spi.event.container.BeforeStart;
 import org.jboss.arquillian.spi.event.container.BeforeStop;
+import org.jboss.arquillian.spi.event.suite.ClassEvent;
 import org.jboss.arquillian.spi.event.suite.EventHandler;
 import org.jboss.arquillian.spi.event.suite.SuiteEvent;
+import org.jboss.arquillian.spi.event.suite.UpcomingClasses;
 
 /**
- * A Handler for restarting the {@link DeployableContainer} for every X deployments.<br/>
+ * A Handler for restarting the {@link DeployableContainer} when the {@link RestartPolicy} finds the 
+ * container JVM unhealthy, or for every X deployments.<br/>
+ * Containers in a {@link ContainerPool} are not restarted.<br/>
+ * <br/>
+ * If the upcoming test classes are known, the container is restarted early at the start of a 
+ * {@link DeploymentOrder} group that would not fit before the next restart, so the classes sharing a
+ * deployment are not split by a restart.<br/>
+ * <br/>
+ * If {@link ContainerStandby#isSupported(Configuration)}, a standby container is started in the background when 
+ * a restart is within two deployments or predicted by the {@link RestartPolicy}. At the restart the suite switches 
+ * to the standby container and the replaced container is stopped in the background.<br/>
  * <br/>
  *  <b>Fires:</b><br/>
  *   {@link BeforeStop}<br/>
@@ -37,6 +60,12 @@ import org.jboss.arquillian.spi.event.suite.SuiteEvent;
  * <br/>
  *  <b>Imports:</b><br/>
  *   {@link DeployableContainer}<br/>
+ *   {@link RestartPolicy}<br/>
+ *   {@link ContainerStandby}<br/>
+ *   {@link PendingUndeployments}<br/>
+ * <br/>
+ *  <b>Exports:</b><br/>
+ *   {@link DeployableContainer}, when switching to the standby container<br/>
  *   
  * @author <a href="mailto:aslak@conduct.no">Aslak Knutsen</a>
  * @version $Revision: $
@@ -46,31 +75,172 @@ public class ContainerRestarter implements EventHandler<SuiteEvent>
 {
    private int deploymentCount = 0;
    
+   private List<Class<?>> upcoming = new ArrayList<Class<?>>();
+   
+   private Map<Class<?>, String> groupKeys = new HashMap<Class<?>, String>();
+   
    /* (non-Javadoc)
     * @see org.jboss.arquillian.spi.event.suite.EventHandler#callback(org.jboss.arquillian.spi.Context, java.lang.Object)
     */
    public void callback(Context context, SuiteEvent event) throws Exception
    {
-      if(shouldRestart(context))
+      if(event instanceof UpcomingClasses)
+      {
+         addUpcoming((UpcomingClasses)event);
+         return;
+      }
+      String reason = shouldRestart(context, event);
+      if(reason != null)
+      {
+         RestartPolicy policy = context.get(RestartPolicy.class);
+         if(policy != null)
+         {
+            policy.restarted(reason);
+         }
+         ContainerStandby standby = context.get(ContainerStandby.class);
+         DeployableContainer next = standby == null ? null:standby.take();
+         if(next != null)
+         {
+            switchTo(context, event, standby, next);
+         }
+         else
+         {
+            new SharedDeploymentUndeployer().callback(context, event);
+            new ContainerStopper().callback(context, event);
+            new ContainerStarter().callback(context, event);
+         }
+      }
+      if(isRestartPredicted(context))
+      {
+         context.get(ContainerStandby.class).prepare(getSuiteContext(context), context.get(Configuration.class));
+      }
+   }
+   
+   private void switchTo(Context context, SuiteEvent event, ContainerStandby standby, DeployableContainer next) throws Exception
+   {
+      // the shared and pending undeployments are on the replaced container
+      new SharedDeploymentUndeployer().callback(context, event);
+      PendingUndeployments pendingUndeployments = context.get(PendingUndeployments.class);
+      if(pendingUndeployments != null)
+      {
+         pendingUndeployments.awaitAll();
+      }
+      Context suiteContext = getSuiteContext(context);
+      DeployableContainer replaced = context.get(DeployableContainer.class);
+      suiteContext.add(DeployableContainer.class, next);
+      standby.retire(suiteContext, replaced);
+   }
+   
+   private synchronized boolean isRestartPredicted(Context context)
+   {
+      Configuration configuration = context.get(Configuration.class);
+      ContainerStandby standby = context.get(ContainerStandby.class);
+      if(standby == null || standby.isPrepared() || !ContainerStandby.isSupported(configuration) || 
+            context.get(ContainerPool.class) != null)
+      {
+         return false;
+      }
+      RestartPolicy policy = context.get(RestartPolicy.class);
+      if(policy != null && policy.isRestartPredicted())
+      {
+         return true;
+      }
+      int maxDeployments = configuration.getMaxDeploymentsBeforeRestart();
+      return maxDeployments > -1 && deploymentCount >= maxDeployments - 3;
+   }
+   
+   private Context getSuiteContext(Context context)
+   {
+      Context suiteContext = context;
+      while(suiteContext.getParentContext() != null)
+      {
+         suiteContext = suiteContext.getParentContext();
+      }
+      return suiteContext;
+   }
+   
+   private synchronized void addUpcoming(UpcomingClasses event)
+   {
+      for(TestClass testClass : event.getTestClasses())
       {
-         new ContainerStopper().callback(context, event);
-         new ContainerStarter().callback(context, event);
+         upcoming.add(testClass.getJavaClass());
       }
    }
    
-   private boolean shouldRestart(Context context)
+   private synchronized String shouldRestart(Context context, SuiteEvent event)
    {
+      if(context.get(ContainerPool.class) != null)
+      {
+         // pooled containers are in use by other test classes
+         return null;
+      }
+      RestartPolicy policy = context.get(RestartPolicy.class);
+      String reason = policy == null ? null:policy.getRestartReason();
+      if(reason != null)
+      {
+         deploymentCount = 0;
+         return reason;
+      }
       Configuration configuration = context.get(Configuration.class); 
       int maxDeployments = configuration == null ? -1:configuration.getMaxDeploymentsBeforeRestart();
+      int groupSize = event instanceof ClassEvent ? 
+            getStartedGroupSize(((ClassEvent)event).getTestClass().getJavaClass()):0;
       if(maxDeployments > -1) 
       {
          if((maxDeployments -1 ) == deploymentCount)
          {
             deploymentCount = 0;
-            return true;
+            return "Reached max " + maxDeployments + " deployments";
+         }
+         if(deploymentCount > 0 && groupSize > 0 && groupSize <= maxDeployments && 
+                     deploymentCount + groupSize > maxDeployments - 1)
+         {
+            // restart at the start of a group that would not fit before the next restart
+            deploymentCount = 0;
+            return "Deployment group of " + groupSize + " classes would not fit before max " + maxDeployments + " deployments";
          }
       }
       deploymentCount++;
-      return false;
+      return null;
+   }
+   
+   /*
+    * The number of upcoming classes in the group started by the given class, 0 if the
+    * class does not start a group or is not known.
+    */
+   private int getStartedGroupSize(Class<?> testClass)
+   {
+      int index = upcoming.indexOf(testClass);
+      if(index == -1)
+      {
+         return 0;
+      }
+      // the classes before are done
+      List<Class<?>> done = upcoming.subList(0, index);
+      String previous = done.isEmpty() ? null:getGroupKey(done.get(done.size() - 1));
+      done.clear();
+      
+      String key = getGroupKey(testClass);
+      if(key.equals(previous))
+      {
+         return 0;
+      }
+      int size = 0;
+      while(size < upcoming.size() && key.equals(getGroupKey(upcoming.get(size))))
+      {
+         size++;
+      }
+      return size;
+   }
+   
+   private String getGroupKey(Class<?> testClass)
+   {
+      String key = groupKeys.get(testClass);
+      if(key == null)
+      {
+         key = DeploymentOrder.getGroupKey(new TestClass(testClass));
+         groupKeys.put(testClass, key);
+      }
+      return key;
    }
-}
+}
\ No newline at end of file
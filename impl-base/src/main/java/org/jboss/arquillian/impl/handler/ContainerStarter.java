@@ -16,6 +16,7 @@
  */
 package org.jboss.arquillian.impl.handler;
 
+import org.jboss.arquillian.impl.ContainerPool;
 import org.jboss.arquillian.impl.Validate;
 import org.jboss.arquillian.spi.Context;
 import org.jboss.arquillian.spi.DeployableContainer;
@@ -25,7 +26,7 @@ import org.jboss.arquillian.spi.event.suite.EventHandler;
 import org.jboss.arquillian.spi.event.suite.SuiteEvent;
 
 /**
- * A Handler for starting the {@link DeployableContainer}.<br/>
+ * A Handler for starting the {@link DeployableContainer}, or all containers in the {@link ContainerPool}.<br/>
  * <br/>
   *  <b>Fires:</b><br/>
  *   {@link BeforeStart}<br/>
@@ -33,6 +34,7 @@ import org.jboss.arquillian.spi.event.suite.SuiteEvent;
  * <br/>
  *  <b>Imports:</b><br/>
  *   {@link DeployableContainer}<br/>
+ *   {@link ContainerPool}<br/>
  *   
  * @author <a href="mailto:aslak@conduct.no">Aslak Knutsen</a>
  * @version $Revision: $
@@ -48,6 +50,20 @@ public class ContainerStarter implements EventHandler<SuiteEvent>
       DeployableContainer container = context.get(DeployableContainer.class);
       Validate.stateNotNull(container, "No " + DeployableContainer.class.getName() + " found in context");
       
+      ContainerPool pool = context.get(ContainerPool.class);
+      if(pool == null)
+      {
+         start(context, container);
+         return;
+      }
+      for(DeployableContainer pooled : pool.getContainers())
+      {
+         start(context, pooled);
+      }
+   }
+   
+   private void start(Context context, DeployableContainer container) throws Exception
+   {
       context.fire(new BeforeStart());
       container.start(context);
       context.fire(new AfterStart());
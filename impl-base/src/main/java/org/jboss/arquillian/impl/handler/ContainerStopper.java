@@ -16,6 +16,10 @@
  */
 package org.jboss.arquillian.impl.handler;
 
+import org.jboss.arquillian.impl.ContainerPool;
+import org.jboss.arquillian.impl.ContainerStandby;
+import org.jboss.arquillian.impl.PendingUndeployments;
+import org.jboss.arquillian.impl.RestartPolicy;
 import org.jboss.arquillian.impl.Validate;
 import org.jboss.arquillian.spi.Context;
 import org.jboss.arquillian.spi.DeployableContainer;
@@ -25,7 +29,9 @@ import org.jboss.arquillian.spi.event.suite.EventHandler;
 import org.jboss.arquillian.spi.event.suite.SuiteEvent;
 
 /**
- * A Handler for stopping the {@link DeployableContainer}.<br/>
+ * A Handler for stopping the {@link DeployableContainer}, or all containers in the {@link ContainerPool}.<br/>
+ * Any pending undeployments are completed before the container is stopped. A unused standby container is stopped
+ * and replaced containers being stopped in the background are waited for.<br/>
  * <br/>
  *  <b>Fires:</b><br/>
  *   {@link BeforeStop}<br/>
@@ -33,6 +39,10 @@ import org.jboss.arquillian.spi.event.suite.SuiteEvent;
  * <br/>
  *  <b>Imports:</b><br/>
  *   {@link DeployableContainer}<br/>
+ *   {@link PendingUndeployments}<br/>
+ *   {@link ContainerPool}<br/>
+ *   {@link RestartPolicy}<br/>
+ *   {@link ContainerStandby}<br/>
  *   
  * @author <a href="mailto:aslak@conduct.no">Aslak Knutsen</a>
  * @version $Revision: $
@@ -48,6 +58,38 @@ public class ContainerStopper implements EventHandler<SuiteEvent>
       DeployableContainer container = context.get(DeployableContainer.class);
       Validate.stateNotNull(container, "No " + DeployableContainer.class.getName() + " found in context");
       
+      PendingUndeployments pendingUndeployments = context.get(PendingUndeployments.class);
+      if(pendingUndeployments != null)
+      {
+         pendingUndeployments.awaitAll();
+      }
+      
+      ContainerStandby standby = context.get(ContainerStandby.class);
+      if(standby != null)
+      {
+         standby.shutdown(context);
+      }
+      
+      RestartPolicy restartPolicy = context.get(RestartPolicy.class);
+      if(restartPolicy != null)
+      {
+         restartPolicy.close();
+      }
+      
+      ContainerPool pool = context.get(ContainerPool.class);
+      if(pool == null)
+      {
+         stop(context, container);
+         return;
+      }
+      for(DeployableContainer pooled : pool.getContainers())
+      {
+         stop(context, pooled);
+      }
+   }
+   
+   private void stop(Context context, DeployableContainer container) throws Exception
+   {
       context.fire(new BeforeStop());
       container.stop(context);
       context.fire(new AfterStop());
@@ -0,0 +1,83 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl.handler;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.jboss.arquillian.impl.BatchedTestResults;
+import org.jboss.arquillian.spi.BatchContainerMethodExecutor;
+import org.jboss.arquillian.spi.Configuration;
+import org.jboss.arquillian.spi.ContainerMethodExecutor;
+import org.jboss.arquillian.spi.Context;
+import org.jboss.arquillian.spi.event.suite.ClassEvent;
+import org.jboss.arquillian.spi.event.suite.EventHandler;
+import org.jboss.arquillian.spi.event.suite.UpcomingMethods;
+
+/**
+ * A Handler for executing the upcoming test methods of a test class in one batch. <br/>
+ * Does nothing unless {@link Configuration#isBatchTestExecution()} is enabled and the 
+ * {@link ContainerMethodExecutor} is a {@link BatchContainerMethodExecutor}, which is not the case for 
+ * test classes running as client. <br/>
+ * The batch is closed on any other {@link ClassEvent}. <br/>
+ * <br/>
+ *  <b>Imports:</b><br/>
+ *   {@link Configuration}<br/>
+ *   {@link ContainerMethodExecutor}<br/>
+ *  <br/>
+ *  <b>Exports:</b><br/>
+ *   {@link BatchedTestResults}<br/>
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ * @see ContainerTestExecuter
+ */
+public class ContainerTestBatcher implements EventHandler<ClassEvent>
+{
+   /* (non-Javadoc)
+    * @see org.jboss.arquillian.spi.event.suite.EventHandler#callback(org.jboss.arquillian.spi.Context, java.lang.Object)
+    */
+   public void callback(Context context, ClassEvent event) throws Exception
+   {
+      if(!(event instanceof UpcomingMethods))
+      {
+         BatchedTestResults batch = context.get(BatchedTestResults.class);
+         if(batch != null)
+         {
+            batch.close();
+         }
+         return;
+      }
+      Configuration configuration = context.get(Configuration.class);
+      ContainerMethodExecutor executor = context.get(ContainerMethodExecutor.class);
+      if(configuration == null || !configuration.isBatchTestExecution() || 
+            !(executor instanceof BatchContainerMethodExecutor))
+      {
+         return;
+      }
+      List<String> methodNames = new ArrayList<String>();
+      for(Method method : ((UpcomingMethods)event).getTestMethods())
+      {
+         methodNames.add(method.getName());
+      }
+      context.add(BatchedTestResults.class, new BatchedTestResults(
+            event.getTestClass().getJavaClass(), 
+            methodNames, 
+            (BatchContainerMethodExecutor)executor));
+   }
+}
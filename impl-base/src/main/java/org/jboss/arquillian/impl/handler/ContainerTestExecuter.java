@@ -16,6 +16,9 @@
  */
 package org.jboss.arquillian.impl.handler;
 
+import java.util.logging.Logger;
+
+import org.jboss.arquillian.impl.BatchedTestResults;
 import org.jboss.arquillian.impl.Validate;
 import org.jboss.arquillian.spi.ContainerMethodExecutor;
 import org.jboss.arquillian.spi.Context;
@@ -26,9 +29,12 @@ import org.jboss.arquillian.spi.event.suite.Test;
 
 /**
  * A Handler for executing the remote Test Method.<br/>
+ * If the test class is executed in a batch, the result is taken from the {@link BatchedTestResults}.<br/>
+ * Output captured in container is logged, the result keeps it for the test framework to report.<br/>
  * <br/>
  *  <b>Imports:</b><br/>
  *   {@link DeployableContainer}<br/>
+ *   {@link BatchedTestResults}<br/>
  *  <br/>
  *  <b>Exports:</b><br/>
  *   {@link TestResult}<br/>
@@ -39,6 +45,8 @@ import org.jboss.arquillian.spi.event.suite.Test;
  */
 public class ContainerTestExecuter implements EventHandler<Test>
 {
+   private static final Logger log = Logger.getLogger(ContainerTestExecuter.class.getName());
+
    /* (non-Javadoc)
     * @see org.jboss.arquillian.spi.event.suite.EventHandler#callback(org.jboss.arquillian.spi.Context, java.lang.Object)
     */
@@ -47,7 +55,17 @@ public class ContainerTestExecuter implements EventHandler<Test>
       ContainerMethodExecutor executor = context.get(ContainerMethodExecutor.class);
       Validate.stateNotNull(executor, "No " + ContainerMethodExecutor.class.getName() + " found in context");
       
-      TestResult result = executor.invoke(event.getTestMethodExecutor());
+      BatchedTestResults batch = context.get(BatchedTestResults.class);
+      TestResult result = batch == null ? null:batch.get(event.getTestMethod().getName());
+      if(result == null)
+      {
+         result = executor.invoke(event.getTestMethodExecutor());
+      }
+      if(result.getOutput() != null)
+      {
+         log.info("Container output of " + event.getTestClass().getName() + "." + event.getTestMethod().getName() + 
+               ":\n" + result.getOutput());
+      }
       context.add(TestResult.class, result);
    }
 }
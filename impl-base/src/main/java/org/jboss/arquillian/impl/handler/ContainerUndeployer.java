@@ -16,7 +16,11 @@
  */
 package org.jboss.arquillian.impl.handler;
 
+import org.jboss.arquillian.impl.ContainerPool;
+import org.jboss.arquillian.impl.PendingUndeployments;
+import org.jboss.arquillian.impl.SharedDeployments;
 import org.jboss.arquillian.impl.Validate;
+import org.jboss.arquillian.spi.AsyncDeployableContainer;
 import org.jboss.arquillian.spi.Context;
 import org.jboss.arquillian.spi.DeployableContainer;
 import org.jboss.arquillian.spi.event.container.AfterDeploy;
@@ -29,6 +33,11 @@ import org.jboss.shrinkwrap.api.Archive;
 
 /**
  * A Handler for undeploying the generated {@link Archive} from the container. <br/>
+ * <br/>
+ * Shared deployments are left deployed for the next test class using them, see {@link SharedDeploymentUndeployer}. <br/>
+ * If the container is a {@link AsyncDeployableContainer} the undeployment is left running 
+ * in the background and registered in the {@link PendingUndeployments}. <br/>
+ * A container leased from the {@link ContainerPool} is released when done. <br/>
  * <br/>
   *  <b>Fires:</b><br/>
  *   {@link BeforeDeploy}<br/>
@@ -37,6 +46,8 @@ import org.jboss.shrinkwrap.api.Archive;
  *  <b>Imports:</b><br/>
  *   {@link DeployableContainer}<br/>
  *   {@link Archive}<br/>
+ *   {@link PendingUndeployments}<br/>
+ *   {@link ContainerPool}<br/>
  *   
  * @author <a href="mailto:aknutsen@redhat.com">Aslak Knutsen</a>
  * @version $Revision: $
@@ -50,6 +61,22 @@ public class ContainerUndeployer implements EventHandler<ClassEvent>
     * @see org.jboss.arquillian.spi.event.suite.EventHandler#callback(org.jboss.arquillian.spi.Context, java.lang.Object)
     */
    public void callback(Context context, ClassEvent event) throws Exception
+   {
+      try
+      {
+         undeploy(context);
+      }
+      finally
+      {
+         ContainerPool pool = context.get(ContainerPool.class);
+         if(pool != null)
+         {
+            pool.release(context);
+         }
+      }
+   }
+   
+   private void undeploy(Context context) throws Exception
    {
       DeployableContainer container = context.get(DeployableContainer.class);
       Validate.stateNotNull(container, "No " + DeployableContainer.class.getName() + " found in context");
@@ -57,6 +84,25 @@ public class ContainerUndeployer implements EventHandler<ClassEvent>
       Archive<?> deployment = context.get(Archive.class);
       Validate.stateNotNull(deployment, "No " + Archive.class.getName() + " found in context");
       
+      SharedDeployments sharedDeployments = context.get(SharedDeployments.class);
+      if(sharedDeployments != null && sharedDeployments.leave(deployment))
+      {
+         // shared deployments are undeployed when idle by the ContainerDeployer, or by the SharedDeploymentUndeployer
+         return;
+      }
+      
+      PendingUndeployments pendingUndeployments = context.get(PendingUndeployments.class);
+      if(pendingUndeployments != null && container instanceof AsyncDeployableContainer)
+      {
+         // AfterUnDeploy is fired when the undeployment is awaited
+         context.fire(new BeforeUnDeploy());
+         pendingUndeployments.add(
+               context,
+               deployment, 
+               ((AsyncDeployableContainer)container).undeployAsync(context, deployment));
+         return;
+      }
+      
       context.fire(new BeforeUnDeploy());
       container.undeploy(context, deployment);
       context.fire(new AfterUnDeploy());
@@ -0,0 +1,76 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl.handler;
+
+import java.io.File;
+
+import org.jboss.arquillian.impl.DurationHistory;
+import org.jboss.arquillian.spi.Configuration;
+import org.jboss.arquillian.spi.Context;
+import org.jboss.arquillian.spi.event.suite.AfterSuite;
+import org.jboss.arquillian.spi.event.suite.BeforeClass;
+import org.jboss.arquillian.spi.event.suite.ClassEvent;
+import org.jboss.arquillian.spi.event.suite.EventHandler;
+import org.jboss.arquillian.spi.event.suite.SuiteEvent;
+
+/**
+ * A Handler for recording the execution time of each test class, including deployment and undeployment, 
+ * in the {@link DurationHistory}. <br/>
+ * Does nothing unless {@link Configuration#getDurationHistoryFile()} is set. <br/>
+ * <br/>
+ * Registered for BeforeClass after the container is leased and for AfterClass after the deployment is 
+ * undeployed, the recorded durations are written to the history file on AfterSuite.<br/>
+ * <br/>
+ *  <b>Imports:</b><br/>
+ *   {@link Configuration}<br/>
+ *   {@link DurationHistory}<br/>
+ *   
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ * @see DurationHistory
+ */
+public class DurationRecorder implements EventHandler<SuiteEvent>
+{
+   /* (non-Javadoc)
+    * @see org.jboss.arquillian.spi.event.suite.EventHandler#callback(org.jboss.arquillian.spi.Context, java.lang.Object)
+    */
+   public void callback(Context context, SuiteEvent event) throws Exception
+   {
+      Configuration configuration = context.get(Configuration.class);
+      DurationHistory history = context.get(DurationHistory.class);
+      if(configuration == null || configuration.getDurationHistoryFile() == null || history == null)
+      {
+         return;
+      }
+      if(event instanceof BeforeClass)
+      {
+         history.start(((ClassEvent)event).getTestClass().getName());
+      }
+      else if(event instanceof ClassEvent)
+      {
+         history.stop(((ClassEvent)event).getTestClass().getName());
+      }
+      else if(event instanceof AfterSuite && !history.isEmpty())
+      {
+         File file = new File(configuration.getDurationHistoryFile());
+         // keep the durations of classes not run this time
+         DurationHistory stored = DurationHistory.load(file);
+         stored.merge(history);
+         stored.save(file);
+      }
+   }
+}
@@ -0,0 +1,116 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl.handler;
+
+import java.util.Collection;
+
+import org.jboss.arquillian.impl.ContainerPool;
+import org.jboss.arquillian.impl.SharedDeployments;
+import org.jboss.arquillian.impl.Validate;
+import org.jboss.arquillian.spi.Configuration;
+import org.jboss.arquillian.spi.Context;
+import org.jboss.arquillian.spi.DeployableContainer;
+import org.jboss.arquillian.spi.TestClass;
+import org.jboss.arquillian.spi.event.container.AfterUnDeploy;
+import org.jboss.arquillian.spi.event.container.BeforeUnDeploy;
+import org.jboss.arquillian.spi.event.suite.EventHandler;
+import org.jboss.arquillian.spi.event.suite.SuiteEvent;
+import org.jboss.arquillian.spi.event.suite.UpcomingClasses;
+
+/**
+ * A Handler for undeploying the shared deployments from the container. <br/>
+ * <br/>
+ * On {@link UpcomingClasses} the test classes are registered as users of their shared deployment, so the 
+ * deployment is kept until the last of them is done, see {@link ContainerDeployer}. On any other event 
+ * all shared deployments are undeployed.<br/>
+ * <br/>
+ *  <b>Fires:</b><br/>
+ *   {@link BeforeUnDeploy}<br/>
+ *   {@link AfterUnDeploy}<br/>
+ * <br/>
+ *  <b>Imports:</b><br/>
+ *   {@link DeployableContainer}<br/>
+ *   {@link SharedDeployments}<br/>
+ *   {@link Configuration}<br/>
+ *   
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ * @see SharedDeployments
+ */
+public class SharedDeploymentUndeployer implements EventHandler<SuiteEvent>
+{
+   /* (non-Javadoc)
+    * @see org.jboss.arquillian.spi.event.suite.EventHandler#callback(org.jboss.arquillian.spi.Context, java.lang.Object)
+    */
+   public void callback(Context context, SuiteEvent event) throws Exception
+   {
+      SharedDeployments sharedDeployments = context.get(SharedDeployments.class);
+      if(sharedDeployments == null)
+      {
+         return;
+      }
+      if(event instanceof UpcomingClasses)
+      {
+         if(context.get(ContainerPool.class) == null)
+         {
+            for(TestClass testClass : ((UpcomingClasses)event).getTestClasses())
+            {
+               sharedDeployments.expect(testClass, context.get(Configuration.class));
+            }
+         }
+         return;
+      }
+      
+      DeployableContainer container = context.get(DeployableContainer.class);
+      Validate.stateNotNull(container, "No " + DeployableContainer.class.getName() + " found in context");
+      
+      undeploy(context, container, sharedDeployments.removeAll());
+   }
+   
+   /**
+    * Undeploy the shared deployments.
+    * 
+    * @param context The context to fire the events on
+    * @param container The container to undeploy from
+    * @param removed The shared deployments removed from the {@link SharedDeployments}
+    * @throws Exception The first Exception thrown by the container, the rest are still undeployed
+    */
+   static void undeploy(Context context, DeployableContainer container, Collection<SharedDeployments.Entry> removed) throws Exception
+   {
+      Exception failure = null;
+      for(SharedDeployments.Entry shared : removed)
+      {
+         try
+         {
+            context.fire(new BeforeUnDeploy());
+            container.undeploy(context, shared.getArchive());
+            context.fire(new AfterUnDeploy());
+         }
+         catch (Exception e) 
+         {
+            if(failure == null)
+            {
+               failure = e;
+            }
+         }
+      }
+      if(failure != null)
+      {
+         throw failure;
+      }
+   }
+}
@@ -0,0 +1,105 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import org.jboss.arquillian.spi.ApplicationArchiveGenerator;
+import org.jboss.arquillian.spi.DeploymentPackager;
+import org.jboss.arquillian.spi.ServiceLoader;
+import org.jboss.arquillian.spi.TestClass;
+import org.jboss.arquillian.spi.TestDeployment;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+/**
+ * ClientDeploymentGeneratorTestCase
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ClientDeploymentGeneratorTestCase
+{
+   @Mock
+   private ServiceLoader serviceLoader;
+   
+   @Mock
+   private ApplicationArchiveGenerator generator;
+   
+   private TestClass testClass = new TestClass(ClientDeploymentGeneratorTestCase.class);
+   
+   @Before
+   public void createServices()
+   {
+      Mockito.when(serviceLoader.onlyOne(
+            ApplicationArchiveGenerator.class, 
+            DeploymentAnnotationArchiveGenerator.class)).thenReturn(generator);
+      Mockito.when(generator.generateApplicationArchive(testClass)).thenAnswer(new Answer<Archive<?>>()
+      {
+         public Archive<?> answer(InvocationOnMock invocation) throws Throwable
+         {
+            return ShrinkWrap.create(JavaArchive.class, "test.jar");
+         }
+      });
+      
+      Collection<DeploymentPackager> packagers = Arrays.asList(new ServletPackager(), new SocketPackager());
+      Mockito.when(serviceLoader.all(DeploymentPackager.class)).thenReturn(packagers);
+   }
+   
+   @Test
+   public void shouldUseConfiguredDeploymentPackager() throws Exception
+   {
+      Archive<?> deployment = new ClientDeploymentGenerator(serviceLoader, SocketPackager.class.getName())
+                                 .generate(testClass);
+      
+      Assert.assertEquals("socket.jar", deployment.getName());
+   }
+   
+   @Test(expected = IllegalStateException.class)
+   public void shouldThrowExceptionOnMissingConfiguredDeploymentPackager() throws Exception
+   {
+      new ClientDeploymentGenerator(serviceLoader, "org.example.MissingPackager").generate(testClass);
+   }
+   
+   private static class ServletPackager implements DeploymentPackager
+   {
+      public Archive<?> generateDeployment(TestDeployment testDeployment)
+      {
+         return ShrinkWrap.create(JavaArchive.class, "servlet.jar");
+      }
+   }
+   
+   private static class SocketPackager implements DeploymentPackager
+   {
+      public Archive<?> generateDeployment(TestDeployment testDeployment)
+      {
+         return ShrinkWrap.create(JavaArchive.class, "socket.jar");
+      }
+   }
+}
@@ -0,0 +1,106 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.jboss.arquillian.api.Deployment;
+import org.jboss.arquillian.api.Run;
+import org.jboss.arquillian.api.RunModeType;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * DeploymentOrderTestCase
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class DeploymentOrderTestCase
+{
+   @Test
+   public void shouldGroupClassesWithSameDeployment() throws Exception
+   {
+      List<List<DeploymentOrder.Group>> plan = new DeploymentOrder(-1).plan(
+            Arrays.<Class<?>>asList(DeploymentA1.class, DeploymentB.class, DeploymentA2.class));
+      
+      Assert.assertEquals(1, plan.size());
+      Assert.assertEquals(
+            Arrays.<Class<?>>asList(DeploymentA1.class, DeploymentA2.class, DeploymentB.class), 
+            DeploymentOrder.getTestClasses(plan));
+   }
+
+   @Test
+   public void shouldPlaceClientClassesTogether() throws Exception
+   {
+      List<List<DeploymentOrder.Group>> plan = new DeploymentOrder(-1).plan(
+            Arrays.<Class<?>>asList(DeploymentA1.class, ClientDeploymentA.class, DeploymentB.class));
+      
+      Assert.assertEquals(
+            Arrays.<Class<?>>asList(ClientDeploymentA.class, DeploymentA1.class, DeploymentB.class), 
+            DeploymentOrder.getTestClasses(plan));
+   }
+
+   @Test
+   public void shouldPackGroupsBetweenRestarts() throws Exception
+   {
+      List<List<DeploymentOrder.Group>> plan = new DeploymentOrder(2).plan(
+            Arrays.<Class<?>>asList(DeploymentB.class, DeploymentA1.class, ClientDeploymentA.class, DeploymentA2.class));
+      
+      Assert.assertEquals(2, plan.size());
+      Assert.assertEquals(
+            Arrays.<Class<?>>asList(DeploymentA1.class, DeploymentA2.class, ClientDeploymentA.class, DeploymentB.class), 
+            DeploymentOrder.getTestClasses(plan));
+      
+      Assert.assertTrue(DeploymentOrder.describe(plan).contains(DeploymentA1.class.getName()));
+   }
+   
+   private static Archive<?> createDeployment(String name)
+   {
+      return ShrinkWrap.create(JavaArchive.class, name + ".jar")
+                  .addClass(DeploymentOrderTestCase.class);
+   }
+   
+   private static class DeploymentA1 
+   {
+      @Deployment
+      public static Archive<?> deploy() { return createDeployment("a"); }
+   }
+
+   private static class DeploymentA2 
+   {
+      @Deployment
+      public static Archive<?> deploy() { return createDeployment("a"); }
+   }
+
+   @Run(RunModeType.AS_CLIENT)
+   private static class ClientDeploymentA 
+   {
+      @Deployment
+      public static Archive<?> deploy() { return createDeployment("a"); }
+   }
+
+   private static class DeploymentB 
+   {
+      @Deployment
+      public static Archive<?> deploy() { return createDeployment("b"); }
+   }
+}
@@ -16,8 +16,11 @@
  */
 package org.jboss.arquillian.impl;
 
+import java.net.URL;
+import java.net.URLClassLoader;
 import java.util.Collection;
 
+import org.jboss.arquillian.spi.Stateless;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -93,6 +96,55 @@ public class DynamicServiceLoaderTestCase
             service.getClass());
    }
 
+   @Test
+   public void shouldShareInstancesOfStatelessServices() throws Exception
+   {
+      DynamicServiceLoader loader = new DynamicServiceLoader();
+      
+      Assert.assertSame(
+            "Verify that the same instance of a Stateless service is returned",
+            loader.onlyOne(StatelessService.class), 
+            loader.onlyOne(StatelessService.class));
+   }
+
+   @Test
+   public void shouldKeepInstancesOfStatelessServicesPrClassLoader() throws Exception
+   {
+      DynamicServiceLoader loader = new DynamicServiceLoader();
+      StatelessService service = loader.onlyOne(StatelessService.class);
+      
+      Thread thread = Thread.currentThread();
+      ClassLoader original = thread.getContextClassLoader();
+      thread.setContextClassLoader(new URLClassLoader(new URL[0], original));
+      try
+      {
+         Assert.assertNotSame(
+               "Verify that a other ClassLoader has its own instance of a Stateless service",
+               service, 
+               loader.onlyOne(StatelessService.class));
+      }
+      finally
+      {
+         thread.setContextClassLoader(original);
+      }
+      
+      Assert.assertSame(
+            "Verify that switching back to the ClassLoader reuses its Stateless service",
+            service, 
+            loader.onlyOne(StatelessService.class));
+   }
+
+   @Test
+   public void shouldCreateNewInstancesOfServices() throws Exception
+   {
+      DynamicServiceLoader loader = new DynamicServiceLoader();
+      
+      Assert.assertNotSame(
+            "Verify that a new instance of a none Stateless service is returned",
+            loader.onlyOne(Service2.class), 
+            loader.onlyOne(Service2.class));
+   }
+
    private void verifyOrder(Collection<Service> services)
    {
       int i = 0;
@@ -119,6 +171,10 @@ public class DynamicServiceLoaderTestCase
    public static class Service2Impl implements Service2 {}
    public static class DefaultService2Impl implements Service2 {}
 
+   public interface StatelessService {}
+   @Stateless
+   public static class StatelessServiceImpl implements StatelessService {}
+
    public interface NonRegisteredService {}
    public static class DefaultNonRegisteredServiceImpl implements NonRegisteredService {}
    
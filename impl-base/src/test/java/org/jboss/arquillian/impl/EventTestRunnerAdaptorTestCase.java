@@ -17,6 +17,10 @@
 package org.jboss.arquillian.impl;
 
 import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import junit.framework.Assert;
 
@@ -308,4 +312,77 @@ public class EventTestRunnerAdaptorTestCase
             "Verify SuiteContext has been popped from stack, we're not outside any Context",
             adaptor.getActiveContext());
    }  
+
+   /*
+    *  Verify that the Class/Test Contexts are tracked pr Thread while the SuiteContext is shared
+    */
+   @Test
+   public void shouldKeepActiveContextPrThread() throws Exception 
+   {
+      final EventTestRunnerAdaptor adaptor = new EventTestRunnerAdaptor(
+            new ContextLifecycleManager(profileBuilder, serviceLoader));
+      
+      final Class<?> testClass = getClass();
+      final Method testMethod = testClass.getMethod("shouldKeepActiveContextPrThread");
+      final Object testInstance = this;
+      
+      adaptor.beforeSuite();
+      final Context suiteContext = adaptor.getActiveContext();
+      
+      adaptor.beforeClass(testClass);
+      adaptor.before(testInstance, testMethod);
+      
+      ExecutorService executor = Executors.newSingleThreadExecutor();
+      try
+      {
+         Future<Context> otherThread = executor.submit(new Callable<Context>()
+         {
+            public Context call() throws Exception
+            {
+               return adaptor.getActiveContext();
+            }
+         });
+         Assert.assertSame(
+               "Verify a Thread outside any Class/Test Context sees the shared SuiteContext",
+               suiteContext, otherThread.get());
+         
+         Future<Context> otherThreadClass = executor.submit(new Callable<Context>()
+         {
+            public Context call() throws Exception
+            {
+               adaptor.beforeClass(String.class);
+               try
+               {
+                  return adaptor.getActiveContext();
+               }
+               finally
+               {
+                  adaptor.afterClass(String.class);
+               }
+            }
+         });
+         Context otherClassContext = otherThreadClass.get();
+         Assert.assertEquals(
+               "Verify other Thread has its own ClassContext pushed",
+               ClassContext.class, otherClassContext.getClass());
+         Assert.assertSame(
+               "Verify ClassContexts share the SuiteContext",
+               suiteContext, otherClassContext.getParentContext());
+      }
+      finally
+      {
+         executor.shutdown();
+      }
+      
+      Assert.assertEquals(
+            "Verify this Thread is still in its TestContext",
+            TestContext.class, adaptor.getActiveContext().getClass());
+      
+      adaptor.after(testInstance, testMethod);
+      adaptor.afterClass(testClass);
+      adaptor.afterSuite();
+      Assert.assertNull(
+            "Verify no active context after suite",
+            adaptor.getActiveContext());
+   }
 }
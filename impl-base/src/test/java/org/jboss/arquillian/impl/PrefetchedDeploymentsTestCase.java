@@ -0,0 +1,179 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import org.jboss.arquillian.api.Run;
+import org.jboss.arquillian.api.RunModeType;
+import org.jboss.arquillian.spi.ApplicationArchiveGenerator;
+import org.jboss.arquillian.spi.ServiceLoader;
+import org.jboss.arquillian.spi.TestClass;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+/**
+ * PrefetchedDeploymentsTestCase
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PrefetchedDeploymentsTestCase
+{
+   @Mock
+   private ServiceLoader serviceLoader;
+   
+   @Mock
+   private ApplicationArchiveGenerator generator;
+   
+   private PrefetchedDeployments prefetched;
+   
+   @Before
+   public void createPrefetchedDeployments()
+   {
+      Mockito.when(serviceLoader.onlyOne(
+            ApplicationArchiveGenerator.class, 
+            DeploymentAnnotationArchiveGenerator.class)).thenReturn(generator);
+      
+      prefetched = new PrefetchedDeployments(serviceLoader, 1);
+   }
+   
+   @After
+   public void shutdownPrefetchedDeployments()
+   {
+      prefetched.shutdown();
+   }
+
+   @Test
+   public void shouldTakePrefetchedDeployment() throws Exception
+   {
+      TestClass testClass = new TestClass(ClientTestClass.class);
+      final Archive<?> deployment = ShrinkWrap.create(JavaArchive.class, "test.jar");
+      Mockito.when(generator.generateApplicationArchive(testClass)).thenAnswer(new Answer<Archive<?>>()
+      {
+         public Archive<?> answer(InvocationOnMock invocation) throws Throwable
+         {
+            return deployment;
+         }
+      });
+      
+      prefetched.schedule(testClass);
+      
+      Assert.assertSame(
+            "Should have taken the prefetched deployment", 
+            deployment, prefetched.take(testClass));
+      
+      Assert.assertNull(
+            "A prefetched deployment should only be taken once", 
+            prefetched.take(testClass));
+      
+      Mockito.verify(generator, Mockito.times(1)).generateApplicationArchive(testClass);
+   }
+
+   @Test
+   public void shouldReturnNullForNotScheduledTestClass() throws Exception
+   {
+      Assert.assertNull(
+            "Should not have a deployment for a not scheduled TestClass", 
+            prefetched.take(new TestClass(ClientTestClass.class)));
+   }
+
+   @Test
+   public void shouldNotGenerateDeploymentsTakenBeforeStarted() throws Exception
+   {
+      final TestClass first = new TestClass(ClientTestClass.class);
+      final TestClass second = new TestClass(SecondClientTestClass.class);
+      final Archive<?> deployment = ShrinkWrap.create(JavaArchive.class, "test.jar");
+      Mockito.when(generator.generateApplicationArchive(Mockito.any(TestClass.class))).thenAnswer(new Answer<Archive<?>>()
+      {
+         public Archive<?> answer(InvocationOnMock invocation) throws Throwable
+         {
+            return deployment;
+         }
+      });
+      
+      // only one is prefetched at the time, the second is queued
+      prefetched.schedule(first);
+      prefetched.schedule(second);
+      
+      Assert.assertNull(
+            "Should not have started the second deployment", 
+            prefetched.take(second));
+
+      Assert.assertSame(deployment, prefetched.take(first));
+      
+      Mockito.verify(generator, Mockito.never()).generateApplicationArchive(second);
+   }
+
+   @Test
+   public void shouldFreeSlotWhenDiscarded() throws Exception
+   {
+      final TestClass first = new TestClass(ClientTestClass.class);
+      final TestClass second = new TestClass(SecondClientTestClass.class);
+      final Archive<?> deployment = ShrinkWrap.create(JavaArchive.class, "test.jar");
+      Mockito.when(generator.generateApplicationArchive(Mockito.any(TestClass.class))).thenAnswer(new Answer<Archive<?>>()
+      {
+         public Archive<?> answer(InvocationOnMock invocation) throws Throwable
+         {
+            return deployment;
+         }
+      });
+      
+      // only one is prefetched at the time, the second is queued
+      prefetched.schedule(first);
+      prefetched.schedule(second);
+      
+      prefetched.discard(first);
+      
+      Assert.assertNull(
+            "A discarded deployment should not be taken", 
+            prefetched.take(first));
+      Assert.assertSame(
+            "Should have started the second deployment in the freed slot", 
+            deployment, prefetched.take(second));
+   }
+
+   @Test(expected = IllegalStateException.class)
+   public void shouldRethrowGeneratorException() throws Exception
+   {
+      TestClass testClass = new TestClass(ClientTestClass.class);
+      Mockito.when(generator.generateApplicationArchive(testClass)).thenThrow(new IllegalStateException());
+      
+      prefetched.schedule(testClass);
+      prefetched.take(testClass);
+   }
+   
+   @Run(RunModeType.AS_CLIENT)
+   private static class ClientTestClass 
+   {
+   }
+
+   @Run(RunModeType.AS_CLIENT)
+   private static class SecondClientTestClass 
+   {
+   }
+}
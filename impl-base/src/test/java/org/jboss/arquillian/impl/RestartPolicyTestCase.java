@@ -0,0 +1,235 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.jboss.arquillian.spi.Configuration;
+import org.jboss.arquillian.spi.ContainerConfiguration;
+import org.jboss.arquillian.spi.ContainerProfile;
+import org.jboss.arquillian.spi.EmbeddedContainerConfiguration;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verify the {@link RestartPolicy} thresholds.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class RestartPolicyTestCase
+{
+   private static final String POOL = "Metaspace";
+   
+   private static final long MAX = 1000;
+   
+   @Test
+   public void shouldNotBeEnabledByDefault() throws Exception
+   {
+      Assert.assertFalse(RestartPolicy.isEnabled(new Configuration()));
+      Assert.assertFalse(RestartPolicy.isEnabled(null));
+   }
+   
+   @Test
+   public void shouldRequestRestartWhenMemoryThresholdIsCrossed() throws Exception
+   {
+      Configuration configuration = new Configuration();
+      configuration.setRestartMemoryThreshold(0.9);
+      
+      RestartPolicy policy = new RestartPolicy();
+      policy.record(configuration, health(800, 100, 10));
+      Assert.assertNull(policy.getRestartReason());
+      
+      policy.record(configuration, health(950, 100, 10));
+      Assert.assertNotNull(policy.getRestartReason());
+      Assert.assertTrue(policy.getRestartReason().contains(POOL));
+   }
+
+   @Test
+   public void shouldRequestRestartWhenGrowthTrendCrossesThreshold() throws Exception
+   {
+      Configuration configuration = new Configuration();
+      configuration.setRestartMemoryThreshold(0.9);
+      configuration.setRestartTrendWindow(2);
+      
+      RestartPolicy policy = new RestartPolicy();
+      policy.record(configuration, health(500, 100, 10));
+      policy.record(configuration, health(600, 100, 10));
+      Assert.assertNull("Projected 800 of 900 allowed", policy.getRestartReason());
+      
+      policy.record(configuration, health(700, 100, 10));
+      Assert.assertNotNull("Projected 900 of 900 allowed", policy.getRestartReason());
+   }
+
+   @Test
+   public void shouldNotRequestRestartOnStableUsage() throws Exception
+   {
+      Configuration configuration = new Configuration();
+      configuration.setRestartMemoryThreshold(0.9);
+      configuration.setRestartTrendWindow(5);
+      
+      RestartPolicy policy = new RestartPolicy();
+      for(int i = 0; i < 10; i++)
+      {
+         policy.record(configuration, health(i % 2 == 0 ? 700:650, 100, 10));
+      }
+      Assert.assertNull(policy.getRestartReason());
+   }
+
+   @Test
+   public void shouldRequestRestartOnClassAndThreadGrowthSinceFirstSample() throws Exception
+   {
+      Configuration configuration = new Configuration();
+      configuration.setRestartLoadedClassGrowth(50);
+      
+      RestartPolicy policy = new RestartPolicy();
+      policy.record(configuration, health(0, 1000, 10));
+      policy.record(configuration, health(0, 1050, 10));
+      Assert.assertNull(policy.getRestartReason());
+      
+      policy.record(configuration, health(0, 1051, 10));
+      Assert.assertNotNull(policy.getRestartReason());
+      
+      configuration = new Configuration();
+      configuration.setRestartThreadGrowth(5);
+
+      policy = new RestartPolicy();
+      policy.record(configuration, health(0, 1000, 10));
+      policy.record(configuration, health(0, 1000, 16));
+      Assert.assertNotNull(policy.getRestartReason());
+   }
+
+   @Test
+   public void shouldRequestRestartOnGrowthOfPoolWithoutMax() throws Exception
+   {
+      Configuration configuration = new Configuration();
+      configuration.setRestartMemoryThreshold(0.9);
+      configuration.setRestartUnboundedPoolGrowth(500);
+      Assert.assertTrue(RestartPolicy.isEnabled(configuration));
+      
+      RestartPolicy policy = new RestartPolicy();
+      policy.record(configuration, unboundedHealth(1000));
+      policy.record(configuration, unboundedHealth(1500));
+      Assert.assertNull("Grew 500 of 500 allowed", policy.getRestartReason());
+      Assert.assertTrue("Grew more then 3/4 of allowed", policy.isRestartPredicted());
+      
+      policy.record(configuration, unboundedHealth(1501));
+      Assert.assertNotNull(policy.getRestartReason());
+      Assert.assertTrue(policy.getRestartReason().contains(POOL));
+   }
+
+   @Test
+   public void shouldIgnorePoolWithoutMaxWhenGrowthNotSet() throws Exception
+   {
+      Configuration configuration = new Configuration();
+      configuration.setRestartMemoryThreshold(0.9);
+      
+      RestartPolicy policy = new RestartPolicy();
+      policy.record(configuration, unboundedHealth(1000));
+      policy.record(configuration, unboundedHealth(100000));
+      Assert.assertNull(policy.getRestartReason());
+   }
+
+   @Test
+   public void shouldResetAndRecordReasonOnRestart() throws Exception
+   {
+      Configuration configuration = new Configuration();
+      configuration.setRestartLoadedClassGrowth(50);
+      
+      RestartPolicy policy = new RestartPolicy();
+      policy.record(configuration, health(0, 1000, 10));
+      policy.record(configuration, health(0, 1100, 10));
+      String reason = policy.getRestartReason();
+      
+      policy.restarted(reason);
+      
+      Assert.assertNull(policy.getRestartReason());
+      Assert.assertEquals(1, policy.getRestartReasons().size());
+      Assert.assertEquals(reason, policy.getRestartReasons().get(0));
+      
+      // new baseline after restart
+      policy.record(configuration, health(0, 1100, 10));
+      Assert.assertNull(policy.getRestartReason());
+   }
+
+   @Test
+   public void shouldSamplePlatformMBeanServer() throws Exception
+   {
+      ContainerHealth health = ContainerHealth.sample(ManagementFactory.getPlatformMBeanServer());
+      
+      Assert.assertTrue(health.getLoadedClassCount() > 0);
+      Assert.assertTrue(health.getThreadCount() > 0);
+      Assert.assertFalse(health.getPoolNames().isEmpty());
+   }
+   
+   @Test
+   public void shouldSampleEmbeddedContainerThroughPlatformMBeanServer() throws Exception
+   {
+      Configuration configuration = new Configuration();
+      configuration.setRestartMemoryThreshold(0.9);
+      configuration.addContainerConfig(new EmbeddedConfiguration());
+      
+      Assert.assertTrue(new RestartPolicy().sample(configuration));
+   }
+
+   @Test
+   public void shouldNotSampleRemoteContainerWithoutServiceUrl() throws Exception
+   {
+      Configuration configuration = new Configuration();
+      configuration.setRestartMemoryThreshold(0.9);
+      configuration.addContainerConfig(new RemoteConfiguration());
+      
+      RestartPolicy policy = new RestartPolicy();
+      Assert.assertFalse(policy.sample(configuration));
+      Assert.assertFalse(policy.sample(configuration));
+      Assert.assertNull(policy.getRestartReason());
+   }
+   
+   private ContainerHealth health(long used, int classes, int threads)
+   {
+      Map<String, Long> poolUsed = new HashMap<String, Long>();
+      Map<String, Long> poolMax = new HashMap<String, Long>();
+      poolUsed.put(POOL, used);
+      poolMax.put(POOL, MAX);
+      return new ContainerHealth(poolUsed, poolMax, classes, threads);
+   }
+   
+   private ContainerHealth unboundedHealth(long used)
+   {
+      Map<String, Long> poolUsed = new HashMap<String, Long>();
+      poolUsed.put(POOL, used);
+      return new ContainerHealth(poolUsed, new HashMap<String, Long>(), 100, 10);
+   }
+   
+   private static class EmbeddedConfiguration implements EmbeddedContainerConfiguration
+   {
+      public ContainerProfile getContainerProfile()
+      {
+         return ContainerProfile.CLIENT;
+      }
+   }
+   
+   private static class RemoteConfiguration implements ContainerConfiguration
+   {
+      public ContainerProfile getContainerProfile()
+      {
+         return ContainerProfile.CLIENT;
+      }
+   }
+}
@@ -0,0 +1,288 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.arquillian.impl.DynamicServiceLoaderTestCase.Service;
+import org.jboss.arquillian.impl.DynamicServiceLoaderTestCase.ServiceImpl1;
+import org.jboss.arquillian.impl.DynamicServiceLoaderTestCase.ServiceImpl2;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verify the behavior of the ServiceIndexGenerator and the DynamicServiceLoader's use of the index.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class ServiceIndexGeneratorTestCase
+{
+   private File outputDirectory;
+   
+   @Before
+   public void createOutputDirectory() throws Exception
+   {
+      outputDirectory = File.createTempFile("arquillian", "index");
+      outputDirectory.delete();
+      outputDirectory.mkdirs();
+   }
+   
+   @After
+   public void deleteOutputDirectory() throws Exception
+   {
+      File indexFile = new File(outputDirectory, DynamicServiceLoader.SERVICE_INDEX);
+      while(!indexFile.equals(outputDirectory.getParentFile()))
+      {
+         indexFile.delete();
+         indexFile = indexFile.getParentFile();
+      }
+   }
+   
+   @Test
+   public void shouldIndexServicesInClassPathOrder() throws Exception
+   {
+      Map<String, List<String>> services = new ServiceIndexGenerator(getTestClassesDirectory()).scan();
+      
+      Assert.assertEquals(
+            "Verify that the services were indexed in the defined order",
+            Arrays.asList(ServiceImpl1.class.getName(), ServiceImpl2.class.getName()),
+            services.get(Service.class.getName()));
+   }
+   
+   @Test
+   public void shouldGenerateIndexFile() throws Exception
+   {
+      File indexFile = new ServiceIndexGenerator(getTestClassesDirectory()).generate(outputDirectory);
+      
+      Assert.assertTrue(
+            "Verify that the index file was generated", 
+            indexFile.isFile());
+   }
+
+   @Test
+   public void shouldLoadServicesFromIndex() throws Exception
+   {
+      File indexFile = new File(outputDirectory, DynamicServiceLoader.SERVICE_INDEX);
+      indexFile.getParentFile().mkdirs();
+      FileOutputStream out = new FileOutputStream(indexFile);
+      out.write((Service.class.getName() + "=" + ServiceImpl2.class.getName() + "\n").getBytes("UTF-8"));
+      out.close();
+      
+      ClassLoader previous = Thread.currentThread().getContextClassLoader();
+      Thread.currentThread().setContextClassLoader(
+            new URLClassLoader(new URL[] {outputDirectory.toURI().toURL()}, previous));
+      try
+      {
+         Collection<Service> services = new DynamicServiceLoader().all(Service.class);
+         
+         Assert.assertEquals(
+               "Verify that only the services in the index were loaded", 
+               1, services.size());
+         Assert.assertEquals(ServiceImpl2.class, services.iterator().next().getClass());
+      }
+      finally
+      {
+         Thread.currentThread().setContextClassLoader(previous);
+      }
+   }
+   
+   @Test
+   public void shouldScanWhenIndexedClassPathEntryChanged() throws Exception
+   {
+      File classPathEntry = new File(outputDirectory, "entry.jar");
+      classPathEntry.createNewFile();
+      classPathEntry.setLastModified(10000);
+      try
+      {
+         ClassLoader previous = Thread.currentThread().getContextClassLoader();
+         generateEmptyIndex(new URLClassLoader(
+               new URL[] {outputDirectory.toURI().toURL(), classPathEntry.toURI().toURL()}, previous));
+         try
+         {
+            Thread.currentThread().setContextClassLoader(new URLClassLoader(
+                  new URL[] {outputDirectory.toURI().toURL(), classPathEntry.toURI().toURL()}, previous));
+            Assert.assertEquals(
+                  "Verify that the up to date index, which has no services, is used", 
+                  0, new DynamicServiceLoader().all(Service.class).size());
+            
+            classPathEntry.setLastModified(20000);
+            Thread.currentThread().setContextClassLoader(new URLClassLoader(
+                  new URL[] {outputDirectory.toURI().toURL(), classPathEntry.toURI().toURL()}, previous));
+            
+            Assert.assertEquals(
+                  "Verify that the services files are scanned when the index is out of date", 
+                  2, new DynamicServiceLoader().all(Service.class).size());
+         }
+         finally
+         {
+            Thread.currentThread().setContextClassLoader(previous);
+         }
+      }
+      finally
+      {
+         classPathEntry.delete();
+      }
+   }
+   
+   @Test
+   public void shouldScanWhenClassPathEntryWithServicesIsAdded() throws Exception
+   {
+      File addedEntry = new File(outputDirectory, "added");
+      File serviceFile = new File(addedEntry, "META-INF/services/" + Service.class.getName());
+      serviceFile.getParentFile().mkdirs();
+      FileOutputStream out = new FileOutputStream(serviceFile);
+      out.write((ServiceImpl1.class.getName() + "\n").getBytes("UTF-8"));
+      out.close();
+      try
+      {
+         ClassLoader previous = Thread.currentThread().getContextClassLoader();
+         generateEmptyIndex(new URLClassLoader(new URL[] {outputDirectory.toURI().toURL()}, previous));
+         try
+         {
+            Thread.currentThread().setContextClassLoader(new URLClassLoader(
+                  new URL[] {outputDirectory.toURI().toURL(), addedEntry.toURI().toURL()}, previous));
+            
+            Assert.assertEquals(
+                  "Verify that the services files are scanned when a entry with services is added", 
+                  2, new DynamicServiceLoader().all(Service.class).size());
+         }
+         finally
+         {
+            Thread.currentThread().setContextClassLoader(previous);
+         }
+      }
+      finally
+      {
+         serviceFile.delete();
+         new File(addedEntry, "META-INF/services").delete();
+         new File(addedEntry, "META-INF").delete();
+         addedEntry.delete();
+      }
+   }
+   
+   @Test
+   public void shouldUseIndexWhenAddedClassPathEntryHasNoServices() throws Exception
+   {
+      File addedEntry = new File(outputDirectory, "added");
+      addedEntry.mkdirs();
+      try
+      {
+         ClassLoader previous = Thread.currentThread().getContextClassLoader();
+         generateEmptyIndex(new URLClassLoader(new URL[] {outputDirectory.toURI().toURL()}, previous));
+         try
+         {
+            Thread.currentThread().setContextClassLoader(new URLClassLoader(
+                  new URL[] {outputDirectory.toURI().toURL(), addedEntry.toURI().toURL()}, previous));
+            
+            Assert.assertEquals(
+                  "Verify that the index is used when the added entry has no services", 
+                  0, new DynamicServiceLoader().all(Service.class).size());
+         }
+         finally
+         {
+            Thread.currentThread().setContextClassLoader(previous);
+         }
+      }
+      finally
+      {
+         addedEntry.delete();
+      }
+   }
+   
+   @Test
+   public void shouldReadIndexedClassPathEntryContainingHash() throws Exception
+   {
+      File hashEntry = new File(outputDirectory, "entry#1");
+      hashEntry.mkdirs();
+      try
+      {
+         ClassLoader previous = Thread.currentThread().getContextClassLoader();
+         generateEmptyIndex(new URLClassLoader(
+               new URL[] {outputDirectory.toURI().toURL(), hashEntry.toURI().toURL()}, previous));
+         try
+         {
+            Thread.currentThread().setContextClassLoader(new URLClassLoader(
+                  new URL[] {outputDirectory.toURI().toURL(), hashEntry.toURI().toURL()}, previous));
+            
+            Assert.assertEquals(
+                  "Verify that the index is up to date", 
+                  0, new DynamicServiceLoader().all(Service.class).size());
+         }
+         finally
+         {
+            Thread.currentThread().setContextClassLoader(previous);
+         }
+      }
+      finally
+      {
+         hashEntry.delete();
+      }
+   }
+   
+   /*
+    * Generate the index for the classpath of the loader, and drop the indexed services so the use of the 
+    * index can be told from a scan.
+    */
+   private void generateEmptyIndex(ClassLoader loader) throws Exception
+   {
+      StringBuilder classPath = new StringBuilder();
+      for(File entry : DynamicServiceLoader.getClassPath(loader))
+      {
+         classPath.append(entry.getAbsolutePath()).append(File.pathSeparator);
+      }
+      File indexFile = new ServiceIndexGenerator(classPath.toString()).generate(outputDirectory);
+      
+      BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(indexFile), "UTF-8"));
+      StringBuilder index = new StringBuilder();
+      try
+      {
+         String line;
+         while((line = reader.readLine()) != null)
+         {
+            if(line.startsWith(DynamicServiceLoader.SERVICE_INDEX_CLASSPATH))
+            {
+               index.append(line).append("\n");
+            }
+         }
+      }
+      finally
+      {
+         reader.close();
+      }
+      FileOutputStream out = new FileOutputStream(indexFile);
+      out.write(index.toString().getBytes("UTF-8"));
+      out.close();
+   }
+   
+   private String getTestClassesDirectory() throws Exception
+   {
+      return new File(getClass().getProtectionDomain().getCodeSource().getLocation().toURI()).getAbsolutePath();
+   }
+}
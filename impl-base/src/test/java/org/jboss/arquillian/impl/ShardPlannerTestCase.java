@@ -0,0 +1,94 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * ShardPlannerTestCase
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class ShardPlannerTestCase
+{
+   @Test
+   public void shouldBalanceOnRecordedDurations() throws Exception
+   {
+      DurationHistory history = new DurationHistory();
+      history.record("Heavy", 5000);
+      for(int i = 0; i < 5; i++)
+      {
+         history.record("Light" + i, 1000);
+      }
+      
+      List<List<String>> shards = new ShardPlanner(history).plan(
+            Arrays.asList("Light0", "Light1", "Heavy", "Light2", "Light3", "Light4"), 2);
+      
+      Assert.assertEquals(2, shards.size());
+      Assert.assertEquals(Arrays.asList("Heavy"), shards.get(0));
+      Assert.assertEquals(5, shards.get(1).size());
+   }
+
+   @Test
+   public void shouldBalanceOnClassCountWithoutHistory() throws Exception
+   {
+      List<List<String>> shards = new ShardPlanner(new DurationHistory()).plan(
+            Arrays.asList("A", "B", "C", "D", "E"), 2);
+      
+      Assert.assertEquals(3, shards.get(0).size());
+      Assert.assertEquals(2, shards.get(1).size());
+   }
+
+   @Test
+   public void shouldEstimateUnknownClassesAsAverage() throws Exception
+   {
+      DurationHistory history = new DurationHistory();
+      history.record("A", 100);
+      history.record("B", 300);
+      
+      // New is estimated to 200, and should join A
+      List<List<String>> shards = new ShardPlanner(history).plan(Arrays.asList("A", "B", "New"), 2);
+      
+      Assert.assertEquals(Arrays.asList("B"), shards.get(0));
+      Assert.assertEquals(Arrays.asList("New", "A"), shards.get(1));
+   }
+
+   @Test
+   public void shouldPersistHistory() throws Exception
+   {
+      File file = File.createTempFile("arquillian-durations", ".properties");
+      file.deleteOnExit();
+      
+      DurationHistory history = new DurationHistory();
+      history.record("A", 100);
+      history.save(file);
+      
+      DurationHistory loaded = DurationHistory.load(file);
+      Assert.assertEquals(Long.valueOf(100), loaded.get("A"));
+      Assert.assertNull(loaded.get("B"));
+      
+      Assert.assertTrue(
+            "A missing file should load as a empty history",
+            DurationHistory.load(new File(file.getPath() + ".missing")).isEmpty());
+   }
+}
@@ -0,0 +1,180 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl;
+
+import java.util.Arrays;
+
+import org.jboss.arquillian.api.Deployment;
+import org.jboss.arquillian.spi.Configuration;
+import org.jboss.arquillian.spi.TestClass;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verify the behavior of the SharedDeployments registry
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class SharedDeploymentsTestCase
+{
+   @Test
+   public void shouldCreateSameFingerprintForSameContent() throws Exception
+   {
+      Assert.assertEquals(
+            "Verify that archives with the same content have the same fingerprint",
+            SharedDeployments.fingerprint(createWebArchive()), 
+            SharedDeployments.fingerprint(createWebArchive()));
+   }
+
+   @Test
+   public void shouldCreateDifferentFingerprintForDifferentContent() throws Exception
+   {
+      Assert.assertFalse(
+            "Verify that archives with different content have different fingerprints",
+            SharedDeployments.fingerprint(createWebArchive()).equals(
+                  SharedDeployments.fingerprint(createWebArchive().addClass(SharedDeploymentsTestCase.class))));
+   }
+
+   @Test
+   public void shouldNotShareDeploymentsByDefault() throws Exception
+   {
+      Assert.assertNull(
+            "Verify that deployments are not shared unless configured",
+            new SharedDeployments().getKey(new TestClass(FirstUser.class), new Configuration()));
+   }
+
+   @Test
+   public void shouldShareIdenticalDeploymentsIfConfigured() throws Exception
+   {
+      SharedDeployments sharedDeployments = new SharedDeployments();
+      
+      Assert.assertEquals(
+            "Verify that identical user deployments are shared under the same key",
+            sharedDeployments.getKey(new TestClass(FirstUser.class), createConfiguration()), 
+            sharedDeployments.getKey(new TestClass(SecondUser.class), createConfiguration()));
+      Assert.assertFalse(
+            "Verify that different user deployments are not shared",
+            sharedDeployments.getKey(new TestClass(FirstUser.class), createConfiguration()).equals(
+                  sharedDeployments.getKey(new TestClass(OtherUser.class), createConfiguration())));
+   }
+   
+   @Test
+   public void shouldIncludeAnnouncedTestClassesInContainer() throws Exception
+   {
+      SharedDeployments sharedDeployments = new SharedDeployments();
+      sharedDeployments.expect(new TestClass(FirstUser.class), createConfiguration());
+      sharedDeployments.expect(new TestClass(SecondUser.class), createConfiguration());
+      
+      TestClass testClass = new TestClass(FirstUser.class);
+      SharedDeployments.Entry entry = sharedDeployments.getEntry(testClass, createConfiguration());
+      
+      Assert.assertEquals(
+            "Verify that the other announced test class is added to the shared deployment",
+            Arrays.asList(SecondUser.class), 
+            sharedDeployments.getTestClassesToInclude(entry, testClass));
+   }
+   
+   @Test
+   public void shouldOnlyServeTestClassesInTheDeployment() throws Exception
+   {
+      SharedDeployments sharedDeployments = new SharedDeployments();
+      SharedDeployments.Entry entry = sharedDeployments.getEntry(new TestClass(FirstUser.class), createConfiguration());
+      entry.deployed(FirstUser.create().addClass(FirstUser.class), null);
+      
+      Assert.assertTrue(entry.canServe(new TestClass(FirstUser.class)));
+      Assert.assertFalse(
+            "Verify that a in container test class not in the deployment can not use it",
+            entry.canServe(new TestClass(SecondUser.class)));
+   }
+   
+   @Test
+   public void shouldBeIdleWhenLastAnnouncedUserIsDone() throws Exception
+   {
+      SharedDeployments sharedDeployments = new SharedDeployments();
+      sharedDeployments.expect(new TestClass(FirstUser.class), createConfiguration());
+      sharedDeployments.expect(new TestClass(SecondUser.class), createConfiguration());
+      
+      SharedDeployments.Entry entry = sharedDeployments.getEntry(new TestClass(FirstUser.class), createConfiguration());
+      JavaArchive archive = FirstUser.create();
+      entry.deployed(archive, null);
+
+      sharedDeployments.join(entry, new TestClass(FirstUser.class));
+      Assert.assertTrue(sharedDeployments.leave(archive));
+      Assert.assertTrue(
+            "Verify that the deployment is kept for the announced test class",
+            sharedDeployments.removeIdle().isEmpty());
+      
+      sharedDeployments.join(entry, new TestClass(SecondUser.class));
+      Assert.assertTrue(
+            "Verify that the deployment is kept while in use",
+            sharedDeployments.removeIdle().isEmpty());
+      sharedDeployments.leave(archive);
+      
+      Assert.assertEquals(
+            "Verify that the deployment is idle after the last user",
+            1, sharedDeployments.removeIdle().size());
+      Assert.assertFalse(sharedDeployments.leave(archive));
+   }
+   
+   private Configuration createConfiguration()
+   {
+      Configuration configuration = new Configuration();
+      configuration.setShareDeployments(true);
+      return configuration;
+   }
+   
+   private WebArchive createWebArchive()
+   {
+      return ShrinkWrap.create(WebArchive.class, "test.war")
+               .addLibrary(
+                     ShrinkWrap.create(JavaArchive.class, "lib.jar")
+                        .addClass(DynamicServiceLoader.class));
+   }
+   
+   private static class FirstUser
+   {
+      @Deployment
+      public static JavaArchive create()
+      {
+         return ShrinkWrap.create(JavaArchive.class, "test.jar").addClass(DynamicServiceLoader.class);
+      }
+   }
+   
+   private static class SecondUser
+   {
+      @SuppressWarnings("unused")
+      @Deployment
+      public static JavaArchive create()
+      {
+         return ShrinkWrap.create(JavaArchive.class, "test.jar").addClass(DynamicServiceLoader.class);
+      }
+   }
+   
+   private static class OtherUser
+   {
+      @SuppressWarnings("unused")
+      @Deployment
+      public static JavaArchive create()
+      {
+         return ShrinkWrap.create(JavaArchive.class, "test.jar").addClass(Validate.class);
+      }
+   }
+}
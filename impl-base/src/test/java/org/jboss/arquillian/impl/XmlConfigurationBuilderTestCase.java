@@ -24,6 +24,7 @@ import org.jboss.arquillian.spi.ConfigurationException;
 import org.jboss.arquillian.spi.ContainerConfiguration;
 import org.jboss.arquillian.spi.ContainerProfile;
 import org.jboss.arquillian.spi.ExtensionConfiguration;
+import org.jboss.arquillian.spi.PooledContainerConfiguration;
 import org.jboss.arquillian.spi.ServiceLoader;
 import org.junit.Assert;
 import org.junit.Test;
@@ -136,6 +137,30 @@ public class XmlConfigurationBuilderTestCase
       Assert.assertEquals("localhost", extensionConfig.getServerHost());
    }
    
+   @Test
+   public void testShardConfigurationOffsetPastPoolAndStandbyInstances() throws Exception
+   {
+      System.setProperty(XmlConfigurationBuilder.SHARD_PROPERTY, "2");
+      try
+      {
+         Configuration configuration = new XmlConfigurationBuilder(
+               "arquillian-shard.xml", 
+               new MockServiceLoader(new MockPooledContainerConfiguration())).build();
+         
+         Assert.assertEquals(
+               "Shard should be offset by pool size plus standby per shard", 
+               8080 + 2 * (3 + 1), 
+               configuration.getContainerConfig(MockPooledContainerConfiguration.class).getPort());
+         Assert.assertEquals("/tmp/", configuration.getDeploymentExportPath());
+         Assert.assertEquals(3, configuration.getContainerPoolSize());
+         Assert.assertTrue(configuration.isStandbyContainer());
+      }
+      finally
+      {
+         System.clearProperty(XmlConfigurationBuilder.SHARD_PROPERTY);
+      }
+   }
+   
    /**
     * Mocks the ServiceLoader to return configuration we want to test
     * 
@@ -287,6 +312,33 @@ public class XmlConfigurationBuilderTestCase
 
    }
    
+   class MockPooledContainerConfiguration implements PooledContainerConfiguration
+   {
+      private int port;
+      
+      public ContainerProfile getContainerProfile()
+      {
+         return ContainerProfile.STANDALONE;
+      }
+      
+      public PooledContainerConfiguration forPoolInstance(int instance)
+      {
+         MockPooledContainerConfiguration config = new MockPooledContainerConfiguration();
+         config.setPort(port + instance);
+         return config;
+      }
+
+      public int getPort()
+      {
+         return port;
+      }
+
+      public void setPort(int port)
+      {
+         this.port = port;
+      }
+   }
+   
    class MockExtensionConfiguration implements ExtensionConfiguration
    {
       private String browser;
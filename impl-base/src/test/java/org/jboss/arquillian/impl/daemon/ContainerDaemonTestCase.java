@@ -0,0 +1,221 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.impl.daemon;
+
+import java.io.File;
+
+import org.jboss.arquillian.impl.context.SuiteContext;
+import org.jboss.arquillian.spi.Configuration;
+import org.jboss.arquillian.spi.ContainerMethodExecutor;
+import org.jboss.arquillian.spi.Context;
+import org.jboss.arquillian.spi.DeployableContainer;
+import org.jboss.arquillian.spi.ServiceLoader;
+import org.jboss.arquillian.spi.TestMethodExecutor;
+import org.jboss.arquillian.spi.TestResult;
+import org.jboss.arquillian.spi.TestResult.Status;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+/**
+ * Verify the {@link DaemonContainer} forwards to a running {@link ContainerDaemon}.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class ContainerDaemonTestCase
+{
+   @Mock
+   private ServiceLoader serviceLoader;
+   
+   @Mock
+   private DeployableContainer container;
+   
+   @Mock
+   private ContainerMethodExecutor executor;
+   
+   @Mock
+   private TestMethodExecutor testMethodExecutor;
+   
+   @Mock
+   private Context clientContext;
+
+   @Test
+   public void shouldForwardToRunningDaemonAndKeepItRunningOnStop() throws Exception
+   {
+      Mockito.when(container.deploy(Mockito.any(Context.class), Mockito.any(Archive.class))).thenReturn(executor);
+      Mockito.when(executor.invoke(Mockito.any(TestMethodExecutor.class))).thenReturn(new TestResult(Status.PASSED));
+      Mockito.when(testMethodExecutor.getInstance()).thenReturn(new DaemonTest());
+      Mockito.when(testMethodExecutor.getMethod()).thenReturn(DaemonTest.class.getMethod("shouldRun"));
+      Mockito.when(clientContext.getServiceLoader()).thenReturn(serviceLoader);
+      
+      Configuration configuration = new Configuration();
+      String classPath = "";
+      
+      final ContainerDaemon daemon = new ContainerDaemon(
+            container, 
+            new SuiteContext(serviceLoader), 
+            DaemonContainer.getDaemonId(configuration, classPath), 
+            ContainerDaemon.getClassPathFingerprint(classPath));
+      daemon.bind();
+      Thread daemonThread = new Thread(new Runnable()
+      {
+         public void run()
+         {
+            try
+            {
+               daemon.run();
+            }
+            catch (Exception e) 
+            {
+               throw new RuntimeException(e);
+            }
+         }
+      });
+      daemonThread.start();
+      
+      DaemonContainer first = new DaemonContainer(classPath);
+      first.setup(clientContext, configuration);
+      first.start(clientContext);
+      first.stop(clientContext);
+      
+      Assert.assertTrue("Daemon should keep running after stop", daemonThread.isAlive());
+
+      DaemonContainer second = new DaemonContainer(classPath);
+      second.setup(clientContext, configuration);
+      second.start(clientContext);
+      
+      JavaArchive archive = ShrinkWrap.create(JavaArchive.class, "test.jar").addClass(DaemonTest.class);
+      ContainerMethodExecutor remoteExecutor = second.deploy(clientContext, archive);
+      TestResult result = remoteExecutor.invoke(testMethodExecutor);
+      second.undeploy(clientContext, archive);
+      
+      Assert.assertEquals(Status.PASSED, result.getStatus());
+      
+      ArgumentCaptor<Archive> deployed = ArgumentCaptor.forClass(Archive.class);
+      Mockito.verify(container).deploy(Mockito.any(Context.class), deployed.capture());
+      Assert.assertEquals("test.jar", deployed.getValue().getName());
+      Assert.assertTrue(deployed.getValue().contains(
+            "/org/jboss/arquillian/impl/daemon/ContainerDaemonTestCase$DaemonTest.class"));
+      
+      ArgumentCaptor<TestMethodExecutor> invoked = ArgumentCaptor.forClass(TestMethodExecutor.class);
+      Mockito.verify(executor).invoke(invoked.capture());
+      Assert.assertEquals("shouldRun", invoked.getValue().getMethod().getName());
+      Assert.assertEquals(DaemonTest.class.getName(), invoked.getValue().getInstance().getClass().getName());
+      Assert.assertNotSame(
+            "Test class should be defined from the deployment", 
+            DaemonTest.class, invoked.getValue().getInstance().getClass());
+      
+      Mockito.verify(container).undeploy(Mockito.any(Context.class), Mockito.any(Archive.class));
+      Mockito.verify(container, Mockito.never()).stop(Mockito.any(Context.class));
+      
+      second.shutdown();
+      daemonThread.join(5000);
+      
+      Assert.assertFalse("Daemon should stop on shutdown", daemonThread.isAlive());
+      Assert.assertFalse(
+            "Port file should be removed on shutdown", 
+            ContainerDaemon.getPortFile(DaemonContainer.getDaemonId(configuration, classPath)).exists());
+   }
+   
+   @Test
+   public void shouldNotChangeFingerprintWhenClassPathDirectoryChanges() throws Exception
+   {
+      File directory = File.createTempFile("arquillian", "classes");
+      directory.delete();
+      File classFile = new File(new File(directory, "org"), "Test.class");
+      classFile.getParentFile().mkdirs();
+      try
+      {
+         classFile.createNewFile();
+         classFile.setLastModified(10000);
+         String fingerprint = ContainerDaemon.getClassPathFingerprint(directory.getPath());
+         
+         classFile.setLastModified(System.currentTimeMillis() + 10000);
+         new File(classFile.getParentFile(), "Added.class").createNewFile();
+         Assert.assertEquals(
+               "Fingerprint should not change when classes are recompiled",
+               fingerprint, ContainerDaemon.getClassPathFingerprint(directory.getPath()));
+      }
+      finally
+      {
+         new File(classFile.getParentFile(), "Added.class").delete();
+         classFile.delete();
+         classFile.getParentFile().delete();
+         directory.delete();
+      }
+   }
+   
+   @Test
+   public void shouldChangeFingerprintWhenJarChanges() throws Exception
+   {
+      File jar = File.createTempFile("arquillian", ".jar");
+      try
+      {
+         jar.setLastModified(10000);
+         String fingerprint = ContainerDaemon.getClassPathFingerprint(jar.getPath());
+         
+         Assert.assertEquals(fingerprint, ContainerDaemon.getClassPathFingerprint(jar.getPath()));
+         
+         jar.setLastModified(System.currentTimeMillis() + 10000);
+         Assert.assertFalse(
+               "Fingerprint should change when a jar is rebuilt",
+               fingerprint.equals(ContainerDaemon.getClassPathFingerprint(jar.getPath())));
+      }
+      finally
+      {
+         jar.delete();
+      }
+   }
+   
+   @Test
+   public void shouldIdentifyDaemonBySystemProperties() throws Exception
+   {
+      Configuration configuration = new Configuration();
+      String id = DaemonContainer.getDaemonId(configuration, "");
+      System.setProperty("arquillian.daemon.test", "true");
+      try
+      {
+         Assert.assertEquals("true", DaemonContainer.getSystemProperties().get("arquillian.daemon.test"));
+         Assert.assertFalse(
+               "Daemon id should change with the system properties", 
+               id.equals(DaemonContainer.getDaemonId(configuration, "")));
+         Assert.assertFalse(
+               "JVM properties should be set by the daemon JVM", 
+               DaemonContainer.getSystemProperties().containsKey("java.home"));
+      }
+      finally
+      {
+         System.clearProperty("arquillian.daemon.test");
+      }
+   }
+   
+   public static class DaemonTest
+   {
+      public void shouldRun()
+      {
+      }
+   }
+}
@@ -16,12 +16,18 @@
  */
 package org.jboss.arquillian.impl.event;
 
+import org.jboss.arquillian.impl.context.ClassContext;
 import org.jboss.arquillian.impl.context.SuiteContext;
+import org.jboss.arquillian.impl.context.TestContext;
+import org.jboss.arquillian.spi.Context;
 import org.jboss.arquillian.spi.ServiceLoader;
+import org.jboss.arquillian.spi.event.suite.BeforeSuite;
 import org.jboss.arquillian.spi.event.suite.EventHandler;
 import org.jboss.arquillian.spi.event.suite.SuiteEvent;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.InOrder;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -76,4 +82,94 @@ public class EventManagerTestCase
       Mockito.verify(handler, Mockito.times(handlerCount)).callback(context, event);
    }
 
+   @Test
+   public void shouldFireToHandlersRegisteredOnSuperType() throws Exception 
+   {
+      SuiteContext context = new SuiteContext(serviceLoader);
+      BeforeSuite event =  new BeforeSuite();
+      
+      EventManager manager = new MapEventManager();
+      manager.register(SuiteEvent.class, handler);
+      
+      manager.fire(context, event);
+      
+      Mockito.verify(handler).callback(context, event);
+   }
+
+   @Test
+   public void shouldFireToHandlersRegisteredDuringFire() throws Exception 
+   {
+      SuiteContext context = new SuiteContext(serviceLoader);
+      SuiteEvent event =  new SuiteEvent();
+      
+      final EventManager manager = new MapEventManager();
+      manager.register(SuiteEvent.class, new EventHandler<SuiteEvent>()
+      {
+         public void callback(Context context, SuiteEvent event) throws Exception
+         {
+            manager.register(SuiteEvent.class, handler);
+         }
+      });
+      
+      manager.fire(context, event);
+      
+      Mockito.verify(handler).callback(context, event);
+   }
+
+   @Test
+   public void shouldFireToHandlersInPrecompiledTable() throws Exception 
+   {
+      SuiteContext context = new SuiteContext(serviceLoader);
+      SuiteEvent event =  new SuiteEvent();
+      
+      DispatchTable table = DispatchTable.EMPTY.with(SuiteEvent.class, handler);
+      
+      EventManager manager = new MapEventManager();
+      manager.register(table);
+      manager.register(SuiteEvent.class, handler);
+      
+      manager.fire(context, event);
+      
+      Mockito.verify(handler, Mockito.times(2)).callback(context, event);
+      Assert.assertEquals(
+            "Registering on the manager should not modify a shared table", 
+            1, table.getHandlers(SuiteEvent.class).length);
+   }
+   
+   @Test
+   public void shouldFireFromRootContextDown() throws Exception 
+   {
+      SuiteContext suiteContext = new SuiteContext(serviceLoader);
+      ClassContext classContext = new ClassContext(suiteContext);
+      TestContext testContext = new TestContext(classContext);
+      SuiteEvent event =  new SuiteEvent();
+      
+      suiteContext.register(SuiteEvent.class, handler);
+      classContext.register(SuiteEvent.class, handler);
+      testContext.register(SuiteEvent.class, handler);
+      
+      testContext.fire(event);
+      
+      InOrder order = Mockito.inOrder(handler);
+      order.verify(handler).callback(suiteContext, event);
+      order.verify(handler).callback(classContext, event);
+      order.verify(handler).callback(testContext, event);
+   }
+
+   @Test
+   public void shouldGetFromClosestContext() throws Exception 
+   {
+      SuiteContext suiteContext = new SuiteContext(serviceLoader);
+      ClassContext classContext = new ClassContext(suiteContext);
+      TestContext testContext = new TestContext(classContext);
+      
+      suiteContext.add(String.class, "suite");
+      suiteContext.add(Integer.class, 1);
+      classContext.add(String.class, "class");
+      
+      Assert.assertEquals("class", testContext.get(String.class));
+      Assert.assertEquals(Integer.valueOf(1), testContext.get(Integer.class));
+      Assert.assertNull(testContext.get(Long.class));
+      Assert.assertSame(serviceLoader, testContext.getServiceLoader());
+   }
 }
@@ -18,7 +18,11 @@ package org.jboss.arquillian.impl.handler;
 
 import junit.framework.Assert;
 
+import org.jboss.arquillian.api.Deployment;
+import org.jboss.arquillian.api.SharedDeployment;
 import org.jboss.arquillian.impl.DeploymentGenerator;
+import org.jboss.arquillian.impl.PrefetchedDeployments;
+import org.jboss.arquillian.impl.SharedDeployments;
 import org.jboss.arquillian.impl.context.ClassContext;
 import org.jboss.arquillian.impl.context.SuiteContext;
 import org.jboss.arquillian.spi.ServiceLoader;
@@ -48,6 +52,9 @@ public class ArchiveGeneratorTestCase
    
    @Mock
    private DeploymentGenerator generator;
+   
+   @Mock
+   private PrefetchedDeployments prefetched;
 
    @Test(expected = IllegalStateException.class)
    public void shouldThrowIllegalStateExceptionOnMissingDeploymentGenerator() throws Exception
@@ -80,4 +87,38 @@ public class ArchiveGeneratorTestCase
             "Should have exported " + Archive.class.getSimpleName(), 
             context.get(Archive.class));
    }
+   
+   @Test
+   public void shouldDiscardPrefetchedDeploymentWhenServedBySharedDeployment() throws Exception
+   {
+      Archive<?> shared = ShrinkWrap.create(JavaArchive.class, "test.jar");
+      TestClass testClass = new TestClass(SharedDeploymentClass.class);
+      
+      SuiteContext suiteContext = new SuiteContext(serviceLoader);
+      SharedDeployments sharedDeployments = new SharedDeployments();
+      sharedDeployments.getEntry(testClass, null).deployed(shared, null);
+      suiteContext.add(SharedDeployments.class, sharedDeployments);
+      suiteContext.add(PrefetchedDeployments.class, prefetched);
+      
+      ClassContext context = new ClassContext(suiteContext);
+      context.add(DeploymentGenerator.class, generator);
+
+      ArchiveGenerator handler = new ArchiveGenerator();
+      handler.callback(context, new ClassEvent(testClass));
+      
+      Assert.assertSame(shared, context.get(Archive.class));
+      Mockito.verify(prefetched).discard(testClass);
+      Mockito.verify(prefetched, Mockito.never()).take(testClass);
+      Mockito.verifyZeroInteractions(generator);
+   }
+   
+   private static class SharedDeploymentClass 
+   {
+      @SuppressWarnings("unused")
+      @Deployment @SharedDeployment("shared")
+      public static JavaArchive create() 
+      {
+         return ShrinkWrap.create(JavaArchive.class, "test.jar");
+      }
+   }
 }
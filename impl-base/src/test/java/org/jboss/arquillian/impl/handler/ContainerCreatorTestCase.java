@@ -18,9 +18,13 @@ package org.jboss.arquillian.impl.handler;
 
 import junit.framework.Assert;
 
+import org.jboss.arquillian.impl.ContainerPool;
+import org.jboss.arquillian.impl.context.ClassContext;
 import org.jboss.arquillian.impl.context.SuiteContext;
 import org.jboss.arquillian.spi.Configuration;
+import org.jboss.arquillian.spi.ContainerProfile;
 import org.jboss.arquillian.spi.DeployableContainer;
+import org.jboss.arquillian.spi.PooledContainerConfiguration;
 import org.jboss.arquillian.spi.ServiceLoader;
 import org.jboss.arquillian.spi.event.container.AfterSetup;
 import org.jboss.arquillian.spi.event.container.BeforeSetup;
@@ -29,6 +33,7 @@ import org.jboss.arquillian.spi.event.suite.EventHandler;
 import org.jboss.arquillian.spi.event.suite.SuiteEvent;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -79,4 +84,66 @@ public class ContainerCreatorTestCase
             "Should have exported " + DeployableContainer.class,
             context.get(DeployableContainer.class));
    }
+
+   @Test
+   public void shouldCreateAContainerPrPoolInstance() throws Exception
+   {
+      DeployableContainer secondContainer = Mockito.mock(DeployableContainer.class);
+      Mockito.when(serviceLoader.onlyOne(DeployableContainer.class)).thenReturn(container, secondContainer);
+      
+      Configuration configuration = new Configuration();
+      configuration.addContainerConfig(new PooledConfiguration(8080));
+      configuration.setContainerPoolSize(2);
+      
+      SuiteContext context = new SuiteContext(serviceLoader);
+      context.add(Configuration.class, configuration);
+      
+      ContainerCreator handler = new ContainerCreator();
+      handler.callback(context, new SuiteEvent());
+      
+      ArgumentCaptor<Configuration> firstConfiguration = ArgumentCaptor.forClass(Configuration.class);
+      ArgumentCaptor<Configuration> secondConfiguration = ArgumentCaptor.forClass(Configuration.class);
+      Mockito.verify(container).setup(Mockito.eq(context), firstConfiguration.capture());
+      Mockito.verify(secondContainer).setup(Mockito.eq(context), secondConfiguration.capture());
+      
+      Assert.assertEquals(8080, firstConfiguration.getValue().getContainerConfig(PooledConfiguration.class).port);
+      Assert.assertEquals(8081, secondConfiguration.getValue().getContainerConfig(PooledConfiguration.class).port);
+      
+      ContainerPool pool = context.get(ContainerPool.class);
+      Assert.assertNotNull(
+            "Should have exported " + ContainerPool.class,
+            pool);
+      Assert.assertEquals(2, pool.getContainers().size());
+      
+      // each class context leases a different container
+      ClassContext firstClass = new ClassContext(context);
+      ClassContext secondClass = new ClassContext(context);
+      Assert.assertSame(container, pool.acquire(firstClass));
+      Assert.assertSame(secondContainer, pool.acquire(secondClass));
+      Assert.assertSame(secondContainer, secondClass.get(DeployableContainer.class));
+      
+      pool.release(firstClass);
+      pool.release(firstClass);
+      Assert.assertSame(container, pool.acquire(new ClassContext(context)));
+   }
+   
+   private static class PooledConfiguration implements PooledContainerConfiguration
+   {
+      private int port;
+      
+      public PooledConfiguration(int port)
+      {
+         this.port = port;
+      }
+      
+      public ContainerProfile getContainerProfile()
+      {
+         return ContainerProfile.CLIENT;
+      }
+      
+      public PooledContainerConfiguration forPoolInstance(int instance)
+      {
+         return new PooledConfiguration(port + instance);
+      }
+   }
 }
@@ -18,6 +18,9 @@ package org.jboss.arquillian.impl.handler;
 
 import junit.framework.Assert;
 
+import org.jboss.arquillian.api.Deployment;
+import org.jboss.arquillian.api.SharedDeployment;
+import org.jboss.arquillian.impl.SharedDeployments;
 import org.jboss.arquillian.impl.context.ClassContext;
 import org.jboss.arquillian.impl.context.SuiteContext;
 import org.jboss.arquillian.spi.ContainerMethodExecutor;
@@ -105,4 +108,72 @@ public class ContainerDeployerTestCase
       Mockito.verify(eventHandler, Mockito.times(2)).callback(
             Mockito.any(SuiteContext.class), Mockito.any(ContainerEvent.class));
    }
+
+   @Test
+   public void shouldOnlyDeploySharedDeploymentOnce() throws Exception 
+   {
+      SuiteContext suiteContext = new SuiteContext(serviceLoader);
+      suiteContext.add(SharedDeployments.class, new SharedDeployments());
+      suiteContext.add(DeployableContainer.class, container);
+      
+      Mockito.when(container.deploy(Mockito.any(ClassContext.class), Mockito.any(Archive.class))).thenReturn(executor);
+      
+      ContainerDeployer handler = new ContainerDeployer();
+      for(int i = 0; i < 2; i++)
+      {
+         ClassContext context = new ClassContext(suiteContext);
+         context.add(Archive.class, ShrinkWrap.create(JavaArchive.class, "test.jar"));
+         
+         handler.callback(context, new ClassEvent(SharedDeploymentClass.class));
+         
+         Assert.assertEquals(
+               "Should have exported the shared " + ContainerMethodExecutor.class.getSimpleName(), 
+               executor, context.get(ContainerMethodExecutor.class));
+      }
+      
+      // verify that the deployment was only deployed once
+      Mockito.verify(container, Mockito.times(1)).deploy(
+            Mockito.any(ClassContext.class), Mockito.any(Archive.class));
+   }
+   
+   @Test
+   public void shouldUndeployIdleSharedDeploymentBeforeNextDeployment() throws Exception 
+   {
+      SharedDeployments sharedDeployments = new SharedDeployments();
+      SuiteContext suiteContext = new SuiteContext(serviceLoader);
+      suiteContext.add(SharedDeployments.class, sharedDeployments);
+      suiteContext.add(DeployableContainer.class, container);
+      
+      Mockito.when(container.deploy(Mockito.any(ClassContext.class), Mockito.any(Archive.class))).thenReturn(executor);
+      
+      ContainerDeployer handler = new ContainerDeployer();
+      
+      ClassContext sharedContext = new ClassContext(suiteContext);
+      Archive<?> shared = ShrinkWrap.create(JavaArchive.class, "test.jar");
+      sharedContext.add(Archive.class, shared);
+      handler.callback(sharedContext, new ClassEvent(SharedDeploymentClass.class));
+      
+      ClassContext context = new ClassContext(suiteContext);
+      context.add(Archive.class, ShrinkWrap.create(JavaArchive.class, "other.jar"));
+      handler.callback(context, new ClassEvent(getClass()));
+      
+      // verify that the shared deployment is kept while in use
+      Mockito.verify(container, Mockito.never()).undeploy(Mockito.any(ClassContext.class), Mockito.any(Archive.class));
+      
+      Assert.assertTrue(sharedDeployments.leave(shared));
+      handler.callback(context, new ClassEvent(getClass()));
+      
+      // verify that the idle shared deployment was undeployed
+      Mockito.verify(container).undeploy(context, shared);
+   }
+   
+   private static class SharedDeploymentClass 
+   {
+      @SuppressWarnings("unused")
+      @Deployment @SharedDeployment("shared")
+      public static JavaArchive create() 
+      {
+         return ShrinkWrap.create(JavaArchive.class, "test.jar");
+      }
+   }
 }
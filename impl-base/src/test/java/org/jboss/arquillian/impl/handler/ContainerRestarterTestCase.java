@@ -16,20 +16,36 @@
  */
 package org.jboss.arquillian.impl.handler;
 
+import java.util.HashMap;
+
+import org.jboss.arquillian.api.Deployment;
+import org.jboss.arquillian.impl.ContainerHealth;
+import org.jboss.arquillian.impl.ContainerStandby;
+import org.jboss.arquillian.impl.RestartPolicy;
 import org.jboss.arquillian.impl.context.ClassContext;
 import org.jboss.arquillian.impl.context.SuiteContext;
 import org.jboss.arquillian.spi.Configuration;
+import org.jboss.arquillian.spi.ContainerProfile;
+import org.jboss.arquillian.spi.Context;
 import org.jboss.arquillian.spi.DeployableContainer;
+import org.jboss.arquillian.spi.PooledContainerConfiguration;
 import org.jboss.arquillian.spi.ServiceLoader;
 import org.jboss.arquillian.spi.event.container.AfterStart;
 import org.jboss.arquillian.spi.event.container.AfterStop;
 import org.jboss.arquillian.spi.event.container.BeforeStart;
 import org.jboss.arquillian.spi.event.container.BeforeStop;
 import org.jboss.arquillian.spi.event.container.ContainerEvent;
+import org.jboss.arquillian.spi.event.suite.BeforeClass;
 import org.jboss.arquillian.spi.event.suite.EventHandler;
 import org.jboss.arquillian.spi.event.suite.SuiteEvent;
+import org.jboss.arquillian.spi.event.suite.UpcomingClasses;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
@@ -84,6 +100,79 @@ public class ContainerRestarterTestCase
             Mockito.any(SuiteContext.class), Mockito.any(ContainerEvent.class));
    }
    
+   @Test
+   public void shouldRestartWhenRestartPolicyRequestsIt() throws Exception
+   {
+      Configuration configuration = new Configuration();
+      configuration.setRestartThreadGrowth(0);
+      
+      RestartPolicy policy = new RestartPolicy();
+      
+      ClassContext context = new ClassContext(new SuiteContext(serviceLoader));
+      context.add(Configuration.class, configuration);
+      context.add(DeployableContainer.class, container);
+      context.add(RestartPolicy.class, policy);
+      
+      ContainerRestarter handler = new ContainerRestarter();
+      
+      policy.record(configuration, new ContainerHealth(new HashMap<String, Long>(), new HashMap<String, Long>(), 0, 10));
+      handler.callback(context, new SuiteEvent());
+      Mockito.verify(container, Mockito.times(0)).stop(context);
+      
+      policy.record(configuration, new ContainerHealth(new HashMap<String, Long>(), new HashMap<String, Long>(), 0, 11));
+      handler.callback(context, new SuiteEvent());
+      Mockito.verify(container, Mockito.times(1)).stop(context);
+      Mockito.verify(container, Mockito.times(1)).start(context);
+      
+      Assert.assertEquals(1, policy.getRestartReasons().size());
+      Assert.assertNull(policy.getRestartReason());
+   }
+   
+   @Test
+   public void shouldSwitchToStandbyContainerOnRestart() throws Exception
+   {
+      DeployableContainer standbyContainer = Mockito.mock(DeployableContainer.class);
+      Mockito.when(serviceLoader.onlyOne(DeployableContainer.class)).thenReturn(standbyContainer);
+      
+      Configuration configuration = new Configuration();
+      configuration.addContainerConfig(new PooledConfiguration());
+      configuration.setMaxDeploymentsBeforeRestart(5);
+      configuration.setStandbyContainer(true);
+      
+      ContainerStandby standby = new ContainerStandby();
+      
+      SuiteContext suiteContext = new SuiteContext(serviceLoader);
+      suiteContext.add(Configuration.class, configuration);
+      suiteContext.add(DeployableContainer.class, container);
+      suiteContext.add(ContainerStandby.class, standby);
+      suiteContext.register(BeforeStart.class, eventHandler);
+      
+      ContainerRestarter handler = new ContainerRestarter();
+      for(int i = 0; i < 5; i++)
+      {
+         handler.callback(new ClassContext(suiteContext), new SuiteEvent());
+      }
+      
+      Assert.assertSame(
+            "Should have switched to the standby container", 
+            standbyContainer, suiteContext.get(DeployableContainer.class));
+      
+      // wait for the replaced container to stop
+      standby.shutdown(suiteContext);
+      
+      Mockito.verify(container).stop(suiteContext);
+      Mockito.verify(container, Mockito.never()).start(Mockito.any(Context.class));
+      Mockito.verify(standbyContainer).start(suiteContext);
+      
+      ArgumentCaptor<Configuration> standbyConfiguration = ArgumentCaptor.forClass(Configuration.class);
+      Mockito.verify(standbyContainer).setup(Mockito.eq(suiteContext), standbyConfiguration.capture());
+      Assert.assertEquals(1, standbyConfiguration.getValue().getContainerConfig(PooledConfiguration.class).instance);
+      
+      // no cold start
+      Mockito.verify(eventHandler, Mockito.never()).callback(
+            Mockito.any(SuiteContext.class), Mockito.any(ContainerEvent.class));
+   }
+   
    @Test
    public void shouldNotForceRestartIfMaxDeploymentsNotSet() throws Exception
    {
@@ -113,4 +202,68 @@ public class ContainerRestarterTestCase
       Mockito.verify(eventHandler, Mockito.times(0)).callback(
             Mockito.any(SuiteContext.class), Mockito.any(ContainerEvent.class));
    }
+
+   @Test
+   public void shouldRestartContainerBeforeGroupThatDoesNotFit() throws Exception 
+   {
+      Configuration configuration = new Configuration();
+      configuration.setMaxDeploymentsBeforeRestart(3);
+      
+      ClassContext context = new ClassContext(new SuiteContext(serviceLoader));
+      context.add(Configuration.class, configuration);
+      context.add(DeployableContainer.class, container);
+      
+      ContainerRestarter handler = new ContainerRestarter();
+      handler.callback(context, new UpcomingClasses(OtherDeployment.class, SameDeployment1.class, SameDeployment2.class));
+      
+      handler.callback(context, new BeforeClass(OtherDeployment.class));
+      Mockito.verify(container, Mockito.times(0)).stop(context);
+      
+      // restart before the group, not in the middle of it
+      handler.callback(context, new BeforeClass(SameDeployment1.class));
+      Mockito.verify(container, Mockito.times(1)).stop(context);
+      
+      handler.callback(context, new BeforeClass(SameDeployment2.class));
+      Mockito.verify(container, Mockito.times(1)).stop(context);
+   }
+   
+   private static Archive<?> createDeployment(String name)
+   {
+      return ShrinkWrap.create(JavaArchive.class, name + ".jar");
+   }
+   
+   public static class SameDeployment1
+   {
+      @Deployment
+      public static Archive<?> deploy() { return createDeployment("same"); }
+   }
+
+   public static class SameDeployment2
+   {
+      @Deployment
+      public static Archive<?> deploy() { return createDeployment("same"); }
+   }
+
+   public static class OtherDeployment
+   {
+      @Deployment
+      public static Archive<?> deploy() { return createDeployment("other"); }
+   }
+   
+   public static class PooledConfiguration implements PooledContainerConfiguration
+   {
+      private int instance;
+      
+      public ContainerProfile getContainerProfile()
+      {
+         return ContainerProfile.CLIENT;
+      }
+      
+      public PooledContainerConfiguration forPoolInstance(int instance)
+      {
+         PooledConfiguration configuration = new PooledConfiguration();
+         configuration.instance = instance;
+         return configuration;
+      }
+   }
 }
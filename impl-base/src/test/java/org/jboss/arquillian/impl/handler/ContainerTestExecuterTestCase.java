@@ -17,17 +17,22 @@
 package org.jboss.arquillian.impl.handler;
 
 import java.lang.reflect.Method;
+import java.util.Arrays;
 
 import junit.framework.Assert;
 
 import org.jboss.arquillian.impl.context.ClassContext;
 import org.jboss.arquillian.impl.context.SuiteContext;
 import org.jboss.arquillian.impl.context.TestContext;
+import org.jboss.arquillian.spi.BatchContainerMethodExecutor;
+import org.jboss.arquillian.spi.Configuration;
 import org.jboss.arquillian.spi.ContainerMethodExecutor;
 import org.jboss.arquillian.spi.ServiceLoader;
 import org.jboss.arquillian.spi.TestMethodExecutor;
 import org.jboss.arquillian.spi.TestResult;
 import org.jboss.arquillian.spi.TestResult.Status;
+import org.jboss.arquillian.spi.event.suite.AfterClass;
+import org.jboss.arquillian.spi.event.suite.UpcomingMethods;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
@@ -52,6 +57,12 @@ public class ContainerTestExecuterTestCase
    @Mock
    private TestMethodExecutor testExecutor;
    
+   @Mock
+   private BatchContainerMethodExecutor batchExecutor;
+   
+   @Mock
+   private BatchContainerMethodExecutor.Results batchResults;
+   
    @Test(expected = IllegalStateException.class)
    public void shouldThrowIllegalStateOnMissingContainerMethodExecutor() throws Exception
    {
@@ -105,6 +116,49 @@ public class ContainerTestExecuterTestCase
             context.get(TestResult.class));
    }
    
+   @Test
+   public void shouldInvokeUpcomingMethodsInOneBatch() throws Exception 
+   {
+      TestResult first = new TestResult(Status.PASSED);
+      TestResult second = new TestResult(Status.FAILED);
+      Method firstMethod = getTestMethod("shouldInvokeContainerMethodExecutor");
+      Method secondMethod = getTestMethod("shouldSetTestResult");
+      
+      Configuration configuration = new Configuration();
+      configuration.setBatchTestExecution(true);
+      
+      Mockito.when(batchExecutor.invoke(getClass(), Arrays.asList(firstMethod.getName(), secondMethod.getName())))
+            .thenReturn(batchResults);
+      Mockito.when(batchResults.get(firstMethod.getName())).thenReturn(first);
+      Mockito.when(batchResults.get(secondMethod.getName())).thenReturn(second);
+      Mockito.when(testExecutor.getInstance()).thenReturn(this);
+      Mockito.when(testExecutor.getMethod()).thenReturn(firstMethod, secondMethod);
+      
+      SuiteContext suiteContext = new SuiteContext(serviceLoader);
+      suiteContext.add(Configuration.class, configuration);
+      ClassContext classContext = new ClassContext(suiteContext);
+      classContext.add(ContainerMethodExecutor.class, batchExecutor);
+      
+      ContainerTestBatcher batcher = new ContainerTestBatcher();
+      batcher.callback(classContext, new UpcomingMethods(getClass(), firstMethod, secondMethod));
+
+      ContainerTestExecuter handler = new ContainerTestExecuter();
+      
+      TestContext context = new TestContext(classContext);
+      handler.callback(context, new org.jboss.arquillian.spi.event.suite.Test(testExecutor));
+      Assert.assertEquals("Should set result of first method", first, context.get(TestResult.class));
+      
+      context = new TestContext(classContext);
+      handler.callback(context, new org.jboss.arquillian.spi.event.suite.Test(testExecutor));
+      Assert.assertEquals("Should set result of second method", second, context.get(TestResult.class));
+      
+      batcher.callback(classContext, new AfterClass(getClass()));
+      
+      Mockito.verify(batchExecutor, Mockito.times(1)).invoke(Mockito.any(Class.class), Mockito.anyList());
+      Mockito.verify(batchExecutor, Mockito.never()).invoke(Mockito.any(TestMethodExecutor.class));
+      Mockito.verify(batchResults).close();
+   }
+   
    private Method getTestMethod(String name) throws Exception
    {
       return this.getClass().getMethod(name);
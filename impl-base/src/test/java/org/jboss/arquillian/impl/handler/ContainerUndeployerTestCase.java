@@ -16,8 +16,13 @@
  */
 package org.jboss.arquillian.impl.handler;
 
+import java.util.concurrent.FutureTask;
+
+import org.jboss.arquillian.impl.PendingUndeployments;
 import org.jboss.arquillian.impl.context.ClassContext;
 import org.jboss.arquillian.impl.context.SuiteContext;
+import org.jboss.arquillian.spi.AsyncDeployableContainer;
+import org.jboss.arquillian.spi.Context;
 import org.jboss.arquillian.spi.DeployableContainer;
 import org.jboss.arquillian.spi.ServiceLoader;
 import org.jboss.arquillian.spi.event.container.AfterUnDeploy;
@@ -50,6 +55,9 @@ public class ContainerUndeployerTestCase
    @Mock
    private DeployableContainer container;
 
+   @Mock
+   private AsyncDeployableContainer asyncContainer;
+
    @Mock
    private EventHandler<ContainerEvent> eventHandler;
    
@@ -93,4 +101,49 @@ public class ContainerUndeployerTestCase
       Mockito.verify(eventHandler, Mockito.times(2)).callback(
             Mockito.any(SuiteContext.class), Mockito.any(ContainerEvent.class));
    }
+
+   @Test
+   public void shouldLeaveAsyncUndeploymentPending() throws Exception
+   {
+      Archive<?> deployment = ShrinkWrap.create(JavaArchive.class, "test.jar");
+      FutureTask<Void> undeployment = new FutureTask<Void>(new Runnable()
+      {
+         public void run() { }
+      }, null);
+      Mockito.when(asyncContainer.undeployAsync(Mockito.any(Context.class), Mockito.any(Archive.class)))
+            .thenReturn(undeployment);
+      
+      SuiteContext suiteContext = new SuiteContext(serviceLoader);
+      PendingUndeployments pendingUndeployments = new PendingUndeployments();
+      suiteContext.add(PendingUndeployments.class, pendingUndeployments);
+      suiteContext.register(AfterUnDeploy.class, eventHandler);
+      
+      ClassContext context = new ClassContext(suiteContext);
+      context.add(DeployableContainer.class, asyncContainer);
+      context.add(Archive.class, deployment);
+      @SuppressWarnings("unchecked")
+      EventHandler<ContainerEvent> classEventHandler = Mockito.mock(EventHandler.class);
+      context.register(AfterUnDeploy.class, classEventHandler);
+
+      ContainerUndeployer handler = new ContainerUndeployer();
+      handler.callback(context, new ClassEvent(getClass()));
+      
+      Mockito.verify(asyncContainer, Mockito.never()).undeploy(context, deployment);
+      Mockito.verify(eventHandler, Mockito.never()).callback(
+            Mockito.any(Context.class), Mockito.any(ContainerEvent.class));
+      
+      // a deployment with a different context root does not wait
+      pendingUndeployments.awaitConflicting(ShrinkWrap.create(JavaArchive.class, "other.jar"));
+      Mockito.verify(eventHandler, Mockito.never()).callback(
+            Mockito.any(Context.class), Mockito.any(ContainerEvent.class));
+
+      undeployment.run();
+      pendingUndeployments.awaitAll();
+      
+      Mockito.verify(eventHandler, Mockito.times(1)).callback(
+            Mockito.any(Context.class), Mockito.any(AfterUnDeploy.class));
+      // fired on the class context that started the undeployment
+      Mockito.verify(classEventHandler, Mockito.times(1)).callback(
+            Mockito.same(context), Mockito.any(AfterUnDeploy.class));
+   }
 }
@@ -20,6 +20,7 @@ import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
 
 import org.jboss.arquillian.impl.DeployableTestBuilder;
@@ -29,8 +30,12 @@ import org.jboss.arquillian.spi.TestMethodExecutor;
 import org.jboss.arquillian.spi.TestResult;
 import org.jboss.arquillian.spi.TestRunnerAdaptor;
 import org.jboss.arquillian.spi.util.TestEnrichers;
+import org.junit.Ignore;
 import org.junit.internal.runners.model.MultipleFailureException;
 import org.junit.runner.Result;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.manipulation.NoTestsRemainException;
+import org.junit.runner.notification.Failure;
 import org.junit.runner.notification.RunListener;
 import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.BlockJUnit4ClassRunner;
@@ -63,70 +68,165 @@ public class Arquillian extends BlockJUnit4ClassRunner
     * This results in that AfterSuite is call pr TestCase, but BeforeSuite only on the first created instance.
     * A instance of all TestCases are created before the first one is started, so we keep track of which one 
     * was the last one created. The last one created is the only one allowed to call AfterSuite.
+    * 
+    * The same holds for JUnits ParallelComputer and Surefire parallel=classes, all runners are created up front, 
+    * but the test classes are executed on worker Threads. The client side SuiteState is therefore shared by all 
+    * Threads. A runner created on a Thread with a explicit ContainerProfile, e.g. in container by the 
+    * JUnitTestRunner, get a SuiteState of its own so it will never pick up a client side adaptor 
+    * running in the same JVM, and can be reused by the JUnitTestRunner on any Thread.
     */
-   private static ThreadLocal<Arquillian> lastCreatedRunner = new ThreadLocal<Arquillian>();
-
-   private static ThreadLocal<TestRunnerAdaptor> deployableTest = new ThreadLocal<TestRunnerAdaptor>();
+   private static final SuiteState sharedState = new SuiteState();
+   
+   private final SuiteState state;
+   
+   private List<Filter> filters = new ArrayList<Filter>();
+   
+   private volatile Collection<String> selection;
    
    public Arquillian(Class<?> klass) throws InitializationError
    {
       super(klass);
-      try
+      this.state = currentSuiteState();
+      initializeSuite(klass);
+   }
+   
+   private void initializeSuite(Class<?> klass) throws InitializationError
+   {
+      synchronized (state)
       {
-         // first time we're being initialized
-         if(deployableTest.get() == null)   
+         try
          {
-            // no, initialization has been attempted before, refuse to do anything else
-            if(lastCreatedRunner.get() != null)  
+            // first time we're being initialized
+            if(state.deployableTest == null)   
             {
-                throw new RuntimeException("Arquillian has previously been attempted initialized, but failed. See previous exceptions for cause.");
+               // no, initialization has been attempted before, refuse to do anything else
+               if(state.lastCreatedRunner != null)  
+               {
+                   throw new RuntimeException("Arquillian has previously been attempted initialized, but failed. See previous exceptions for cause.");
+               }
+               Configuration configuration = new XmlConfigurationBuilder().build();
+               TestRunnerAdaptor adaptor = DeployableTestBuilder.build(configuration);
+               try 
+               {
+                  // don't set it if beforeSuite fails
+                  adaptor.beforeSuite();
+                  state.deployableTest = adaptor;
+               } 
+               catch (Exception e) 
+               {
+                  throw new InitializationError(Arrays.asList((Throwable)e));
+               }
             }
-            Configuration configuration = new XmlConfigurationBuilder().build();
-            TestRunnerAdaptor adaptor = DeployableTestBuilder.build(configuration);
-            try 
+            // all runners are created before the first one is started, announce the class so 
+            // the adaptor can prepare it while the previous classes are running
+            try
             {
-               // don't set it if beforeSuite fails
-               adaptor.beforeSuite();
-               deployableTest.set(adaptor);
-            } 
+               state.deployableTest.upcomingClasses(klass);
+            }
             catch (Exception e) 
             {
                throw new InitializationError(Arrays.asList((Throwable)e));
             }
          }
-      }
-      finally 
-      {
-         lastCreatedRunner.set(this);
+         finally 
+         {
+            state.lastCreatedRunner = this;
+         }
       }
    }
    
    @Override
    public void run(RunNotifier notifier)
    {
-      notifier.addListener(new RunListener() 
+      if(state == sharedState)
       {
-         @Override
-         public void testRunFinished(Result result) throws Exception
+         notifier.addListener(new RunListener() 
          {
-            try  
+            @Override
+            public void testRunFinished(Result result) throws Exception
             {
-               if(deployableTest.get() != null && lastCreatedRunner.get() == Arquillian.this) 
+               synchronized (state)
                {
-                  deployableTest.get().afterSuite();
-                  lastCreatedRunner.set(null);
-                  deployableTest.set(null);
+                  try  
+                  {
+                     if(state.deployableTest != null && state.lastCreatedRunner == Arquillian.this) 
+                     {
+                        state.deployableTest.afterSuite();
+                        state.lastCreatedRunner = null;
+                        state.deployableTest = null;
+                     }
+                  } 
+                  catch (Exception e) 
+                  {
+                     throw new RuntimeException("Could not run @AfterSuite", e);
+                  }
                }
-            } 
-            catch (Exception e) 
-            {
-               throw new RuntimeException("Could not run @AfterSuite", e);
             }
-         }
-      });
+         });
+      }
+      // a in container runner reused by the JUnitTestRunner keeps its Suite until its test class is released
       super.run(notifier);
    }
 
+   /**
+    * End the Suite of a in container runner. Called by the JUnitTestRunner when the test class is released, 
+    * the runner can not be run again.
+    * 
+    * @throws Exception if @AfterSuite fails
+    */
+   void endSuite() throws Exception
+   {
+      synchronized (state)
+      {
+         TestRunnerAdaptor adaptor = state.deployableTest;
+         state.deployableTest = null;
+         if(adaptor != null)
+         {
+            adaptor.afterSuite();
+         }
+      }
+   }
+
+   /**
+    * Restrict the following runs to the given test methods, without removing the other methods as a 
+    * {@link Filter} would. Used by the JUnitTestRunner to reuse the runner of a test class in container.
+    * 
+    * @param methodNames The methods to run, null to run all
+    * @return false if none of the test methods were selected
+    */
+   boolean select(Collection<String> methodNames)
+   {
+      selection = methodNames;
+      if(methodNames == null)
+      {
+         return true;
+      }
+      for(FrameworkMethod method : getChildren())
+      {
+         if(methodNames.contains(method.getName()))
+         {
+            return true;
+         }
+      }
+      return false;
+   }
+   
+   @Override
+   protected void runChild(FrameworkMethod method, RunNotifier notifier)
+   {
+      if(isSelected(method))
+      {
+         super.runChild(method, notifier);
+      }
+   }
+   
+   @Override
+   public void filter(Filter filter) throws NoTestsRemainException
+   {
+      super.filter(filter);
+      filters.add(filter);
+   }
+   
    @Override
    // TODO: exclude @Integration test classes
    protected List<FrameworkMethod> computeTestMethods()
@@ -159,7 +259,8 @@ public class Arquillian extends BlockJUnit4ClassRunner
          {
             try
             {
-               deployableTest.get().beforeClass(Arquillian.this.getTestClass().getJavaClass());
+               deployableTest().beforeClass(Arquillian.this.getTestClass().getJavaClass());
+               deployableTest().upcomingMethods(Arquillian.this.getTestClass().getJavaClass(), getSelectedMethods());
                statementWithBefores.evaluate();
             } 
             catch (Exception e) // catch and rethrow only to be able to set a break point. 
@@ -187,7 +288,7 @@ public class Arquillian extends BlockJUnit4ClassRunner
                   }},
                   new Statement() { public void evaluate() throws Throwable 
                   {
-                     deployableTest.get().afterClass(Arquillian.this.getTestClass().getJavaClass());
+                     deployableTest().afterClass(Arquillian.this.getTestClass().getJavaClass());
                   }}
             );
          }
@@ -203,7 +304,7 @@ public class Arquillian extends BlockJUnit4ClassRunner
          @Override
          public void evaluate() throws Throwable
          {
-            deployableTest.get().before(target, method.getMethod());
+            deployableTest().before(target, method.getMethod());
             statementWithBefores.evaluate();
          }
       };
@@ -226,7 +327,7 @@ public class Arquillian extends BlockJUnit4ClassRunner
                   }},
                   new Statement() { public void evaluate() throws Throwable 
                   {
-                     deployableTest.get().after(target, method.getMethod());
+                     deployableTest().after(target, method.getMethod());
                   }}
             );
          }
@@ -241,13 +342,13 @@ public class Arquillian extends BlockJUnit4ClassRunner
          @Override
          public void evaluate() throws Throwable
          {
-            TestResult result = deployableTest.get().test(new TestMethodExecutor()
+            TestResult result = deployableTest().test(new TestMethodExecutor()
             {
                public void invoke() throws Throwable
                {
                   try
                   {
-                     Object parameterValues = TestEnrichers.enrich(deployableTest.get().getActiveContext(), getMethod());
+                     Object parameterValues = TestEnrichers.enrich(deployableTest().getActiveContext(), getMethod());
                      method.invokeExplosively(test, (Object[])parameterValues);
                   } 
                   catch (Throwable e) 
@@ -276,6 +377,65 @@ public class Arquillian extends BlockJUnit4ClassRunner
       };
    }
 
+   /*
+    * The test methods this runner will run, the children left by the filters minus the ignored methods.
+    */
+   private Method[] getSelectedMethods()
+   {
+      List<Method> selected = new ArrayList<Method>();
+      for(FrameworkMethod method : getChildren())
+      {
+         if(method.getAnnotation(Ignore.class) != null || !isSelected(method))
+         {
+            continue;
+         }
+         selected.add(method.getMethod());
+      }
+      return selected.toArray(new Method[selected.size()]);
+   }
+   
+   private boolean isSelected(FrameworkMethod method)
+   {
+      Collection<String> methodNames = selection;
+      if(methodNames != null && !methodNames.contains(method.getName()))
+      {
+         return false;
+      }
+      for(Filter filter : filters)
+      {
+         if(!filter.shouldRun(describeChild(method)))
+         {
+            return false;
+         }
+      }
+      return true;
+   }
+   
+   private TestRunnerAdaptor deployableTest()
+   {
+      return state.deployableTest;
+   }
+
+   private static SuiteState currentSuiteState()
+   {
+      if(DeployableTestBuilder.getProfile() != null)
+      {
+         return new SuiteState();
+      }
+      return sharedState;
+   }
+
+   /**
+    * Holds the TestRunnerAdaptor for a Suite run and the runner allowed to end it. 
+    * Guarded by the SuiteState monitor.
+    */
+   private static class SuiteState
+   {
+      private volatile TestRunnerAdaptor deployableTest;
+      
+      private volatile Arquillian lastCreatedRunner;
+   }
+
    /**
     * A helper class to safely execute multiple statements in one.<br/>
     * 
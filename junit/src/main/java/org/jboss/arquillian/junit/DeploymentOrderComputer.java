@@ -0,0 +1,88 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.junit;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import org.jboss.arquillian.impl.DeploymentOrder;
+import org.jboss.arquillian.impl.XmlConfigurationBuilder;
+import org.jboss.arquillian.spi.Configuration;
+import org.junit.runner.Computer;
+import org.junit.runner.Runner;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+
+/**
+ * A JUnit {@link Computer} that reorders the test classes to minimize redeployments and container restarts.<br/>
+ * <br/>
+ * The classes are grouped and ordered by {@link DeploymentOrder} using the maxDeploymentsBeforeRestart 
+ * of the Arquillian configuration, and the chosen order is logged before the suite is started. Planning 
+ * calls the {@link org.jboss.arquillian.api.Deployment} method of every test class.
+ * 
+ * <pre>
+ * JUnitCore.runClasses(new DeploymentOrderComputer(), TestA.class, TestB.class);
+ * </pre>
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class DeploymentOrderComputer extends Computer
+{
+   private static final Logger log = Logger.getLogger(DeploymentOrderComputer.class.getName());
+   
+   private Computer delegate;
+   
+   public DeploymentOrderComputer()
+   {
+      this(new Computer());
+   }
+   
+   /**
+    * @param delegate The Computer to run the reordered classes with
+    */
+   public DeploymentOrderComputer(Computer delegate)
+   {
+      if(delegate == null)
+      {
+         throw new IllegalArgumentException("Delegate must be specified");
+      }
+      this.delegate = delegate;
+   }
+   
+   @Override
+   public Runner getSuite(RunnerBuilder builder, Class<?>[] classes) throws InitializationError
+   {
+      Configuration configuration;
+      try
+      {
+         configuration = new XmlConfigurationBuilder().build();
+      }
+      catch (Exception e) 
+      {
+         throw new InitializationError(Arrays.asList((Throwable)e));
+      }
+      
+      List<List<DeploymentOrder.Group>> plan = new DeploymentOrder(configuration.getMaxDeploymentsBeforeRestart())
+                                                      .plan(Arrays.asList(classes));
+      log.info(DeploymentOrder.describe(plan));
+      
+      List<Class<?>> ordered = DeploymentOrder.getTestClasses(plan);
+      return delegate.getSuite(builder, ordered.toArray(new Class<?>[ordered.size()]));
+   }
+}
@@ -16,11 +16,22 @@
  */
 package org.jboss.arquillian.junit;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.jboss.arquillian.impl.DeployableTestBuilder;
+import org.jboss.arquillian.spi.BatchTestRunner;
+import org.jboss.arquillian.spi.CachingTestRunner;
 import org.jboss.arquillian.spi.ContainerProfile;
+import org.jboss.arquillian.spi.Stateless;
 import org.jboss.arquillian.spi.TestResult;
 import org.jboss.arquillian.spi.TestResult.Status;
 import org.jboss.arquillian.spi.TestRunner;
@@ -29,19 +40,31 @@ import org.junit.runner.Description;
 import org.junit.runner.JUnitCore;
 import org.junit.runner.Request;
 import org.junit.runner.Result;
+import org.junit.runner.Runner;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.notification.Failure;
 import org.junit.runner.notification.RunListener;
 
 /**
  * JUnitTestRunner
  * 
  * A Implementation of the Arquillian TestRunner SPI for JUnit.
+ * 
+ * A batch is run as one filtered JUnit run of the test class. The {@link Arquillian} runner of a test class
+ * is kept and reused for the following methods, other runners are created pr run. A kept runner keeps its 
+ * configured Suite until the test class is released, which ends the Suite.
  *
  * @author <a href="mailto:aslak@conduct.no">Aslak Knutsen</a>
  * @author thomas.diesler@jboss.com
  * @version $Revision: $
  */
-public class JUnitTestRunner implements TestRunner
+@Stateless
+public class JUnitTestRunner implements TestRunner, BatchTestRunner, CachingTestRunner
 {
+   private static final Logger log = Logger.getLogger(JUnitTestRunner.class.getName());
+   
+   private final Map<Class<?>, ClassPlan> plans = new HashMap<Class<?>, ClassPlan>();
+   
    /** 
     * Overwrite to provide additional run listeners. 
     */
@@ -58,20 +81,81 @@ public class JUnitTestRunner implements TestRunner
    public TestResult execute(Class<?> testClass, String methodName)
    {
       DeployableTestBuilder.setProfile(getProfile());
-      JUnitCore runner = new JUnitCore();
+      try
+      {
+         JUnitCore runner = new JUnitCore();
 
-      ExpectedExceptionHolder exceptionHolder = new ExpectedExceptionHolder();
-      runner.addListener(exceptionHolder);
+         ExpectedExceptionHolder exceptionHolder = new ExpectedExceptionHolder();
+         runner.addListener(exceptionHolder);
 
-      for (RunListener listener : getRunListeners())
-         runner.addListener(listener);
+         for (RunListener listener : getRunListeners())
+            runner.addListener(listener);
 
-      Result result = runner.run(Request.method(testClass, methodName));
+         Result result = getPlan(testClass).run(runner, Collections.singletonList(methodName));
+         return convertToTestResult(result, exceptionHolder.getException());
+      }
+      finally
+      {
+         DeployableTestBuilder.clearProfile();
+      }
+   }
 
-      DeployableTestBuilder.clearProfile();
-      return convertToTestResult(result, exceptionHolder.getException());
+   public void execute(Class<?> testClass, final List<String> methodNames, BatchTestRunner.Callback callback)
+   {
+      DeployableTestBuilder.setProfile(getProfile());
+      try
+      {
+         JUnitCore runner = new JUnitCore();
+
+         runner.addListener(new BatchListener(callback));
+
+         for (RunListener listener : getRunListeners())
+            runner.addListener(listener);
+
+         getPlan(testClass).run(runner, methodNames);
+      }
+      finally
+      {
+         DeployableTestBuilder.clearProfile();
+      }
+   }
+
+   public void release(ClassLoader classLoader)
+   {
+      List<ClassPlan> released = new ArrayList<ClassPlan>();
+      synchronized (plans)
+      {
+         Iterator<ClassPlan> cached = plans.values().iterator();
+         while (cached.hasNext())
+         {
+            ClassPlan plan = cached.next();
+            if (classLoader == null || plan.testClass.getClassLoader() == classLoader)
+            {
+               cached.remove();
+               released.add(plan);
+            }
+         }
+      }
+      for (ClassPlan plan : released)
+      {
+         plan.release();
+      }
    }
 
+   private ClassPlan getPlan(Class<?> testClass)
+   {
+      synchronized (plans)
+      {
+         ClassPlan plan = plans.get(testClass);
+         if (plan == null)
+         {
+            plan = new ClassPlan(testClass);
+            plans.put(testClass, plan);
+         }
+         return plan;
+      }
+   }
+   
    /**
     * Convert a JUnit Result object to Arquillian TestResult
     * 
@@ -94,6 +178,185 @@ public class JUnitTestRunner implements TestRunner
       return new TestResult(status, throwable);
    }
 
+   /*
+    * Gives the result of each test method to the callback when it finishes.
+    */
+   private class BatchListener extends RunListener
+   {
+      private BatchTestRunner.Callback callback;
+      
+      private Failure failure;
+      
+      private boolean assumptionFailed;
+      
+      private long start;
+      
+      public BatchListener(BatchTestRunner.Callback callback)
+      {
+         this.callback = callback;
+      }
+      
+      @Override
+      public void testStarted(Description description) throws Exception
+      {
+         failure = null;
+         assumptionFailed = false;
+         start = System.currentTimeMillis();
+      }
+      
+      @Override
+      public void testFailure(Failure failure) throws Exception
+      {
+         if(this.failure == null)
+         {
+            this.failure = failure;
+         }
+      }
+      
+      @Override
+      public void testAssumptionFailure(Failure failure)
+      {
+         assumptionFailed = true;
+      }
+      
+      @Override
+      public void testIgnored(Description description) throws Exception
+      {
+         callback.result(description.getMethodName(), new TestResult(Status.SKIPPED));
+      }
+      
+      @Override
+      public void testFinished(Description description) throws Exception
+      {
+         TestResult result;
+         if(failure != null)
+         {
+            result = new TestResult(Status.FAILED, failure.getException());
+         }
+         else if(assumptionFailed)
+         {
+            result = new TestResult(Status.SKIPPED);
+         }
+         else
+         {
+            Throwable expected = null;
+            Test test = description.getAnnotation(Test.class);
+            if (test != null && test.expected() != Test.None.class)
+            {
+               expected = Arquillian.caughtTestException.get();
+            }
+            result = new TestResult(Status.PASSED, expected);
+         }
+         Arquillian.caughtTestException.set(null);
+         result.setStart(start);
+         result.setEnd(System.currentTimeMillis());
+         callback.result(description.getMethodName(), result);
+      }
+   }
+
+   /*
+    * The idle Arquillian runners of a test class. A runner is only used by one run at a time, concurrent
+    * runs of the same test class get a runner each. Released runners end their Suite, a runner still running 
+    * when the plan is released ends it when the run is done.
+    */
+   private static class ClassPlan
+   {
+      private Class<?> testClass;
+      
+      private Queue<Arquillian> idle = new ConcurrentLinkedQueue<Arquillian>();
+      
+      private boolean released;
+      
+      public ClassPlan(Class<?> testClass)
+      {
+         this.testClass = testClass;
+      }
+      
+      public Result run(JUnitCore core, List<String> methodNames)
+      {
+         Runner runner = idle.poll();
+         if (runner == null)
+         {
+            runner = Request.aClass(testClass).getRunner();
+         }
+         if (runner instanceof Arquillian && ((Arquillian)runner).select(methodNames))
+         {
+            Arquillian arquillian = (Arquillian)runner;
+            try
+            {
+               return core.run(arquillian);
+            }
+            finally
+            {
+               arquillian.select(null);
+               idle(arquillian);
+            }
+         }
+         // not reusable or no such method, let the Filter report it
+         return core.run(Request.runner(runner).filterWith(new MethodFilter(methodNames)));
+      }
+      
+      public void release()
+      {
+         synchronized (this)
+         {
+            released = true;
+         }
+         Arquillian arquillian;
+         while ((arquillian = idle.poll()) != null)
+         {
+            endSuite(arquillian);
+         }
+      }
+      
+      private void idle(Arquillian arquillian)
+      {
+         synchronized (this)
+         {
+            if (!released)
+            {
+               idle.add(arquillian);
+               return;
+            }
+         }
+         endSuite(arquillian);
+      }
+      
+      private void endSuite(Arquillian arquillian)
+      {
+         try
+         {
+            arquillian.endSuite();
+         }
+         catch (Exception e)
+         {
+            log.log(Level.WARNING, "Could not run @AfterSuite of " + testClass.getName(), e);
+         }
+      }
+   }
+
+   private static class MethodFilter extends Filter
+   {
+      private List<String> methodNames;
+      
+      public MethodFilter(List<String> methodNames)
+      {
+         this.methodNames = methodNames;
+      }
+      
+      @Override
+      public boolean shouldRun(Description description)
+      {
+         return description.getMethodName() == null || methodNames.contains(description.getMethodName());
+      }
+      
+      @Override
+      public String describe()
+      {
+         return "Methods " + methodNames;
+      }
+   }
+
    private class ExpectedExceptionHolder extends RunListener
    {
       private Throwable exception;
@@ -0,0 +1,127 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.junit;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.runner.Computer;
+import org.junit.runner.Runner;
+import org.junit.runners.ParentRunner;
+import org.junit.runners.model.InitializationError;
+import org.junit.runners.model.RunnerBuilder;
+import org.junit.runners.model.RunnerScheduler;
+
+/**
+ * A JUnit {@link Computer} that executes the test classes concurrently on a fixed size Thread pool.<br/>
+ * <br/>
+ * All {@link Arquillian} runners created by this Computer share the same Suite, the container is started once 
+ * and every test class is deployed and executed against it from one of the pool Threads.
+ * 
+ * <pre>
+ * JUnitCore.runClasses(new ParallelClassesComputer(8), TestA.class, TestB.class);
+ * </pre>
+ * 
+ * Unlike the JUnit ParallelComputer the number of Threads is bounded, large suites do not create one Thread 
+ * pr test class.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class ParallelClassesComputer extends Computer
+{
+   private int numberOfThreads;
+   
+   /**
+    * Create a new Computer using one Thread pr available processor.
+    */
+   public ParallelClassesComputer()
+   {
+      this(Runtime.getRuntime().availableProcessors());
+   }
+
+   /**
+    * @param numberOfThreads Max number of test classes to execute concurrently
+    * @throws IllegalArgumentException if numberOfThreads is less then 1
+    */
+   public ParallelClassesComputer(int numberOfThreads)
+   {
+      if(numberOfThreads < 1)
+      {
+         throw new IllegalArgumentException("NumberOfThreads must be a positive number");
+      }
+      this.numberOfThreads = numberOfThreads;
+   }
+   
+   @Override
+   public Runner getSuite(RunnerBuilder builder, Class<?>[] classes) throws InitializationError
+   {
+      Runner suite = super.getSuite(builder, classes);
+      if(suite instanceof ParentRunner<?>)
+      {
+         ((ParentRunner<?>)suite).setScheduler(new PooledScheduler(numberOfThreads));
+      }
+      return suite;
+   }
+   
+   /**
+    * Schedules each child runner on a Thread pool and waits for all of them in {@link #finished()}.
+    */
+   private static class PooledScheduler implements RunnerScheduler
+   {
+      private ExecutorService executor;
+      private List<Future<?>> scheduled = new ArrayList<Future<?>>();
+      
+      public PooledScheduler(int numberOfThreads)
+      {
+         this.executor = Executors.newFixedThreadPool(numberOfThreads);
+      }
+      
+      public void schedule(Runnable childStatement)
+      {
+         scheduled.add(executor.submit(childStatement));
+      }
+
+      public void finished()
+      {
+         try
+         {
+            for(Future<?> child : scheduled)
+            {
+               child.get();
+            }
+         }
+         catch (ExecutionException e) 
+         {
+            throw new RuntimeException("Could not execute test class", e.getCause());
+         }
+         catch (InterruptedException e) 
+         {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for test classes to finish", e);
+         }
+         finally
+         {
+            executor.shutdown();
+         }
+      }
+   }
+}
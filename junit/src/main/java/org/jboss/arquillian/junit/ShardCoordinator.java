@@ -0,0 +1,495 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2009, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.junit;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jboss.arquillian.impl.DurationHistory;
+import org.jboss.arquillian.impl.ShardPlanner;
+import org.jboss.arquillian.impl.XmlConfigurationBuilder;
+import org.jboss.arquillian.spi.ContainerConfiguration;
+import org.jboss.arquillian.spi.PooledContainerConfiguration;
+import org.junit.internal.TextListener;
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+
+/**
+ * Runs the test classes in a number of forked JVMs, each with its own container.<br/>
+ * <br/>
+ * The test classes are balanced between the shards using the execution times recorded in the 
+ * {@link DurationHistory} by the previous runs. Each fork gets its shard number in the 
+ * {@link XmlConfigurationBuilder#SHARD_PROPERTY} system property, so the container is started on the 
+ * ports of its {@link PooledContainerConfiguration}. Containers that can not change their ports can not 
+ * be sharded.<br/>
+ * <br/>
+ * The test events of each fork are replayed on the given {@link RunNotifier} when the fork is done, and 
+ * the recorded durations are merged.
+ * 
+ * <pre>
+ * java -classpath %classpath org.jboss.arquillian.junit.ShardCoordinator 4 target/durations.properties TestA TestB ..
+ * </pre>
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class ShardCoordinator
+{
+   private static final String TEST_STARTED = "started";
+   private static final String TEST_FINISHED = "finished";
+   private static final String TEST_FAILURE = "failure";
+   private static final String TEST_ASSUMPTION_FAILURE = "assumptionFailure";
+   private static final String TEST_IGNORED = "ignored";
+   
+   private int numberOfShards;
+   
+   private File historyFile;
+   
+   /**
+    * @param args The number of shards, the duration history file and the test class names
+    */
+   public static void main(String[] args) throws Exception
+   {
+      if(args.length < 3)
+      {
+         throw new IllegalArgumentException(
+               "Usage: " + ShardCoordinator.class.getName() + " numberOfShards historyFile testClass..");
+      }
+      RunNotifier notifier = new RunNotifier();
+      Result result = new Result();
+      notifier.addListener(result.createListener());
+      
+      boolean successful = new ShardCoordinator(Integer.parseInt(args[0]), new File(args[1]))
+                                 .run(Arrays.asList(args).subList(2, args.length), notifier);
+      
+      System.out.println(
+            "Tests run: " + result.getRunCount() + ", Failures: " + result.getFailureCount() + 
+            ", Ignored: " + result.getIgnoreCount());
+      for(Failure failure : result.getFailures())
+      {
+         System.out.println(failure.getTestHeader() + ": " + failure.getMessage());
+      }
+      System.exit(successful ? 0:1);
+   }
+   
+   /**
+    * @param numberOfShards Max number of JVMs to fork
+    * @param historyFile The duration history to balance on and record to
+    */
+   public ShardCoordinator(int numberOfShards, File historyFile)
+   {
+      if(numberOfShards < 1)
+      {
+         throw new IllegalArgumentException("NumberOfShards must be a positive number");
+      }
+      if(historyFile == null)
+      {
+         throw new IllegalArgumentException("HistoryFile must be specified");
+      }
+      this.numberOfShards = numberOfShards;
+      this.historyFile = historyFile;
+   }
+   
+   /**
+    * Fork the shards and wait for them to finish.
+    * 
+    * @param classNames The test classes to run
+    * @return true if all tests in all shards passed
+    * @throws Exception If a shard could not be forked
+    * @see #run(List, RunNotifier)
+    */
+   public boolean run(List<String> classNames) throws Exception
+   {
+      return run(classNames, new RunNotifier());
+   }
+   
+   /**
+    * Fork the shards and wait for them to finish.
+    * 
+    * @param classNames The test classes to run
+    * @param notifier Receives the test events of all shards
+    * @return true if all tests in all shards passed
+    * @throws IllegalStateException If more then one shard is needed and the container can not change its ports
+    * @throws Exception If a shard could not be forked
+    */
+   public boolean run(List<String> classNames, RunNotifier notifier) throws Exception
+   {
+      if(notifier == null)
+      {
+         throw new IllegalArgumentException("Notifier must be specified");
+      }
+      DurationHistory history = DurationHistory.load(historyFile);
+      List<List<String>> plan = new ShardPlanner(history).plan(classNames, numberOfShards);
+      
+      List<List<String>> shardClassNames = new ArrayList<List<String>>();
+      for(List<String> shard : plan)
+      {
+         if(!shard.isEmpty())
+         {
+            shardClassNames.add(shard);
+         }
+      }
+      if(shardClassNames.size() > 1)
+      {
+         verifyContainerCanBeSharded();
+      }
+      
+      List<Shard> shards = new ArrayList<Shard>();
+      for(int i = 0; i < shardClassNames.size(); i++)
+      {
+         shards.add(new Shard(i, shardClassNames.get(i)).start());
+      }
+      
+      boolean successful = true;
+      for(Shard shard : shards)
+      {
+         successful &= shard.await() == 0;
+         successful &= shard.replay(notifier);
+         
+         history.merge(DurationHistory.load(shard.historyFile));
+         shard.delete();
+      }
+      history.save(historyFile);
+      return successful;
+   }
+   
+   /*
+    * Every fork starts its own container, on the ports of the pool instance matching its shard number.
+    */
+   private void verifyContainerCanBeSharded() throws Exception
+   {
+      ContainerConfiguration containerConfiguration = new XmlConfigurationBuilder().build().getActiveContainerConfiguration();
+      if(!(containerConfiguration instanceof PooledContainerConfiguration))
+      {
+         throw new IllegalStateException(
+               "Can not shard the tests, the container " + 
+               (containerConfiguration == null ? "":containerConfiguration.getClass().getName() + " ") + 
+               "can not change its ports. Sharding requires a " + PooledContainerConfiguration.class.getSimpleName());
+      }
+   }
+   
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - Shard -------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private class Shard
+   {
+      private int number;
+      
+      private List<String> classNames;
+      
+      private File resultFile;
+      
+      private File historyFile;
+
+      private Process process;
+      
+      private Thread output;
+      
+      public Shard(int number, List<String> classNames)
+      {
+         this.number = number;
+         this.classNames = classNames;
+      }
+      
+      public Shard start() throws IOException
+      {
+         resultFile = File.createTempFile("arquillian-shard-" + number, ".result");
+         historyFile = new File(ShardCoordinator.this.historyFile.getPath() + ".shard-" + number);
+         
+         List<String> command = new ArrayList<String>();
+         command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getAbsolutePath());
+         command.add("-classpath");
+         command.add(System.getProperty("java.class.path"));
+         command.add("-D" + XmlConfigurationBuilder.SHARD_PROPERTY + "=" + number);
+         command.add("-D" + XmlConfigurationBuilder.DURATION_HISTORY_PROPERTY + "=" + historyFile.getAbsolutePath());
+         command.add(Fork.class.getName());
+         command.add(resultFile.getAbsolutePath());
+         command.addAll(classNames);
+         
+         process = new ProcessBuilder(command).redirectErrorStream(true).start();
+         output = new Thread(new OutputPrinter("[shard-" + number + "] ", process.getInputStream()));
+         output.setDaemon(true);
+         output.start();
+         return this;
+      }
+      
+      public int await() throws InterruptedException
+      {
+         int exitCode = process.waitFor();
+         output.join();
+         return exitCode;
+      }
+      
+      /**
+       * Fire the test events recorded by the fork.
+       * 
+       * @return false if the fork died before all events were recorded
+       */
+      public boolean replay(RunNotifier notifier) throws IOException
+      {
+         boolean complete = false;
+         if(resultFile.length() > 0)
+         {
+            ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(new FileInputStream(resultFile)));
+            try
+            {
+               String type;
+               while((type = (String)input.readObject()) != null)
+               {
+                  Description description = toDescription((String)input.readObject(), (String)input.readObject());
+                  if(TEST_STARTED.equals(type))
+                  {
+                     notifier.fireTestStarted(description);
+                  }
+                  else if(TEST_FINISHED.equals(type))
+                  {
+                     notifier.fireTestFinished(description);
+                  }
+                  else if(TEST_IGNORED.equals(type))
+                  {
+                     notifier.fireTestIgnored(description);
+                  }
+                  else if(TEST_FAILURE.equals(type))
+                  {
+                     notifier.fireTestFailure(new Failure(description, (Throwable)input.readObject()));
+                  }
+                  else if(TEST_ASSUMPTION_FAILURE.equals(type))
+                  {
+                     notifier.fireTestAssumptionFailed(new Failure(description, (Throwable)input.readObject()));
+                  }
+               }
+               complete = true;
+            }
+            catch (EOFException e) 
+            {
+               // the fork died while running
+            }
+            catch (ClassNotFoundException e) 
+            {
+               throw new IllegalStateException("Could not read the result of shard " + number, e);
+            }
+            finally
+            {
+               input.close();
+            }
+         }
+         if(!complete)
+         {
+            notifier.fireTestFailure(new Failure(
+                  Description.createSuiteDescription("shard-" + number + " " + classNames), 
+                  new IllegalStateException("Shard " + number + " exited before all tests were run")));
+         }
+         return complete;
+      }
+      
+      private Description toDescription(String className, String methodName)
+      {
+         try
+         {
+            Class<?> testClass = Class.forName(className);
+            return methodName == null ? 
+                  Description.createSuiteDescription(testClass):Description.createTestDescription(testClass, methodName);
+         }
+         catch (ClassNotFoundException e) 
+         {
+            return Description.createSuiteDescription(methodName == null ? className:methodName + "(" + className + ")");
+         }
+      }
+      
+      public void delete()
+      {
+         resultFile.delete();
+         historyFile.delete();
+      }
+   }
+
+   private static class OutputPrinter implements Runnable
+   {
+      private String prefix;
+      
+      private InputStream input;
+      
+      public OutputPrinter(String prefix, InputStream input)
+      {
+         this.prefix = prefix;
+         this.input = input;
+      }
+      
+      public void run()
+      {
+         BufferedReader reader = new BufferedReader(new InputStreamReader(input));
+         try
+         {
+            String line;
+            while((line = reader.readLine()) != null)
+            {
+               System.out.println(prefix + line);
+            }
+         }
+         catch (IOException e) 
+         {
+            // the fork is gone
+         }
+         finally
+         {
+            try { reader.close(); } catch (IOException e) { }
+         }
+      }
+   }
+   
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - Fork --------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /**
+    * Main class of a forked shard. Runs the given test classes and records the test events in 
+    * the result file as they happen.
+    */
+   public static class Fork
+   {
+      public static void main(String[] args) throws Exception
+      {
+         List<Class<?>> classes = new ArrayList<Class<?>>();
+         for(int i = 1; i < args.length; i++)
+         {
+            classes.add(Class.forName(args[i]));
+         }
+         
+         ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(args[0])));
+         try
+         {
+            JUnitCore core = new JUnitCore();
+            core.addListener(new TextListener(System.out));
+            core.addListener(new EventRecorder(output));
+            Result result = core.run(new DeploymentOrderComputer(), classes.toArray(new Class<?>[classes.size()]));
+            
+            output.writeObject(null);
+            output.close();
+            System.exit(result.wasSuccessful() ? 0:1);
+         }
+         finally
+         {
+            output.close();
+         }
+      }
+   }
+   
+   /*
+    * Writes each test event, flushed so the events up to a crash of the fork are kept.
+    */
+   private static class EventRecorder extends RunListener
+   {
+      private ObjectOutputStream output;
+      
+      public EventRecorder(ObjectOutputStream output)
+      {
+         this.output = output;
+      }
+      
+      @Override
+      public void testStarted(Description description) throws Exception
+      {
+         record(TEST_STARTED, description);
+      }
+      
+      @Override
+      public void testFinished(Description description) throws Exception
+      {
+         record(TEST_FINISHED, description);
+      }
+      
+      @Override
+      public void testIgnored(Description description) throws Exception
+      {
+         record(TEST_IGNORED, description);
+      }
+      
+      @Override
+      public void testFailure(Failure failure) throws Exception
+      {
+         record(TEST_FAILURE, failure);
+      }
+      
+      @Override
+      public void testAssumptionFailure(Failure failure)
+      {
+         try
+         {
+            record(TEST_ASSUMPTION_FAILURE, failure);
+         }
+         catch (IOException e) 
+         {
+            throw new RuntimeException("Could not record " + failure, e);
+         }
+      }
+      
+      private synchronized void record(String type, Description description) throws IOException
+      {
+         output.writeObject(type);
+         output.writeObject(description.getClassName());
+         output.writeObject(description.getMethodName());
+         output.flush();
+      }
+      
+      private synchronized void record(String type, Failure failure) throws IOException
+      {
+         output.writeObject(type);
+         output.writeObject(failure.getDescription().getClassName());
+         output.writeObject(failure.getDescription().getMethodName());
+         output.writeObject(toSerializable(failure.getException()));
+         output.flush();
+         output.reset();
+      }
+      
+      /*
+       * Replace a exception that can not be serialized, keeping the message and the stack trace.
+       */
+      private Throwable toSerializable(Throwable exception)
+      {
+         try
+         {
+            new ObjectOutputStream(new ByteArrayOutputStream()).writeObject(exception);
+            return exception;
+         }
+         catch (IOException e) 
+         {
+            RuntimeException replacement = new RuntimeException(exception.getClass().getName() + ": " + exception.getMessage());
+            replacement.setStackTrace(exception.getStackTrace());
+            return replacement;
+         }
+      }
+   }
+}
@@ -17,9 +17,18 @@
 package org.jboss.arquillian.junit;
 
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.arquillian.junit.testspi.TestSuiteContextAppender;
+import org.jboss.arquillian.spi.BatchTestRunner;
 import org.jboss.arquillian.spi.TestResult;
 import org.junit.Assert;
 import org.junit.Test;
+import org.junit.runner.RunWith;
 
 public class JUnitTestRunnerTestCase
 {
@@ -48,6 +57,73 @@ public class JUnitTestRunnerTestCase
       Assert.assertEquals(IllegalArgumentException.class, result.getThrowable().getClass());
    }
    
+   @Test
+   public void shouldReturnResultOfEachMethodInBatch() throws Exception 
+   {
+      final Map<String, TestResult> results = new HashMap<String, TestResult>();
+      JUnitTestRunner runner = new JUnitTestRunner();
+      runner.execute(
+            JUnitTestRunnerTestCase.class, 
+            Arrays.asList("shouldProvidePassingTestToRunner", "shouldProvideExpectedExceptionToRunner"), 
+            new BatchTestRunner.Callback()
+            {
+               public void result(String methodName, TestResult result)
+               {
+                  results.put(methodName, result);
+               }
+            });
+      
+      Assert.assertEquals("Should only run the methods in the batch", 2, results.size());
+      Assert.assertEquals(TestResult.Status.PASSED, results.get("shouldProvidePassingTestToRunner").getStatus());
+      Assert.assertEquals(TestResult.Status.PASSED, results.get("shouldProvideExpectedExceptionToRunner").getStatus());
+   }
+   
+   @Test
+   public void shouldReuseArquillianRunnerForEachMethod() throws Exception 
+   {
+      InContainerTestClass.invocations.clear();
+      JUnitTestRunner runner = new JUnitTestRunner();
+      
+      Assert.assertEquals(TestResult.Status.PASSED, runner.execute(InContainerTestClass.class, "first").getStatus());
+      Assert.assertEquals(TestResult.Status.PASSED, runner.execute(InContainerTestClass.class, "second").getStatus());
+      Assert.assertEquals(TestResult.Status.PASSED, runner.execute(InContainerTestClass.class, "first").getStatus());
+      
+      Assert.assertEquals(
+            "Should only run the requested method on each run", 
+            Arrays.asList("first", "second", "first"), InContainerTestClass.invocations);
+   }
+   
+   @Test
+   public void shouldFailUnknownMethod() throws Exception 
+   {
+      JUnitTestRunner runner = new JUnitTestRunner();
+      runner.execute(InContainerTestClass.class, "first");
+      
+      TestResult result = runner.execute(InContainerTestClass.class, "unknown");
+      Assert.assertEquals(TestResult.Status.FAILED, result.getStatus());
+      
+      runner.release(null);
+      Assert.assertEquals(TestResult.Status.PASSED, runner.execute(InContainerTestClass.class, "first").getStatus());
+   }
+   
+   @Test
+   public void shouldKeepSuiteUntilReleased() throws Exception 
+   {
+      JUnitTestRunner runner = new JUnitTestRunner();
+      int started = TestSuiteContextAppender.startedSuites.get();
+      int ended = TestSuiteContextAppender.endedSuites.get();
+      
+      Assert.assertEquals(TestResult.Status.PASSED, runner.execute(InContainerTestClass.class, "first").getStatus());
+      Assert.assertEquals(TestResult.Status.PASSED, runner.execute(InContainerTestClass.class, "second").getStatus());
+      
+      Assert.assertEquals("Should start the Suite once", started + 1, TestSuiteContextAppender.startedSuites.get());
+      Assert.assertEquals("Should not end the Suite pr run", ended, TestSuiteContextAppender.endedSuites.get());
+      
+      runner.release(InContainerTestClass.class.getClassLoader());
+      
+      Assert.assertEquals("Should end the Suite on release", ended + 1, TestSuiteContextAppender.endedSuites.get());
+   }
+   
    @Test(expected = IllegalArgumentException.class)
    public void shouldProvideExpectedExceptionToRunner() throws Exception
    {
@@ -59,4 +135,22 @@ public class JUnitTestRunnerTestCase
    {
       Assert.assertTrue(true);
    }
+   
+   @RunWith(Arquillian.class)
+   public static class InContainerTestClass
+   {
+      public static List<String> invocations = new ArrayList<String>();
+      
+      @Test
+      public void first() throws Exception
+      {
+         invocations.add("first");
+      }
+      
+      @Test
+      public void second() throws Exception
+      {
+         invocations.add("second");
+      }
+   }
 }
@@ -0,0 +1,52 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.junit;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that a container that can not change its ports is not sharded.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class ShardCoordinatorTestCase
+{
+   @Test
+   public void shouldRejectShardingOfContainerWithoutPooledConfiguration() throws Exception
+   {
+      File historyFile = File.createTempFile("arquillian-durations", ".properties");
+      historyFile.delete();
+      try
+      {
+         new ShardCoordinator(2, historyFile).run(Arrays.asList("TestA", "TestB"));
+         Assert.fail("Should have rejected sharding of a container that can not change its ports");
+      }
+      catch (IllegalStateException e) 
+      {
+         Assert.assertTrue(e.getMessage().contains("can not change its ports"));
+      }
+      finally
+      {
+         historyFile.delete();
+      }
+   }
+}
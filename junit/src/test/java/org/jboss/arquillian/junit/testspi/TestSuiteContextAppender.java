@@ -0,0 +1,65 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.junit.testspi;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.arquillian.spi.Context;
+import org.jboss.arquillian.spi.SuiteContextAppender;
+import org.jboss.arquillian.spi.event.suite.AfterSuite;
+import org.jboss.arquillian.spi.event.suite.BeforeSuite;
+import org.jboss.arquillian.spi.event.suite.EventHandler;
+import org.jboss.arquillian.spi.event.suite.SuiteEvent;
+
+/**
+ * TestSuiteContextAppender
+ * 
+ * Counts the started and ended Suites.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class TestSuiteContextAppender implements SuiteContextAppender
+{
+   public static final AtomicInteger startedSuites = new AtomicInteger();
+   
+   public static final AtomicInteger endedSuites = new AtomicInteger();
+
+   /* (non-Javadoc)
+    * @see org.jboss.arquillian.spi.SuiteContextAppender#append(org.jboss.arquillian.spi.Context)
+    */
+   public void append(Context context)
+   {
+      context.register(BeforeSuite.class, new Counter(startedSuites));
+      context.register(AfterSuite.class, new Counter(endedSuites));
+   }
+   
+   private static class Counter implements EventHandler<SuiteEvent>
+   {
+      private AtomicInteger counter;
+      
+      public Counter(AtomicInteger counter)
+      {
+         this.counter = counter;
+      }
+      
+      public void callback(Context context, SuiteEvent event) throws Exception
+      {
+         counter.incrementAndGet();
+      }
+   }
+}
@@ -0,0 +1,312 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.protocol.jmx;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.management.MBeanServerConnection;
+import javax.management.MBeanServerInvocationHandler;
+import javax.management.Notification;
+import javax.management.NotificationListener;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnectionNotification;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorFactory;
+import javax.management.remote.JMXServiceURL;
+
+import org.jboss.logging.Logger;
+
+/**
+ * Keeps one open {@link JMXConnector} pr {@link JMXServiceURL} and environment and the MBean proxies created on it. 
+ * Callers connecting to the same URL with other credentials get a connection of their own.<br/>
+ * <br/>
+ * A connection that is reported closed or failed by the JMXConnector, or that is 
+ * {@link #invalidate(JMXServiceURL, Map)}ed by the user after a communication error, is dropped together with 
+ * its proxies. The next request reconnects.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class JMXConnectorPool
+{
+   // Provide logging
+   private static Logger log = Logger.getLogger(JMXConnectorPool.class);
+
+   private static final JMXConnectorPool DEFAULT = new JMXConnectorPool();
+
+   private Map<Key, Connection> connections = new HashMap<Key, Connection>();
+
+   /**
+    * @return The JMXConnectorPool shared by all JMXMethodExecutors
+    */
+   public static JMXConnectorPool getDefault()
+   {
+      return DEFAULT;
+   }
+
+   /**
+    * Get the open connection to the given JMXServiceURL, connects if there is none.
+    *
+    * @param serviceURL The JMXServiceURL to connect to
+    * @param environment The JMXConnector environment, can be null
+    * @return A open MBeanServerConnection
+    * @throws IOException If the connection could not be made
+    */
+   public MBeanServerConnection getConnection(JMXServiceURL serviceURL, Map<String, ?> environment) throws IOException
+   {
+      return getOrConnect(serviceURL, environment).connection;
+   }
+
+   /**
+    * Get a MBean proxy on the open connection to the given JMXServiceURL. The proxy is created once pr connection.
+    *
+    * @param serviceURL The JMXServiceURL to connect to
+    * @param environment The JMXConnector environment, can be null
+    * @param name The ObjectName of the MBean
+    * @param interf The MBean interface
+    * @return The MBean proxy
+    * @throws IOException If the connection could not be made
+    */
+   public <T> T getProxy(JMXServiceURL serviceURL, Map<String, ?> environment, ObjectName name, Class<T> interf) throws IOException
+   {
+      return getOrConnect(serviceURL, environment).getProxy(name, interf);
+   }
+
+   /**
+    * Drop and close the connection to the given JMXServiceURL with the given environment, the next request reconnects.
+    *
+    * @param serviceURL The JMXServiceURL of the connection
+    * @param environment The JMXConnector environment of the connection, can be null
+    */
+   public void invalidate(JMXServiceURL serviceURL, Map<String, ?> environment)
+   {
+      Connection connection;
+      synchronized (connections)
+      {
+         connection = connections.remove(new Key(serviceURL, environment));
+      }
+      if(connection != null)
+      {
+         connection.close();
+      }
+   }
+
+   /**
+    * Drop and close all connections to the given JMXServiceURL, e.g. when the container is stopped.
+    *
+    * @param serviceURL The JMXServiceURL of the connections
+    */
+   public void invalidate(JMXServiceURL serviceURL)
+   {
+      List<Connection> closing = new ArrayList<Connection>();
+      synchronized (connections)
+      {
+         Iterator<Connection> open = connections.values().iterator();
+         while(open.hasNext())
+         {
+            Connection connection = open.next();
+            if(connection.key.serviceURL.equals(serviceURL))
+            {
+               open.remove();
+               closing.add(connection);
+            }
+         }
+      }
+      for(Connection connection : closing)
+      {
+         connection.close();
+      }
+   }
+
+   /**
+    * Close all connections.
+    */
+   public void close()
+   {
+      List<Connection> closing;
+      synchronized (connections)
+      {
+         closing = new ArrayList<Connection>(connections.values());
+         connections.clear();
+      }
+      for(Connection connection : closing)
+      {
+         connection.close();
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private Connection getOrConnect(JMXServiceURL serviceURL, Map<String, ?> environment) throws IOException
+   {
+      if(serviceURL == null)
+      {
+         throw new IllegalArgumentException("JMXServiceURL must be specified");
+      }
+      Key key = new Key(serviceURL, environment);
+      // connect while holding the lock, concurrent callers wait for the same connection instead of opening their own
+      synchronized (connections)
+      {
+         Connection connection = connections.get(key);
+         if(connection == null)
+         {
+            log.debug("Connecting to " + serviceURL);
+            connection = new Connection(key, JMXConnectorFactory.connect(serviceURL, environment));
+            connections.put(key, connection);
+         }
+         return connection;
+      }
+   }
+
+   private void dropped(Connection connection)
+   {
+      synchronized (connections)
+      {
+         if(connections.get(connection.key) == connection)
+         {
+            connections.remove(connection.key);
+         }
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - Key ---------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /*
+    * A JMXServiceURL and a copy of the environment. Array values, e.g. the credentials, are compared by content.
+    */
+   private static class Key
+   {
+      private JMXServiceURL serviceURL;
+
+      private Map<String, Object> environment = new HashMap<String, Object>();
+
+      public Key(JMXServiceURL serviceURL, Map<String, ?> environment)
+      {
+         this.serviceURL = serviceURL;
+         if(environment != null)
+         {
+            for(Map.Entry<String, ?> entry : environment.entrySet())
+            {
+               Object value = entry.getValue();
+               if(value instanceof Object[])
+               {
+                  value = Arrays.asList((Object[])value);
+               }
+               this.environment.put(entry.getKey(), value);
+            }
+         }
+      }
+
+      @Override
+      public int hashCode()
+      {
+         return serviceURL.hashCode() * 31 + environment.hashCode();
+      }
+
+      @Override
+      public boolean equals(Object obj)
+      {
+         if(!(obj instanceof Key))
+         {
+            return false;
+         }
+         Key other = (Key)obj;
+         return serviceURL.equals(other.serviceURL) && environment.equals(other.environment);
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - Connection --------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private class Connection implements NotificationListener
+   {
+      private Key key;
+
+      private JMXServiceURL serviceURL;
+
+      private JMXConnector connector;
+
+      private MBeanServerConnection connection;
+
+      private ConcurrentMap<ObjectName, Object> proxies = new ConcurrentHashMap<ObjectName, Object>();
+
+      public Connection(Key key, JMXConnector connector) throws IOException
+      {
+         this.key = key;
+         this.serviceURL = key.serviceURL;
+         this.connector = connector;
+         try
+         {
+            this.connection = connector.getMBeanServerConnection();
+         }
+         catch (IOException e)
+         {
+            close();
+            throw e;
+         }
+         connector.addConnectionNotificationListener(this, null, null);
+      }
+
+      public <T> T getProxy(ObjectName name, Class<T> interf)
+      {
+         Object proxy = proxies.get(name);
+         if(!interf.isInstance(proxy))
+         {
+            proxy = MBeanServerInvocationHandler.newProxyInstance(connection, name, interf, false);
+            proxies.put(name, proxy);
+         }
+         return interf.cast(proxy);
+      }
+
+      public void handleNotification(Notification notification, Object handback)
+      {
+         String type = notification.getType();
+         if(JMXConnectionNotification.CLOSED.equals(type) || JMXConnectionNotification.FAILED.equals(type))
+         {
+            log.debug("Connection to " + serviceURL + " " + type);
+            proxies.clear();
+            dropped(this);
+         }
+      }
+
+      public void close()
+      {
+         proxies.clear();
+         try
+         {
+            connector.close();
+         }
+         catch (IOException e)
+         {
+            log.debug("Could not close connection to " + serviceURL, e);
+         }
+      }
+   }
+}
@@ -16,24 +16,43 @@
  */
 package org.jboss.arquillian.protocol.jmx;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.rmi.ConnectException;
+import java.rmi.ConnectIOException;
 import java.util.ArrayList;
+import java.util.Map;
 
 import javax.management.MBeanServer;
 import javax.management.MBeanServerFactory;
 import javax.management.MBeanServerInvocationHandler;
 import javax.management.ObjectName;
+import javax.management.remote.JMXServiceURL;
 
 import org.jboss.arquillian.spi.ContainerMethodExecutor;
 import org.jboss.arquillian.spi.TestMethodExecutor;
 import org.jboss.arquillian.spi.TestResult;
 import org.jboss.arquillian.spi.TestResult.Status;
+import org.jboss.arquillian.spi.util.OutputCapture;
+import org.jboss.arquillian.spi.util.TestResultCodec;
 import org.jboss.logging.Logger;
 
 /**
  * JMXMethodExecutor
  *
+ * The TestResult is requested in the compact {@link TestResultCodec} format, falls back to
+ * Java serialization if the JMXTestRunner does not support it. If {@link OutputCapture#CAPTURE_PROPERTY}
+ * is set, the output of the tests is captured in container.<br/>
+ * <br/>
+ * Created with a {@link JMXServiceURL} the JMXTestRunner is invoked over a pooled remote connection, see
+ * {@link JMXConnectorPool}. A container with a JMXTestRunner pr deployment passes the ObjectName it is registered under. A broken connection is replaced, but the test is only retried if the request never
+ * reached the container: the connect or the proxy creation failed, or RMI refused the connection for the call.
+ * A request that failed after it was sent is reported as a failed test, the test might have run.
+ * Without, the JMXTestRunner is looked up in the MBeanServer of this VM. If it shares the TestResult class
+ * with the client, e.g. a embedded container, the TestResult is returned by reference without marshalling.
+ *
  * @author thomas.diesler@jboss.com
  * @version $Revision: $
  */
@@ -42,6 +61,83 @@ public class JMXMethodExecutor implements ContainerMethodExecutor
    // Provide logging
    private static Logger log = Logger.getLogger(JMXMethodExecutor.class);
    
+   private JMXServiceURL serviceURL;
+   
+   private Map<String, ?> environment;
+   
+   private JMXConnectorPool pool;
+   
+   private ObjectName objectName;
+   
+   private volatile JMXTestRunnerMBean localTestRunner;
+   
+   private volatile boolean localSupported = false;
+   
+   private volatile boolean encodedSupported = true;
+   
+   private volatile boolean binarySupported = true;
+   
+   /**
+    * Invoke the JMXTestRunner registered in the MBeanServer of this VM.
+    */
+   public JMXMethodExecutor()
+   {
+   }
+   
+   /**
+    * Invoke the JMXTestRunner over a remote connection.
+    * 
+    * @param serviceURL The JMXServiceURL of the container JMXConnectorServer
+    */
+   public JMXMethodExecutor(JMXServiceURL serviceURL)
+   {
+      this(serviceURL, null);
+   }
+   
+   /**
+    * Invoke the JMXTestRunner over a remote connection.
+    * 
+    * @param serviceURL The JMXServiceURL of the container JMXConnectorServer
+    * @param environment The JMXConnector environment, e.g. credentials, can be null
+    */
+   public JMXMethodExecutor(JMXServiceURL serviceURL, Map<String, ?> environment)
+   {
+      this(serviceURL, environment, JMXConnectorPool.getDefault());
+   }
+   
+   /**
+    * Invoke the JMXTestRunner over a remote connection.
+    * 
+    * @param serviceURL The JMXServiceURL of the container JMXConnectorServer
+    * @param environment The JMXConnector environment, e.g. credentials, can be null
+    * @param pool The JMXConnectorPool to get the connection from
+    */
+   public JMXMethodExecutor(JMXServiceURL serviceURL, Map<String, ?> environment, JMXConnectorPool pool)
+   {
+      this(serviceURL, environment, pool, null);
+   }
+   
+   /**
+    * Invoke the JMXTestRunner registered under the given name over a remote connection.
+    * 
+    * @param serviceURL The JMXServiceURL of the container JMXConnectorServer
+    * @param environment The JMXConnector environment, e.g. credentials, can be null
+    * @param pool The JMXConnectorPool to get the connection from
+    * @param objectName The ObjectName of the JMXTestRunner, null for {@link JMXTestRunnerMBean#OBJECT_NAME}
+    */
+   public JMXMethodExecutor(JMXServiceURL serviceURL, Map<String, ?> environment, JMXConnectorPool pool, ObjectName objectName)
+   {
+      if(serviceURL == null)
+         throw new IllegalArgumentException("JMXServiceURL null");
+      if(pool == null)
+         throw new IllegalArgumentException("JMXConnectorPool null");
+      
+      this.serviceURL = serviceURL;
+      this.environment = environment;
+      this.pool = pool;
+      this.objectName = objectName;
+   }
+   
    public TestResult invoke(TestMethodExecutor testMethodExecutor)
    {
       if(testMethodExecutor == null) 
@@ -53,16 +149,50 @@ public class JMXMethodExecutor implements ContainerMethodExecutor
       TestResult result = null;
       try 
       {
-         MBeanServer mbeanServer = findOrCreateMBeanServer();
-         ObjectName objectName = new ObjectName(JMXTestRunnerMBean.OBJECT_NAME);
-         JMXTestRunnerMBean testRunner = getMBeanProxy(mbeanServer, objectName, JMXTestRunnerMBean.class);
-
-         // Invoke the remote test method
-         InputStream resultStream = testRunner.runTestMethodRemote(testClass, testMethod);
+         JMXTestRunnerMBean testRunner;
+         try
+         {
+            testRunner = getTestRunner();
+         }
+         catch (IOException e)
+         {
+            if(serviceURL == null)
+               throw e;
+            
+            // nothing was sent yet
+            log.debug("Connection to " + serviceURL + " failed, reconnecting", e);
+            pool.invalidate(serviceURL, environment);
+            testRunner = getTestRunner();
+         }
+         if (localSupported)
+         {
+            // registered in this VM, no need to marshall the TestResult
+            result = runTestMethodLocal(testRunner, testClass, testMethod);
+            if (result != null)
+               return result;
+         }
+         
+         byte[] encoded;
+         try
+         {
+            encoded = runTestMethodRemote(testRunner, testClass, testMethod);
+         }
+         catch (IOException e)
+         {
+            if(serviceURL == null)
+               throw e;
+            
+            // the pooled connection is broken, e.g. the container was restarted 
+            pool.invalidate(serviceURL, environment);
+            if(!isNotSent(e))
+               throw e;
+            
+            log.debug("Connection to " + serviceURL + " refused, reconnecting", e);
+            encoded = runTestMethodRemote(getTestRunner(), testClass, testMethod);
+         }
          
          // Unmarshall the TestResult
-         ObjectInputStream ois = new ObjectInputStream(resultStream);
-         result = (TestResult)ois.readObject();
+         result = TestResultCodec.getCodec().decode(encoded, 0, encoded.length);
       }
       catch (final Throwable e) 
       {
@@ -76,6 +206,143 @@ public class JMXMethodExecutor implements ContainerMethodExecutor
       return result;
    }
 
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /*
+    * RMI only reports these if the call was never delivered to the remote VM.
+    */
+   private boolean isNotSent(IOException e)
+   {
+      return e instanceof ConnectException || e instanceof ConnectIOException;
+   }
+
+   private JMXTestRunnerMBean getTestRunner() throws Exception
+   {
+      ObjectName objectName = this.objectName != null ? this.objectName : new ObjectName(JMXTestRunnerMBean.OBJECT_NAME);
+      if(serviceURL != null)
+      {
+         return pool.getProxy(serviceURL, environment, objectName, JMXTestRunnerMBean.class);
+      }
+      JMXTestRunnerMBean testRunner = localTestRunner;
+      if(testRunner == null)
+      {
+         MBeanServer mbeanServer = findOrCreateMBeanServer();
+         testRunner = getMBeanProxy(mbeanServer, objectName, JMXTestRunnerMBean.class);
+         if(!mbeanServer.isRegistered(objectName))
+         {
+            // not cached, the JMXTestRunner might be registered later
+            return testRunner;
+         }
+         localSupported = sharesTestResult(mbeanServer, objectName);
+         localTestRunner = testRunner;
+      }
+      return testRunner;
+   }
+
+   /*
+    * The TestResult can be passed by reference if the JMXTestRunner sees the same TestResult class,
+    * e.g. not if it is loaded by a OSGi bundle with its own copy of the SPI.
+    */
+   private boolean sharesTestResult(MBeanServer mbeanServer, ObjectName objectName)
+   {
+      try
+      {
+         ClassLoader classLoader = mbeanServer.getClassLoaderFor(objectName);
+         return classLoader != null && classLoader.loadClass(TestResult.class.getName()) == TestResult.class;
+      }
+      catch (Exception e)
+      {
+         log.debug("Could not resolve the TestResult of " + objectName + ", using marshalled results", e);
+         return false;
+      }
+   }
+
+   private TestResult runTestMethodLocal(JMXTestRunnerMBean testRunner, String testClass, String testMethod)
+   {
+      try
+      {
+         return testRunner.runTestMethodLocal(testClass, testMethod, OutputCapture.getRequestedSize());
+      }
+      catch (UndeclaredThrowableException e)
+      {
+         // a older JMXTestRunner without the operation
+         log.debug("JMXTestRunner does not support capturing local results, using marshalled results");
+         localSupported = false;
+         return null;
+      }
+   }
+
+   private byte[] runTestMethodRemote(JMXTestRunnerMBean testRunner, String testClass, String testMethod) throws IOException
+   {
+      try
+      {
+         return runTestMethodEncoded(testRunner, testClass, testMethod);
+      }
+      catch (UndeclaredThrowableException e)
+      {
+         // the checked exceptions of the MBeanServerConnection are not declared by the MBean interface
+         if(e.getCause() instanceof IOException)
+            throw (IOException)e.getCause();
+         throw e;
+      }
+   }
+
+   private byte[] runTestMethodEncoded(JMXTestRunnerMBean testRunner, String testClass, String testMethod) throws IOException
+   {
+      if (encodedSupported)
+      {
+         try
+         {
+            return testRunner.runTestMethodEncoded(
+                  testClass, testMethod, TestResultCodec.FORMAT, OutputCapture.getRequestedSize());
+         }
+         catch (UndeclaredThrowableException e)
+         {
+            if(e.getCause() instanceof IOException)
+               throw e;
+            // a older JMXTestRunner without the operation
+            log.debug("JMXTestRunner does not support encoded results, using streamed results");
+            encodedSupported = false;
+         }
+      }
+      return readFully(runTestMethodStreamed(testRunner, testClass, testMethod));
+   }
+
+   private InputStream runTestMethodStreamed(JMXTestRunnerMBean testRunner, String testClass, String testMethod)
+   {
+      if (binarySupported)
+      {
+         try
+         {
+            return testRunner.runTestMethodRemote(
+                  testClass, testMethod, TestResultCodec.FORMAT, OutputCapture.getRequestedSize());
+         }
+         catch (UndeclaredThrowableException e)
+         {
+            if(e.getCause() instanceof IOException)
+               throw e;
+            // a older JMXTestRunner without the operation
+            log.debug("JMXTestRunner does not support the " + TestResultCodec.FORMAT + " format, using Java serialization");
+            binarySupported = false;
+         }
+      }
+      return testRunner.runTestMethodRemote(testClass, testMethod);
+   }
+
+   private byte[] readFully(InputStream input) throws IOException
+   {
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      byte[] buffer = new byte[4096];
+      int read;
+      while((read = input.read(buffer)) != -1)
+      {
+         output.write(buffer, 0, read);
+      }
+      return output.toByteArray();
+   }
+
    private <T> T getMBeanProxy(MBeanServer mbeanServer, ObjectName name, Class<T> interf)
    {
       return (T)MBeanServerInvocationHandler.newProxyInstance(mbeanServer, name, interf, false);
@@ -21,6 +21,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import javax.management.JMException;
 import javax.management.MBeanServer;
@@ -29,6 +33,8 @@ import javax.management.ObjectName;
 import org.jboss.arquillian.spi.TestResult;
 import org.jboss.arquillian.spi.TestResult.Status;
 import org.jboss.arquillian.spi.TestRunner;
+import org.jboss.arquillian.spi.util.OutputCapture;
+import org.jboss.arquillian.spi.util.TestResultCodec;
 import org.jboss.arquillian.spi.util.TestRunners;
 import org.jboss.logging.Logger;
 
@@ -45,6 +51,9 @@ public class JMXTestRunner implements JMXTestRunnerMBean
 
    private TestClassLoader testClassLoader;
    
+   // The ClassLoaders of the test classes run by name, the TestRunners cache structures of them until released
+   private final Map<String, ClassLoader> testClassLoaders = new HashMap<String, ClassLoader>();
+   
    public interface TestClassLoader
    {
       Class<?> loadTestClass(String className) throws ClassNotFoundException;
@@ -70,7 +79,14 @@ public class JMXTestRunner implements JMXTestRunnerMBean
 
    public ObjectName registerMBean(MBeanServer mbeanServer) throws JMException
    {
-      ObjectName oname = new ObjectName(JMXTestRunnerMBean.OBJECT_NAME);
+      return registerMBean(mbeanServer, new ObjectName(JMXTestRunnerMBean.OBJECT_NAME));
+   }
+
+   /**
+    * Register under the given name, e.g. one JMXTestRunner pr deployment.
+    */
+   public ObjectName registerMBean(MBeanServer mbeanServer, ObjectName oname) throws JMException
+   {
       mbeanServer.registerMBean(this, oname);
       log.debug("JMXTestRunner registered: " + oname);
       return oname;
@@ -78,12 +94,27 @@ public class JMXTestRunner implements JMXTestRunnerMBean
 
    public void unregisterMBean(MBeanServer mbeanServer) throws JMException
    {
-      ObjectName oname = new ObjectName(JMXTestRunnerMBean.OBJECT_NAME);
+      unregisterMBean(mbeanServer, new ObjectName(JMXTestRunnerMBean.OBJECT_NAME));
+   }
+
+   public void unregisterMBean(MBeanServer mbeanServer, ObjectName oname) throws JMException
+   {
       if (mbeanServer.isRegistered(oname))
       {
          mbeanServer.unregisterMBean(oname);
          log.debug("JMXTestRunner unregistered: " + oname);
       }
+      List<ClassLoader> released;
+      synchronized (testClassLoaders)
+      {
+         released = new ArrayList<ClassLoader>(testClassLoaders.values());
+         testClassLoaders.clear();
+      }
+      for (ClassLoader classLoader : released)
+      {
+         TestRunners.release(classLoader);
+      }
+      TestRunners.release(JMXTestRunner.class.getClassLoader());
    }
 
    public TestResult runTestMethodLocal(String className, String methodName)
@@ -91,10 +122,37 @@ public class JMXTestRunner implements JMXTestRunnerMBean
       return runTestMethodInternal(className, methodName);
    }
 
+   public TestResult runTestMethodLocal(String className, String methodName, int captureSize)
+   {
+      return runTestMethodCaptured(className, methodName, captureSize);
+   }
+
    public InputStream runTestMethodRemote(String className, String methodName)
    {
-      TestResult result = runTestMethodInternal(className, methodName);
+      return runTestMethodRemote(className, methodName, null);
+   }
+
+   public InputStream runTestMethodRemote(String className, String methodName, String format)
+   {
+      return runTestMethodRemote(className, methodName, format, 0);
+   }
+
+   public InputStream runTestMethodRemote(String className, String methodName, String format, int captureSize)
+   {
+      return new ByteArrayInputStream(runTestMethodEncoded(className, methodName, format, captureSize));
+   }
 
+   public byte[] runTestMethodEncoded(String className, String methodName, String format, int captureSize)
+   {
+      TestResult result = runTestMethodCaptured(className, methodName, captureSize);
+
+      if (TestResultCodec.FORMAT.equals(format))
+      {
+         TestResultCodec codec = new TestResultCodec();
+         codec.encode(result);
+         return codec.toByteArray();
+      }
+      
       // Marshall the TestResult
       try
       {
@@ -103,7 +161,7 @@ public class JMXTestRunner implements JMXTestRunnerMBean
          oos.writeObject(result);
          oos.close();
 
-         return new ByteArrayInputStream(baos.toByteArray());
+         return baos.toByteArray();
       }
       catch (IOException ex)
       {
@@ -111,12 +169,26 @@ public class JMXTestRunner implements JMXTestRunnerMBean
       }
    }
 
+   private TestResult runTestMethodCaptured(String className, String methodName, int captureSize)
+   {
+      if (captureSize < 1)
+      {
+         return runTestMethodInternal(className, methodName);
+      }
+      // runTestMethodInternal does not throw
+      OutputCapture capture = OutputCapture.start(captureSize);
+      TestResult result = runTestMethodInternal(className, methodName);
+      result.setOutput(capture.stop());
+      return result;
+   }
+
    private TestResult runTestMethodInternal(String className, String methodName)
    {
       try
       {
          TestRunner runner = TestRunners.getTestRunner(JMXTestRunner.class.getClassLoader());
          Class<?> testClass = testClassLoader.loadTestClass(className);
+         releasePrevious(testClass);
          
          TestResult testResult = runner.execute(testClass, methodName);
          return testResult;
@@ -126,4 +198,21 @@ public class JMXTestRunner implements JMXTestRunnerMBean
          return new TestResult(Status.FAILED, th);
       }
    }
+
+   /*
+    * A test class loaded by another ClassLoader than on the previous run has been redeployed, release what 
+    * the TestRunners cached for the previous deployment.
+    */
+   private void releasePrevious(Class<?> testClass)
+   {
+      ClassLoader previous;
+      synchronized (testClassLoaders)
+      {
+         previous = testClassLoaders.put(testClass.getName(), testClass.getClassLoader());
+      }
+      if (previous != null && previous != testClass.getClassLoader())
+      {
+         TestRunners.release(previous);
+      }
+   }
 }
@@ -40,6 +40,38 @@ public interface JMXTestRunnerMBean
     */
    InputStream runTestMethodRemote(String className, String methodName);
    
+   /**
+    * Runs a test method on the given test class
+    *
+    * @param className the test class name
+    * @param methodName the test method name
+    * @param format the format to write the {@link TestResult} in, binary or null for Java serialization
+    * @return the input stream to read the {@link TestResult} from
+    */
+   InputStream runTestMethodRemote(String className, String methodName, String format);
+   
+   /**
+    * Runs a test method on the given test class
+    *
+    * @param className the test class name
+    * @param methodName the test method name
+    * @param format the format to write the {@link TestResult} in, binary or null for Java serialization
+    * @param captureSize max number of bytes of test output to capture and return in the {@link TestResult}, 0 to disable
+    * @return the input stream to read the {@link TestResult} from
+    */
+   InputStream runTestMethodRemote(String className, String methodName, String format, int captureSize);
+   
+   /**
+    * Runs a test method on the given test class, the result can be returned over a remote JMXConnector
+    *
+    * @param className the test class name
+    * @param methodName the test method name
+    * @param format the format to write the {@link TestResult} in, binary or null for Java serialization
+    * @param captureSize max number of bytes of test output to capture and return in the {@link TestResult}, 0 to disable
+    * @return the encoded {@link TestResult}
+    */
+   byte[] runTestMethodEncoded(String className, String methodName, String format, int captureSize);
+   
    /**
     * Runs a test method on the given test class
     *
@@ -48,4 +80,14 @@ public interface JMXTestRunnerMBean
     * @return the {@link TestResult} 
     */
    TestResult runTestMethodLocal(String className, String methodName);
+   
+   /**
+    * Runs a test method on the given test class
+    *
+    * @param className the test class name
+    * @param methodName the test method name
+    * @param captureSize max number of bytes of test output to capture and return in the {@link TestResult}, 0 to disable
+    * @return the {@link TestResult} 
+    */
+   TestResult runTestMethodLocal(String className, String methodName, int captureSize);
 }
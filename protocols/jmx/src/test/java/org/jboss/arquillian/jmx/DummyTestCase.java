@@ -16,6 +16,8 @@
  */
 package org.jboss.arquillian.jmx;
 
+import java.util.logging.Logger;
+
 import org.junit.Test;
 
 public class DummyTestCase
@@ -24,4 +26,11 @@ public class DummyTestCase
    public void testMethod() throws Exception
    {
    }
+
+   @Test
+   public void testOutput() throws Exception
+   {
+      System.out.println("captured stdout");
+      Logger.getLogger(DummyTestCase.class.getName()).info("captured log");
+   }
 }
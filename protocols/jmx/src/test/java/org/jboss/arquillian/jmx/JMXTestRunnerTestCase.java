@@ -18,17 +18,39 @@ package org.jboss.arquillian.jmx;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.rmi.ConnectException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Map;
 
 import javax.management.MBeanServer;
 import javax.management.MBeanServerFactory;
 import javax.management.MBeanServerInvocationHandler;
 import javax.management.ObjectName;
+import javax.management.remote.JMXConnector;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
 
+import org.jboss.arquillian.protocol.jmx.JMXConnectorPool;
+import org.jboss.arquillian.protocol.jmx.JMXMethodExecutor;
 import org.jboss.arquillian.protocol.jmx.JMXTestRunner;
 import org.jboss.arquillian.protocol.jmx.JMXTestRunnerMBean;
+import org.jboss.arquillian.spi.TestMethodExecutor;
 import org.jboss.arquillian.spi.TestResult;
 import org.jboss.arquillian.spi.TestResult.Status;
+import org.jboss.arquillian.spi.util.OutputCapture;
+import org.jboss.arquillian.spi.util.TestResultCodec;
 import org.junit.Test;
 
 
@@ -63,6 +85,294 @@ public class JMXTestRunnerTestCase
       }
    }
 
+   @Test
+   public void testJMXTestRunnerRemoteBinary() throws Throwable
+   {
+      MBeanServer mbeanServer = getMBeanServer();
+      JMXTestRunner jmxTestRunner = new JMXTestRunner(null);
+      ObjectName oname = jmxTestRunner.registerMBean(mbeanServer);
+      
+      try
+      {
+         JMXTestRunnerMBean testRunner = getMBeanProxy(mbeanServer, oname, JMXTestRunnerMBean.class);
+         TestResult result = TestResultCodec.getCodec().decode(
+               testRunner.runTestMethodRemote(DummyTestCase.class.getName(), "testMethod", TestResultCodec.FORMAT));
+         
+         assertNotNull("TestResult not null", result);
+         if (result.getStatus() == Status.FAILED)
+            throw result.getThrowable();
+         assertEquals(Status.PASSED, result.getStatus());
+      }
+      finally
+      {
+         mbeanServer.unregisterMBean(oname);
+      }
+   }
+
+   @Test
+   public void testJMXMethodExecutorInVM() throws Throwable
+   {
+      MBeanServer mbeanServer = getMBeanServer();
+      JMXTestRunner jmxTestRunner = new JMXTestRunner(null)
+      {
+         @Override
+         public byte[] runTestMethodEncoded(String className, String methodName, String format, int captureSize)
+         {
+            throw new IllegalStateException("TestResult should not be marshalled in the same VM");
+         }
+      };
+      ObjectName oname = jmxTestRunner.registerMBean(mbeanServer);
+      
+      System.setProperty(OutputCapture.CAPTURE_PROPERTY, "1024");
+      try
+      {
+         TestResult result = new JMXMethodExecutor().invoke(createTestMethodExecutor("testOutput"));
+         if (result.getStatus() == Status.FAILED)
+            throw result.getThrowable();
+         assertEquals(Status.PASSED, result.getStatus());
+         assertNotNull("Output captured", result.getOutput());
+         assertTrue("Stdout captured", result.getOutput().contains("captured stdout"));
+      }
+      finally
+      {
+         System.clearProperty(OutputCapture.CAPTURE_PROPERTY);
+         mbeanServer.unregisterMBean(oname);
+      }
+   }
+
+   @Test
+   public void testJMXMethodExecutorRemote() throws Throwable
+   {
+      MBeanServer mbeanServer = getMBeanServer();
+      JMXTestRunner jmxTestRunner = new JMXTestRunner(null);
+      ObjectName oname = jmxTestRunner.registerMBean(mbeanServer);
+      
+      JMXConnectorServer connectorServer = JMXConnectorServerFactory.newJMXConnectorServer(
+            new JMXServiceURL("service:jmx:rmi://localhost"), null, mbeanServer);
+      connectorServer.start();
+      JMXConnectorPool pool = new JMXConnectorPool();
+      try
+      {
+         JMXServiceURL serviceURL = connectorServer.getAddress();
+         JMXMethodExecutor executor = new JMXMethodExecutor(serviceURL, null, pool);
+         
+         TestResult result = executor.invoke(createTestMethodExecutor("testMethod"));
+         if (result.getStatus() == Status.FAILED)
+            throw result.getThrowable();
+         assertEquals(Status.PASSED, result.getStatus());
+         
+         assertSame("Connection reused", 
+               pool.getConnection(serviceURL, null), pool.getConnection(serviceURL, null));
+         assertSame("Proxy cached pr connection", 
+               pool.getProxy(serviceURL, null, oname, JMXTestRunnerMBean.class), 
+               pool.getProxy(serviceURL, null, oname, JMXTestRunnerMBean.class));
+         
+         assertNotSame("Connection pr environment", 
+               pool.getConnection(serviceURL, null), pool.getConnection(serviceURL, credentials("user")));
+         assertSame("Environment compared by content", 
+               pool.getConnection(serviceURL, credentials("user")), pool.getConnection(serviceURL, credentials("user")));
+
+         // a closed connection is replaced on the next invocation
+         pool.getConnection(serviceURL, null);
+         pool.invalidate(serviceURL);
+         result = executor.invoke(createTestMethodExecutor("testMethod"));
+         if (result.getStatus() == Status.FAILED)
+            throw result.getThrowable();
+         assertEquals(Status.PASSED, result.getStatus());
+      }
+      finally
+      {
+         pool.close();
+         connectorServer.stop();
+         mbeanServer.unregisterMBean(oname);
+      }
+   }
+
+   @Test
+   public void testJMXMethodExecutorDoesNotRerunSentRequest() throws Throwable
+   {
+      FailingConnectorPool pool = new FailingConnectorPool(new IOException("Connection reset"));
+      JMXMethodExecutor executor = new JMXMethodExecutor(new JMXServiceURL("service:jmx:rmi://localhost"), null, pool);
+      
+      TestResult result = executor.invoke(createTestMethodExecutor("testMethod"));
+      assertEquals(Status.FAILED, result.getStatus());
+      assertTrue(result.getThrowable() instanceof IOException);
+      assertEquals("Request should not be sent again", 1, pool.requests);
+      assertEquals("Connection should be replaced", 1, pool.invalidated);
+   }
+
+   @Test
+   public void testJMXMethodExecutorRetriesRefusedRequest() throws Throwable
+   {
+      FailingConnectorPool pool = new FailingConnectorPool(new ConnectException("Connection refused"));
+      JMXMethodExecutor executor = new JMXMethodExecutor(new JMXServiceURL("service:jmx:rmi://localhost"), null, pool);
+      
+      TestResult result = executor.invoke(createTestMethodExecutor("testMethod"));
+      assertEquals(Status.PASSED, result.getStatus());
+      assertEquals("Refused request should be sent again", 2, pool.requests);
+      assertEquals("Connection should be replaced", 1, pool.invalidated);
+   }
+
+   @Test
+   public void testJMXTestRunnerCapturesOutput() throws Throwable
+   {
+      MBeanServer mbeanServer = getMBeanServer();
+      JMXTestRunner jmxTestRunner = new JMXTestRunner(null);
+      ObjectName oname = jmxTestRunner.registerMBean(mbeanServer);
+      
+      try
+      {
+         JMXTestRunnerMBean testRunner = getMBeanProxy(mbeanServer, oname, JMXTestRunnerMBean.class);
+         TestResult result = TestResultCodec.getCodec().decode(
+               testRunner.runTestMethodRemote(DummyTestCase.class.getName(), "testOutput", TestResultCodec.FORMAT, 1024));
+         
+         if (result.getStatus() == Status.FAILED)
+            throw result.getThrowable();
+         assertNotNull("Output captured", result.getOutput());
+         assertTrue("Stdout captured", result.getOutput().contains("captured stdout"));
+         assertTrue("Log captured", result.getOutput().contains("captured log"));
+      }
+      finally
+      {
+         mbeanServer.unregisterMBean(oname);
+      }
+   }
+
+   @Test
+   public void testOutputCaptureKeepsTail() throws Exception
+   {
+      OutputCapture capture = OutputCapture.start(8);
+      System.out.print("0123");
+      System.out.print("456789abcdef");
+      String output = capture.stop();
+      
+      assertEquals("[... 8 bytes dropped ...]\n89abcdef", output);
+      assertFalse("Hooks removed after stop", System.out.getClass().getName().contains(OutputCapture.class.getName()));
+   }
+
+   @Test
+   public void testTestResultCodecRoundTrip() throws Exception
+   {
+      TestResult result = new TestResult(Status.FAILED, new IllegalStateException("outer", new IllegalArgumentException("inner")));
+      result.setEnd(result.getStart() + 10);
+      
+      TestResultCodec codec = new TestResultCodec();
+      int length = codec.encode(result);
+      TestResult decoded = codec.decode(codec.toByteArray(), 0, length);
+      
+      assertEquals(Status.FAILED, decoded.getStatus());
+      assertEquals(result.getStart(), decoded.getStart());
+      assertEquals(result.getEnd(), decoded.getEnd());
+      assertEquals(IllegalStateException.class, decoded.getThrowable().getClass());
+      assertEquals("outer", decoded.getThrowable().getMessage());
+      assertArrayEquals(result.getThrowable().getStackTrace(), decoded.getThrowable().getStackTrace());
+      assertEquals(IllegalArgumentException.class, decoded.getThrowable().getCause().getClass());
+      assertEquals("inner", decoded.getThrowable().getCause().getMessage());
+      assertArrayEquals(result.getThrowable().getCause().getStackTrace(), decoded.getThrowable().getCause().getStackTrace());
+      
+      assertTrue("Should be smaller then Java serialization", length < serialize(result).length);
+   }
+
+   @Test
+   public void testTestResultCodecReadsJavaSerialization() throws Exception
+   {
+      TestResult result = new TestResult(Status.SKIPPED);
+      
+      TestResult decoded = new TestResultCodec().decode(new ByteArrayInputStream(serialize(result)));
+      
+      assertEquals(Status.SKIPPED, decoded.getStatus());
+      assertEquals(result.getStart(), decoded.getStart());
+   }
+
+   @Test
+   public void testTestResultCodecRestoresSerializedException() throws Exception
+   {
+      TestResult result = new TestResult(Status.FAILED, new NoMessageConstructorException());
+      
+      TestResultCodec codec = new TestResultCodec();
+      int length = codec.encode(result);
+      TestResult decoded = codec.decode(codec.toByteArray(), 0, length);
+      
+      assertEquals(NoMessageConstructorException.class, decoded.getThrowable().getClass());
+      assertEquals("fixed", decoded.getThrowable().getMessage());
+   }
+
+   @Test
+   public void testTestResultCodecUnresolvedException() throws Exception
+   {
+      TestResult result = new TestResult(Status.FAILED, new NoMessageConstructorException());
+      
+      TestResultCodec codec = new TestResultCodec();
+      int length = codec.encode(result);
+
+      // decode where only the JDK classes are visible
+      Thread thread = Thread.currentThread();
+      ClassLoader original = thread.getContextClassLoader();
+      thread.setContextClassLoader(new URLClassLoader(new URL[0], null));
+      TestResult decoded;
+      try
+      {
+         decoded = codec.decode(codec.toByteArray(), 0, length);
+      }
+      finally
+      {
+         thread.setContextClassLoader(original);
+      }
+      
+      assertEquals(TestResultCodec.UnresolvedException.class, decoded.getThrowable().getClass());
+      assertEquals(
+            NoMessageConstructorException.class.getName(), 
+            ((TestResultCodec.UnresolvedException)decoded.getThrowable()).getClassName());
+      assertEquals("fixed", decoded.getThrowable().getMessage());
+   }
+
+   @Test
+   public void testTestResultCodecTrimsStackTrace() throws Exception
+   {
+      TestResult result = new TestResult(Status.FAILED, new IllegalStateException());
+      
+      TestResultCodec codec = new TestResultCodec();
+      codec.setMaxFrames(1);
+      int length = codec.encode(result);
+      TestResult decoded = codec.decode(codec.toByteArray(), 0, length);
+      
+      StackTraceElement[] stackTrace = decoded.getThrowable().getStackTrace();
+      assertEquals("Should keep one frame and a trimmed marker", 2, stackTrace.length);
+      assertEquals(result.getThrowable().getStackTrace()[0], stackTrace[0]);
+   }
+
+   private TestMethodExecutor createTestMethodExecutor(final String methodName) throws Exception
+   {
+      final DummyTestCase instance = new DummyTestCase();
+      final Method method = DummyTestCase.class.getMethod(methodName);
+      return new TestMethodExecutor()
+      {
+         public Method getMethod()
+         {
+            return method;
+         }
+         
+         public Object getInstance()
+         {
+            return instance;
+         }
+         
+         public void invoke() throws Throwable
+         {
+            method.invoke(instance);
+         }
+      };
+   }
+
+   private byte[] serialize(Object object) throws Exception
+   {
+      ByteArrayOutputStream baos = new ByteArrayOutputStream();
+      ObjectOutputStream oos = new ObjectOutputStream(baos);
+      oos.writeObject(object);
+      oos.close();
+      return baos.toByteArray();
+   }
+
    private MBeanServer getMBeanServer()
    {
       ArrayList<MBeanServer> mbeanServers = MBeanServerFactory.findMBeanServer(null);
@@ -74,4 +384,59 @@ public class JMXTestRunnerTestCase
    {
       return (T)MBeanServerInvocationHandler.newProxyInstance(mbeanServer, name, interf, false);
    }
+
+   /*
+    * Fails the first request with the given exception, the following are run by a JMXTestRunner in this VM.
+    */
+   private Map<String, ?> credentials(String user)
+   {
+      return Collections.singletonMap(JMXConnector.CREDENTIALS, new String[] {user, "secret"});
+   }
+
+   private static class FailingConnectorPool extends JMXConnectorPool
+   {
+      private IOException failure;
+      
+      private int requests;
+      
+      private int invalidated;
+      
+      public FailingConnectorPool(IOException failure)
+      {
+         this.failure = failure;
+      }
+      
+      @Override
+      public <T> T getProxy(JMXServiceURL serviceURL, Map<String, ?> environment, ObjectName name, final Class<T> interf)
+      {
+         final JMXTestRunner testRunner = new JMXTestRunner(null);
+         return interf.cast(Proxy.newProxyInstance(interf.getClassLoader(), new Class<?>[]{interf}, new InvocationHandler()
+         {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+            {
+               if(++requests == 1)
+               {
+                  throw new UndeclaredThrowableException(failure);
+               }
+               return method.invoke(testRunner, args);
+            }
+         }));
+      }
+      
+      @Override
+      public void invalidate(JMXServiceURL serviceURL, Map<String, ?> environment)
+      {
+         invalidated++;
+      }
+   }
+
+   public static class NoMessageConstructorException extends RuntimeException
+   {
+      private static final long serialVersionUID = 1L;
+
+      public NoMessageConstructorException()
+      {
+         super("fixed");
+      }
+   }
 }
@@ -17,6 +17,7 @@
 package org.jboss.arquillian.protocol.local;
 
 import org.jboss.arquillian.spi.DeploymentPackager;
+import org.jboss.arquillian.spi.Stateless;
 import org.jboss.arquillian.spi.TestDeployment;
 import org.jboss.shrinkwrap.api.Archive;
 
@@ -26,6 +27,7 @@ import org.jboss.shrinkwrap.api.Archive;
  * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
  * @version $Revision: $
  */
+@Stateless
 public class LocalDeploymentPackager implements DeploymentPackager
 {
    /* (non-Javadoc)
@@ -16,28 +16,86 @@
  */
 package org.jboss.arquillian.protocol.servlet_2_5;
 
-import java.io.ObjectInputStream;
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLConnection;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 
-import org.jboss.arquillian.spi.ContainerMethodExecutor;
+import org.jboss.arquillian.spi.BatchContainerMethodExecutor;
 import org.jboss.arquillian.spi.TestMethodExecutor;
 import org.jboss.arquillian.spi.TestResult;
+import org.jboss.arquillian.spi.TestResult.Status;
+import org.jboss.arquillian.spi.util.OutputCapture;
+import org.jboss.arquillian.spi.util.TestResultCodec;
 
 /**
  * ServletMethodExecutor
+ * 
+ * Waits for the deployment to be ready by probing the {@link ServletTestRunner} with a exponential backoff 
+ * before the first test is invoked, see {@link ServletProtocolConfiguration}. The responses are read fully and the connections are not disconnected, 
+ * so the JDK keeps the HTTP/1.1 connection to the deployment alive between the tests.
+ * 
+ * The TestResult is requested in the compact {@link TestResultCodec} format, a runner that does not know the 
+ * format answers with a Java serialized TestResult which is read as well.
+ * 
+ * If {@link OutputCapture#CAPTURE_PROPERTY} is set, the output of the tests is captured in container.
+ * 
+ * A batch of test methods is executed in one request, the results are read from the response 
+ * stream as they are requested.
  *
  * @author <a href="mailto:aslak@conduct.no">Aslak Knutsen</a>
  * @version $Revision: $
  */
-public class ServletMethodExecutor implements ContainerMethodExecutor
+public class ServletMethodExecutor implements BatchContainerMethodExecutor
 {
+   public static final long DEFAULT_READY_TIMEOUT = 10000;
+   
+   public static final long DEFAULT_MAX_BACKOFF = 500;
+   
+   private static final long INITIAL_BACKOFF = 5;
+   
    private URL baseURL;
    
+   private long readyTimeout;
+   
+   private long maxBackoff;
+   
+   private volatile boolean ready = false;
+   
    public ServletMethodExecutor(URL baseURL)
+   {
+      this(baseURL, DEFAULT_READY_TIMEOUT, DEFAULT_MAX_BACKOFF);
+   }
+
+   /**
+    * @param baseURL The URL of the deployment
+    * @param configuration The protocol settings from arquillian.xml, null for the defaults
+    */
+   public ServletMethodExecutor(URL baseURL, ServletProtocolConfiguration configuration)
+   {
+      this(
+            baseURL, 
+            configuration == null ? DEFAULT_READY_TIMEOUT:configuration.getReadyTimeout(), 
+            configuration == null ? DEFAULT_MAX_BACKOFF:configuration.getMaxBackoff());
+   }
+
+   /**
+    * @param baseURL The URL of the deployment
+    * @param readyTimeout Max number of milliseconds to wait for the deployment to be ready
+    * @param maxBackoff Max number of milliseconds between two readiness probes
+    */
+   public ServletMethodExecutor(URL baseURL, long readyTimeout, long maxBackoff)
    {
       this.baseURL = baseURL;
+      this.readyTimeout = readyTimeout;
+      this.maxBackoff = maxBackoff;
    }
    
    public TestResult invoke(TestMethodExecutor testMethodExecutor) 
@@ -52,12 +110,15 @@ public class ServletMethodExecutor implements ContainerMethodExecutor
 //                        "?outputMode=serializedObject&className=" + testClass.getName() + 
 //                        "&methodName=" + testMethodExecutor.getMethod().getName();
       
-      String url = baseURL.toExternalForm() + "arquillian-protocol/" +  
+      String url = getRunnerURL() +  
                          "?outputMode=serializedObject&className=" + testClass.getName() + 
-                          "&methodName=" + testMethodExecutor.getMethod().getName();
+                          "&methodName=" + testMethodExecutor.getMethod().getName() +
+                         "&" + ServletTestRunner.PARA_FORMAT + "=" + TestResultCodec.FORMAT +
+                         getCaptureParameter();
       
       try 
       {
+         awaitReady();
          return execute(url);
       } 
       catch (Exception e) 
@@ -66,66 +127,245 @@ public class ServletMethodExecutor implements ContainerMethodExecutor
       }
    }
 
+   public Results invoke(Class<?> testClass, List<String> methodNames)
+   {
+      if(testClass == null) 
+      {
+         throw new IllegalArgumentException("TestClass must be specified");
+      }
+      if(methodNames == null || methodNames.isEmpty()) 
+      {
+         throw new IllegalArgumentException("MethodNames must be specified");
+      }
+      
+      StringBuilder url = new StringBuilder(getRunnerURL())
+            .append("?outputMode=serializedObject&className=").append(testClass.getName())
+            .append("&").append(ServletTestRunner.PARA_FORMAT).append("=").append(TestResultCodec.FORMAT)
+            .append("&").append(ServletTestRunner.PARA_METHOD_NAMES).append("=");
+      for(int i = 0; i < methodNames.size(); i++)
+      {
+         url.append(i == 0 ? "":",").append(methodNames.get(i));
+      }
+      url.append(getCaptureParameter());
+      
+      try 
+      {
+         awaitReady();
+         HttpURLConnection httpConnection = openConnection(url.toString());
+         if (httpConnection.getResponseCode() != HttpURLConnection.HTTP_OK)
+         {
+            release(httpConnection);
+            throw new IllegalStateException(
+                  "Error launching tests at " + url + ". " +
+                  "Got " + httpConnection.getResponseCode() + " ("+ httpConnection.getResponseMessage() + ")");
+         }
+         return new StreamedResults(httpConnection);
+      } 
+      catch (Exception e) 
+      {
+         throw new IllegalStateException("Error launching tests " + testClass.getName() + " " + methodNames, e);
+      }
+   }
+
+   private String getRunnerURL()
+   {
+      return baseURL.toExternalForm() + "arquillian-protocol/";
+   }
+   
+   private String getCaptureParameter()
+   {
+      int captureSize = OutputCapture.getRequestedSize();
+      return captureSize > 0 ? "&" + ServletTestRunner.PARA_CAPTURE_OUTPUT + "=" + captureSize:"";
+   }
+   
+   /*
+    * The deployment is ready when the probe stops returning 404.
+    */
+   private void awaitReady() throws Exception
+   {
+      if(ready)
+      {
+         return;
+      }
+      String url = getRunnerURL() + "?" + ServletTestRunner.PARA_COMMAND + "=" + ServletTestRunner.COMMAND_PROBE;
+      long timeoutTime = System.currentTimeMillis() + readyTimeout;
+      long backoff = INITIAL_BACKOFF;
+      while (true)
+      {
+         HttpURLConnection connection = openConnection(url);
+         int responseCode;
+         try
+         {
+            responseCode = connection.getResponseCode();
+         }
+         finally
+         {
+            release(connection);
+         }
+         if (responseCode == HttpURLConnection.HTTP_OK)
+         {
+            ready = true;
+            return;
+         }
+         if (responseCode != HttpURLConnection.HTTP_NOT_FOUND)
+         {
+            throw new IllegalStateException(
+                  "Error probing deployment at " + url + ". " +
+                  "Got " + responseCode + " ("+ connection.getResponseMessage() + ")");
+         }
+         if (System.currentTimeMillis() + backoff > timeoutTime)
+         {
+            throw new IllegalStateException("Deployment at " + url + " not ready within " + readyTimeout + " ms. Kept on getting 404s.");
+         }
+         Thread.sleep(backoff);
+         backoff = Math.min(backoff * 2, maxBackoff);
+      }
+   }
+   
    private TestResult execute(String url) throws Exception 
    {
-      long timeoutTime = System.currentTimeMillis() + 1000;
-      boolean interrupted = false;
-      while (timeoutTime > System.currentTimeMillis())
+      HttpURLConnection httpConnection = openConnection(url);
+      try
       {
-         URLConnection connection = new URL(url).openConnection();
-         if (!(connection instanceof HttpURLConnection))
+         if (httpConnection.getResponseCode() != HttpURLConnection.HTTP_OK)
          {
-            throw new IllegalStateException("Not an http connection! " + connection);
+            throw new IllegalStateException(
+                  "Error launching test at " + url + ". " +
+                  "Got " + httpConnection.getResponseCode() + " ("+ httpConnection.getResponseMessage() + ")");
+         }
+         return TestResultCodec.getCodec().decode(httpConnection.getInputStream());
+      }
+      finally
+      {
+         release(httpConnection);
+      }
+   }
+   
+   private HttpURLConnection openConnection(String url) throws IOException
+   {
+      URLConnection connection = new URL(url).openConnection();
+      if (!(connection instanceof HttpURLConnection))
+      {
+         throw new IllegalStateException("Not an http connection! " + connection);
+      }
+      HttpURLConnection httpConnection = (HttpURLConnection) connection;
+      httpConnection.setUseCaches(false);
+      return httpConnection;
+   }
+   
+   /*
+    * Read the rest of the response and close the stream instead of disconnecting, the
+    * JDK only returns a fully read connection to the keep-alive cache.
+    */
+   private void release(HttpURLConnection connection)
+   {
+      try
+      {
+         InputStream is = connection.getResponseCode() < HttpURLConnection.HTTP_BAD_REQUEST ? 
+               connection.getInputStream():connection.getErrorStream();
+         if(is == null)
+         {
+            return;
          }
-         HttpURLConnection httpConnection = (HttpURLConnection) connection;
-         httpConnection.setUseCaches(false);
-         httpConnection.setDefaultUseCaches(false);
          try
          {
-            httpConnection.connect();
-            if (httpConnection.getResponseCode() == HttpURLConnection.HTTP_OK)
+            byte[] buffer = new byte[512];
+            while(is.read(buffer) != -1)
             {
-               ObjectInputStream ois = new ObjectInputStream(httpConnection.getInputStream());
-               Object o;
-               try
-               {
-                  o = ois.readObject();
-               }
-               finally 
-               {
-                  ois.close();   
-               }
-               
-               if (!(o instanceof TestResult))
-               {
-                  throw new IllegalStateException("Error reading test results - expected a TestResult but got " + o);
-               }
-               return (TestResult) o;
+               // drain
             }
-            else if (httpConnection.getResponseCode() != HttpURLConnection.HTTP_NOT_FOUND)
+         }
+         finally
+         {
+            is.close();
+         }
+      }
+      catch (IOException e) 
+      {
+         // broken connection, not reused
+         connection.disconnect();
+      }
+   }
+   
+   /*
+    * Reads the method name and TestResult frames from the response until a result for the requested method 
+    * is found. A method invoked more than once in the container, through a data provider or a invocation count, 
+    * has a result pr invocation. They are handed out in invocation order, each one only once.
+    */
+   private class StreamedResults implements Results
+   {
+      private HttpURLConnection connection;
+      
+      private DataInputStream input;
+      
+      private TestResultCodec codec = new TestResultCodec();
+      
+      private Map<String, LinkedList<TestResult>> results = new HashMap<String, LinkedList<TestResult>>();
+      
+      private Exception failure;
+      
+      private boolean done = false;
+      
+      public StreamedResults(HttpURLConnection connection)
+      {
+         this.connection = connection;
+      }
+      
+      public synchronized TestResult get(String methodName)
+      {
+         LinkedList<TestResult> invocations = results.get(methodName);
+         while((invocations == null || invocations.isEmpty()) && !done)
+         {
+            read();
+            invocations = results.get(methodName);
+         }
+         if(invocations == null || invocations.isEmpty())
+         {
+            return new TestResult(
+                  Status.FAILED, 
+                  new IllegalStateException("No result returned for " + methodName, failure));
+         }
+         return invocations.removeFirst();
+      }
+      
+      public synchronized void close()
+      {
+         if(connection != null)
+         {
+            done = true;
+            release(connection);
+            connection = null;
+         }
+      }
+      
+      private void read()
+      {
+         try
+         {
+            if(input == null)
             {
-               throw new IllegalStateException(
-                     "Error launching test at " + url + ". " +
-                     "Got " + httpConnection.getResponseCode() + " ("+ httpConnection.getResponseMessage() + ")");
+               input = new DataInputStream(new BufferedInputStream(connection.getInputStream()));
             }
-            try
+            String methodName = codec.readFrameName(input);
+            if(methodName == null)
             {
-               Thread.sleep(200);
+               done = true;
+               return;
             }
-            catch (InterruptedException e)
+            TestResult result = codec.readFrameResult(input);
+            LinkedList<TestResult> invocations = results.get(methodName);
+            if(invocations == null)
             {
-               interrupted = true;
+               invocations = new LinkedList<TestResult>();
+               results.put(methodName, invocations);
             }
+            invocations.add(result);
          }
-         finally
+         catch (Exception e) 
          {
-            httpConnection.disconnect();
+            failure = e;
+            done = true;
          }
       }
-      if (interrupted)
-      {
-         Thread.currentThread().interrupt();
-      }
-      throw new IllegalStateException("Error launching test at " + url + ". Kept on getting 404s.");
    }
 }
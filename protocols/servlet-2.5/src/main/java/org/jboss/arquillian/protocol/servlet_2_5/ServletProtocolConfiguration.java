@@ -0,0 +1,66 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.protocol.servlet_2_5;
+
+import org.jboss.arquillian.spi.ExtensionConfiguration;
+
+/**
+ * Client side settings of the Servlet protocol, configured in arquillian.xml:
+ * 
+ * <pre>
+ * &lt;servlet:extension xmlns:servlet="urn:arq:org.jboss.arquillian.protocol.servlet_2_5"&gt;
+ *    &lt;servlet:readyTimeout&gt;30000&lt;/servlet:readyTimeout&gt;
+ *    &lt;servlet:maxBackoff&gt;1000&lt;/servlet:maxBackoff&gt;
+ * &lt;/servlet:extension&gt;
+ * </pre>
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ * @see ServletMethodExecutor
+ */
+public class ServletProtocolConfiguration implements ExtensionConfiguration
+{
+   private long readyTimeout = ServletMethodExecutor.DEFAULT_READY_TIMEOUT;
+   
+   private long maxBackoff = ServletMethodExecutor.DEFAULT_MAX_BACKOFF;
+   
+   /**
+    * @return Max number of milliseconds to wait for the deployment to be ready
+    */
+   public long getReadyTimeout()
+   {
+      return readyTimeout;
+   }
+   
+   public void setReadyTimeout(long readyTimeout)
+   {
+      this.readyTimeout = readyTimeout;
+   }
+   
+   /**
+    * @return Max number of milliseconds between two readiness probes
+    */
+   public long getMaxBackoff()
+   {
+      return maxBackoff;
+   }
+   
+   public void setMaxBackoff(long maxBackoff)
+   {
+      this.maxBackoff = maxBackoff;
+   }
+}
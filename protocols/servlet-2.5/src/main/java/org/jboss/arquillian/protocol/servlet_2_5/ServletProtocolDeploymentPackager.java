@@ -19,6 +19,7 @@ package org.jboss.arquillian.protocol.servlet_2_5;
 import java.util.Collection;
 
 import org.jboss.arquillian.spi.DeploymentPackager;
+import org.jboss.arquillian.spi.Stateless;
 import org.jboss.arquillian.spi.TestDeployment;
 import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.shrinkwrap.api.ShrinkWrap;
@@ -32,6 +33,7 @@ import org.jboss.shrinkwrap.api.spec.WebArchive;
  * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
  * @version $Revision: $
  */
+@Stateless
 public class ServletProtocolDeploymentPackager implements DeploymentPackager
 {
    /* (non-Javadoc)
@@ -16,18 +16,28 @@
  */
 package org.jboss.arquillian.protocol.servlet_2_5;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.jboss.arquillian.spi.BatchTestRunner;
 import org.jboss.arquillian.spi.TestResult;
 import org.jboss.arquillian.spi.TestRunner;
 import org.jboss.arquillian.spi.TestResult.Status;
+import org.jboss.arquillian.spi.util.OutputCapture;
+import org.jboss.arquillian.spi.util.TestResultCodec;
 import org.jboss.arquillian.spi.util.TestRunners;
 
 /**
@@ -38,6 +48,20 @@ import org.jboss.arquillian.spi.util.TestRunners;
  * Supports multiple output modes ("outputmode"):
  *  - html
  *  - serializedObject 
+ * 
+ * In serializedObject mode the TestResult is written in the compact {@link TestResultCodec} format 
+ * instead of Java serialization if the client asks for it with format ("format") binary.
+ * 
+ * A request with the command ("cmd") probe returns a empty 200 response as soon as the
+ * deployment is ready, without loading the test class.
+ * 
+ * With capture output ("captureOutput") set to a number of bytes, the output of the test is captured with
+ * {@link OutputCapture} and returned in the TestResult.
+ * 
+ * A request with a comma separated list of method names ("methodNames") executes all the methods
+ * in one request. The results are streamed as they are produced as method name and TestResult frames 
+ * of the {@link TestResultCodec}, or as serialized method name and TestResult pairs ended by a null if 
+ * the client did not ask for the binary format.
  *
  * @author <a href="mailto:aslak@conduct.no">Aslak Knutsen</a>
  * @version $Revision: $
@@ -47,15 +71,39 @@ public class ServletTestRunner extends HttpServlet
    private static final long serialVersionUID = 1L;
 
    public static final String PARA_METHOD_NAME = "methodName";
+   public static final String PARA_METHOD_NAMES = "methodNames";
    public static final String PARA_CLASS_NAME = "className";
    public static final String PARA_OUTPUT_MODE = "outputMode";
+   public static final String PARA_COMMAND = "cmd";
+   public static final String PARA_FORMAT = "format";
+   public static final String PARA_CAPTURE_OUTPUT = "captureOutput";
    
    public static final String OUTPUT_MODE_SERIALIZED = "serializedObject";
    public static final String OUTPUT_MODE_HTML = "html";
    
+   public static final String COMMAND_PROBE = "probe";
+   
+   @Override
+   public void destroy()
+   {
+      // drop the TestRunner and the test class structures it cached for this deployment
+      TestRunners.release(SecurityActions.getThreadContextClassLoader());
+   }
+   
    @Override
    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException
    {
+      if(COMMAND_PROBE.equals(request.getParameter(PARA_COMMAND)))
+      {
+         response.setStatus(HttpServletResponse.SC_OK);
+         response.setContentLength(0);
+         return;
+      }
+      if(request.getParameter(PARA_METHOD_NAMES) != null)
+      {
+         executeBatch(request, response);
+         return;
+      }
       String outputMode = OUTPUT_MODE_HTML;
       try 
       {
@@ -81,11 +129,27 @@ public class ServletTestRunner extends HttpServlet
          
          TestRunner runner = TestRunners.getTestRunner();
          
-         TestResult testResult = runner.execute(testClass, methodName);
+         OutputCapture capture = startCapture(request);
+         TestResult testResult = null;
+         try
+         {
+            testResult = runner.execute(testClass, methodName);
+         }
+         finally
+         {
+            if(capture != null)
+            {
+               String output = capture.stop();
+               if(testResult != null)
+               {
+                  testResult.setOutput(output);
+               }
+            }
+         }
 
          if(OUTPUT_MODE_SERIALIZED.equalsIgnoreCase(outputMode)) 
          {
-            writeObject(testResult, response);
+            writeResult(testResult, request, response);
          } 
          else 
          {
@@ -118,7 +182,7 @@ public class ServletTestRunner extends HttpServlet
       {
          if(OUTPUT_MODE_SERIALIZED.equalsIgnoreCase(outputMode)) 
          {
-            writeObject(createFailedResult(e), response);
+            writeResult(createFailedResult(e), request, response);
          } 
          else 
          {
@@ -127,15 +191,146 @@ public class ServletTestRunner extends HttpServlet
       }
    }
    
+   private void executeBatch(HttpServletRequest request, HttpServletResponse response) throws IOException
+   {
+      List<String> methodNames = Arrays.asList(request.getParameter(PARA_METHOD_NAMES).split(","));
+      final Set<String> written = new HashSet<String>();
+      
+      response.setStatus(HttpServletResponse.SC_OK);
+      response.setContentType("application/octet-stream");
+      final ResultWriter output = TestResultCodec.FORMAT.equals(request.getParameter(PARA_FORMAT)) ? 
+            new FramedResultWriter(response.getOutputStream()):new SerializedResultWriter(response.getOutputStream());
+      try
+      {
+         String className = request.getParameter(PARA_CLASS_NAME);
+         if (className == null)
+         {
+            throw new IllegalArgumentException(PARA_CLASS_NAME + " must be specified");
+         }
+         Class<?> testClass = SecurityActions.getThreadContextClassLoader().loadClass(className);
+         
+         final OutputCapture capture = startCapture(request);
+         BatchTestRunner.Callback callback = new BatchTestRunner.Callback()
+         {
+            public void result(String methodName, TestResult result)
+            {
+               if(capture != null)
+               {
+                  result.setOutput(capture.drain());
+               }
+               try
+               {
+                  output.write(methodName, result);
+                  written.add(methodName);
+               }
+               catch (IOException e) 
+               {
+                  throw new RuntimeException("Could not write result of " + methodName, e);
+               }
+            }
+         };
+         
+         try
+         {
+            TestRunner runner = TestRunners.getTestRunner();
+            if(runner instanceof BatchTestRunner)
+            {
+               ((BatchTestRunner)runner).execute(testClass, methodNames, callback);
+            }
+            else
+            {
+               for(String methodName : methodNames)
+               {
+                  callback.result(methodName, runner.execute(testClass, methodName));
+               }
+            }
+         }
+         finally
+         {
+            if(capture != null)
+            {
+               capture.stop();
+            }
+         }
+      }
+      catch (Exception e) 
+      {
+         for(String methodName : methodNames)
+         {
+            if(!written.contains(methodName))
+            {
+               output.write(methodName, createFailedResult(e));
+            }
+         }
+      }
+      output.close();
+   }
+   
+   /*
+    * Start capturing the output of the current Thread if requested by the client.
+    */
+   private OutputCapture startCapture(HttpServletRequest request)
+   {
+      String captureSize = request.getParameter(PARA_CAPTURE_OUTPUT);
+      if(captureSize == null)
+      {
+         return null;
+      }
+      try
+      {
+         int size = Integer.parseInt(captureSize);
+         return size > 0 ? OutputCapture.start(size):null;
+      }
+      catch (NumberFormatException e) 
+      {
+         throw new IllegalArgumentException(PARA_CAPTURE_OUTPUT + " must be a number of bytes, was " + captureSize);
+      }
+   }
+   
+   private void writeResult(TestResult result, HttpServletRequest request, HttpServletResponse response)
+   {
+      if(!TestResultCodec.FORMAT.equals(request.getParameter(PARA_FORMAT)))
+      {
+         writeObject(result, response);
+         return;
+      }
+      try 
+      {
+         TestResultCodec codec = new TestResultCodec();
+         int length = codec.encode(result);
+         
+         response.setStatus(HttpServletResponse.SC_OK);
+         response.setContentLength(length);
+         codec.writeTo(response.getOutputStream());
+         response.getOutputStream().flush();
+      } 
+      catch (Exception e) 
+      {
+         try 
+         {
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
+         } 
+         catch (Exception e2) 
+         {
+            throw new RuntimeException("Could not write to output", e2);
+         }
+      }
+   }
+   
    private void writeObject(Object object, HttpServletResponse response) 
    {
       try 
       {
-         ObjectOutputStream oos = new ObjectOutputStream(response.getOutputStream());
+         // buffered so the content length is known and the connection can be kept alive
+         ByteArrayOutputStream output = new ByteArrayOutputStream();
+         ObjectOutputStream oos = new ObjectOutputStream(output);
          oos.writeObject(object);
-         response.setStatus(HttpServletResponse.SC_OK);
-         oos.flush();
          oos.close();
+         
+         response.setStatus(HttpServletResponse.SC_OK);
+         response.setContentLength(output.size());
+         output.writeTo(response.getOutputStream());
+         response.getOutputStream().flush();
       } 
       catch (Exception e) 
       {
@@ -154,4 +349,63 @@ public class ServletTestRunner extends HttpServlet
    {
       return new TestResult(Status.FAILED, throwable);
    }
+   
+   /*
+    * Writes the results of a batch, each result is flushed so the client can replay it while the rest 
+    * of the batch is running.
+    */
+   private interface ResultWriter
+   {
+      void write(String methodName, TestResult result) throws IOException;
+      
+      void close() throws IOException;
+   }
+   
+   private static class FramedResultWriter implements ResultWriter
+   {
+      private TestResultCodec codec = new TestResultCodec();
+      
+      private DataOutputStream output;
+      
+      public FramedResultWriter(OutputStream output)
+      {
+         this.output = new DataOutputStream(output);
+      }
+      
+      public void write(String methodName, TestResult result) throws IOException
+      {
+         codec.writeFrame(output, methodName, result);
+         output.flush();
+      }
+      
+      public void close() throws IOException
+      {
+         TestResultCodec.writeEnd(output);
+         output.close();
+      }
+   }
+   
+   private static class SerializedResultWriter implements ResultWriter
+   {
+      private ObjectOutputStream output;
+      
+      public SerializedResultWriter(OutputStream output) throws IOException
+      {
+         this.output = new ObjectOutputStream(output);
+      }
+      
+      public void write(String methodName, TestResult result) throws IOException
+      {
+         output.writeObject(methodName);
+         output.writeObject(result);
+         output.flush();
+         output.reset();
+      }
+      
+      public void close() throws IOException
+      {
+         output.writeObject(null);
+         output.close();
+      }
+   }
 }
@@ -18,6 +18,7 @@ package org.jboss.arquillian.protocol.servlet_2_5;
 
 import java.io.Serializable;
 import java.lang.reflect.Method;
+import java.net.HttpURLConnection;
 import java.net.URL;
 
 import org.jboss.arquillian.protocol.servlet_2_5.ServletMethodExecutor;
@@ -146,6 +147,25 @@ public class ProtocolTestCase
             result.getThrowable() instanceof ClassNotFoundException);
    }
 
+   @Test
+   public void shouldAnswerReadinessProbeWithoutRunningATest() throws Exception
+   {
+      URL url = new URL(createURL(null, null, null).toExternalForm() + 
+            "?" + ServletTestRunner.PARA_COMMAND + "=" + ServletTestRunner.COMMAND_PROBE);
+      HttpURLConnection connection = (HttpURLConnection)url.openConnection();
+      
+      Assert.assertEquals(HttpURLConnection.HTTP_OK, connection.getResponseCode());
+      Assert.assertEquals(0, connection.getContentLength());
+   }
+   
+   @Test(expected = IllegalStateException.class)
+   public void shouldFailWhenDeploymentIsNotReadyWithinTimeout() throws Exception 
+   {
+      ServletMethodExecutor executor = new ServletMethodExecutor(
+            new URL(createBaseURL().toExternalForm() + "missing/"), 100, 20);
+      executor.invoke(new MockTestExecutor());
+   }
+   
    private URL createBaseURL() {
       try 
       {
@@ -0,0 +1,361 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.protocol.servlet_3;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.AsyncContext;
+
+import org.jboss.arquillian.spi.TestResult;
+import org.jboss.arquillian.spi.TestResult.Status;
+
+/**
+ * Executes the tests of a {@link AsyncContext} on a sized pool of Threads, so the container request
+ * Thread is released while the test is running.<br/>
+ * <br/>
+ * A test that does not finish within its timeout is interrupted and answered with a FAILED result. The
+ * exception carries the stack trace of the test Thread and the output a dump of all Threads. A test that
+ * ignores the interrupt keeps its executor Thread, but not the request.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class AsyncTestExecutor implements AsyncTestExecutorMBean
+{
+   private ThreadPoolExecutor executor;
+
+   private ScheduledExecutorService watchdog;
+
+   private AtomicInteger active = new AtomicInteger();
+
+   private AtomicLong completed = new AtomicLong();
+
+   private AtomicLong timedOut = new AtomicLong();
+
+   private AtomicLong rejected = new AtomicLong();
+
+   /**
+    * @param maxThreads Max number of tests executing at the same time
+    * @param queueSize Max number of tests waiting for a executor Thread
+    * @param classLoader The Thread Context ClassLoader of the executor Threads, the deployment ClassLoader
+    */
+   public AsyncTestExecutor(int maxThreads, int queueSize, final ClassLoader classLoader)
+   {
+      if(maxThreads < 1)
+      {
+         throw new IllegalArgumentException("MaxThreads must be greater then 0");
+      }
+      if(queueSize < 1)
+      {
+         throw new IllegalArgumentException("QueueSize must be greater then 0");
+      }
+      final AtomicInteger count = new AtomicInteger();
+      this.executor = new ThreadPoolExecutor(
+            maxThreads, maxThreads, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(queueSize),
+            new ThreadFactory()
+            {
+               public Thread newThread(Runnable r)
+               {
+                  Thread thread = new Thread(r, "arquillian-servlet-test-" + count.incrementAndGet());
+                  thread.setDaemon(true);
+                  thread.setContextClassLoader(classLoader);
+                  return thread;
+               }
+            });
+      this.watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+      {
+         public Thread newThread(Runnable r)
+         {
+            Thread thread = new Thread(r, "arquillian-servlet-test-watchdog");
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+   }
+
+   /**
+    * Execute the Task on a executor Thread and complete the AsyncContext when done.
+    *
+    * @param async The started AsyncContext of the request
+    * @param timeout Max number of milliseconds the Task can run, 0 for no limit
+    * @param task The Task to execute
+    * @throws RejectedExecutionException If the queue is full
+    */
+   public void submit(final AsyncContext async, final long timeout, final Task task)
+   {
+      final Completion completion = new Completion(async);
+      try
+      {
+         executor.execute(new Runnable()
+         {
+            public void run()
+            {
+               active.incrementAndGet();
+               ScheduledFuture<?> timer = null;
+               if(timeout > 0)
+               {
+                  timer = watchdog.schedule(
+                        new Timeout(Thread.currentThread(), timeout, completion, task),
+                        timeout, TimeUnit.MILLISECONDS);
+               }
+               try
+               {
+                  task.execute(completion);
+               }
+               catch (Throwable e)
+               {
+                  if(completion.claim())
+                  {
+                     task.failed(e);
+                  }
+               }
+               finally
+               {
+                  if(timer != null)
+                  {
+                     timer.cancel(false);
+                  }
+                  // a late timeout must not interrupt the next test on this Thread
+                  completion.finish();
+                  active.decrementAndGet();
+                  completed.incrementAndGet();
+                  completion.complete();
+               }
+            }
+         });
+      }
+      catch (RejectedExecutionException e)
+      {
+         rejected.incrementAndGet();
+         throw e;
+      }
+   }
+
+   /**
+    * Stop the executor Threads, running tests are interrupted.
+    */
+   public void shutdown()
+   {
+      watchdog.shutdownNow();
+      executor.shutdownNow();
+   }
+
+   public int getQueueDepth()
+   {
+      return executor.getQueue().size();
+   }
+
+   public int getActiveTests()
+   {
+      return active.get();
+   }
+
+   public int getMaxThreads()
+   {
+      return executor.getMaximumPoolSize();
+   }
+
+   public long getCompletedTests()
+   {
+      return completed.get();
+   }
+
+   public long getTimedOutTests()
+   {
+      return timedOut.get();
+   }
+
+   public long getRejectedTests()
+   {
+      return rejected.get();
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   static TestResult createTimeoutResult(Thread testThread, long timeout)
+   {
+      TimeoutException exception = new TimeoutException("Test did not finish within " + timeout + " ms");
+      exception.setStackTrace(testThread.getStackTrace());
+
+      TestResult result = new TestResult(Status.FAILED, exception);
+      result.setOutput(createThreadDump(testThread));
+      result.setEnd(System.currentTimeMillis());
+      return result;
+   }
+
+   private static String createThreadDump(Thread testThread)
+   {
+      StringBuilder dump = new StringBuilder("Thread dump at timeout, test Thread \"")
+            .append(testThread.getName()).append("\"\n");
+      for(Map.Entry<Thread, StackTraceElement[]> thread : Thread.getAllStackTraces().entrySet())
+      {
+         dump.append("\n\"").append(thread.getKey().getName()).append("\" ")
+               .append(thread.getKey().getState()).append("\n");
+         for(StackTraceElement frame : thread.getValue())
+         {
+            dump.append("\tat ").append(frame).append("\n");
+         }
+      }
+      return dump.toString();
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - Timeout -----------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private class Timeout implements Runnable
+   {
+      private Thread testThread;
+
+      private long timeout;
+
+      private Completion completion;
+
+      private Task task;
+
+      public Timeout(Thread testThread, long timeout, Completion completion, Task task)
+      {
+         this.testThread = testThread;
+         this.timeout = timeout;
+         this.completion = completion;
+         this.task = task;
+      }
+
+      public void run()
+      {
+         if(!completion.claim())
+         {
+            // the result is already being written
+            return;
+         }
+         timedOut.incrementAndGet();
+         try
+         {
+            task.timedOut(createTimeoutResult(testThread, timeout));
+         }
+         catch (Throwable e)
+         {
+            task.failed(e);
+         }
+         finally
+         {
+            completion.complete();
+            completion.interrupt(testThread);
+         }
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - Completion --------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /**
+    * Decides if the test or the timeout writes the response.
+    */
+   public static class Completion
+   {
+      private AsyncContext async;
+
+      private AtomicBoolean claimed = new AtomicBoolean();
+
+      private AtomicBoolean completed = new AtomicBoolean();
+
+      private boolean finished = false;
+
+      Completion(AsyncContext async)
+      {
+         this.async = async;
+      }
+
+      /**
+       * @return true if the caller is the first to claim the response and should write it
+       */
+      public boolean claim()
+      {
+         return claimed.compareAndSet(false, true);
+      }
+
+      void complete()
+      {
+         if(completed.compareAndSet(false, true))
+         {
+            async.complete();
+         }
+      }
+
+      /*
+       * Interrupt and finish are exclusive, so a interrupt either hits the running test or is not sent.
+       */
+      synchronized void interrupt(Thread testThread)
+      {
+         if(!finished)
+         {
+            testThread.interrupt();
+         }
+      }
+
+      /*
+       * Called by the test Thread when the test is done, clears a interrupt of the timeout.
+       */
+      synchronized void finish()
+      {
+         finished = true;
+         Thread.interrupted();
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - Task --------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /**
+    * A test request.
+    */
+   public interface Task
+   {
+      /**
+       * Execute the test on the executor Thread. The response must only be written if
+       * {@link Completion#claim()} returns true.
+       */
+      void execute(Completion completion) throws Exception;
+
+      /**
+       * The test did not finish in time, write the result.
+       */
+      void timedOut(TestResult result) throws Exception;
+
+      /**
+       * The test or the timeout failed unexpectedly, write a error response.
+       */
+      void failed(Throwable cause);
+   }
+}
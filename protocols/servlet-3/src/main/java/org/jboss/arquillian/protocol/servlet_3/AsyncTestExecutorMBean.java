@@ -0,0 +1,59 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.protocol.servlet_3;
+
+/**
+ * Gauges of the {@link AsyncTestExecutor} of a deployment.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public interface AsyncTestExecutorMBean
+{
+   /** The ObjectName prefix, the context path of the deployment is added as context. */
+   String OBJECT_NAME = "jboss.arquillian:service=servlet-test-runner";
+
+   /**
+    * @return Number of tests waiting for a executor Thread
+    */
+   int getQueueDepth();
+
+   /**
+    * @return Number of tests currently executing
+    */
+   int getActiveTests();
+
+   /**
+    * @return Max number of tests executing at the same time
+    */
+   int getMaxThreads();
+
+   /**
+    * @return Number of tests completed, including timed out tests
+    */
+   long getCompletedTests();
+
+   /**
+    * @return Number of tests that did not finish within the timeout
+    */
+   long getTimedOutTests();
+
+   /**
+    * @return Number of tests rejected because the queue was full
+    */
+   long getRejectedTests();
+}
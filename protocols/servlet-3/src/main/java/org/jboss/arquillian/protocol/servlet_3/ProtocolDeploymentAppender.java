@@ -40,7 +40,9 @@ public class ProtocolDeploymentAppender implements AuxiliaryArchiveAppender
       return ShrinkWrap.create(JavaArchive.class, "arquillian-protocol.jar")
                      .addClasses(
                            SecurityActions.class,
-                           ServletTestRunner.class)
+                           ServletTestRunner.class,
+                           AsyncTestExecutor.class,
+                           AsyncTestExecutorMBean.class)
                      .addManifestResource(
                            "org/jboss/arquillian/protocol/servlet_3/web-fragment.xml",
                            "web-fragment.xml");
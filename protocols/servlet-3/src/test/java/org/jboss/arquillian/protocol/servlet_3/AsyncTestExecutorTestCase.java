@@ -0,0 +1,219 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.protocol.servlet_3;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.servlet.AsyncContext;
+
+import org.jboss.arquillian.protocol.servlet_3.AsyncTestExecutor.Completion;
+import org.jboss.arquillian.spi.TestResult;
+import org.jboss.arquillian.spi.TestResult.Status;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Verifies that the {@link AsyncTestExecutor} completes the request once, whether the test finishes, 
+ * times out or fails.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class AsyncTestExecutorTestCase
+{
+   private AsyncTestExecutor executor;
+
+   @Before
+   public void createExecutor()
+   {
+      executor = new AsyncTestExecutor(1, 4, getClass().getClassLoader());
+   }
+
+   @After
+   public void shutdownExecutor()
+   {
+      executor.shutdown();
+   }
+
+   @Test
+   public void shouldCompleteWhenTestFinishes() throws Exception
+   {
+      MockAsyncContext async = new MockAsyncContext();
+      RecordingTask task = new RecordingTask(0);
+
+      executor.submit(async.getContext(), 0, task);
+
+      async.awaitComplete();
+      Assert.assertTrue("Test should write the response", task.executed.get());
+      Assert.assertNull("Test should not time out", task.timedOut.get());
+      Assert.assertEquals("Request should be completed once", 1, async.completed.get());
+      Assert.assertEquals(1L, executor.getCompletedTests());
+   }
+
+   @Test
+   public void shouldAnswerAndInterruptTestThatTimesOut() throws Exception
+   {
+      MockAsyncContext async = new MockAsyncContext();
+      RecordingTask task = new RecordingTask(10000);
+
+      executor.submit(async.getContext(), 50, task);
+
+      async.awaitComplete();
+      Assert.assertNotNull("Timeout should write the response", task.timedOut.get());
+      Assert.assertEquals(Status.FAILED, task.timedOut.get().getStatus());
+      Assert.assertTrue(task.timedOut.get().getThrowable() instanceof TimeoutException);
+      Assert.assertNotNull("Should hold a Thread dump", task.timedOut.get().getOutput());
+      Assert.assertTrue("Test should be interrupted", task.interrupted.await(5, TimeUnit.SECONDS));
+      Assert.assertFalse("Interrupted test should not write the response", task.executed.get());
+      Assert.assertEquals("Request should be completed once", 1, async.completed.get());
+      Assert.assertEquals(1L, executor.getTimedOutTests());
+   }
+
+   @Test
+   public void shouldPassExceptionOfTestToTask() throws Exception
+   {
+      MockAsyncContext async = new MockAsyncContext();
+      final Exception exception = new Exception("failing test");
+      final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+      executor.submit(async.getContext(), 0, new AsyncTestExecutor.Task()
+      {
+         public void execute(Completion completion) throws Exception
+         {
+            throw exception;
+         }
+
+         public void timedOut(TestResult result) throws Exception
+         {
+         }
+
+         public void failed(Throwable cause)
+         {
+            failure.set(cause);
+         }
+      });
+
+      async.awaitComplete();
+      Assert.assertSame("Should pass the exception of the test", exception, failure.get());
+      Assert.assertEquals("Request should be completed once", 1, async.completed.get());
+   }
+
+   @Test
+   public void shouldNotInterruptNextTestOnReusedThread() throws Exception
+   {
+      MockAsyncContext first = new MockAsyncContext();
+      executor.submit(first.getContext(), 20, new RecordingTask(10000));
+      first.awaitComplete();
+
+      MockAsyncContext second = new MockAsyncContext();
+      RecordingTask task = new RecordingTask(200);
+      executor.submit(second.getContext(), 0, task);
+      second.awaitComplete();
+
+      Assert.assertTrue("Next test should not be interrupted", task.executed.get());
+      Assert.assertEquals(1L, task.interrupted.getCount());
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - RecordingTask -----------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private static class RecordingTask implements AsyncTestExecutor.Task
+   {
+      private long sleep;
+
+      private AtomicReference<Boolean> executed = new AtomicReference<Boolean>(Boolean.FALSE);
+
+      private AtomicReference<TestResult> timedOut = new AtomicReference<TestResult>();
+
+      private CountDownLatch interrupted = new CountDownLatch(1);
+
+      public RecordingTask(long sleep)
+      {
+         this.sleep = sleep;
+      }
+
+      public void execute(Completion completion) throws Exception
+      {
+         try
+         {
+            Thread.sleep(sleep);
+         }
+         catch (InterruptedException e)
+         {
+            interrupted.countDown();
+            return;
+         }
+         if(completion.claim())
+         {
+            executed.set(Boolean.TRUE);
+         }
+      }
+
+      public void timedOut(TestResult result) throws Exception
+      {
+         timedOut.set(result);
+      }
+
+      public void failed(Throwable cause)
+      {
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - MockAsyncContext --------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private static class MockAsyncContext implements InvocationHandler
+   {
+      private AtomicInteger completed = new AtomicInteger();
+
+      private CountDownLatch done = new CountDownLatch(1);
+
+      public AsyncContext getContext()
+      {
+         return (AsyncContext)Proxy.newProxyInstance(
+               AsyncContext.class.getClassLoader(), new Class<?>[] {AsyncContext.class}, this);
+      }
+
+      public void awaitComplete() throws Exception
+      {
+         Assert.assertTrue("Request should be completed", done.await(5, TimeUnit.SECONDS));
+         // a second complete would follow right after the first
+         Thread.sleep(50);
+      }
+
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+      {
+         if("complete".equals(method.getName()))
+         {
+            completed.incrementAndGet();
+            done.countDown();
+         }
+         return null;
+      }
+   }
+}
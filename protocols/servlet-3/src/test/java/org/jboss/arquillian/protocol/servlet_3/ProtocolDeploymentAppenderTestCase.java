@@ -41,6 +41,11 @@ public class ProtocolDeploymentAppenderTestCase
             archive.contains(ArchivePaths.create("META-INF/web-fragment.xml"))
       );
       
+      Assert.assertTrue(
+            "Should have added the AsyncTestExecutor",
+            archive.contains(ArchivePaths.create("org/jboss/arquillian/protocol/servlet_3/AsyncTestExecutor.class"))
+      );
+      
       System.out.println(archive.toString(true));
    }
 }
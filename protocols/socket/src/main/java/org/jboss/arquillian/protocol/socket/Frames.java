@@ -0,0 +1,97 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.protocol.socket;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.jboss.arquillian.spi.util.TestResultCodec;
+
+/**
+ * The frames exchanged between the {@link SocketConnection} and the {@link SocketTestRunner}.<br/>
+ * <br/>
+ * A frame is a int length of the rest of the frame, a long correlation id chosen by the client,
+ * a byte type and the payload:
+ * <ul>
+ *   <li>{@link #RUN}: UTF test class name, UTF test method name, int max number of bytes of output to capture</li>
+ *   <li>{@link #RESULT}: the TestResult in the {@link TestResultCodec} format</li>
+ * </ul>
+ * The results are written in the order the tests finish, not the order they were requested.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+final class Frames
+{
+   /** Number of bytes of correlation id and type following the length. */
+   static final int HEADER_SIZE = 8 + 1;
+
+   /** Upper bound of a frame, protects against reading garbage as a length. */
+   static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+   static final byte RUN = 1;
+
+   static final byte RESULT = 2;
+
+   private Frames() {}
+
+   static byte[] createRun(long id, String className, String methodName, int captureSize) throws IOException
+   {
+      ByteArrayOutputStream frame = new ByteArrayOutputStream(64 + className.length() + methodName.length());
+      DataOutputStream output = new DataOutputStream(frame);
+      output.writeInt(0);
+      output.writeLong(id);
+      output.writeByte(RUN);
+      output.writeUTF(className);
+      output.writeUTF(methodName);
+      output.writeInt(captureSize);
+      return setLength(frame.toByteArray());
+   }
+
+   /**
+    * Create a {@link #RESULT} frame of the TestResult last encoded by the given codec.
+    */
+   static byte[] createResult(long id, TestResultCodec codec, int encodedLength) throws IOException
+   {
+      ByteArrayOutputStream frame = new ByteArrayOutputStream(4 + HEADER_SIZE + encodedLength);
+      DataOutputStream output = new DataOutputStream(frame);
+      output.writeInt(0);
+      output.writeLong(id);
+      output.writeByte(RESULT);
+      codec.writeTo(output);
+      return setLength(frame.toByteArray());
+   }
+
+   static void checkLength(int length) throws IOException
+   {
+      if(length < HEADER_SIZE || length > MAX_FRAME_SIZE)
+      {
+         throw new IOException("Invalid frame length " + length);
+      }
+   }
+
+   private static byte[] setLength(byte[] frame)
+   {
+      int length = frame.length - 4;
+      frame[0] = (byte)(length >>> 24);
+      frame[1] = (byte)(length >>> 16);
+      frame[2] = (byte)(length >>> 8);
+      frame[3] = (byte)length;
+      return frame;
+   }
+}
@@ -0,0 +1,56 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.protocol.socket;
+
+import org.jboss.arquillian.protocol.socket.SocketTestRunner.TestClassLoader;
+import org.osgi.framework.Bundle;
+import org.osgi.framework.BundleActivator;
+import org.osgi.framework.BundleContext;
+
+/**
+ * Starts the {@link SocketTestRunner} on the {@link SocketTestRunner#getConfiguredAddress()} when
+ * the protocol is installed as a bundle. The test classes are loaded through the bundle.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class SocketBundleActivator implements BundleActivator
+{
+   /** Max number of tests executing at the same time. */
+   private static final int MAX_THREADS = 4;
+   
+   private SocketTestRunner testRunner;
+   
+   public void start(final BundleContext context) throws Exception
+   {
+      TestClassLoader loader = new TestClassLoader()
+      {
+         public Class<?> loadTestClass(String className) throws ClassNotFoundException
+         {
+            Bundle bundle = context.getBundle();
+            return bundle.loadClass(className);
+         }
+      };
+      testRunner = new SocketTestRunner(loader, MAX_THREADS);
+      testRunner.start(SocketTestRunner.getConfiguredAddress());
+   }
+
+   public void stop(BundleContext context) throws Exception
+   {
+      testRunner.stop();
+   }
+}
@@ -0,0 +1,355 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.protocol.socket;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.jboss.arquillian.spi.TestResult;
+import org.jboss.arquillian.spi.util.TestResultCodec;
+import org.jboss.logging.Logger;
+
+/**
+ * A persistent connection to a {@link SocketTestRunner}, shared by all callers talking to the same address.<br/>
+ * <br/>
+ * Each request gets a correlation id, the caller waits for the result with that id while a single reader Thread
+ * receives the results in the order the tests finish. A broken connection fails all outstanding requests and is
+ * replaced on the next {@link #getConnection(InetSocketAddress)}. A request that failed before its frame was
+ * written is signaled with a {@link RequestNotSentException}, only then the test is known not to have run.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class SocketConnection
+{
+   // Provide logging
+   private static Logger log = Logger.getLogger(SocketConnection.class);
+
+   private static final Map<InetSocketAddress, SocketConnection> connections = new HashMap<InetSocketAddress, SocketConnection>();
+
+   private InetSocketAddress address;
+
+   private Socket socket;
+
+   private OutputStream output;
+
+   private AtomicLong nextId = new AtomicLong();
+
+   private ConcurrentMap<Long, Pending> pending = new ConcurrentHashMap<Long, Pending>();
+
+   private volatile IOException failure;
+
+   private SocketConnection(InetSocketAddress address) throws IOException
+   {
+      this.address = address;
+      this.socket = new Socket();
+      try
+      {
+         socket.setTcpNoDelay(true);
+         socket.connect(address);
+         this.output = new BufferedOutputStream(socket.getOutputStream());
+      }
+      catch (IOException e)
+      {
+         socket.close();
+         throw e;
+      }
+
+      final DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+      Thread reader = new Thread(new Runnable()
+      {
+         public void run()
+         {
+            receive(input);
+         }
+      }, "arquillian-socket-reader-" + address);
+      reader.setDaemon(true);
+      reader.start();
+   }
+
+   /**
+    * Get the open connection to the given address, connects if there is none or it is broken.
+    *
+    * @param address The address the SocketTestRunner listens on
+    * @return A open connection
+    * @throws IOException If the connection could not be made
+    */
+   public static SocketConnection getConnection(InetSocketAddress address) throws IOException
+   {
+      if(address == null)
+      {
+         throw new IllegalArgumentException("Address must be specified");
+      }
+      synchronized (connections)
+      {
+         SocketConnection connection = connections.get(address);
+         if(connection == null || connection.failure != null)
+         {
+            log.debug("Connecting to " + address);
+            connection = new SocketConnection(address);
+            connections.put(address, connection);
+         }
+         return connection;
+      }
+   }
+
+   /**
+    * Close all connections.
+    */
+   public static void closeAll()
+   {
+      synchronized (connections)
+      {
+         for(SocketConnection connection : connections.values())
+         {
+            connection.close();
+         }
+         connections.clear();
+      }
+   }
+
+   /**
+    * Execute a test method in container and wait for its result.
+    *
+    * @param className The test class name
+    * @param methodName The test method name
+    * @param captureSize Max number of bytes of test output to capture, 0 to disable
+    * @param timeout Max number of milliseconds to wait for the result, 0 for no limit
+    * @return The TestResult
+    * @throws RequestNotSentException If the connection failed before the request was written
+    * @throws IOException If the connection failed before the result was received
+    * @throws TimeoutException If the result was not received within the timeout
+    * @throws InterruptedException If the caller was interrupted while waiting
+    */
+   public TestResult execute(String className, String methodName, int captureSize, long timeout) 
+      throws IOException, TimeoutException, InterruptedException
+   {
+      long id = nextId.incrementAndGet();
+      byte[] frame = Frames.createRun(id, className, methodName, captureSize);
+
+      Pending request = new Pending();
+      pending.put(id, request);
+      try
+      {
+         send(frame);
+         // a failure before the put is not seen by the reader Thread
+         checkFailure();
+
+         byte[] result = request.await(timeout);
+         if(result == null)
+         {
+            throw new TimeoutException("No result of " + className + "." + methodName + " from " + address + 
+                  " within " + timeout + " ms");
+         }
+         return TestResultCodec.getCodec().decode(result, 0, result.length);
+      }
+      catch (IOException e)
+      {
+         fail(e);
+         throw e;
+      }
+      finally
+      {
+         pending.remove(id);
+      }
+   }
+
+   /**
+    * @return true if the connection failed or was closed
+    */
+   public boolean isClosed()
+   {
+      return failure != null;
+   }
+
+   /**
+    * Close the connection, outstanding requests fail.
+    */
+   public void close()
+   {
+      fail(new IOException("Connection to " + address + " closed"));
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private void receive(DataInputStream input)
+   {
+      try
+      {
+         while(true)
+         {
+            int length = input.readInt();
+            Frames.checkLength(length);
+            long id = input.readLong();
+            byte type = input.readByte();
+            byte[] payload = new byte[length - Frames.HEADER_SIZE];
+            input.readFully(payload);
+
+            if(type != Frames.RESULT)
+            {
+               throw new IOException("Unknown frame type " + type);
+            }
+            Pending request = pending.get(id);
+            if(request == null)
+            {
+               log.warn("Result of unknown request " + id + " from " + address);
+               continue;
+            }
+            request.complete(payload);
+         }
+      }
+      catch (IOException e)
+      {
+         fail(e);
+      }
+   }
+
+   /*
+    * The frame fits the output buffer, so a failed write or flush has not put any of it on the wire.
+    */
+   private void send(byte[] frame) throws RequestNotSentException
+   {
+      try
+      {
+         checkFailure();
+         synchronized (output)
+         {
+            output.write(frame);
+            output.flush();
+         }
+      }
+      catch (IOException e)
+      {
+         throw new RequestNotSentException(e);
+      }
+   }
+
+   private void checkFailure() throws IOException
+   {
+      if(failure != null)
+      {
+         IOException e = new IOException("Connection to " + address + " failed");
+         e.initCause(failure);
+         throw e;
+      }
+   }
+
+   private void fail(IOException e)
+   {
+      synchronized (this)
+      {
+         if(failure != null)
+         {
+            return;
+         }
+         failure = e;
+      }
+      log.debug("Connection to " + address + " failed", e);
+      try
+      {
+         socket.close();
+      }
+      catch (IOException ignore)
+      {
+      }
+      for(Pending request : pending.values())
+      {
+         request.fail(e);
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - Pending -----------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private static class Pending
+   {
+      private CountDownLatch done = new CountDownLatch(1);
+
+      private volatile byte[] result;
+
+      private volatile IOException failure;
+
+      public void complete(byte[] result)
+      {
+         this.result = result;
+         done.countDown();
+      }
+
+      public void fail(IOException failure)
+      {
+         this.failure = failure;
+         done.countDown();
+      }
+
+      /*
+       * @return The result, or null if it was not received within the timeout
+       */
+      public byte[] await(long timeout) throws IOException, InterruptedException
+      {
+         if(timeout > 0)
+         {
+            if(!done.await(timeout, TimeUnit.MILLISECONDS))
+            {
+               return null;
+            }
+         }
+         else
+         {
+            done.await();
+         }
+         if(result != null)
+         {
+            return result;
+         }
+         throw failure;
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - RequestNotSentException -------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /**
+    * The connection failed before the request was written, the test did not run and can safely be retried.
+    */
+   static class RequestNotSentException extends IOException
+   {
+      private static final long serialVersionUID = 1L;
+
+      public RequestNotSentException(IOException cause)
+      {
+         super(cause.getMessage());
+         initCause(cause);
+      }
+   }
+}
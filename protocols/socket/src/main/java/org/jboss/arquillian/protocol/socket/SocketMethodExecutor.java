@@ -0,0 +1,110 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.protocol.socket;
+
+import java.net.InetSocketAddress;
+
+import org.jboss.arquillian.protocol.socket.SocketConnection.RequestNotSentException;
+import org.jboss.arquillian.spi.ContainerMethodExecutor;
+import org.jboss.arquillian.spi.TestMethodExecutor;
+import org.jboss.arquillian.spi.TestResult;
+import org.jboss.arquillian.spi.TestResult.Status;
+import org.jboss.arquillian.spi.util.OutputCapture;
+
+/**
+ * SocketMethodExecutor
+ *
+ * Invokes the test methods on a {@link SocketTestRunner} over the shared {@link SocketConnection} to its address.
+ * A test that could not be sent because the connection broke is retried once on a new connection, a test that
+ * was sent is never run twice.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class SocketMethodExecutor implements ContainerMethodExecutor
+{
+   /** Default max number of milliseconds to wait for a test result. */
+   public static final long DEFAULT_RESULT_TIMEOUT = 300000;
+
+   private InetSocketAddress address;
+
+   private long resultTimeout;
+
+   /**
+    * @param address The address the SocketTestRunner listens on
+    */
+   public SocketMethodExecutor(InetSocketAddress address)
+   {
+      this(address, DEFAULT_RESULT_TIMEOUT);
+   }
+
+   /**
+    * @param address The address the SocketTestRunner listens on
+    * @param resultTimeout Max number of milliseconds to wait for a test result, 0 for no limit
+    */
+   public SocketMethodExecutor(InetSocketAddress address, long resultTimeout)
+   {
+      if(address == null)
+      {
+         throw new IllegalArgumentException("Address must be specified");
+      }
+      if(resultTimeout < 0)
+      {
+         throw new IllegalArgumentException("ResultTimeout must be 0 or greater");
+      }
+      this.address = address;
+      this.resultTimeout = resultTimeout;
+   }
+
+   /* (non-Javadoc)
+    * @see org.jboss.arquillian.spi.ContainerMethodExecutor#invoke(org.jboss.arquillian.spi.TestMethodExecutor)
+    */
+   public TestResult invoke(TestMethodExecutor testMethodExecutor)
+   {
+      if(testMethodExecutor == null)
+      {
+         throw new IllegalArgumentException("TestMethodExecutor must be specified");
+      }
+      String className = testMethodExecutor.getInstance().getClass().getName();
+      String methodName = testMethodExecutor.getMethod().getName();
+
+      TestResult result = null;
+      try
+      {
+         int captureSize = OutputCapture.getRequestedSize();
+         try
+         {
+            result = SocketConnection.getConnection(address).execute(className, methodName, captureSize, resultTimeout);
+         }
+         catch (RequestNotSentException e)
+         {
+            // the shared connection is broken, e.g. the container was restarted
+            result = SocketConnection.getConnection(address).execute(className, methodName, captureSize, resultTimeout);
+         }
+      }
+      catch (Throwable e)
+      {
+         result = new TestResult(Status.FAILED);
+         result.setThrowable(e);
+      }
+      finally
+      {
+         result.setEnd(System.currentTimeMillis());
+      }
+      return result;
+   }
+}
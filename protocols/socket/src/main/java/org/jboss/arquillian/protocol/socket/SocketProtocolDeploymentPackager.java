@@ -0,0 +1,89 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.protocol.socket;
+
+import java.util.Collection;
+
+import org.jboss.arquillian.spi.DeploymentPackager;
+import org.jboss.arquillian.spi.Stateless;
+import org.jboss.arquillian.spi.TestDeployment;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.spec.EnterpriseArchive;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.jboss.shrinkwrap.api.spec.WebArchive;
+
+/**
+ * SocketProtocolDeploymentPackager
+ * 
+ * Bundles the {@link SocketTestRunner} with the deployment. A JavaArchive has no library directory, the protocol 
+ * and auxiliary archives are merged into it.<br/>
+ * <br/>
+ * Every protocol registers a DeploymentPackager. When this protocol is on the classpath together with an other, 
+ * e.g. the servlet protocol of a container that can run either, the packager to use must be named by the
+ * deploymentPackager engine property in arquillian.xml:
+ * 
+ * <pre>
+ * &lt;engine&gt;
+ *    &lt;deploymentPackager&gt;org.jboss.arquillian.protocol.socket.SocketProtocolDeploymentPackager&lt;/deploymentPackager&gt;
+ * &lt;/engine&gt;
+ * </pre>
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+@Stateless
+public class SocketProtocolDeploymentPackager implements DeploymentPackager
+{
+   /* (non-Javadoc)
+    * @see org.jboss.arquillian.spi.DeploymentPackager#generateDeployment(org.jboss.arquillian.spi.TestDeployment)
+    */
+   public Archive<?> generateDeployment(TestDeployment testDeployment)
+   {
+      JavaArchive protocol = JavaArchive.class.cast(
+            new ProtocolDeploymentAppender().createAuxiliaryArchive());
+      
+      Archive<?> applicationArchive = testDeployment.getApplicationArchive();
+      Collection<Archive<?>> auxiliaryArchives = testDeployment.getAuxiliaryArchives();
+      
+      if(EnterpriseArchive.class.isInstance(applicationArchive))
+      {
+         return EnterpriseArchive.class.cast(applicationArchive)
+                  .addLibrary(protocol)
+                  .addLibraries(auxiliaryArchives.toArray(new Archive<?>[0]));
+      } 
+
+      if(WebArchive.class.isInstance(applicationArchive))
+      {
+         return WebArchive.class.cast(applicationArchive)
+                  .addLibrary(protocol)
+                  .addLibraries(auxiliaryArchives.toArray(new Archive<?>[0]));
+      } 
+
+      if(JavaArchive.class.isInstance(applicationArchive))
+      {
+         JavaArchive archive = JavaArchive.class.cast(applicationArchive).merge(protocol);
+         for(Archive<?> auxiliaryArchive : auxiliaryArchives)
+         {
+            archive.merge(auxiliaryArchive);
+         }
+         return archive;
+      }
+
+      throw new IllegalArgumentException(SocketProtocolDeploymentPackager.class.getName()  + 
+            " can not handle archive of type " +  applicationArchive.getClass().getName());
+   }
+}
@@ -0,0 +1,501 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.protocol.socket;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jboss.arquillian.spi.TestResult;
+import org.jboss.arquillian.spi.TestResult.Status;
+import org.jboss.arquillian.spi.TestRunner;
+import org.jboss.arquillian.spi.util.OutputCapture;
+import org.jboss.arquillian.spi.util.TestResultCodec;
+import org.jboss.arquillian.spi.util.TestRunners;
+import org.jboss.logging.Logger;
+
+/**
+ * Runs test methods in container on request of a {@link SocketMethodExecutor}.<br/>
+ * <br/>
+ * A single selector Thread accepts the connections, reads the {@link Frames} and writes the results. The tests
+ * are executed on a pool of worker Threads, so one connection can carry many concurrent test invocations.<br/>
+ * <br/>
+ * The runner is started by the container integration, e.g. a embedded container in its start, or
+ * by the {@link SocketBundleActivator} in a OSGi framework. Each test runs with the ClassLoader of its test 
+ * class as Thread context ClassLoader, and with the TestRunner found by that ClassLoader. The TestRunners are
+ * released for all those ClassLoaders when the runner is stopped.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class SocketTestRunner
+{
+   // Provide logging
+   private static Logger log = Logger.getLogger(SocketTestRunner.class);
+
+   /** System Property holding the host to listen on. */
+   public static final String HOST_PROPERTY = "arquillian.socket.host";
+
+   /** System Property holding the port to listen on. */
+   public static final String PORT_PROPERTY = "arquillian.socket.port";
+
+   public static final String DEFAULT_HOST = "localhost";
+
+   public static final int DEFAULT_PORT = 9898;
+
+   private static final long STOP_TIMEOUT = 5000;
+
+   private TestClassLoader testClassLoader;
+
+   private int maxThreads;
+
+   private Selector selector;
+
+   private ServerSocketChannel serverChannel;
+
+   private ExecutorService executor;
+
+   private Thread selectorThread;
+
+   private Queue<Connection> pendingWrites = new ConcurrentLinkedQueue<Connection>();
+
+   private Map<ClassLoader, Boolean> deploymentClassLoaders = new WeakHashMap<ClassLoader, Boolean>();
+
+   private volatile boolean running;
+
+   public interface TestClassLoader
+   {
+      Class<?> loadTestClass(String className) throws ClassNotFoundException;
+   }
+
+   /**
+    * @param testClassLoader Loads the test classes, null to use the ClassLoader of this class
+    * @param maxThreads Max number of tests executing at the same time
+    */
+   public SocketTestRunner(TestClassLoader testClassLoader, int maxThreads)
+   {
+      if(maxThreads < 1)
+      {
+         throw new IllegalArgumentException("MaxThreads must be greater then 0");
+      }
+      this.maxThreads = maxThreads;
+      this.testClassLoader = testClassLoader;
+
+      // Initialize the default TestClassLoader
+      if (this.testClassLoader == null)
+      {
+         this.testClassLoader = new TestClassLoader()
+         {
+            public Class<?> loadTestClass(String className) throws ClassNotFoundException
+            {
+               return SocketTestRunner.class.getClassLoader().loadClass(className);
+            }
+         };
+      }
+   }
+
+   /**
+    * @return The address configured by {@link #HOST_PROPERTY} and {@link #PORT_PROPERTY}
+    */
+   public static InetSocketAddress getConfiguredAddress()
+   {
+      String host = System.getProperty(HOST_PROPERTY, DEFAULT_HOST);
+      String port = System.getProperty(PORT_PROPERTY, String.valueOf(DEFAULT_PORT));
+      try
+      {
+         return new InetSocketAddress(host, Integer.parseInt(port.trim()));
+      }
+      catch (NumberFormatException e)
+      {
+         throw new IllegalArgumentException(PORT_PROPERTY + " must be a port number, was " + port);
+      }
+   }
+
+   /**
+    * Start listening on the given address.
+    *
+    * @param address The address to listen on, port 0 for any free port
+    * @return The address listened on
+    * @throws IOException If the address could not be bound
+    */
+   public synchronized InetSocketAddress start(InetSocketAddress address) throws IOException
+   {
+      if(running)
+      {
+         throw new IllegalStateException("SocketTestRunner already started");
+      }
+      selector = Selector.open();
+      serverChannel = ServerSocketChannel.open();
+      try
+      {
+         serverChannel.socket().setReuseAddress(true);
+         serverChannel.socket().bind(address);
+         serverChannel.configureBlocking(false);
+         serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+      }
+      catch (IOException e)
+      {
+         serverChannel.close();
+         selector.close();
+         throw e;
+      }
+
+      final AtomicInteger count = new AtomicInteger();
+      executor = Executors.newFixedThreadPool(maxThreads, new ThreadFactory()
+      {
+         public Thread newThread(Runnable r)
+         {
+            Thread thread = new Thread(r, "arquillian-socket-test-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+         }
+      });
+      running = true;
+
+      selectorThread = new Thread(new Runnable()
+      {
+         public void run()
+         {
+            select();
+         }
+      }, "arquillian-socket-selector");
+      selectorThread.setDaemon(true);
+      selectorThread.start();
+
+      InetSocketAddress bound = (InetSocketAddress)serverChannel.socket().getLocalSocketAddress();
+      log.debug("SocketTestRunner listening on " + bound);
+      return bound;
+   }
+
+   /**
+    * Stop listening and close all connections, running tests are interrupted.
+    */
+   public synchronized void stop()
+   {
+      if(!running)
+      {
+         return;
+      }
+      running = false;
+      selector.wakeup();
+      executor.shutdownNow();
+      releaseTestRunners();
+      try
+      {
+         // the address is released when the selector Thread is done
+         selectorThread.join(STOP_TIMEOUT);
+      }
+      catch (InterruptedException e)
+      {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private void releaseTestRunners()
+   {
+      List<ClassLoader> released;
+      synchronized (deploymentClassLoaders)
+      {
+         released = new ArrayList<ClassLoader>(deploymentClassLoaders.keySet());
+         deploymentClassLoaders.clear();
+      }
+      for(ClassLoader classLoader : released)
+      {
+         TestRunners.release(classLoader);
+      }
+   }
+
+   private void select()
+   {
+      try
+      {
+         while(running)
+         {
+            selector.select();
+
+            Connection connection;
+            while((connection = pendingWrites.poll()) != null)
+            {
+               connection.enableWrite();
+            }
+
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while(keys.hasNext())
+            {
+               SelectionKey key = keys.next();
+               keys.remove();
+               try
+               {
+                  if(!key.isValid())
+                  {
+                     continue;
+                  }
+                  if(key.isAcceptable())
+                  {
+                     accept();
+                     continue;
+                  }
+                  if(key.isReadable())
+                  {
+                     ((Connection)key.attachment()).read();
+                  }
+                  if(key.isValid() && key.isWritable())
+                  {
+                     ((Connection)key.attachment()).write();
+                  }
+               }
+               catch (IOException e)
+               {
+                  log.debug("Closing connection " + key.channel(), e);
+                  close(key);
+               }
+            }
+         }
+      }
+      catch (IOException e)
+      {
+         log.error("SocketTestRunner selector failed", e);
+      }
+      finally
+      {
+         for(SelectionKey key : selector.keys())
+         {
+            close(key);
+         }
+         try
+         {
+            selector.close();
+         }
+         catch (IOException e)
+         {
+            log.debug("Could not close selector", e);
+         }
+      }
+   }
+
+   private void accept() throws IOException
+   {
+      SocketChannel channel = serverChannel.accept();
+      if(channel == null)
+      {
+         return;
+      }
+      channel.configureBlocking(false);
+      channel.socket().setTcpNoDelay(true);
+      SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+      key.attach(new Connection(key));
+   }
+
+   private void close(SelectionKey key)
+   {
+      key.cancel();
+      try
+      {
+         key.channel().close();
+      }
+      catch (IOException e)
+      {
+         log.debug("Could not close " + key.channel(), e);
+      }
+   }
+
+   private void execute(Connection connection, long id, byte[] payload)
+   {
+      TestResultCodec codec = new TestResultCodec();
+      try
+      {
+         TestResult result;
+         try
+         {
+            DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+            result = runTestMethod(input.readUTF(), input.readUTF(), input.readInt());
+         }
+         catch (IOException e)
+         {
+            result = new TestResult(Status.FAILED, e);
+         }
+         int length = codec.encode(result);
+         connection.send(Frames.createResult(id, codec, length));
+      }
+      catch (IOException e)
+      {
+         log.error("Could not write result of request " + id, e);
+      }
+   }
+
+   private TestResult runTestMethod(String className, String methodName, int captureSize)
+   {
+      if (captureSize < 1)
+      {
+         return runTestMethodInternal(className, methodName);
+      }
+      // runTestMethodInternal does not throw
+      OutputCapture capture = OutputCapture.start(captureSize);
+      TestResult result = runTestMethodInternal(className, methodName);
+      result.setOutput(capture.stop());
+      return result;
+   }
+
+   private TestResult runTestMethodInternal(String className, String methodName)
+   {
+      Thread currentThread = Thread.currentThread();
+      ClassLoader previous = currentThread.getContextClassLoader();
+      try
+      {
+         // run as if deployed, the test framework and the enrichers are resolved from the deployment
+         Class<?> testClass = testClassLoader.loadTestClass(className);
+         ClassLoader deploymentClassLoader = testClass.getClassLoader();
+         currentThread.setContextClassLoader(deploymentClassLoader);
+         synchronized (deploymentClassLoaders)
+         {
+            deploymentClassLoaders.put(deploymentClassLoader, Boolean.TRUE);
+         }
+
+         TestRunner runner = TestRunners.getTestRunner(deploymentClassLoader);
+         return runner.execute(testClass, methodName);
+      }
+      catch (Throwable th)
+      {
+         return new TestResult(Status.FAILED, th);
+      }
+      finally
+      {
+         currentThread.setContextClassLoader(previous);
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - Connection --------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /*
+    * The read state is only touched by the selector Thread, the write queue is filled by the worker Threads.
+    */
+   private class Connection
+   {
+      private SelectionKey key;
+
+      private ByteBuffer readBuffer = ByteBuffer.allocate(8 * 1024);
+
+      private Queue<ByteBuffer> writes = new ConcurrentLinkedQueue<ByteBuffer>();
+
+      public Connection(SelectionKey key)
+      {
+         this.key = key;
+      }
+
+      public void read() throws IOException
+      {
+         SocketChannel channel = (SocketChannel)key.channel();
+         int read = channel.read(readBuffer);
+         if(read == -1)
+         {
+            throw new IOException("Connection closed by client");
+         }
+         readBuffer.flip();
+         while(readBuffer.remaining() >= 4)
+         {
+            int length = readBuffer.getInt(readBuffer.position());
+            Frames.checkLength(length);
+            if(readBuffer.remaining() < 4 + length)
+            {
+               break;
+            }
+            readBuffer.getInt();
+            final long id = readBuffer.getLong();
+            byte type = readBuffer.get();
+            final byte[] payload = new byte[length - Frames.HEADER_SIZE];
+            readBuffer.get(payload);
+
+            if(type != Frames.RUN)
+            {
+               throw new IOException("Unknown frame type " + type);
+            }
+            executor.execute(new Runnable()
+            {
+               public void run()
+               {
+                  execute(Connection.this, id, payload);
+               }
+            });
+         }
+         readBuffer.compact();
+         if(readBuffer.remaining() == 0)
+         {
+            // a frame larger then the buffer
+            ByteBuffer grown = ByteBuffer.allocate(readBuffer.capacity() * 2);
+            readBuffer.flip();
+            grown.put(readBuffer);
+            readBuffer = grown;
+         }
+      }
+
+      public void send(byte[] frame)
+      {
+         writes.add(ByteBuffer.wrap(frame));
+         pendingWrites.add(this);
+         selector.wakeup();
+      }
+
+      public void enableWrite()
+      {
+         if(key.isValid())
+         {
+            key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+         }
+      }
+
+      public void write() throws IOException
+      {
+         SocketChannel channel = (SocketChannel)key.channel();
+         ByteBuffer buffer;
+         while((buffer = writes.peek()) != null)
+         {
+            channel.write(buffer);
+            if(buffer.hasRemaining())
+            {
+               // socket buffer full, wait for the next OP_WRITE
+               return;
+            }
+            writes.poll();
+         }
+         // a frame added after this point registers the connection in pendingWrites again
+         key.interestOps(SelectionKey.OP_READ);
+      }
+   }
+}
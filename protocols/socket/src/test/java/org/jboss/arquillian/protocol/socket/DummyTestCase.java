@@ -0,0 +1,50 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.protocol.socket;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Test executed in container by the {@link SocketProtocolTestCase}.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class DummyTestCase
+{
+   static final AtomicInteger countedInvocations = new AtomicInteger();
+
+   @Test
+   public void testMethod() throws Exception
+   {
+   }
+
+   @Test
+   public void testSleep() throws Exception
+   {
+      Thread.sleep(200);
+   }
+
+   @Test
+   public void testCountedSleep() throws Exception
+   {
+      countedInvocations.incrementAndGet();
+      Thread.sleep(200);
+   }
+}
@@ -0,0 +1,290 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.protocol.socket;
+
+import static org.junit.Assert.*;
+
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.remote.JMXConnectorServer;
+import javax.management.remote.JMXConnectorServerFactory;
+import javax.management.remote.JMXServiceURL;
+
+import org.jboss.arquillian.protocol.jmx.JMXConnectorPool;
+import org.jboss.arquillian.protocol.jmx.JMXMethodExecutor;
+import org.jboss.arquillian.protocol.jmx.JMXTestRunner;
+import org.jboss.arquillian.spi.ContainerMethodExecutor;
+import org.jboss.arquillian.spi.TestDeployment;
+import org.jboss.arquillian.spi.TestMethodExecutor;
+import org.jboss.arquillian.spi.TestResult;
+import org.jboss.arquillian.spi.TestResult.Status;
+import org.jboss.shrinkwrap.api.Archive;
+import org.jboss.shrinkwrap.api.ArchivePaths;
+import org.jboss.shrinkwrap.api.ShrinkWrap;
+import org.jboss.shrinkwrap.api.spec.EnterpriseArchive;
+import org.jboss.shrinkwrap.api.spec.JavaArchive;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Test the {@link SocketTestRunner} and {@link SocketMethodExecutor}.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class SocketProtocolTestCase
+{
+   private static final int CONCURRENT_TESTS = 8;
+
+   private static final int BENCHMARK_INVOCATIONS = 500;
+
+   private SocketTestRunner testRunner;
+
+   private InetSocketAddress address;
+
+   @Before
+   public void startTestRunner() throws Exception
+   {
+      testRunner = new SocketTestRunner(null, CONCURRENT_TESTS);
+      address = testRunner.start(new InetSocketAddress("localhost", 0));
+   }
+
+   @After
+   public void stopTestRunner() throws Exception
+   {
+      testRunner.stop();
+      SocketConnection.closeAll();
+   }
+
+   @Test
+   public void shouldExecuteTestMethod() throws Throwable
+   {
+      TestResult result = new SocketMethodExecutor(address).invoke(createTestMethodExecutor("testMethod"));
+
+      if (result.getStatus() == Status.FAILED)
+         throw result.getThrowable();
+      assertEquals(Status.PASSED, result.getStatus());
+   }
+
+   @Test
+   public void shouldMultiplexConcurrentInvocationsOnOneConnection() throws Throwable
+   {
+      final SocketMethodExecutor executor = new SocketMethodExecutor(address);
+      SocketConnection connection = SocketConnection.getConnection(address);
+
+      ExecutorService callers = Executors.newFixedThreadPool(CONCURRENT_TESTS);
+      try
+      {
+         List<Future<TestResult>> results = new ArrayList<Future<TestResult>>();
+         long start = System.currentTimeMillis();
+         for(int i = 0; i < CONCURRENT_TESTS; i++)
+         {
+            results.add(callers.submit(new Callable<TestResult>()
+            {
+               public TestResult call() throws Exception
+               {
+                  return executor.invoke(createTestMethodExecutor("testSleep"));
+               }
+            }));
+         }
+         for(Future<TestResult> result : results)
+         {
+            if (result.get().getStatus() == Status.FAILED)
+               throw result.get().getThrowable();
+            assertEquals(Status.PASSED, result.get().getStatus());
+         }
+         long time = System.currentTimeMillis() - start;
+
+         assertTrue("Tests should run concurrently, took " + time + " ms", time < CONCURRENT_TESTS * 200);
+         assertSame("Connection shared", connection, SocketConnection.getConnection(address));
+      }
+      finally
+      {
+         callers.shutdownNow();
+      }
+   }
+
+   @Test
+   public void shouldReconnectAfterRestart() throws Throwable
+   {
+      SocketMethodExecutor executor = new SocketMethodExecutor(address);
+      assertEquals(Status.PASSED, executor.invoke(createTestMethodExecutor("testMethod")).getStatus());
+
+      SocketConnection connection = SocketConnection.getConnection(address);
+      testRunner.stop();
+      // the result of a test sent on the old connection would be lost, so it is not retried
+      while(!connection.isClosed())
+      {
+         Thread.sleep(10);
+      }
+      testRunner = new SocketTestRunner(null, 1);
+      testRunner.start(address);
+
+      TestResult result = executor.invoke(createTestMethodExecutor("testMethod"));
+      if (result.getStatus() == Status.FAILED)
+         throw result.getThrowable();
+      assertEquals(Status.PASSED, result.getStatus());
+   }
+
+   @Test
+   public void shouldNotRetryTestThatWasSent() throws Throwable
+   {
+      DummyTestCase.countedInvocations.set(0);
+      final SocketConnection connection = SocketConnection.getConnection(address);
+      Thread closer = new Thread()
+      {
+         public void run()
+         {
+            try
+            {
+               Thread.sleep(50);
+            }
+            catch (InterruptedException e)
+            {
+               return;
+            }
+            connection.close();
+         }
+      };
+      closer.start();
+
+      TestResult result = new SocketMethodExecutor(address).invoke(createTestMethodExecutor("testCountedSleep"));
+      closer.join();
+      // let a retried invocation finish
+      Thread.sleep(400);
+
+      assertEquals(Status.FAILED, result.getStatus());
+      assertEquals("Test should only run once", 1, DummyTestCase.countedInvocations.get());
+   }
+
+   @Test
+   public void shouldFailWhenResultNotReceivedWithinTimeout() throws Throwable
+   {
+      SocketConnection connection = SocketConnection.getConnection(address);
+
+      TestResult result = new SocketMethodExecutor(address, 50).invoke(createTestMethodExecutor("testSleep"));
+
+      assertEquals(Status.FAILED, result.getStatus());
+      assertTrue("Should fail with timeout, was " + result.getThrowable(), result.getThrowable() instanceof TimeoutException);
+      assertFalse("Timeout should not close the connection", connection.isClosed());
+      assertEquals(Status.PASSED, new SocketMethodExecutor(address).invoke(createTestMethodExecutor("testMethod")).getStatus());
+   }
+
+   @Test
+   public void shouldMergeProtocolIntoJavaArchive() throws Exception
+   {
+      Archive<?> archive = new SocketProtocolDeploymentPackager().generateDeployment(
+            new TestDeployment(
+                  ShrinkWrap.create(JavaArchive.class, "applicationArchive.jar"),
+                  new ArrayList<Archive<?>>()));
+
+      assertTrue(
+            "Verify that the SocketTestRunner is merged into the JavaArchive",
+            archive.contains(ArchivePaths.create("/org/jboss/arquillian/protocol/socket/SocketTestRunner.class")));
+   }
+
+   @Test
+   public void shouldAddProtocolToEnterpriseArchive() throws Exception
+   {
+      Archive<?> archive = new SocketProtocolDeploymentPackager().generateDeployment(
+            new TestDeployment(
+                  ShrinkWrap.create(EnterpriseArchive.class, "applicationArchive.ear"),
+                  new ArrayList<Archive<?>>()));
+
+      assertTrue(
+            "Verify that the protocol is placed in /lib",
+            archive.contains(ArchivePaths.create("/lib/arquillian-protocol-socket.jar")));
+   }
+
+   /*
+    * Logs the average client side time of a test invocation, the test itself does nothing.
+    */
+   @Test
+   public void measureInvocationOverhead() throws Exception
+   {
+      MBeanServer mbeanServer = MBeanServerFactory.newMBeanServer();
+      ObjectName oname = new JMXTestRunner(null).registerMBean(mbeanServer);
+      JMXConnectorServer connectorServer = JMXConnectorServerFactory.newJMXConnectorServer(
+            new JMXServiceURL("service:jmx:rmi://localhost"), null, mbeanServer);
+      connectorServer.start();
+      JMXConnectorPool pool = new JMXConnectorPool();
+      try
+      {
+         TestMethodExecutor test = createTestMethodExecutor("testMethod");
+         long socket = measure(new SocketMethodExecutor(address), test);
+         long jmx = measure(new JMXMethodExecutor(connectorServer.getAddress(), null, pool), test);
+
+         System.out.println("Invocation overhead pr test: socket " + socket + " us, jmx remote " + jmx + " us");
+      }
+      finally
+      {
+         pool.close();
+         connectorServer.stop();
+         mbeanServer.unregisterMBean(oname);
+      }
+   }
+
+   private long measure(ContainerMethodExecutor executor, TestMethodExecutor test)
+   {
+      // warm up the connection and the code paths
+      for(int i = 0; i < BENCHMARK_INVOCATIONS; i++)
+      {
+         assertEquals(Status.PASSED, executor.invoke(test).getStatus());
+      }
+      long start = System.nanoTime();
+      for(int i = 0; i < BENCHMARK_INVOCATIONS; i++)
+      {
+         assertEquals(Status.PASSED, executor.invoke(test).getStatus());
+      }
+      return (System.nanoTime() - start) / BENCHMARK_INVOCATIONS / 1000;
+   }
+
+   private TestMethodExecutor createTestMethodExecutor(String methodName) throws Exception
+   {
+      final DummyTestCase instance = new DummyTestCase();
+      final Method method = DummyTestCase.class.getMethod(methodName);
+      return new TestMethodExecutor()
+      {
+         public Method getMethod()
+         {
+            return method;
+         }
+
+         public Object getInstance()
+         {
+            return instance;
+         }
+
+         public void invoke() throws Throwable
+         {
+            method.invoke(instance);
+         }
+      };
+   }
+}
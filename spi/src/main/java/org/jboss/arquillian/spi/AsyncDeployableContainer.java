@@ -0,0 +1,59 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.spi;
+
+import java.util.concurrent.Future;
+
+import org.jboss.shrinkwrap.api.Archive;
+
+/**
+ * A {@link DeployableContainer} that can deploy and undeploy without blocking the caller.<br/>
+ * <br/>
+ * When the container implements this interface the undeploy of one test class is allowed to run
+ * while the next test class is deployed, as long as the two deployments do not share name or 
+ * context root. Containers that only implement {@link DeployableContainer} are called blocking.<br/>
+ * <br/>
+ * The given {@link Context} is only valid for the duration of the call, anything needed to complete 
+ * the operation must be read from it before returning the {@link Future}.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public interface AsyncDeployableContainer extends DeployableContainer
+{
+   /**
+    * Start deploying the archive.
+    * 
+    * @param context The current context
+    * @param archive The archive to deploy
+    * @return A Future holding the {@link ContainerMethodExecutor} of the deployment. Failures are 
+    *    reported as a {@link DeploymentException} cause of the ExecutionException.
+    * @throws DeploymentException If the deployment could not be started
+    */
+   Future<ContainerMethodExecutor> deployAsync(Context context, Archive<?> archive) throws DeploymentException;
+   
+   /**
+    * Start undeploying the archive.
+    * 
+    * @param context The current context
+    * @param archive The archive to undeploy
+    * @return A Future that is done when the archive is undeployed. Failures are 
+    *    reported as a {@link DeploymentException} cause of the ExecutionException.
+    * @throws DeploymentException If the undeployment could not be started
+    */
+   Future<Void> undeployAsync(Context context, Archive<?> archive) throws DeploymentException;
+}
@@ -0,0 +1,58 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.spi;
+
+import java.util.List;
+
+/**
+ * A {@link ContainerMethodExecutor} that can invoke all selected test methods of a test class 
+ * in one round trip to the container.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public interface BatchContainerMethodExecutor extends ContainerMethodExecutor
+{
+   /**
+    * Start the given test methods in the container. The results are returned as they are produced.
+    * 
+    * @param testClass The test case class to execute
+    * @param methodNames The methods selected by the client side test framework
+    * @return The results of the batch, must be closed when done
+    */
+   Results invoke(Class<?> testClass, List<String> methodNames);
+   
+   /**
+    * The results of a batch invocation.
+    */
+   interface Results
+   {
+      /**
+       * Get the result of the next invocation of a method, waits for it if it is not yet done. A method 
+       * invoked more than once in the container has a result pr invocation, each call returns the next one.
+       * 
+       * @param methodName The method to get the result for
+       * @return The result of the method, a failed result if the container did not return one
+       */
+      TestResult get(String methodName);
+      
+      /**
+       * Release the connection to the container.
+       */
+      void close();
+   }
+}
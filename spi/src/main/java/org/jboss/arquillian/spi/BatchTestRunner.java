@@ -0,0 +1,51 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.spi;
+
+import java.util.List;
+
+/**
+ * A {@link TestRunner} that can run multiple test methods of a test class in one run of the test framework.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public interface BatchTestRunner extends TestRunner
+{
+   /**
+    * Run the given test methods in one test framework run. The result of each method is given to 
+    * the callback as soon as the method is done.
+    * 
+    * @param testClass The test case class to execute
+    * @param methodNames The methods to execute
+    * @param callback Receives the result of each method
+    */
+   void execute(Class<?> testClass, List<String> methodNames, Callback callback);
+   
+   /**
+    * Receives the result of each method invocation in a batch run, in invocation order. A method invoked 
+    * more than once, through a data provider or a invocation count, is reported once pr invocation.
+    */
+   interface Callback
+   {
+      /**
+       * @param methodName The method that was executed
+       * @param result The result of the method
+       */
+      void result(String methodName, TestResult result);
+   }
+}
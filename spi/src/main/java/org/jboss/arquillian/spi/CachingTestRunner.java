@@ -0,0 +1,35 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.spi;
+
+/**
+ * A {@link TestRunner} that keeps the prepared structures of the test framework pr test class between
+ * invocations, e.g. the runner of a test class.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public interface CachingTestRunner extends TestRunner
+{
+   /**
+    * Drop the cached structures of the test classes loaded by the given ClassLoader, called when 
+    * the deployment is undeployed.
+    * 
+    * @param classLoader The ClassLoader of the undeployed test classes, null to drop all
+    */
+   void release(ClassLoader classLoader);
+}
@@ -29,7 +29,7 @@ import java.util.Map.Entry;
  * @author <a href="mailto:kpiwko@redhat.com">Karel Piwko</a>
  * @version $Revision: $
  */
-public class Configuration
+public class Configuration implements Cloneable
 {
    /**
     * A Map of container configuration objects
@@ -40,6 +40,20 @@ public class Configuration
 
    private String deploymentExportPath = null;
    private int maxDeploymentsBeforeRestart = -1;
+   private boolean shareDeployments = false;
+   private int prefetchDeployments = 0;
+   private int containerPoolSize = 1;
+   private String durationHistoryFile = null;
+   private boolean containerDaemon = false;
+   private double restartMemoryThreshold = -1;
+   private int restartTrendWindow = 0;
+   private int restartLoadedClassGrowth = -1;
+   private int restartThreadGrowth = -1;
+   private long restartUnboundedPoolGrowth = -1;
+   private String restartJmxServiceUrl = null;
+   private boolean standbyContainer = false;
+   private boolean batchTestExecution = false;
+   private String deploymentPackager = null;
 
    /**
     * Puts a {@link ContainerConfiguration} implementation in the containersConfig
@@ -144,4 +158,336 @@ public class Configuration
    {
       this.maxDeploymentsBeforeRestart = maxDeploymentsBeforeRestart;
    }
+
+   /**
+    * Should test classes with identical deployments share one deployment.
+    * 
+    * @return false if not set
+    */
+   public boolean isShareDeployments()
+   {
+      return shareDeployments;
+   }
+
+   /**
+    * Set if test classes with identical {@code @Deployment} archives should share one deployment.
+    * The deployment is kept in the container until the last test class using it is done.
+    * 
+    * @param shareDeployments true to share identical deployments
+    */
+   public void setShareDeployments(boolean shareDeployments)
+   {
+      this.shareDeployments = shareDeployments;
+   }
+
+   /**
+    * The max number of deployments to generate in the background for upcoming test classes.
+    * 
+    * @return 0 if not set
+    */
+   public int getPrefetchDeployments()
+   {
+      return prefetchDeployments;
+   }
+
+   /**
+    * Set how many deployments of upcoming test classes should be generated in the background 
+    * while the current test class is executing.
+    * 
+    * @param prefetchDeployments number of deployments, 0 to disable
+    */
+   public void setPrefetchDeployments(int prefetchDeployments)
+   {
+      this.prefetchDeployments = prefetchDeployments;
+   }
+
+   /**
+    * The number of container instances test classes are run on concurrently.
+    * 
+    * @return 1 if not set
+    */
+   public int getContainerPoolSize()
+   {
+      return containerPoolSize;
+   }
+
+   /**
+    * Set the number of container instances to start. Only used if the active container 
+    * configuration is a {@link PooledContainerConfiguration}.<br/>
+    * Deployments are not shared and the container is not restarted when running in a pool.
+    * 
+    * @param containerPoolSize number of container instances
+    */
+   public void setContainerPoolSize(int containerPoolSize)
+   {
+      this.containerPoolSize = containerPoolSize;
+   }
+
+   /**
+    * Create a copy of this configuration for one instance in the container pool.<br/>
+    * All {@link PooledContainerConfiguration}s are replaced by the configuration of the given instance.
+    * 
+    * @param instance The instance number
+    * @return A new Configuration
+    */
+   public Configuration forPoolInstance(int instance)
+   {
+      Configuration copy;
+      try
+      {
+         copy = (Configuration)clone();
+      }
+      catch (CloneNotSupportedException e) 
+      {
+         throw new IllegalStateException("Could not copy configuration", e);
+      }
+      copy.containersConfig = new HashMap<Class<? extends ContainerConfiguration>, ContainerConfiguration>();
+      for(ContainerConfiguration containerConfig : containersConfig.values())
+      {
+         if(containerConfig instanceof PooledContainerConfiguration)
+         {
+            containerConfig = ((PooledContainerConfiguration)containerConfig).forPoolInstance(instance);
+         }
+         copy.addContainerConfig(containerConfig);
+      }
+      copy.extensionsConfig = new HashMap<Class<? extends ExtensionConfiguration>, ExtensionConfiguration>(extensionsConfig);
+      return copy;
+   }
+
+   /**
+    * Get the file the execution time of each test class is recorded to.
+    * 
+    * @return Set path or null if not set
+    */
+   public String getDurationHistoryFile()
+   {
+      return durationHistoryFile;
+   }
+
+   /**
+    * Sets the file to record the execution time of each test class to. Used to balance test classes 
+    * between shards.
+    * 
+    * @param durationHistoryFile String representation of the file path
+    */
+   public void setDurationHistoryFile(String durationHistoryFile)
+   {
+      this.durationHistoryFile = durationHistoryFile;
+   }
+
+   /**
+    * Should the container be started in a separate daemon process that outlives the test run.
+    * 
+    * @return false if not set
+    */
+   public boolean isContainerDaemon()
+   {
+      return containerDaemon;
+   }
+
+   /**
+    * Sets whether to run the container in a daemon process. The daemon is left running when the 
+    * test run ends and is reused by the next run with the same configuration and classpath, 
+    * so the container start up is only paid once across IDE and build runs.
+    * 
+    * @param containerDaemon true to run the container in a daemon process
+    */
+   public void setContainerDaemon(boolean containerDaemon)
+   {
+      this.containerDaemon = containerDaemon;
+   }
+
+   /**
+    * The fraction of a container memory pool's max size in use that triggers a container restart.
+    * 
+    * @return -1 if not set
+    */
+   public double getRestartMemoryThreshold()
+   {
+      return restartMemoryThreshold;
+   }
+
+   /**
+    * Sets the fraction of a memory pool's max size, e.g. 0.9, that triggers a container restart when in 
+    * use after a undeploy. The usage after the last garbage collection is used for pools that support it.
+    * 
+    * @param restartMemoryThreshold fraction between 0 and 1, -1 to disable
+    */
+   public void setRestartMemoryThreshold(double restartMemoryThreshold)
+   {
+      this.restartMemoryThreshold = restartMemoryThreshold;
+   }
+
+   /**
+    * The number of upcoming deployments the memory pool growth is projected over.
+    * 
+    * @return 0 if not set
+    */
+   public int getRestartTrendWindow()
+   {
+      return restartTrendWindow;
+   }
+
+   /**
+    * Sets the number of deployments the growth of a memory pool is averaged and projected over. The 
+    * container is restarted if the projected usage crosses the {@link #getRestartMemoryThreshold()} 
+    * within that number of deployments.
+    * 
+    * @param restartTrendWindow number of deployments, 0 to disable
+    */
+   public void setRestartTrendWindow(int restartTrendWindow)
+   {
+      this.restartTrendWindow = restartTrendWindow;
+   }
+
+   /**
+    * The number of classes the container can load after the first undeploy before it is restarted.
+    * 
+    * @return -1 if not set
+    */
+   public int getRestartLoadedClassGrowth()
+   {
+      return restartLoadedClassGrowth;
+   }
+
+   /**
+    * Sets the growth in loaded classes since the first undeploy after a start that triggers a container restart. 
+    * 
+    * @param restartLoadedClassGrowth number of classes, -1 to disable
+    */
+   public void setRestartLoadedClassGrowth(int restartLoadedClassGrowth)
+   {
+      this.restartLoadedClassGrowth = restartLoadedClassGrowth;
+   }
+
+   /**
+    * The number of threads the container can start after the first undeploy before it is restarted.
+    * 
+    * @return -1 if not set
+    */
+   public int getRestartThreadGrowth()
+   {
+      return restartThreadGrowth;
+   }
+
+   /**
+    * Sets the growth in live threads since the first undeploy after a start that triggers a container restart.
+    * 
+    * @param restartThreadGrowth number of threads, -1 to disable
+    */
+   public void setRestartThreadGrowth(int restartThreadGrowth)
+   {
+      this.restartThreadGrowth = restartThreadGrowth;
+   }
+
+   /**
+    * The number of bytes a memory pool without a max, e.g. Metaspace, can grow after the first undeploy 
+    * before the container is restarted.
+    * 
+    * @return -1 if not set
+    */
+   public long getRestartUnboundedPoolGrowth()
+   {
+      return restartUnboundedPoolGrowth;
+   }
+
+   /**
+    * Sets the growth in used bytes of a memory pool without a max since the first undeploy after a start that 
+    * triggers a container restart. Such pools can not be checked against the {@link #getRestartMemoryThreshold()}. 
+    * 
+    * @param restartUnboundedPoolGrowth number of bytes, -1 to disable
+    */
+   public void setRestartUnboundedPoolGrowth(long restartUnboundedPoolGrowth)
+   {
+      this.restartUnboundedPoolGrowth = restartUnboundedPoolGrowth;
+   }
+
+   /**
+    * The JMX service URL of the container JVM.
+    * 
+    * @return Set URL or null if not set
+    */
+   public String getRestartJmxServiceUrl()
+   {
+      return restartJmxServiceUrl;
+   }
+
+   /**
+    * Sets the JMX service URL the container JVM is sampled through, 
+    * e.g. service:jmx:rmi:///jndi/rmi://localhost:1090/jmxrmi. 
+    * If not set, the platform MBeanServer is sampled for a {@link EmbeddedContainerConfiguration}, 
+    * other containers are not sampled.
+    * 
+    * @param restartJmxServiceUrl The JMX service URL
+    */
+   public void setRestartJmxServiceUrl(String restartJmxServiceUrl)
+   {
+      this.restartJmxServiceUrl = restartJmxServiceUrl;
+   }
+
+   /**
+    * Should a standby container be started ahead of a predicted restart.
+    * 
+    * @return false if not set
+    */
+   public boolean isStandbyContainer()
+   {
+      return standbyContainer;
+   }
+
+   /**
+    * Sets whether to boot a standby container in the background when a restart is predicted, and switch 
+    * to it at the restart instead of stopping and starting the container. Only used if the active container 
+    * configuration is a {@link PooledContainerConfiguration}, the standby runs as pool instance 1.
+    * 
+    * @param standbyContainer true to use a standby container
+    */
+   public void setStandbyContainer(boolean standbyContainer)
+   {
+      this.standbyContainer = standbyContainer;
+   }
+
+   /**
+    * Should the in container test methods of a test class be executed in one batch.
+    * 
+    * @return false if not set
+    */
+   public boolean isBatchTestExecution()
+   {
+      return batchTestExecution;
+   }
+
+   /**
+    * Sets whether to execute all selected test methods of a in container test class in one round trip, 
+    * if the protocol supports it. The methods are run in one test framework run in the container when 
+    * the first test method is reached, the client side replays the results method by method.
+    * 
+    * @param batchTestExecution true to execute in batches
+    */
+   public void setBatchTestExecution(boolean batchTestExecution)
+   {
+      this.batchTestExecution = batchTestExecution;
+   }
+
+   /**
+    * The DeploymentPackager used to package the test deployment.
+    * 
+    * @return the fully qualified class name, null if not set
+    */
+   public String getDeploymentPackager()
+   {
+      return deploymentPackager;
+   }
+
+   /**
+    * Sets the DeploymentPackager to use when more then one protocol registers one, e.g. when the servlet 
+    * and the socket protocol are both on the classpath. If not set exactly one DeploymentPackager must be 
+    * found on the classpath.
+    * 
+    * @param deploymentPackager the fully qualified class name of the DeploymentPackager
+    */
+   public void setDeploymentPackager(String deploymentPackager)
+   {
+      this.deploymentPackager = deploymentPackager;
+   }
 }
@@ -0,0 +1,38 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.spi;
+
+/**
+ * A {@link ContainerConfiguration} for containers that can run more then one instance in the same JVM.<br/>
+ * <br/>
+ * Used when {@link Configuration#getContainerPoolSize()} is greater then 1. Each instance in the pool
+ * is setup with the configuration returned by {@link #forPoolInstance(int)}.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public interface PooledContainerConfiguration extends ContainerConfiguration
+{
+   /**
+    * Create the configuration for one instance in the pool. Instances must not share ports, 
+    * work directories or any other resource that can only be used by one instance at the time.
+    * 
+    * @param instance The instance number, 0 is the first instance
+    * @return A new configuration for the given instance
+    */
+   PooledContainerConfiguration forPoolInstance(int instance);
+}
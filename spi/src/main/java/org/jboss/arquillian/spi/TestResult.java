@@ -57,6 +57,8 @@ public class TestResult implements Serializable
    private long start;
    private long end;
    
+   private String output;
+   
    /**
     * Create a empty result.<br/> 
     * <br/>
@@ -161,4 +163,24 @@ public class TestResult implements Serializable
    {
       return end;
    }
-}
\ No newline at end of file
+   
+   /**
+    * Set the output captured in container while the test was executed.
+    * 
+    * @param output The captured output, null if none
+    */
+   public void setOutput(String output)
+   {
+      this.output = output;
+   }
+   
+   /**
+    * Get the output captured in container while the test was executed.
+    * 
+    * @return The captured output, null if not captured or nothing was written
+    */
+   public String getOutput()
+   {
+      return output;
+   }
+}
@@ -48,11 +48,31 @@ public interface TestRunnerAdaptor
     */
    void afterSuite() throws Exception;
 
+   /**
+    * Inform the adaptor about Test Classes that will be executed later in this suite, 
+    * in execution order. The adaptor might prepare them in the background.
+    * 
+    * @param testClasses
+    * @throws Exception
+    */
+   void upcomingClasses(Class<?>... testClasses) throws Exception;
+   
    /**
     * @param testClass
     * @throws Exception
     */
    void beforeClass(Class<?> testClass) throws Exception;
+
+   /**
+    * Inform the adaptor about the test methods of the Test Class the test framework will execute, 
+    * in execution order. Called after {@link #beforeClass(Class)}. The adaptor might execute them in 
+    * the container in one batch.
+    * 
+    * @param testClass
+    * @param testMethods
+    * @throws Exception
+    */
+   void upcomingMethods(Class<?> testClass, Method... testMethods) throws Exception;
    
    /**
     * @param testClass
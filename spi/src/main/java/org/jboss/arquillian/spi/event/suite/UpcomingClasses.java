@@ -0,0 +1,56 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.spi.event.suite;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.jboss.arquillian.spi.TestClass;
+
+/**
+ * Event fired when the test framework knows which Test Classes will be executed later in the suite.<br/>
+ * The Test Classes are listed in the expected execution order.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class UpcomingClasses extends SuiteEvent
+{
+   private List<TestClass> testClasses;
+   
+   /**
+    * @param testClasses The upcoming Test case {@link Class}es
+    * @throws IllegalArgumentException if testClasses is null 
+    */
+   public UpcomingClasses(Class<?>... testClasses)
+   {
+      Validate.notNull(testClasses, "TestClasses must be specified");
+      
+      List<TestClass> classes = new ArrayList<TestClass>();
+      for(Class<?> testClass : testClasses)
+      {
+         classes.add(new TestClass(testClass));
+      }
+      this.testClasses = Collections.unmodifiableList(classes);
+   }
+   
+   public List<TestClass> getTestClasses()
+   {
+      return testClasses;
+   }
+}
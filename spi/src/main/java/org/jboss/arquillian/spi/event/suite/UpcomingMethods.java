@@ -0,0 +1,52 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.spi.event.suite;
+
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Event fired when the test framework knows which test methods of the Test Class will be executed.<br/>
+ * The test methods are listed in the expected execution order.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class UpcomingMethods extends ClassEvent
+{
+   private List<Method> testMethods;
+   
+   /**
+    * @param testClass The Test case {@link Class}
+    * @param testMethods The test methods selected to run
+    * @throws IllegalArgumentException if testClass or testMethods is null 
+    */
+   public UpcomingMethods(Class<?> testClass, Method... testMethods)
+   {
+      super(testClass);
+      Validate.notNull(testMethods, "TestMethods must be specified");
+      
+      this.testMethods = Collections.unmodifiableList(Arrays.asList(testMethods));
+   }
+   
+   public List<Method> getTestMethods()
+   {
+      return testMethods;
+   }
+}
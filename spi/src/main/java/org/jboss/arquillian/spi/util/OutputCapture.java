@@ -0,0 +1,306 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.spi.util;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogManager;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+
+/**
+ * OutputCapture
+ *
+ * Captures the System.out, System.err and java.util.logging output of the current Thread while a test
+ * is executed in container.<br/>
+ * <br/>
+ * The output is kept in a ring buffer of a fixed size, when more is written the oldest output is dropped.
+ * The hooks are only installed while a capture is active, with no active capture System.out, System.err and
+ * the root Logger are left untouched.<br/>
+ * <br/>
+ * The client requests a capture by setting the System Property {@link #CAPTURE_PROPERTY} to the max
+ * number of bytes to capture pr test.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public final class OutputCapture
+{
+   /**
+    * System Property holding the max number of bytes to capture pr test, not set or 0 to disable.
+    */
+   public static final String CAPTURE_PROPERTY = "arquillian.captureOutput";
+
+   private static final ThreadLocal<OutputCapture> current = new ThreadLocal<OutputCapture>();
+
+   private static int active = 0;
+
+   private static CapturePrintStream capturedOut;
+
+   private static CapturePrintStream capturedErr;
+
+   private static CaptureHandler handler;
+
+   private byte[] ring;
+
+   private int position = 0;
+
+   private long written = 0;
+
+   private OutputCapture(int maxSize)
+   {
+      this.ring = new byte[maxSize];
+   }
+
+   /**
+    * @return The max number of bytes to capture pr test requested by the client, 0 if disabled
+    */
+   public static int getRequestedSize()
+   {
+      String value = System.getProperty(CAPTURE_PROPERTY);
+      if(value == null || value.trim().length() == 0)
+      {
+         return 0;
+      }
+      try
+      {
+         return Math.max(0, Integer.parseInt(value.trim()));
+      }
+      catch (NumberFormatException e)
+      {
+         throw new IllegalArgumentException(CAPTURE_PROPERTY + " must be a number of bytes, was " + value);
+      }
+   }
+
+   /**
+    * Start capturing the output of the current Thread.
+    *
+    * @param maxSize Max number of bytes to keep
+    * @return The started capture, must be stopped
+    * @throws IllegalStateException If a capture is already active on the current Thread
+    */
+   public static OutputCapture start(int maxSize)
+   {
+      if(maxSize < 1)
+      {
+         throw new IllegalArgumentException("MaxSize must be greater then 0");
+      }
+      if(current.get() != null)
+      {
+         throw new IllegalStateException("Output is already captured on " + Thread.currentThread().getName());
+      }
+      OutputCapture capture = new OutputCapture(maxSize);
+      install();
+      current.set(capture);
+      return capture;
+   }
+
+   /**
+    * Get the output captured since start or the last drain, and clear the buffer.
+    *
+    * @return The captured output or null if nothing was written
+    */
+   public synchronized String drain()
+   {
+      if(written == 0)
+      {
+         return null;
+      }
+      StringBuilder output = new StringBuilder();
+      int length = ring.length;
+      int start = 0;
+      if(written > ring.length)
+      {
+         output.append("[... ").append(written - ring.length).append(" bytes dropped ...]\n");
+         start = position;
+      }
+      else
+      {
+         length = (int)written;
+      }
+      byte[] ordered = new byte[length];
+      int tail = Math.min(length, ring.length - start);
+      System.arraycopy(ring, start, ordered, 0, tail);
+      System.arraycopy(ring, 0, ordered, tail, length - tail);
+      output.append(new String(ordered));
+
+      position = 0;
+      written = 0;
+      return output.toString();
+   }
+
+   /**
+    * Stop capturing the output of the current Thread.
+    *
+    * @return The output captured since start or the last drain, null if nothing was written
+    */
+   public String stop()
+   {
+      if(current.get() == this)
+      {
+         current.remove();
+         uninstall();
+      }
+      return drain();
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   private synchronized void write(byte[] bytes, int offset, int length)
+   {
+      written += length;
+      if(length >= ring.length)
+      {
+         // only the tail fits
+         System.arraycopy(bytes, offset + length - ring.length, ring, 0, ring.length);
+         position = 0;
+         return;
+      }
+      int first = Math.min(length, ring.length - position);
+      System.arraycopy(bytes, offset, ring, position, first);
+      System.arraycopy(bytes, offset + first, ring, 0, length - first);
+      position = (position + length) % ring.length;
+   }
+
+   private static synchronized void install()
+   {
+      if(active++ > 0)
+      {
+         return;
+      }
+      capturedOut = new CapturePrintStream(System.out);
+      capturedErr = new CapturePrintStream(System.err);
+      System.setOut(capturedOut);
+      System.setErr(capturedErr);
+
+      handler = new CaptureHandler();
+      LogManager.getLogManager().getLogger("").addHandler(handler);
+   }
+
+   private static synchronized void uninstall()
+   {
+      if(--active > 0)
+      {
+         return;
+      }
+      // someone else might have replaced them in the mean time, then their stream still passes through ours
+      if(System.out == capturedOut)
+      {
+         System.setOut(capturedOut.getPrevious());
+      }
+      if(System.err == capturedErr)
+      {
+         System.setErr(capturedErr.getPrevious());
+      }
+      LogManager.getLogManager().getLogger("").removeHandler(handler);
+      capturedOut = null;
+      capturedErr = null;
+      handler = null;
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - CapturePrintStream ------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /*
+    * Copies the output of capturing Threads to their buffer, all output is passed on.
+    */
+   private static class CapturePrintStream extends PrintStream
+   {
+      private PrintStream previous;
+
+      public CapturePrintStream(final PrintStream delegate)
+      {
+         super(new OutputStream()
+         {
+            @Override
+            public void write(int b)
+            {
+               write(new byte[] {(byte)b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len)
+            {
+               OutputCapture capture = current.get();
+               if(capture != null)
+               {
+                  capture.write(b, off, len);
+               }
+               delegate.write(b, off, len);
+            }
+
+            @Override
+            public void flush()
+            {
+               delegate.flush();
+            }
+         }, true);
+         this.previous = delegate;
+      }
+
+      public PrintStream getPrevious()
+      {
+         return previous;
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - CaptureHandler ----------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /*
+    * Formats the log records of capturing Threads to their buffer.
+    */
+   private static class CaptureHandler extends Handler
+   {
+      private Formatter formatter = new SimpleFormatter();
+
+      public CaptureHandler()
+      {
+         setLevel(Level.ALL);
+      }
+
+      @Override
+      public void publish(LogRecord record)
+      {
+         OutputCapture capture = current.get();
+         if(capture == null || !isLoggable(record))
+         {
+            return;
+         }
+         // platform encoding, same as the PrintStreams
+         byte[] bytes = formatter.format(record).getBytes();
+         capture.write(bytes, 0, bytes.length);
+      }
+
+      @Override
+      public void flush()
+      {
+      }
+
+      @Override
+      public void close()
+      {
+      }
+   }
+}
@@ -20,14 +20,23 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.lang.ref.SoftReference;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.jboss.arquillian.spi.Stateless;
 
 /**
  * This class handles looking up service providers on the class path. It
@@ -41,6 +50,9 @@ import java.util.Set;
  * href="http://java.sun.com/javase/6/docs/api/java/util/ServiceLoader.html"
  * >java.util.ServiceLoader</a>
  * 
+ * The provider classes are only looked up once pr ClassLoader, instances of {@link Stateless}
+ * providers are shared pr ClassLoader.
+ * 
  * @author Pete Muir
  * @author <a href="mailto:dev@avalon.apache.org">Avalon Development Team</a>
  */
@@ -114,6 +126,9 @@ public class ServiceLoader<S> implements Iterable<S>
       throw new UnsupportedOperationException();
    }
    
+   private static final Map<ClassLoader, SoftReference<ServiceIndex>> indexes = 
+         new WeakHashMap<ClassLoader, SoftReference<ServiceIndex>>();
+   
    private final String serviceFile;
    private Class<S> expectedType;
    private final ClassLoader loader;
@@ -139,7 +154,41 @@ public class ServiceLoader<S> implements Iterable<S>
     */
    public void reload()
    {
+      getIndex(loader).remove(expectedType);
+      load();
+   }
+
+   private void load()
+   {
+      ServiceIndex serviceIndex = getIndex(loader);
+      List<Class<?>> serviceClasses = serviceIndex.getProviders(expectedType);
+      if (serviceClasses == null)
+      {
+         serviceClasses = serviceIndex.putProviders(expectedType, loadServiceClasses());
+      }
+      
       providers = new LinkedHashSet<S>();
+      for (Class<?> serviceClass : serviceClasses)
+      {
+         try
+         {
+            providers.add(getInstance(serviceIndex, serviceClass.asSubclass(expectedType)));
+         }
+         catch (Exception e)
+         {
+            e.printStackTrace();
+            // try the next provider
+         }
+      }
+   }
+
+   /**
+    * Parse the service files and load the listed provider classes, the result is cached 
+    * pr ClassLoader.
+    */
+   private List<Class<?>> loadServiceClasses()
+   {
+      List<Class<?>> serviceClasses = new ArrayList<Class<?>>();
       Enumeration<URL> enumeration = null;
       boolean errorOccurred = false;
 
@@ -174,11 +223,15 @@ public class ServiceLoader<S> implements Iterable<S>
                         line = line.substring(0, comment);
                      }
 
-                     line.trim();
+                     line = line.trim();
 
                      if (line.length() > 0)
                      {
-                        providers.add(createInstance(line));
+                        Class<? extends S> serviceClass = loadClass(line);
+                        if (!serviceClasses.contains(serviceClass))
+                        {
+                           serviceClasses.add(serviceClass);
+                        }
                      }
                   }
                   catch (Exception e)
@@ -198,40 +251,70 @@ public class ServiceLoader<S> implements Iterable<S>
             }
          }
       }
+      return Collections.unmodifiableList(serviceClasses);
    }
 
    public S createInstance(String line) throws ClassNotFoundException, NoSuchMethodException, InvocationTargetException,
          NoClassDefFoundError, InstantiationException, IllegalAccessException
    {
+      return createInstance(loadClass(line));
+   }
+   
+   private Class<? extends S> loadClass(String line) throws ClassNotFoundException
+   {
+      Class<?> clazz = loader.loadClass(line);
       try
       {
-         Class<?> clazz = loader.loadClass(line);
-         Class<? extends S> serviceClass;
-         try
-         {
-            serviceClass = clazz.asSubclass(expectedType);
-         }
-         catch (ClassCastException e)
-         {
-            throw new IllegalStateException("Service " + line + " does not implement expected type " + expectedType.getName());
-         }
-         Constructor<? extends S> constructor = serviceClass.getConstructor();
-         if(!constructor.isAccessible()) {
-            constructor.setAccessible(true);
-         }
-         return constructor.newInstance();
+         return clazz.asSubclass(expectedType);
+      }
+      catch (ClassCastException e)
+      {
+         throw new IllegalStateException("Service " + line + " does not implement expected type " + expectedType.getName());
       }
-      catch (NoClassDefFoundError e)
+   }
+
+   private S getInstance(ServiceIndex serviceIndex, Class<? extends S> serviceClass) throws NoSuchMethodException, 
+         InvocationTargetException, InstantiationException, IllegalAccessException
+   {
+      if (!serviceClass.isAnnotationPresent(Stateless.class))
       {
-         throw e;
+         return createInstance(serviceClass);
       }
-      catch (InstantiationException e)
+      S instance = serviceIndex.getInstance(serviceClass);
+      if (instance == null)
       {
-         throw e;
+         instance = serviceIndex.putInstance(serviceClass, createInstance(serviceClass));
       }
-      catch (IllegalAccessException e)
+      return instance;
+   }
+   
+   private S createInstance(Class<? extends S> serviceClass) throws NoSuchMethodException, InvocationTargetException,
+         InstantiationException, IllegalAccessException
+   {
+      Constructor<? extends S> constructor = serviceClass.getConstructor();
+      if(!constructor.isAccessible()) {
+         constructor.setAccessible(true);
+      }
+      return constructor.newInstance();
+   }
+
+   /**
+    * Get the ServiceIndex for the given ClassLoader, a new empty one is created on first use. 
+    * The index holds the provider classes and so the ClassLoader itself, it is softly referenced 
+    * to let a discarded ClassLoader be collected.
+    */
+   private static ServiceIndex getIndex(ClassLoader loader)
+   {
+      synchronized (indexes)
       {
-         throw e;
+         SoftReference<ServiceIndex> cached = indexes.get(loader);
+         ServiceIndex current = cached == null ? null:cached.get();
+         if (current == null)
+         {
+            current = new ServiceIndex(loader);
+            indexes.put(loader, new SoftReference<ServiceIndex>(current));
+         }
+         return current;
       }
    }
 
@@ -275,7 +358,7 @@ public class ServiceLoader<S> implements Iterable<S>
    {
       if (providers == null)
       {
-         reload();
+         load();
       }
       return providers.iterator();
    }
@@ -283,7 +366,7 @@ public class ServiceLoader<S> implements Iterable<S>
    public Set<S> getProviders() {
       if (providers == null)
       {
-         reload();
+         load();
       }
       return Collections.unmodifiableSet(providers);
    }
@@ -299,4 +382,60 @@ public class ServiceLoader<S> implements Iterable<S>
       return "Services for " + serviceFile;
    }
 
+   /**
+    * Holds the parsed provider classes and the shared {@link Stateless} instances 
+    * for one ClassLoader.
+    */
+   private static class ServiceIndex
+   {
+      private final ClassLoader loader;
+      
+      private final ConcurrentMap<Class<?>, List<Class<?>>> providers = new ConcurrentHashMap<Class<?>, List<Class<?>>>();
+      
+      private final ConcurrentMap<Class<?>, Object> instances = new ConcurrentHashMap<Class<?>, Object>();
+      
+      public ServiceIndex(ClassLoader loader)
+      {
+         this.loader = loader;
+      }
+      
+      public ClassLoader getClassLoader()
+      {
+         return loader;
+      }
+      
+      public List<Class<?>> getProviders(Class<?> service)
+      {
+         return providers.get(service);
+      }
+      
+      public List<Class<?>> putProviders(Class<?> service, List<Class<?>> serviceClasses)
+      {
+         List<Class<?>> existing = providers.putIfAbsent(service, serviceClasses);
+         return existing == null ? serviceClasses:existing;
+      }
+      
+      public void remove(Class<?> service)
+      {
+         List<Class<?>> serviceClasses = providers.remove(service);
+         if (serviceClasses != null)
+         {
+            for (Class<?> serviceClass : serviceClasses)
+            {
+               instances.remove(serviceClass);
+            }
+         }
+      }
+
+      public <T> T getInstance(Class<? extends T> serviceClass)
+      {
+         return serviceClass.cast(instances.get(serviceClass));
+      }
+      
+      public <T> T putInstance(Class<? extends T> serviceClass, T instance)
+      {
+         Object existing = instances.putIfAbsent(serviceClass, instance);
+         return existing == null ? instance:serviceClass.cast(existing);
+      }
+   }
 }
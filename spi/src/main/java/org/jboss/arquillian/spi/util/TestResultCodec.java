@@ -0,0 +1,745 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.spi.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.arquillian.spi.TestResult;
+import org.jboss.arquillian.spi.TestResult.Status;
+
+/**
+ * TestResultCodec
+ *
+ * A compact binary format for moving a {@link TestResult} between container and client.<br/>
+ * <br/>
+ * The captured output of the test is included from version 2.<br/>
+ * The Throwable is flattened to the class name, message and stack trace of each cause, so it can be read
+ * even if the exception class is missing on the reading side. Strings and stack frames repeated in the
+ * cause chain are only written once. The stack traces are trimmed to {@link #MAX_FRAMES_PROPERTY} frames if set
+ * in the JVM writing the result.<br/>
+ * From version 3 a exception that can not be recreated from its message, e.g. a JUnit ComparisonFailure, is
+ * also written Java serialized and restored from that if its class is available on the reading side.<br/>
+ * <br/>
+ * {@link #decode(InputStream)} also reads a Java serialized TestResult, so the reader does not need to know
+ * which format the writer chose.<br/>
+ * <br/>
+ * A stream of results is written as frames with {@link #writeFrame(DataOutputStream, String, TestResult)}: a boolean 
+ * true, the UTF name, the int length and the encoded result. The stream is ended by {@link #writeEnd(DataOutputStream)}.<br/>
+ * <br/>
+ * A codec reuses its buffers between calls and is not thread-safe, use {@link #getCodec()} to get the
+ * codec of the current Thread on the client. In the container create a codec pr request instead, a codec 
+ * held by a container Thread would keep the deployment ClassLoader alive.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class TestResultCodec
+{
+   /**
+    * The name of the format, used by the protocols to negotiate it.
+    */
+   public static final String FORMAT = "binary";
+
+   public static final int VERSION = 3;
+
+   /**
+    * System property holding the max number of stack frames written pr Throwable in the cause chain.
+    */
+   public static final String MAX_FRAMES_PROPERTY = "arquillian.maxStackFrames";
+
+   /** Upper bound of a framed result, protects against reading garbage as a length. */
+   private static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+   /** Buffers grown past this size by a large result are not kept for the next one. */
+   private static final int MAX_RETAINED_BUFFER_SIZE = 64 * 1024;
+
+   private static final int INITIAL_BUFFER_SIZE = 512;
+
+   private static final int MAGIC = 0xA7B1;
+
+   private static final int NULL = 0;
+
+   private static final int NEW = 1;
+
+   private static final String TRIMMED_FRAMES = "<trimmed>";
+
+   private static final ThreadLocal<TestResultCodec> codecs = new ThreadLocal<TestResultCodec>()
+   {
+      @Override
+      protected TestResultCodec initialValue()
+      {
+         return new TestResultCodec();
+      }
+   };
+
+   private int maxFrames = Integer.getInteger(MAX_FRAMES_PROPERTY, -1);
+
+   private ByteArrayOutputStream buffer = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+
+   private DataOutputStream output = new DataOutputStream(buffer);
+
+   private byte[] readBuffer = new byte[INITIAL_BUFFER_SIZE];
+
+   private Map<String, Integer> writtenStrings = new HashMap<String, Integer>();
+
+   private Map<StackTraceElement, Integer> writtenFrames = new HashMap<StackTraceElement, Integer>();
+
+   private List<String> readStrings = new ArrayList<String>();
+
+   private List<StackTraceElement> readFrames = new ArrayList<StackTraceElement>();
+
+   /**
+    * @return The codec of the current Thread
+    */
+   public static TestResultCodec getCodec()
+   {
+      return codecs.get();
+   }
+
+   /**
+    * Set the max number of stack frames written pr Throwable in the cause chain, defaults to the value 
+    * of {@link #MAX_FRAMES_PROPERTY}.
+    *
+    * @param maxFrames Max number of frames, -1 for no limit
+    */
+   public void setMaxFrames(int maxFrames)
+   {
+      this.maxFrames = maxFrames;
+   }
+
+   /**
+    * Encode the result into the buffer of this codec, replacing the previously encoded result.
+    *
+    * @param result The TestResult to encode
+    * @return The length of the encoded result
+    */
+   public int encode(TestResult result)
+   {
+      write(result);
+      return buffer.size();
+   }
+
+   /**
+    * Write the last encoded result.
+    *
+    * @param out The stream to write to, not closed
+    * @throws IOException If the stream could not be written to
+    */
+   public void writeTo(OutputStream out) throws IOException
+   {
+      buffer.writeTo(out);
+   }
+
+   /**
+    * @return A copy of the last encoded result
+    */
+   public byte[] toByteArray()
+   {
+      return buffer.toByteArray();
+   }
+
+   /**
+    * Decode a binary or Java serialized TestResult.
+    *
+    * @param in The stream to read the TestResult from, read to the end but not closed
+    * @return The decoded TestResult
+    * @throws IOException If the stream could not be read or did not contain a TestResult
+    */
+   public TestResult decode(InputStream in) throws IOException
+   {
+      int length = 0;
+      int read;
+      while((read = in.read(readBuffer, length, readBuffer.length - length)) != -1)
+      {
+         length += read;
+         if(length == readBuffer.length)
+         {
+            byte[] grown = new byte[readBuffer.length * 2];
+            System.arraycopy(readBuffer, 0, grown, 0, length);
+            readBuffer = grown;
+         }
+      }
+      try
+      {
+         return decode(readBuffer, 0, length);
+      }
+      finally
+      {
+         trimReadBuffer();
+      }
+   }
+
+   /**
+    * Encode the result and write it as a frame of a result stream.
+    *
+    * @param out The stream to write to, not flushed
+    * @param name The name of the result, e.g. the test method name
+    * @param result The TestResult to write
+    * @throws IOException If the stream could not be written to
+    */
+   public void writeFrame(DataOutputStream out, String name, TestResult result) throws IOException
+   {
+      if(name == null)
+      {
+         throw new IllegalArgumentException("Name must be specified");
+      }
+      int length = encode(result);
+      out.writeBoolean(true);
+      out.writeUTF(name);
+      out.writeInt(length);
+      writeTo(out);
+   }
+
+   /**
+    * End a result stream.
+    *
+    * @param out The stream to write to, not flushed
+    * @throws IOException If the stream could not be written to
+    */
+   public static void writeEnd(DataOutputStream out) throws IOException
+   {
+      out.writeBoolean(false);
+   }
+
+   /**
+    * Read the name of the next frame of a result stream, followed by {@link #readFrameResult(DataInputStream)}.
+    *
+    * @param in The stream to read from
+    * @return The name of the next result, or null if the stream has ended
+    * @throws IOException If the stream could not be read
+    */
+   public String readFrameName(DataInputStream in) throws IOException
+   {
+      return in.readBoolean() ? in.readUTF():null;
+   }
+
+   /**
+    * Read the result of the frame whose name was just read.
+    *
+    * @param in The stream to read from
+    * @return The decoded TestResult
+    * @throws IOException If the stream could not be read or did not contain a TestResult
+    */
+   public TestResult readFrameResult(DataInputStream in) throws IOException
+   {
+      int length = in.readInt();
+      if(length < 0 || length > MAX_FRAME_SIZE)
+      {
+         throw new IOException("Invalid TestResult frame length " + length);
+      }
+      if(readBuffer.length < length)
+      {
+         readBuffer = new byte[length];
+      }
+      try
+      {
+         in.readFully(readBuffer, 0, length);
+         return decode(readBuffer, 0, length);
+      }
+      finally
+      {
+         trimReadBuffer();
+      }
+   }
+
+   /**
+    * Decode a binary or Java serialized TestResult.
+    *
+    * @param data The encoded TestResult
+    * @param offset The offset of the TestResult in data
+    * @param length The length of the TestResult
+    * @return The decoded TestResult
+    * @throws IOException If data did not contain a TestResult
+    */
+   public TestResult decode(byte[] data, int offset, int length) throws IOException
+   {
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(data, offset, length));
+      if(length < 3 || input.readUnsignedShort() != MAGIC)
+      {
+         return readSerialized(new ByteArrayInputStream(data, offset, length));
+      }
+      int version = input.readUnsignedByte();
+      if(version < 1 || version > VERSION)
+      {
+         throw new IOException("Unsupported TestResult format version " + version + ", expected " + VERSION);
+      }
+      readStrings.clear();
+      readFrames.clear();
+
+      int status = input.readByte();
+      TestResult result = new TestResult(status == -1 ? null:Status.values()[status]);
+      result.setStart(input.readLong());
+      result.setEnd(input.readLong());
+      result.setThrowable(readThrowable(input, version));
+      if(version > 1)
+      {
+         result.setOutput(readString(input));
+      }
+      return result;
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Helper Methods ------------------------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /*
+    * Encode into the reused buffer.
+    */
+   private void write(TestResult result)
+   {
+      if(result == null)
+      {
+         throw new IllegalArgumentException("TestResult must be specified");
+      }
+      if(buffer.size() > MAX_RETAINED_BUFFER_SIZE)
+      {
+         buffer = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+         output = new DataOutputStream(buffer);
+      }
+      buffer.reset();
+      writtenStrings.clear();
+      writtenFrames.clear();
+      try
+      {
+         output.writeShort(MAGIC);
+         output.writeByte(VERSION);
+         output.writeByte(result.getStatus() == null ? -1:result.getStatus().ordinal());
+         output.writeLong(result.getStart());
+         output.writeLong(result.getEnd());
+         writeThrowable(result.getThrowable());
+         writeString(result.getOutput());
+         output.flush();
+      }
+      catch (IOException e)
+      {
+         // in memory, can not happen
+         throw new IllegalStateException("Could not encode " + result, e);
+      }
+   }
+
+   private void trimReadBuffer()
+   {
+      if(readBuffer.length > MAX_RETAINED_BUFFER_SIZE)
+      {
+         readBuffer = new byte[INITIAL_BUFFER_SIZE];
+      }
+   }
+
+   private void writeThrowable(Throwable throwable) throws IOException
+   {
+      List<Throwable> causes = new ArrayList<Throwable>();
+      Map<Throwable, Boolean> seen = new IdentityHashMap<Throwable, Boolean>();
+      while(throwable != null && seen.put(throwable, Boolean.TRUE) == null)
+      {
+         causes.add(throwable);
+         throwable = throwable.getCause();
+      }
+      writeInt(causes.size());
+      for(Throwable cause : causes)
+      {
+         writeString(cause.getClass().getName());
+         writeString(cause.getMessage());
+
+         StackTraceElement[] frames = cause.getStackTrace();
+         int written = maxFrames < 0 ? frames.length:Math.min(maxFrames, frames.length);
+         writeInt(written);
+         writeInt(frames.length - written);
+         for(int i = 0; i < written; i++)
+         {
+            writeFrame(frames[i]);
+         }
+
+         byte[] serialized = findConstructor(cause.getClass(), cause.getMessage() != null) == null ? serialize(cause):null;
+         if(serialized == null)
+         {
+            writeInt(0);
+         }
+         else
+         {
+            writeInt(serialized.length);
+            output.write(serialized);
+         }
+      }
+   }
+
+   private Throwable readThrowable(DataInputStream input, int version) throws IOException
+   {
+      int count = readInt(input);
+      String[] classNames = new String[count];
+      String[] messages = new String[count];
+      StackTraceElement[][] stackTraces = new StackTraceElement[count][];
+      byte[][] serialized = new byte[count][];
+      for(int i = 0; i < count; i++)
+      {
+         classNames[i] = readString(input);
+         messages[i] = readString(input);
+
+         int written = readInt(input);
+         int trimmed = readInt(input);
+         stackTraces[i] = new StackTraceElement[trimmed > 0 ? written + 1:written];
+         for(int n = 0; n < written; n++)
+         {
+            stackTraces[i][n] = readFrame(input);
+         }
+         if(trimmed > 0)
+         {
+            stackTraces[i][written] = new StackTraceElement(TRIMMED_FRAMES, trimmed + " frames", null, -1);
+         }
+         if(version > 2)
+         {
+            int length = readInt(input);
+            if(length > 0)
+            {
+               serialized[i] = new byte[length];
+               input.readFully(serialized[i]);
+            }
+         }
+      }
+
+      // build from the root cause out
+      Throwable throwable = null;
+      for(int i = count - 1; i >= 0; i--)
+      {
+         throwable = createThrowable(classNames[i], messages[i], throwable, serialized[i]);
+         throwable.setStackTrace(stackTraces[i]);
+      }
+      return throwable;
+   }
+
+   private void writeFrame(StackTraceElement frame) throws IOException
+   {
+      Integer index = writtenFrames.get(frame);
+      if(index != null)
+      {
+         writeInt(index + 1);
+         return;
+      }
+      writtenFrames.put(frame, writtenFrames.size());
+      writeInt(NULL);
+      writeString(frame.getClassName());
+      writeString(frame.getMethodName());
+      writeString(frame.getFileName());
+      // native methods use -2
+      writeInt(frame.getLineNumber() + 2);
+   }
+
+   private StackTraceElement readFrame(DataInputStream input) throws IOException
+   {
+      int reference = readInt(input);
+      if(reference != NULL)
+      {
+         return readFrames.get(reference - 1);
+      }
+      StackTraceElement frame = new StackTraceElement(
+            readString(input),
+            readString(input),
+            readString(input),
+            readInt(input) - 2);
+      readFrames.add(frame);
+      return frame;
+   }
+
+   private void writeString(String value) throws IOException
+   {
+      if(value == null)
+      {
+         writeInt(NULL);
+         return;
+      }
+      Integer index = writtenStrings.get(value);
+      if(index != null)
+      {
+         writeInt(index + 2);
+         return;
+      }
+      writtenStrings.put(value, writtenStrings.size());
+      writeInt(NEW);
+
+      // not writeUTF, messages can be longer then 64k
+      byte[] bytes = value.getBytes("UTF-8");
+      writeInt(bytes.length);
+      output.write(bytes);
+   }
+
+   private String readString(DataInputStream input) throws IOException
+   {
+      int reference = readInt(input);
+      if(reference == NULL)
+      {
+         return null;
+      }
+      if(reference != NEW)
+      {
+         return readStrings.get(reference - 2);
+      }
+      byte[] bytes = new byte[readInt(input)];
+      input.readFully(bytes);
+      String value = new String(bytes, "UTF-8");
+      readStrings.add(value);
+      return value;
+   }
+
+   /*
+    * Variable length, most values are small.
+    */
+   private void writeInt(int value) throws IOException
+   {
+      while((value & ~0x7F) != 0)
+      {
+         output.writeByte((value & 0x7F) | 0x80);
+         value >>>= 7;
+      }
+      output.writeByte(value);
+   }
+
+   private int readInt(DataInputStream input) throws IOException
+   {
+      int value = 0;
+      for(int shift = 0; shift < 32; shift += 7)
+      {
+         int b = input.readUnsignedByte();
+         value |= (b & 0x7F) << shift;
+         if((b & 0x80) == 0)
+         {
+            return value;
+         }
+      }
+      throw new IOException("Malformed TestResult, variable length int too long");
+   }
+
+   /*
+    * Recreate the original exception if the class is available, so expected exceptions still match.
+    * The serialized form, if written, is used when the class has no constructor taking the message.
+    * It already holds its own causes.
+    */
+   private Throwable createThrowable(String className, String message, Throwable cause, byte[] serialized)
+   {
+      Throwable throwable = null;
+      try
+      {
+         ClassLoader classLoader = SecurityActions.getThreadContextClassLoader();
+         Class<?> throwableClass = Class.forName(className, false, classLoader);
+         if(Throwable.class.isAssignableFrom(throwableClass))
+         {
+            throwable = newInstance(throwableClass.asSubclass(Throwable.class), message, cause);
+            if(throwable == null && serialized != null)
+            {
+               return deserialize(serialized, classLoader);
+            }
+         }
+      }
+      catch (Exception e)
+      {
+         // not available on this side, use the placeholder
+      }
+      catch (LinkageError e)
+      {
+         // not available on this side, use the placeholder
+      }
+      if(throwable == null)
+      {
+         return new UnresolvedException(className, message, cause);
+      }
+      if(cause != null && throwable.getCause() == null)
+      {
+         try
+         {
+            throwable.initCause(cause);
+         }
+         catch (IllegalStateException e)
+         {
+            // cause set to null by the constructor, can not be changed
+         }
+      }
+      return throwable;
+   }
+
+   private static Throwable newInstance(Class<? extends Throwable> throwableClass, String message, Throwable cause) throws Exception
+   {
+      Constructor<? extends Throwable> constructor = findConstructor(throwableClass, message != null);
+      if(constructor == null)
+      {
+         return null;
+      }
+      Class<?>[] parameterTypes = constructor.getParameterTypes();
+      if(parameterTypes.length == 0)
+      {
+         return constructor.newInstance();
+      }
+      if(parameterTypes.length == 2)
+      {
+         return constructor.newInstance(message, cause);
+      }
+      return constructor.newInstance(message);
+   }
+
+   /*
+    * A constructor that recreates the message: (String, Throwable), (String), AssertionError's (Object),
+    * or the no-arg constructor if there is no message.
+    */
+   private static Constructor<? extends Throwable> findConstructor(Class<? extends Throwable> throwableClass, boolean hasMessage)
+   {
+      if(!hasMessage)
+      {
+         Constructor<? extends Throwable> constructor = getConstructor(throwableClass);
+         if(constructor != null)
+         {
+            return constructor;
+         }
+      }
+      Constructor<? extends Throwable> constructor = getConstructor(throwableClass, String.class, Throwable.class);
+      if(constructor == null)
+      {
+         constructor = getConstructor(throwableClass, String.class);
+      }
+      if(constructor == null && AssertionError.class.isAssignableFrom(throwableClass))
+      {
+         constructor = getConstructor(throwableClass, Object.class);
+      }
+      return constructor;
+   }
+
+   private static Constructor<? extends Throwable> getConstructor(Class<? extends Throwable> throwableClass, Class<?>... parameterTypes)
+   {
+      try
+      {
+         return throwableClass.getConstructor(parameterTypes);
+      }
+      catch (NoSuchMethodException e)
+      {
+         return null;
+      }
+   }
+
+   private static byte[] serialize(Throwable throwable)
+   {
+      try
+      {
+         ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+         ObjectOutputStream oos = new ObjectOutputStream(serialized);
+         oos.writeObject(throwable);
+         oos.close();
+         return serialized.toByteArray();
+      }
+      catch (Exception e)
+      {
+         // e.g. a not serializable field, the reader falls back to the placeholder
+         return null;
+      }
+   }
+
+   private static Throwable deserialize(byte[] serialized, final ClassLoader classLoader) throws Exception
+   {
+      ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized))
+      {
+         @Override
+         protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException
+         {
+            try
+            {
+               return Class.forName(desc.getName(), false, classLoader);
+            }
+            catch (ClassNotFoundException e)
+            {
+               return super.resolveClass(desc);
+            }
+         }
+      };
+      try
+      {
+         return (Throwable)ois.readObject();
+      }
+      finally
+      {
+         ois.close();
+      }
+   }
+
+   private TestResult readSerialized(InputStream in) throws IOException
+   {
+      ObjectInputStream ois = new ObjectInputStream(in);
+      try
+      {
+         Object o = ois.readObject();
+         if (!(o instanceof TestResult))
+         {
+            throw new IOException("Error reading test results - expected a TestResult but got " + o);
+         }
+         return (TestResult) o;
+      }
+      catch (ClassNotFoundException e)
+      {
+         IOException exception = new IOException("Could not deserialize TestResult");
+         exception.initCause(e);
+         throw exception;
+      }
+      finally
+      {
+         ois.close();
+      }
+   }
+
+   //-------------------------------------------------------------------------------------||
+   // Internal Class - UnresolvedException -----------------------------------------------||
+   //-------------------------------------------------------------------------------------||
+
+   /**
+    * Stands in for a exception whose class could not be loaded on the reading side.
+    */
+   public static class UnresolvedException extends RuntimeException
+   {
+      private static final long serialVersionUID = 1L;
+
+      private String className;
+
+      public UnresolvedException(String className, String message, Throwable cause)
+      {
+         super(message, cause);
+         this.className = className;
+      }
+
+      /**
+       * @return The class name of the original exception
+       */
+      public String getClassName()
+      {
+         return className;
+      }
+
+      @Override
+      public String toString()
+      {
+         String message = getLocalizedMessage();
+         return message == null ? className:className + ": " + message;
+      }
+   }
+}
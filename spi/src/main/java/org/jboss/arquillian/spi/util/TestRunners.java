@@ -16,18 +16,31 @@
  */
 package org.jboss.arquillian.spi.util;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.arquillian.spi.CachingTestRunner;
+import org.jboss.arquillian.spi.Stateless;
 import org.jboss.arquillian.spi.TestRunner;
 
 /**
  * TestRunners
  * 
- * Helper factory for loading TestRunners in container.
+ * Helper factory for loading TestRunners in container.<br/>
+ * <br/>
+ * A {@link Stateless} TestRunner is resolved once pr ClassLoader and reused until it is {@link #release(ClassLoader)}d.
+ * The TestRunner is loaded by the ClassLoader it is cached for and holds it, so a protocol that resolves the 
+ * TestRunner of a deployment must release it when the deployment is undeployed.
  *
  * @author <a href="mailto:aslak@conduct.no">Aslak Knutsen</a>
  * @version $Revision: $
  */
 public final class TestRunners
 {
+   private static final Map<ClassLoader, TestRunner> runners = new HashMap<ClassLoader, TestRunner>();
+   
    // Hide ctor
    private TestRunners()
    {
@@ -52,11 +65,53 @@ public final class TestRunners
     */
    public static TestRunner getTestRunner(ClassLoader classLoader)
    {
+      synchronized (runners)
+      {
+         TestRunner runner = runners.get(classLoader);
+         if (runner != null)
+            return runner;
+      }
+      
       ServiceLoader<TestRunner> serviceLoader = ServiceLoader.load(TestRunner.class, classLoader);
 
       if (serviceLoader.getProviders().size() > 1)
          throw new IllegalStateException("Multiple TestRunners found, only one allowed. Check your classpath");
       
-      return serviceLoader.iterator().next();
+      TestRunner runner = serviceLoader.iterator().next();
+      if (runner.getClass().isAnnotationPresent(Stateless.class))
+      {
+         synchronized (runners)
+         {
+            runners.put(classLoader, runner);
+         }
+      }
+      return runner;
+   }
+
+   /**
+    * Drop the TestRunner resolved for the given ClassLoader, and let all cached {@link CachingTestRunner}s drop
+    * their structures of the test classes loaded by it. Called when the deployment is undeployed.
+    * 
+    * @param classLoader The ClassLoader of the undeployed deployment
+    */
+   public static void release(ClassLoader classLoader)
+   {
+      TestRunner released;
+      List<TestRunner> releasing;
+      synchronized (runners)
+      {
+         released = runners.remove(classLoader);
+         releasing = new ArrayList<TestRunner>(runners.values());
+      }
+      // the instance might still be shared by the ServiceLoader, drop all it has cached
+      if (released instanceof CachingTestRunner)
+         ((CachingTestRunner)released).release(null);
+      
+      // the test classes might be loaded by a child of a ClassLoader with a shared TestRunner
+      for (TestRunner runner : releasing)
+      {
+         if (runner instanceof CachingTestRunner)
+            ((CachingTestRunner)runner).release(classLoader);
+      }
    }
 }
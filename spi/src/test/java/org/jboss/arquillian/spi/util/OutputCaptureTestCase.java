@@ -0,0 +1,125 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.spi.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.logging.Logger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that the {@link OutputCapture} only captures the output of the capturing Thread and leaves the
+ * System streams as it found them.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class OutputCaptureTestCase
+{
+   @Test
+   public void shouldCaptureOutputOfCurrentThread() throws Exception
+   {
+      OutputCapture capture = OutputCapture.start(1024);
+      try
+      {
+         System.out.print("captured stdout");
+         Thread other = new Thread()
+         {
+            public void run()
+            {
+               System.out.print("other thread");
+            }
+         };
+         other.start();
+         other.join();
+      }
+      finally
+      {
+         Assert.assertEquals("captured stdout", capture.stop());
+      }
+   }
+
+   @Test
+   public void shouldCaptureLogging() throws Exception
+   {
+      OutputCapture capture = OutputCapture.start(1024);
+      Logger.getLogger(OutputCaptureTestCase.class.getName()).warning("captured log");
+      String output = capture.stop();
+
+      Assert.assertNotNull("Log captured", output);
+      Assert.assertTrue("Log captured", output.contains("captured log"));
+   }
+
+   @Test
+   public void shouldKeepTailWhenBufferIsFull() throws Exception
+   {
+      OutputCapture capture = OutputCapture.start(4);
+      System.out.print("abcdefgh");
+      String output = capture.stop();
+
+      Assert.assertTrue("Should report dropped bytes, was " + output, output.startsWith("[... 4 bytes dropped ...]"));
+      Assert.assertTrue("Should keep the tail, was " + output, output.endsWith("efgh"));
+   }
+
+   @Test
+   public void shouldRestorePreviousStreams() throws Exception
+   {
+      PrintStream out = System.out;
+      PrintStream err = System.err;
+
+      OutputCapture.start(1024).stop();
+
+      Assert.assertSame("Should restore System.out", out, System.out);
+      Assert.assertSame("Should restore System.err", err, System.err);
+   }
+
+   @Test
+   public void shouldNotRestoreStreamReplacedDuringCapture() throws Exception
+   {
+      PrintStream out = System.out;
+      try
+      {
+         OutputCapture capture = OutputCapture.start(1024);
+         ByteArrayOutputStream replaced = new ByteArrayOutputStream();
+         PrintStream replacement = new PrintStream(replaced, true);
+         System.setOut(replacement);
+         capture.stop();
+
+         Assert.assertSame("Should keep the stream set by someone else", replacement, System.out);
+      }
+      finally
+      {
+         System.setOut(out);
+      }
+   }
+
+   @Test(expected = IllegalStateException.class)
+   public void shouldThrowIllegalStateOnNestedCapture() throws Exception
+   {
+      OutputCapture capture = OutputCapture.start(1024);
+      try
+      {
+         OutputCapture.start(1024);
+      }
+      finally
+      {
+         capture.stop();
+      }
+   }
+}
@@ -0,0 +1,142 @@
+/*
+ * JBoss, Home of Professional Open Source
+ * Copyright 2010, Red Hat Middleware LLC, and individual contributors
+ * by the @authors tag. See the copyright.txt in the distribution for a
+ * full listing of individual contributors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.jboss.arquillian.spi.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import junit.framework.ComparisonFailure;
+
+import org.jboss.arquillian.spi.TestResult;
+import org.jboss.arquillian.spi.TestResult.Status;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Verifies that the {@link TestResultCodec} recreates the original exceptions.
+ *
+ * @author <a href="mailto:aslak@redhat.com">Aslak Knutsen</a>
+ * @version $Revision: $
+ */
+public class TestResultCodecTestCase
+{
+   @Test
+   public void shouldRoundTripAssertionError() throws Exception
+   {
+      Throwable decoded = roundTrip(new AssertionError("expected:<1> but was:<2>"));
+
+      Assert.assertEquals(AssertionError.class, decoded.getClass());
+      Assert.assertEquals("expected:<1> but was:<2>", decoded.getMessage());
+   }
+
+   @Test
+   public void shouldRoundTripAssertionErrorWithoutMessage() throws Exception
+   {
+      Throwable decoded = roundTrip(new AssertionError());
+
+      Assert.assertEquals(AssertionError.class, decoded.getClass());
+      Assert.assertNull(decoded.getMessage());
+   }
+
+   @Test
+   public void shouldRoundTripComparisonFailure() throws Exception
+   {
+      Throwable decoded = roundTrip(new org.junit.ComparisonFailure("values differ", "a", "b"));
+
+      Assert.assertEquals(org.junit.ComparisonFailure.class, decoded.getClass());
+      Assert.assertEquals("a", ((org.junit.ComparisonFailure)decoded).getExpected());
+      Assert.assertEquals("b", ((org.junit.ComparisonFailure)decoded).getActual());
+   }
+
+   @Test
+   public void shouldRoundTripJUnit3ComparisonFailure() throws Exception
+   {
+      Throwable decoded = roundTrip(new ComparisonFailure("values differ", "a", "b"));
+
+      Assert.assertEquals(ComparisonFailure.class, decoded.getClass());
+      Assert.assertEquals("b", ((ComparisonFailure)decoded).getActual());
+   }
+
+   @Test
+   public void shouldRoundTripCauseChain() throws Exception
+   {
+      Throwable decoded = roundTrip(new RuntimeException("outer", new IOException("inner")));
+
+      Assert.assertEquals(RuntimeException.class, decoded.getClass());
+      Assert.assertEquals("outer", decoded.getMessage());
+      Assert.assertEquals(IOException.class, decoded.getCause().getClass());
+      Assert.assertEquals("inner", decoded.getCause().getMessage());
+   }
+
+   @Test
+   public void shouldRoundTripFramedResults() throws Exception
+   {
+      TestResultCodec writer = new TestResultCodec();
+      ByteArrayOutputStream stream = new ByteArrayOutputStream();
+      DataOutputStream output = new DataOutputStream(stream);
+      writer.writeFrame(output, "first", new TestResult(Status.PASSED));
+      writer.writeFrame(output, "second", new TestResult(Status.FAILED, new IllegalStateException("failed")));
+      TestResultCodec.writeEnd(output);
+      output.close();
+
+      TestResultCodec reader = new TestResultCodec();
+      DataInputStream input = new DataInputStream(new ByteArrayInputStream(stream.toByteArray()));
+      Assert.assertEquals("first", reader.readFrameName(input));
+      Assert.assertEquals(Status.PASSED, reader.readFrameResult(input).getStatus());
+      Assert.assertEquals("second", reader.readFrameName(input));
+      TestResult second = reader.readFrameResult(input);
+      Assert.assertEquals(Status.FAILED, second.getStatus());
+      Assert.assertEquals("failed", second.getThrowable().getMessage());
+      Assert.assertNull("Stream should have ended", reader.readFrameName(input));
+   }
+
+   @Test
+   public void shouldTrimStackTraceToConfiguredMaxFrames() throws Exception
+   {
+      System.setProperty(TestResultCodec.MAX_FRAMES_PROPERTY, "1");
+      TestResultCodec codec;
+      try
+      {
+         codec = new TestResultCodec();
+      }
+      finally
+      {
+         System.clearProperty(TestResultCodec.MAX_FRAMES_PROPERTY);
+      }
+      int length = codec.encode(new TestResult(Status.FAILED, new IllegalStateException()));
+      TestResult decoded = codec.decode(codec.toByteArray(), 0, length);
+
+      Assert.assertEquals("Should keep one frame and a trimmed marker", 2, decoded.getThrowable().getStackTrace().length);
+   }
+
+   private Throwable roundTrip(Throwable throwable) throws Exception
+   {
+      TestResult result = new TestResult(Status.FAILED);
+      result.setThrowable(throwable);
+
+      TestResultCodec codec = TestResultCodec.getCodec();
+      int length = codec.encode(result);
+      TestResult decoded = codec.decode(codec.toByteArray(), 0, length);
+
+      Assert.assertEquals(Status.FAILED, decoded.getStatus());
+      Assert.assertArrayEquals(throwable.getStackTrace(), decoded.getThrowable().getStackTrace());
+      return decoded.getThrowable();
+   }
+}
@@ -25,6 +25,7 @@ import javax.enterprise.inject.spi.InjectionTarget;
 import javax.naming.InitialContext;
 
 import org.jboss.arquillian.spi.Context;
+import org.jboss.arquillian.spi.Stateless;
 import org.jboss.arquillian.spi.TestEnricher;
 
 /**
@@ -33,6 +34,7 @@ import org.jboss.arquillian.spi.TestEnricher;
  * @author <a href="mailto:aslak@conduct.no">Aslak Knutsen</a>
  * @version $Revision: $
  */
+@Stateless
 public class CDIInjectionEnricher implements TestEnricher 
 {
    private static final String STANDARD_BEAN_MANAGER_JNDI_NAME = "java:comp/BeanManager";
@@ -25,6 +25,7 @@ import javax.naming.InitialContext;
 import javax.naming.NamingException;
 
 import org.jboss.arquillian.spi.Context;
+import org.jboss.arquillian.spi.Stateless;
 import org.jboss.arquillian.spi.TestEnricher;
 
 /**
@@ -33,6 +34,7 @@ import org.jboss.arquillian.spi.TestEnricher;
  * @author <a href="mailto:aknutsen@redhat.com">Aslak Knutsen</a>
  * @version $Revision: $
  */
+@Stateless
 public class EJBInjectionEnricher implements TestEnricher
 {
    
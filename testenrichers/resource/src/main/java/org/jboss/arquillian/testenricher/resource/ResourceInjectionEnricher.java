@@ -26,6 +26,7 @@ import javax.annotation.Resource;
 import javax.naming.InitialContext;
 
 import org.jboss.arquillian.spi.Context;
+import org.jboss.arquillian.spi.Stateless;
 import org.jboss.arquillian.spi.TestEnricher;
 
 /**
@@ -37,6 +38,7 @@ import org.jboss.arquillian.spi.TestEnricher;
  * @author <a href="mailto:aknutsen@redhat.com">Aslak Knutsen</a>
  * @version $Revision: $
  */
+@Stateless
 public class ResourceInjectionEnricher implements TestEnricher
 {
    private static final String RESOURCE_LOOKUP_PREFIX = "java:/comp/env";
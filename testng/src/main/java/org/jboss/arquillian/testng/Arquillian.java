@@ -17,6 +17,10 @@
 package org.jboss.arquillian.testng;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
 
 import org.jboss.arquillian.impl.DeployableTestBuilder;
 import org.jboss.arquillian.impl.XmlConfigurationBuilder;
@@ -27,6 +31,8 @@ import org.jboss.arquillian.spi.TestRunnerAdaptor;
 import org.jboss.arquillian.spi.util.TestEnrichers;
 import org.testng.IHookCallBack;
 import org.testng.IHookable;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
 import org.testng.ITestResult;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.AfterMethod;
@@ -47,9 +53,14 @@ public abstract class Arquillian implements IHookable
    public static final String ARQUILLIAN_DATA_PROVIDER = "ARQUILLIAN_DATA_PROVIDER";
    
    private static ThreadLocal<TestRunnerAdaptor> deployableTest = new ThreadLocal<TestRunnerAdaptor>();
+   
+   /*
+    * Set when the Suite is held by the TestNGTestRunner in container, it is started and ended outside the TestNG run.
+    */
+   private static ThreadLocal<Boolean> heldSuite = new ThreadLocal<Boolean>();
 
    @BeforeSuite(alwaysRun = true)
-   public void arquillianBeforeSuite() throws Exception
+   public void arquillianBeforeSuite(ITestContext context) throws Exception
    {
       if(deployableTest.get() == null)
       {
@@ -57,24 +68,27 @@ public abstract class Arquillian implements IHookable
          TestRunnerAdaptor adaptor = DeployableTestBuilder.build(configuration);
          adaptor.beforeSuite(); 
          deployableTest.set(adaptor); // don't set TestRunnerAdaptor if beforeSuite fails
+         
+         adaptor.upcomingClasses(getTestClasses(context));
       }
    }
 
    @AfterSuite(alwaysRun = true)
    public void arquillianAfterSuite() throws Exception
    {
-      if (deployableTest.get() == null) 
+      if (deployableTest.get() == null || heldSuite.get() != null) 
       {
-         return; // beforeSuite failed
+         return; // beforeSuite failed or the Suite outlives the run
       }
       deployableTest.get().afterSuite();
       deployableTest.set(null);
    }
 
    @BeforeClass(alwaysRun = true)
-   public void arquillianBeforeClass() throws Exception
+   public void arquillianBeforeClass(ITestContext context) throws Exception
    {
       deployableTest.get().beforeClass(getClass());
+      deployableTest.get().upcomingMethods(getClass(), getTestMethods(context));
    }
 
    @AfterClass(alwaysRun = true)
@@ -151,6 +165,60 @@ public abstract class Arquillian implements IHookable
       }
    }
    
+   /**
+    * Run the following TestNG runs on this Thread in the given Suite. Used by the TestNGTestRunner to keep 
+    * the Suite of a test class in container between runs, the caller ends it.
+    * 
+    * @param adaptor The TestRunnerAdaptor of a started Suite
+    */
+   static void enterSuite(TestRunnerAdaptor adaptor)
+   {
+      deployableTest.set(adaptor);
+      heldSuite.set(Boolean.TRUE);
+   }
+
+   /**
+    * Leave the Suite entered by {@link #enterSuite(TestRunnerAdaptor)}.
+    */
+   static void exitSuite()
+   {
+      deployableTest.remove();
+      heldSuite.remove();
+   }
+   
+   /*
+    * The Arquillian test classes of the current test, in execution order.
+    */
+   private Class<?>[] getTestClasses(ITestContext context)
+   {
+      Set<Class<?>> testClasses = new LinkedHashSet<Class<?>>();
+      for(ITestNGMethod method : context.getAllTestMethods())
+      {
+         Class<?> testClass = method.getRealClass();
+         if(Arquillian.class.isAssignableFrom(testClass))
+         {
+            testClasses.add(testClass);
+         }
+      }
+      return testClasses.toArray(new Class<?>[testClasses.size()]);
+   }
+   
+   /*
+    * The test methods of this test class in the current test.
+    */
+   private Method[] getTestMethods(ITestContext context)
+   {
+      List<Method> testMethods = new ArrayList<Method>();
+      for(ITestNGMethod method : context.getAllTestMethods())
+      {
+         if(method.getRealClass() == getClass())
+         {
+            testMethods.add(method.getMethod());
+         }
+      }
+      return testMethods.toArray(new Method[testMethods.size()]);
+   }
+   
    @DataProvider(name = Arquillian.ARQUILLIAN_DATA_PROVIDER)
    public Object[][] arquillianArgumentProvider(Method method) 
    {
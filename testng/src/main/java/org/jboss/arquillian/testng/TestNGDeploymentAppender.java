@@ -17,6 +17,7 @@
 package org.jboss.arquillian.testng;
 
 import org.jboss.arquillian.spi.AuxiliaryArchiveAppender;
+import org.jboss.arquillian.spi.Stateless;
 import org.jboss.arquillian.spi.TestRunner;
 import org.jboss.shrinkwrap.api.Archive;
 import org.jboss.shrinkwrap.api.Filters;
@@ -32,6 +33,7 @@ import com.google.inject.Inject;
  * @author <a href="mailto:aslak@conduct.no">Aslak Knutsen</a>
  * @version $Revision: $
  */
+@Stateless
 public class TestNGDeploymentAppender implements AuxiliaryArchiveAppender
 {
 
@@ -16,14 +16,32 @@
  */
 package org.jboss.arquillian.testng;
 
+import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 import org.jboss.arquillian.impl.DeployableTestBuilder;
+import org.jboss.arquillian.impl.XmlConfigurationBuilder;
+import org.jboss.arquillian.spi.BatchTestRunner;
+import org.jboss.arquillian.spi.CachingTestRunner;
 import org.jboss.arquillian.spi.ContainerProfile;
+import org.jboss.arquillian.spi.Stateless;
 import org.jboss.arquillian.spi.TestResult;
 import org.jboss.arquillian.spi.TestRunner;
+import org.jboss.arquillian.spi.TestRunnerAdaptor;
+import org.jboss.arquillian.spi.TestResult.Status;
+import org.testng.ITestContext;
+import org.testng.ITestListener;
+import org.testng.ITestResult;
 import org.testng.TestNG;
 import org.testng.internal.AnnotationTypeEnum;
 import org.testng.xml.XmlClass;
@@ -34,42 +52,316 @@ import org.testng.xml.XmlTest;
 /**
  * TestNGTestRunner
  *
+ * The test methods of a test class are looked up once, a unknown method fails without a TestNG run. The configured
+ * Suite of a {@link Arquillian} test class and the suite of a single method are kept between runs until the test 
+ * class is released, which ends the Suite.
+ *
  * @author <a href="mailto:aslak@conduct.no">Aslak Knutsen</a>
  * @version $Revision: $
  */
-public class TestNGTestRunner implements TestRunner
+@Stateless
+public class TestNGTestRunner implements TestRunner, BatchTestRunner, CachingTestRunner
 {
+   private static final Logger log = Logger.getLogger(TestNGTestRunner.class.getName());
+   
+   private final Map<Class<?>, ClassPlan> plans = new HashMap<Class<?>, ClassPlan>();
 
    public TestResult execute(Class<?> testClass, String methodName)
    {
+      ClassPlan plan = getPlan(testClass);
+      if (!plan.hasTestMethod(methodName))
+      {
+         return new TestResult(
+               Status.FAILED, 
+               new IllegalArgumentException("No test method " + methodName + " in " + testClass.getName()));
+      }
+      
+      DeployableTestBuilder.setProfile(ContainerProfile.CONTAINER);
+      try
+      {
+         TestListener resultListener = new TestListener();
+         
+         TestNG runner = new TestNG(true);
+         runner.setVerbose(0);
+         runner.addListener(resultListener);
+         runner.setXmlSuites(
+               Arrays.asList(plan.getSuite(methodName)));
+         
+         plan.run(runner);
+         return resultListener.getTestResult();
+      }
+      finally
+      {
+         DeployableTestBuilder.clearProfile();
+      }
+   }
+   
+   public void execute(Class<?> testClass, List<String> methodNames, final BatchTestRunner.Callback callback)
+   {
+      ClassPlan plan = getPlan(testClass);
       DeployableTestBuilder.setProfile(ContainerProfile.CONTAINER);
-      TestListener resultListener = new TestListener();
       
       TestNG runner = new TestNG(true);
       runner.setVerbose(0);
-      runner.addListener(resultListener);
+      runner.addListener(new BatchListener(callback));
       runner.setXmlSuites(
-            Arrays.asList(createSuite(testClass, methodName)));
+            Arrays.asList(plan.createSuite(methodNames.toArray(new String[methodNames.size()]))));
       
-      runner.run();
-
-      DeployableTestBuilder.clearProfile();
-      return resultListener.getTestResult(); 
+      try
+      {
+         plan.run(runner);
+      }
+      finally
+      {
+         DeployableTestBuilder.clearProfile();
+      }
+   }
+   
+   public void release(ClassLoader classLoader)
+   {
+      List<ClassPlan> released = new ArrayList<ClassPlan>();
+      synchronized (plans)
+      {
+         Iterator<ClassPlan> cached = plans.values().iterator();
+         while (cached.hasNext())
+         {
+            ClassPlan plan = cached.next();
+            if (classLoader == null || plan.testClass.getClassLoader() == classLoader)
+            {
+               cached.remove();
+               released.add(plan);
+            }
+         }
+      }
+      for (ClassPlan plan : released)
+      {
+         plan.release();
+      }
    }
    
-   private XmlSuite createSuite(Class<?> className, String methodName)
+   private ClassPlan getPlan(Class<?> testClass)
    {
-      XmlSuite suite = new XmlSuite();
-      suite.setName("Arquillian");
-      suite.setAnnotations(AnnotationTypeEnum.JDK.getName());
+      synchronized (plans)
+      {
+         ClassPlan plan = plans.get(testClass);
+         if (plan == null)
+         {
+            plan = new ClassPlan(testClass);
+            plans.put(testClass, plan);
+         }
+         return plan;
+      }
+   }
+   
+   /*
+    * The test methods of a test class by name, the suites of the single methods and the idle started Suites of 
+    * a Arquillian test class. A Suite is only used by one run at a time, concurrent runs of the same test class 
+    * get a Suite each. TestNG keeps the results in the TestNG instance, so it is still created pr run.
+    */
+   private static class ClassPlan
+   {
+      private Class<?> testClass;
+      
+      private String testName;
+      
+      private Map<String, Method> testMethods = new HashMap<String, Method>();
+      
+      private Map<String, XmlSuite> suites = new ConcurrentHashMap<String, XmlSuite>();
+      
+      private Queue<TestRunnerAdaptor> idle = new ConcurrentLinkedQueue<TestRunnerAdaptor>();
+      
+      private boolean released;
+      
+      public ClassPlan(Class<?> testClass)
+      {
+         this.testClass = testClass;
+         this.testName = "Arquillian - " + testClass;
+         for (Method method : testClass.getMethods())
+         {
+            if (method.getDeclaringClass() != Object.class)
+            {
+               testMethods.put(method.getName(), method);
+            }
+         }
+      }
+      
+      public boolean hasTestMethod(String methodName)
+      {
+         return testMethods.containsKey(methodName);
+      }
+      
+      public XmlSuite getSuite(String methodName)
+      {
+         XmlSuite suite = suites.get(methodName);
+         if (suite == null)
+         {
+            suite = createSuite(methodName);
+            suites.put(methodName, suite);
+         }
+         return suite;
+      }
+      
+      public void run(TestNG runner)
+      {
+         TestRunnerAdaptor adaptor = null;
+         if (Arquillian.class.isAssignableFrom(testClass))
+         {
+            adaptor = idle.poll();
+            if (adaptor == null)
+            {
+               adaptor = startSuite();
+            }
+         }
+         if (adaptor == null)
+         {
+            runner.run();
+            return;
+         }
+         Arquillian.enterSuite(adaptor);
+         try
+         {
+            runner.run();
+         }
+         finally
+         {
+            Arquillian.exitSuite();
+            idle(adaptor);
+         }
+      }
+      
+      public void release()
+      {
+         synchronized (this)
+         {
+            released = true;
+         }
+         TestRunnerAdaptor adaptor;
+         while ((adaptor = idle.poll()) != null)
+         {
+            endSuite(adaptor);
+         }
+      }
+      
+      private TestRunnerAdaptor startSuite()
+      {
+         TestRunnerAdaptor adaptor;
+         try
+         {
+            adaptor = DeployableTestBuilder.build(new XmlConfigurationBuilder().build());
+            adaptor.beforeSuite();
+         }
+         catch (Exception e)
+         {
+            // let the @BeforeSuite of the run start the Suite and report the failure
+            log.log(Level.FINE, "Could not start the Suite of " + testClass.getName(), e);
+            return null;
+         }
+         try
+         {
+            adaptor.upcomingClasses(testClass);
+         }
+         catch (Exception e)
+         {
+            log.log(Level.WARNING, "Could not prepare " + testClass.getName(), e);
+         }
+         return adaptor;
+      }
+      
+      private void idle(TestRunnerAdaptor adaptor)
+      {
+         synchronized (this)
+         {
+            if (!released)
+            {
+               idle.add(adaptor);
+               return;
+            }
+         }
+         endSuite(adaptor);
+      }
+      
+      private void endSuite(TestRunnerAdaptor adaptor)
+      {
+         try
+         {
+            adaptor.afterSuite();
+         }
+         catch (Exception e)
+         {
+            log.log(Level.WARNING, "Could not run @AfterSuite of " + testClass.getName(), e);
+         }
+      }
+      
+      public XmlSuite createSuite(String... methodNames)
+      {
+         XmlSuite suite = new XmlSuite();
+         suite.setName("Arquillian");
+         suite.setAnnotations(AnnotationTypeEnum.JDK.getName());
 
-      XmlTest test = new XmlTest(suite);
-      test.setName("Arquillian - " + className);
-      List<XmlClass> testClasses = new ArrayList<XmlClass>();
-      XmlClass testClass = new XmlClass(className);
-      testClass.getIncludedMethods().add(new XmlInclude(methodName));
-      testClasses.add(testClass);
-      test.setXmlClasses(testClasses);
-      return suite;
+         XmlTest test = new XmlTest(suite);
+         test.setName(testName);
+         List<XmlClass> testClasses = new ArrayList<XmlClass>();
+         XmlClass xmlClass = new XmlClass(testClass);
+         for(String methodName : methodNames)
+         {
+            xmlClass.getIncludedMethods().add(new XmlInclude(methodName));
+         }
+         testClasses.add(xmlClass);
+         test.setXmlClasses(testClasses);
+         return suite;
+      }
+   }
+   
+   /*
+    * Gives the result of each test method invocation to the callback when it finishes. Data providers and 
+    * invocation counts report the same method name more than once, the client consumes them in order.
+    */
+   private static class BatchListener implements ITestListener
+   {
+      private BatchTestRunner.Callback callback;
+      
+      public BatchListener(BatchTestRunner.Callback callback)
+      {
+         this.callback = callback;
+      }
+      
+      public void onTestSuccess(ITestResult result)
+      {
+         callback(result, new TestResult(Status.PASSED, result.getThrowable()));
+      }
+      
+      public void onTestFailure(ITestResult result)
+      {
+         callback(result, new TestResult(Status.FAILED, result.getThrowable()));
+      }
+      
+      public void onTestSkipped(ITestResult result)
+      {
+         callback(result, new TestResult(Status.SKIPPED));
+      }
+      
+      public void onTestFailedButWithinSuccessPercentage(ITestResult result)
+      {
+         onTestSuccess(result);
+      }
+      
+      public void onTestStart(ITestResult result)
+      {
+      }
+      
+      public void onStart(ITestContext context)
+      {
+      }
+      
+      public void onFinish(ITestContext context)
+      {
+      }
+      
+      private void callback(ITestResult result, TestResult testResult)
+      {
+         testResult.setStart(result.getStartMillis());
+         testResult.setEnd(result.getEndMillis());
+         callback.result(result.getMethod().getMethodName(), testResult);
+      }
    }
 }
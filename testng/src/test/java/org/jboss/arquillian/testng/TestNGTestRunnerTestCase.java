@@ -16,6 +16,14 @@
  */
 package org.jboss.arquillian.testng;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.jboss.arquillian.spi.BatchTestRunner;
+import org.jboss.arquillian.testng.testspi.TestSuiteContextAppender;
 import org.jboss.arquillian.spi.TestResult;
 import org.junit.Assert;
 import org.junit.Test;
@@ -45,15 +53,128 @@ public class TestNGTestRunnerTestCase
       Assert.assertEquals(IllegalArgumentException.class, result.getThrowable().getClass());
    }
    
+   @Test
+   public void shouldReturnResultOfEachMethodInBatch() throws Exception 
+   {
+      final Map<String, TestResult> results = new HashMap<String, TestResult>();
+      TestNGTestRunner runner = new TestNGTestRunner();
+      runner.execute(
+            TestNGTestRunnerTestCase.class, 
+            Arrays.asList("shouldProvidePassingTestToRunner", "shouldProvideExpectedExceptionToRunner"), 
+            new BatchTestRunner.Callback()
+            {
+               public void result(String methodName, TestResult result)
+               {
+                  results.put(methodName, result);
+               }
+            });
+      
+      Assert.assertEquals("Should only run the methods in the batch", 2, results.size());
+      Assert.assertEquals(TestResult.Status.PASSED, results.get("shouldProvidePassingTestToRunner").getStatus());
+      Assert.assertEquals(TestResult.Status.PASSED, results.get("shouldProvideExpectedExceptionToRunner").getStatus());
+      Assert.assertEquals(
+            IllegalArgumentException.class, 
+            results.get("shouldProvideExpectedExceptionToRunner").getThrowable().getClass());
+   }
+   
+   @Test
+   public void shouldReturnResultOfEachInvocationInBatch() throws Exception 
+   {
+      final List<String> invocations = new ArrayList<String>();
+      TestNGTestRunner runner = new TestNGTestRunner();
+      runner.execute(
+            TestNGTestRunnerTestCase.class, 
+            Arrays.asList("shouldProvideRepeatedTestToRunner"), 
+            new BatchTestRunner.Callback()
+            {
+               public void result(String methodName, TestResult result)
+               {
+                  invocations.add(methodName + ":" + result.getStatus());
+               }
+            });
+      
+      Assert.assertEquals(
+            Arrays.asList(
+                  "shouldProvideRepeatedTestToRunner:PASSED", 
+                  "shouldProvideRepeatedTestToRunner:PASSED", 
+                  "shouldProvideRepeatedTestToRunner:PASSED"), 
+            invocations);
+   }
+   
+   @Test
+   public void shouldFailUnknownMethod() throws Exception 
+   {
+      TestNGTestRunner runner = new TestNGTestRunner();
+      Assert.assertEquals(
+            TestResult.Status.PASSED, 
+            runner.execute(TestNGTestRunnerTestCase.class, "shouldProvidePassingTestToRunner").getStatus());
+      
+      TestResult result = runner.execute(TestNGTestRunnerTestCase.class, "unknown");
+      Assert.assertEquals(TestResult.Status.FAILED, result.getStatus());
+      Assert.assertEquals(IllegalArgumentException.class, result.getThrowable().getClass());
+   }
+   
+   @Test
+   public void shouldKeepSuiteUntilReleased() throws Exception 
+   {
+      InContainerTestClass.invocations.clear();
+      TestNGTestRunner runner = new TestNGTestRunner();
+      int started = TestSuiteContextAppender.startedSuites.get();
+      int ended = TestSuiteContextAppender.endedSuites.get();
+      
+      Assert.assertEquals(TestResult.Status.PASSED, runner.execute(InContainerTestClass.class, "first").getStatus());
+      Assert.assertEquals(TestResult.Status.PASSED, runner.execute(InContainerTestClass.class, "second").getStatus());
+      Assert.assertEquals(TestResult.Status.PASSED, runner.execute(InContainerTestClass.class, "first").getStatus());
+      
+      Assert.assertEquals(
+            "Should only run the requested method on each run", 
+            Arrays.asList("first", "second", "first"), InContainerTestClass.invocations);
+      Assert.assertEquals("Should start the Suite once", started + 1, TestSuiteContextAppender.startedSuites.get());
+      Assert.assertEquals("Should not end the Suite pr run", ended, TestSuiteContextAppender.endedSuites.get());
+      
+      runner.release(InContainerTestClass.class.getClassLoader());
+      
+      Assert.assertEquals("Should end the Suite on release", ended + 1, TestSuiteContextAppender.endedSuites.get());
+   }
+   
    @org.testng.annotations.Test(expectedExceptions = IllegalArgumentException.class)
    public void shouldProvideExpectedExceptionToRunner() throws Exception
    {
       throw new IllegalArgumentException();
    }
    
+   @org.testng.annotations.DataProvider(name = "repeated")
+   public Object[][] repeated()
+   {
+      return new Object[][] {{1}, {2}, {3}};
+   }
+   
+   @org.testng.annotations.Test(dataProvider = "repeated")
+   public void shouldProvideRepeatedTestToRunner(Integer invocation) throws Exception 
+   {
+      Assert.assertTrue(invocation > 0);
+   }
+   
    @org.testng.annotations.Test
    public void shouldProvidePassingTestToRunner() throws Exception 
    {
       Assert.assertTrue(true);
    }
+   
+   public static class InContainerTestClass extends Arquillian
+   {
+      public static List<String> invocations = new ArrayList<String>();
+      
+      @org.testng.annotations.Test
+      public void first() throws Exception
+      {
+         invocations.add("first");
+      }
+      
+      @org.testng.annotations.Test
+      public void second() throws Exception
+      {
+         invocations.add("second");
+      }
+   }
 }